@@ -0,0 +1,109 @@
+package com.example.appointments.jmh;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.dto.AppointmentPage;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.example.appointments.service.AppointmentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code AppointmentService} operations against the embedded H2 database, through the real Spring context
+ * (transactions, caches and Hibernate included) but without HTTP. The table is seeded with {@code rows}
+ * appointments spread over {@value Fixtures#CUSTOMERS} customers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppointmentServiceBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentService appointmentService;
+    private AppointmentRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.appointments=WARN");
+        appointmentService = context.getBean(AppointmentService.class);
+
+        AppointmentRepository repository = context.getBean(AppointmentRepository.class);
+        List<Appointment> batch = new ArrayList<>();
+        for (int i = 1; i <= rows; i++) {
+            Appointment appointment = Fixtures.appointment(i);
+            appointment.setId(null);
+            appointment.setVersion(null);
+            batch.add(appointment);
+            if (batch.size() == 1_000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+        request = Fixtures.request(rows + 1L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AppointmentResponse getAppointmentByIdCached() {
+        return appointmentService.getAppointmentById(randomId());
+    }
+
+    @Benchmark
+    public List<AppointmentResponse> getUpcomingAppointments() {
+        return appointmentService.getUpcomingAppointments(randomCustomer(), LocalDateTime.of(2025, 11, 15, 8, 0));
+    }
+
+    @Benchmark
+    public AppointmentPage getAppointmentsPage() {
+        return appointmentService.getAppointmentsPage(null, 50);
+    }
+
+    @Benchmark
+    public AppointmentResponse updateAppointment() {
+        long id = randomId();
+        AppointmentRequest update = Fixtures.request(id);
+        update.setDone(true);
+        return appointmentService.updateAppointment(id, update, null);
+    }
+
+    // Paired so the table keeps its size across iterations
+    @Benchmark
+    public Long createAndDeleteAppointment() {
+        Long id = appointmentService.createAppointment(request).getId();
+        appointmentService.deleteAppointment(id);
+        return id;
+    }
+
+    private long randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(rows);
+    }
+
+    private static String randomCustomer() {
+        return Fixtures.customerId(ThreadLocalRandom.current().nextInt(Fixtures.CUSTOMERS));
+    }
+}
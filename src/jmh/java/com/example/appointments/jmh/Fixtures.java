@@ -0,0 +1,43 @@
+package com.example.appointments.jmh;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Appointment data shared by the benchmarks, shaped like typical API traffic.
+ */
+final class Fixtures {
+
+    static final int CUSTOMERS = 100;
+    private static final LocalDateTime START = LocalDateTime.of(2025, 11, 15, 8, 0);
+
+    private Fixtures() {
+    }
+
+    static Appointment appointment(long id) {
+        return new Appointment(id, "Appointment " + id, "Bring previous test results", "Medical",
+                START.plusMinutes(30 * id), null, false, customerId(id), 1L);
+    }
+
+    static AppointmentRequest request(long i) {
+        return new AppointmentRequest("Appointment " + i, "Bring previous test results", "Medical",
+                START.plusMinutes(30 * i), null, false, customerId(i));
+    }
+
+    static List<AppointmentResponse> responses(int size) {
+        List<AppointmentResponse> responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            responses.add(AppointmentResponse.fromEntity(appointment(i + 1)));
+        }
+        return responses;
+    }
+
+    static String customerId(long i) {
+        return "CUST" + (i % CUSTOMERS);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.appointments.jmh;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading the appointment list as managed entities mapped with {@code AppointmentResponse.fromEntity}, against
+ * constructor-expression projections with and without the notes column. Run with {@code -prof gc}
+ * and compare {@code gc.alloc.rate.norm}, the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListProjectionBenchmark {
+
+    private static final int ROWS = 5_000;
+
+    @Param({"30", "1000"})
+    public int notesLength;
+
+    private ConfigurableApplicationContext context;
+    private AppointmentRepository repository;
+    private TransactionTemplate transaction;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.appointments=WARN");
+        repository = context.getBean(AppointmentRepository.class);
+        transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        String notes = "n".repeat(notesLength);
+        List<Appointment> batch = new ArrayList<>();
+        for (int i = 1; i <= ROWS; i++) {
+            Appointment appointment = Fixtures.appointment(i);
+            appointment.setId(null);
+            appointment.setVersion(null);
+            appointment.setNotes(notes);
+            batch.add(appointment);
+            if (batch.size() == 1_000) {
+                repository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        repository.saveAll(batch);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // The read path before projections: entities enter a persistence context, then get copied
+    @Benchmark
+    public List<AppointmentResponse> entities() {
+        return transaction.execute(status -> repository.findAll().stream()
+                .map(AppointmentResponse::fromEntity)
+                .toList());
+    }
+
+    @Benchmark
+    public List<AppointmentResponse> projection() {
+        return repository.findAllResponses();
+    }
+
+    @Benchmark
+    public List<AppointmentResponse> projectionWithoutNotes() {
+        return repository.findAllResponsesWithoutNotes();
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.appointments.jmh;
+
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of mapping an entity to its response DTO, paid once per appointment on every read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private Appointment appointment;
+
+    @Setup
+    public void setUp() {
+        appointment = Fixtures.appointment(42);
+    }
+
+    @Benchmark
+    public AppointmentResponse fromEntity() {
+        return AppointmentResponse.fromEntity(appointment);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.appointments.jmh;
+
+import com.example.appointments.config.AppointmentProtobufHttpMessageConverter;
+import com.example.appointments.dto.AppointmentResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The customer list body in each representation the API negotiates, written and read through the same
+ * message converters the controllers use. Payload sizes, raw and gzipped, are printed once per trial.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageFormatBenchmark {
+
+    private static final Type LIST_TYPE = new ParameterizedTypeReference<List<AppointmentResponse>>() {
+    }.getType();
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    public String format;
+
+    @Param({"20", "200"})
+    public int size;
+
+    private GenericHttpMessageConverter<Object> converter;
+    private MediaType mediaType;
+    private List<AppointmentResponse> appointments;
+    private byte[] payload;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        Jackson2ObjectMapperBuilder builder = switch (format) {
+            case "cbor" -> Jackson2ObjectMapperBuilder.cbor();
+            case "smile" -> Jackson2ObjectMapperBuilder.smile();
+            default -> Jackson2ObjectMapperBuilder.json();
+        };
+        converter = (GenericHttpMessageConverter<Object>) (GenericHttpMessageConverter<?>) switch (format) {
+            case "json" -> new MappingJackson2HttpMessageConverter(builder.build());
+            case "cbor" -> new MappingJackson2CborHttpMessageConverter(builder.build());
+            case "smile" -> new MappingJackson2SmileHttpMessageConverter(builder.build());
+            case "protobuf" -> new AppointmentProtobufHttpMessageConverter();
+            default -> throw new IllegalArgumentException(format);
+        };
+        mediaType = converter.getSupportedMediaTypes().get(0);
+        appointments = Fixtures.responses(size);
+        payload = serialize();
+        System.out.printf("%n%s, %d appointments: %,d bytes, %,d bytes gzipped%n", format, size, payload.length,
+                gzip(payload).length);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(appointments, LIST_TYPE, mediaType, output);
+        return output.getBodyAsBytes();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException {
+        return converter.read(LIST_TYPE, null, new MockHttpInputMessage(payload));
+    }
+
+    // What Tomcat adds on top of serialize() when the client accepts gzip
+    @Benchmark
+    public byte[] serializeGzipped() throws IOException {
+        return gzip(serialize());
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.appointments.jmh;
+
+import com.example.appointments.service.AppointmentScheduleIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AppointmentScheduleIndex} lookups of the next hour and the next day, with {@code size} appointments
+ * spread over 90 days. {@code slotSeconds} is the booking granularity: 900 puts appointments on quarter hours
+ * as a calendar would, 1 gives almost every appointment a bucket of its own, the worst case for memory.
+ * The retained heap per appointment is printed once the index is built.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ScheduleIndexBenchmark {
+
+    private static final long DAYS = 90;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "900"})
+    public int slotSeconds;
+
+    private AppointmentScheduleIndex index;
+    private LocalDateTime now;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        now = LocalDateTime.of(2030, 1, 1, 0, 0);
+        long slots = DAYS * 86_400 / slotSeconds;
+        SplittableRandom random = new SplittableRandom(42);
+
+        long before = usedHeap();
+        // Not transactional, so writes apply at once; the repository is only needed to warm
+        index = new AppointmentScheduleIndex(null, null);
+        for (long id = 1; id <= size; id++) {
+            index.add(id, now.plusSeconds(random.nextLong(slots) * slotSeconds));
+        }
+        long retained = usedHeap() - before;
+        System.out.printf("%n%d appointments, %d s slots: %.1f bytes per appointment, %.1f MB per million%n",
+                index.size(), slotSeconds, (double) retained / size, retained * 1_000_000.0 / size / (1 << 20));
+    }
+
+    @Benchmark
+    public long[] nextHour() {
+        return index.idsStartingBetween(now, now.plusHours(1), 1_000);
+    }
+
+    @Benchmark
+    public long[] nextDay() {
+        return index.idsStartingBetween(now, now.plusDays(1), 1_000);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -1,9 +1,14 @@
 package com.example.appointments;
 
+import com.example.appointments.config.ProjectionRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@ImportRuntimeHints(ProjectionRuntimeHints.class)
 public class AppointmentsApiApplication {
 
     public static void main(String[] args) {
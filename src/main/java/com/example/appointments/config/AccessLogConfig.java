@@ -0,0 +1,26 @@
+package com.example.appointments.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+/**
+ * Registers the {@link AccessLogFilter} when {@code appointments.access-log.enabled} is set.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "appointments.access-log", name = "enabled", havingValue = "true")
+public class AccessLogConfig {
+
+    @Bean
+    public FilterRegistrationBean<AccessLogFilter> accessLogFilter(AccessLogProperties properties) {
+        FilterRegistrationBean<AccessLogFilter> registration =
+                new FilterRegistrationBean<>(new AccessLogFilter(properties));
+        // Outermost, so the duration covers every other filter as well
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
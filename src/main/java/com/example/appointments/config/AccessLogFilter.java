@@ -0,0 +1,109 @@
+package com.example.appointments.config;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs a sample of requests as one key=value line each, with the URI template rather than the path so no
+ * customer or appointment identifiers end up in the log. Failed ({@code 5xx}) and slow requests are always
+ * logged; the rest with probability {@code appointments.access-log.sample-rate}. Streaming responses are
+ * logged when they complete.
+ */
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    static final String LOGGER = "com.example.appointments.access";
+    private static final Logger log = LoggerFactory.getLogger(LOGGER);
+
+    private final double sampleRate;
+    private final long slowNanos;
+
+    public AccessLogFilter(AccessLogProperties properties) {
+        if (properties.getSampleRate() < 0 || properties.getSampleRate() > 1) {
+            throw new IllegalArgumentException("appointments.access-log.sample-rate must be between 0 and 1");
+        }
+        this.sampleRate = properties.getSampleRate();
+        this.slowNanos = properties.getSlowThreshold().toNanos();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Completion(request, response, start));
+            } else {
+                log(request, response, start, failed);
+            }
+        }
+    }
+
+    private void log(HttpServletRequest request, HttpServletResponse response, long start, boolean failed) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+        String reason;
+        if (status >= 500) {
+            reason = "error";
+        } else if (nanos >= slowNanos) {
+            reason = "slow";
+        } else if (ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            reason = "sampled";
+        } else {
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        Object statements = request.getAttribute(SqlStatementCounter.STATEMENTS_ATTRIBUTE);
+        log.info("method={} uri={} status={} duration_ms={} statements={} reason={}",
+                request.getMethod(), pattern != null ? pattern : "UNKNOWN", status,
+                TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0, statements != null ? statements : "-", reason);
+    }
+
+    private final class Completion implements AsyncListener {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final long start;
+
+        private Completion(HttpServletRequest request, HttpServletResponse response, long start) {
+            this.request = request;
+            this.response = response;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            log(request, response, start, false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.access-log")
+public class AccessLogProperties {
+
+    /**
+     * Whether requests are logged as one line each to the {@code com.example.appointments.access} logger.
+     * Enabled by the {@code prod} profile, which turns off the per-request application logging instead.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Share of requests logged, between 0 and 1. Slow and failed requests are always logged.
+     */
+    private double sampleRate = 0.01;
+
+    /**
+     * Requests taking at least this long are always logged.
+     */
+    private Duration slowThreshold = Duration.ofMillis(500);
+}
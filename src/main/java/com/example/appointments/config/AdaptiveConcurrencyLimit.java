@@ -0,0 +1,117 @@
+package com.example.appointments.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limit on requests in flight that follows the latency the service delivers, in the manner of a gradient
+ * congestion window. Two moving averages of request latency are kept: a short one of the last few requests
+ * and a long one of the last few hundred. While recent requests are no slower than {@code tolerance} times
+ * the long-term latency, every completing request grows the limit by a share of its square root. Once they
+ * are slower, requests are queueing somewhere, in the database or the pool, and the limit shrinks in
+ * proportion. Either only happens while at least half the limit is in use; below that, the limit is not
+ * what decides how long requests take. Requests beyond the limit are not queued here: callers reject them.
+ * <p>
+ * Under sustained overload the long average drifts up toward the short one, which lets the limit grow
+ * back slowly; it is pulled down again quickly once latency recovers.
+ */
+public class AdaptiveConcurrencyLimit {
+
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 500;
+    // Share of each new limit that is taken over, to keep single samples from swinging it
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Not synchronized: held by every completing request for a few arithmetic operations
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile double limit;
+    private double shortLatency;
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Expected 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        if (tolerance < 1) {
+            throw new IllegalArgumentException("appointments.admission.latency-tolerance must be at least 1");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Takes a place for a request if fewer than the limit are in flight. Each successful call must be
+     * followed by one {@link #release} call.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back the place of a request that took {@code latencyNanos}, adjusting the limit by it.
+     */
+    public void release(long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        lock.lock();
+        try {
+            update(latencyNanos, current);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back the place of a request whose latency says nothing about the load, such as a stream.
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(double latency, int inFlightAtCompletion) {
+        if (longLatency == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+            return;
+        }
+        shortLatency += (latency - shortLatency) / SHORT_WINDOW;
+        longLatency += (latency - longLatency) / LONG_WINDOW;
+        if (longLatency > 2 * shortLatency) {
+            // Latency recovered; forget the slow past faster than the long window would
+            longLatency *= 0.95;
+        }
+        double current = limit;
+        if (inFlightAtCompletion * 2 < current) {
+            // Far from the limit, latency says nothing about whether it is right
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+        double next = current * gradient;
+        if (gradient == 1.0) {
+            next += Math.sqrt(current);
+        }
+        next = current * (1 - SMOOTHING) + next * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.appointments.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the {@link AdmissionInterceptor} in front of the appointment endpoints when
+ * {@code appointments.admission.enabled} is set. The change stream is left out: its connections stay open
+ * for as long as clients listen, and cost no database work while they do.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "appointments.admission", name = "enabled", havingValue = "true")
+public class AdmissionConfig implements WebMvcConfigurer {
+
+    private final AdmissionInterceptor admissionInterceptor;
+
+    public AdmissionConfig(AdmissionProperties properties) {
+        this.admissionInterceptor = new AdmissionInterceptor(properties);
+    }
+
+    // A bean of its own, so its meters are bound
+    @Bean
+    public AdmissionInterceptor admissionInterceptor() {
+        return admissionInterceptor;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionInterceptor)
+                .addPathPatterns("/api/appointments/**")
+                .excludePathPatterns("/api/appointments/changes/**");
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.appointments.config;
+
+import com.example.appointments.exception.ServiceOverloadedException;
+import com.example.appointments.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Admits requests to the appointment endpoints in three steps, each cheaper than the request it protects:
+ * <ol>
+ *     <li>the customer named by the {@code customerId} path variable takes a token from its
+ *     {@link TokenBucketLimiter} bucket, or the request is rejected with 429;</li>
+ *     <li>expensive endpoints take a token from a bucket of their own, or the request is rejected with 429,
+ *     and one of their own few places, or the request is rejected with 503;</li>
+ *     <li>every request takes a place within the {@link AdaptiveConcurrencyLimit}, or is rejected with 503.</li>
+ * </ol>
+ * Rejected requests never wait, so a flood turns into fast rejections instead of a queue in front of the
+ * database that every other request has to wait in as well. Runs after handler mapping, which has resolved
+ * the path variables and the URI template by then. Streaming responses hold their places until they complete.
+ */
+public class AdmissionInterceptor implements AsyncHandlerInterceptor, MeterBinder {
+
+    private static final String ADMISSION_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".admission";
+
+    private final TokenBucketLimiter customerRates;
+    private final AdaptiveConcurrencyLimit limit;
+    private final Map<String, EndpointLimit> endpoints = new HashMap<>();
+    private final long retryAfterSeconds;
+    private volatile Counter customerRejections;
+    private volatile Counter endpointRejections;
+    private volatile Counter limitRejections;
+
+    public AdmissionInterceptor(AdmissionProperties properties) {
+        this.customerRates = new TokenBucketLimiter(properties.getCustomerRate(), properties.getCustomerBurst(),
+                properties.getMaxCustomers());
+        this.limit = new AdaptiveConcurrencyLimit(properties.getInitialLimit(), properties.getMinLimit(),
+                properties.getMaxLimit(), properties.getLatencyTolerance());
+        for (AdmissionProperties.Endpoint endpoint : properties.getEndpoints()) {
+            String key = key(endpoint.getMethod(), endpoint.getPattern());
+            TokenBucketLimiter rate = endpoint.getRate() > 0
+                    ? new TokenBucketLimiter(endpoint.getRate(), endpoint.getBurst(), 1)
+                    : null;
+            endpoints.put(key, new EndpointLimit(key, new Semaphore(endpoint.getMaxConcurrent()), rate));
+        }
+        this.retryAfterSeconds = Math.max(1, properties.getRetryAfter().toSeconds());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Async and error dispatches belong to a request admitted before
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String customerId = customerId(request);
+        if (customerId != null) {
+            long waitNanos = customerRates.tryAcquire(customerId);
+            if (waitNanos > 0) {
+                increment(customerRejections);
+                throw new TooManyRequestsException("Too many requests for customer " + customerId,
+                        seconds(waitNanos));
+            }
+        }
+        EndpointLimit endpoint = endpoint(request);
+        Semaphore places = null;
+        if (endpoint != null) {
+            long waitNanos = endpoint.rate() != null ? endpoint.rate().tryAcquire(endpoint.key()) : 0;
+            if (waitNanos > 0) {
+                increment(endpointRejections);
+                throw new TooManyRequestsException("Too many requests to " + endpoint.key(), seconds(waitNanos));
+            }
+            if (!endpoint.places().tryAcquire()) {
+                increment(endpointRejections);
+                throw new ServiceOverloadedException("Too many concurrent requests to " + endpoint.key(),
+                        retryAfterSeconds);
+            }
+            places = endpoint.places();
+        }
+        if (!limit.tryAcquire()) {
+            if (places != null) {
+                places.release();
+            }
+            increment(limitRejections);
+            throw new ServiceOverloadedException("Service is at its concurrency limit", retryAfterSeconds);
+        }
+        request.setAttribute(ADMISSION_ATTRIBUTE, new Admission(System.nanoTime(), places));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+            Object handler) {
+        if (request.getAttribute(ADMISSION_ATTRIBUTE) instanceof Admission admission) {
+            request.getAsyncContext().addListener(new Completion(admission));
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        if (request.getDispatcherType() == DispatcherType.REQUEST
+                && request.getAttribute(ADMISSION_ATTRIBUTE) instanceof Admission admission) {
+            admission.release(true);
+        }
+    }
+
+    public int getLimit() {
+        return limit.getLimit();
+    }
+
+    public int getInFlight() {
+        return limit.getInFlight();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("appointments.admission.limit", this, AdmissionInterceptor::getLimit)
+                .description("Requests allowed in flight at once, adapted to the latency observed")
+                .register(registry);
+        Gauge.builder("appointments.admission.in.flight", this, AdmissionInterceptor::getInFlight)
+                .description("Admitted requests in flight")
+                .register(registry);
+        customerRejections = rejections(registry, "customer-rate");
+        endpointRejections = rejections(registry, "endpoint-limit");
+        limitRejections = rejections(registry, "concurrency-limit");
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("appointments.admission.rejected")
+                .description("Requests rejected before they ran")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private static String customerId(HttpServletRequest request) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return variables instanceof Map<?, ?> map && map.get("customerId") instanceof String customerId
+                ? customerId
+                : null;
+    }
+
+    private EndpointLimit endpoint(HttpServletRequest request) {
+        if (endpoints.isEmpty()) {
+            return null;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        EndpointLimit endpoint = endpoints.get(key(request.getMethod(), String.valueOf(pattern)));
+        return endpoint != null ? endpoint : endpoints.get(key(null, String.valueOf(pattern)));
+    }
+
+    private static String key(String method, String pattern) {
+        return (method == null || method.isEmpty() ? "*" : method.toUpperCase()) + " " + pattern;
+    }
+
+    // Rounded up, so a client retrying after that long finds a token
+    private static long seconds(long nanos) {
+        return Math.ceilDiv(nanos, TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private record EndpointLimit(String key, Semaphore places, TokenBucketLimiter rate) {
+    }
+
+    private final class Admission {
+
+        private final long start;
+        private final Semaphore endpoint;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission(long start, Semaphore endpoint) {
+            this.start = start;
+            this.endpoint = endpoint;
+        }
+
+        // Streams last as long as the client reads, which says nothing about the load
+        private void release(boolean sample) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (endpoint != null) {
+                endpoint.release();
+            }
+            if (sample) {
+                limit.release(System.nanoTime() - start);
+            } else {
+                limit.release();
+            }
+        }
+    }
+
+    private record Completion(Admission admission) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            admission.release(false);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            admission.release(false);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            admission.release(false);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.admission")
+public class AdmissionProperties {
+
+    /**
+     * Whether requests to the appointment endpoints have to be admitted before they run. Rejected requests
+     * are answered at once with 429 or 503 and a {@code Retry-After}, without touching the database.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Requests per second each customer may send to the endpoints with a {@code customerId} in their path,
+     * on average.
+     */
+    private double customerRate = 20;
+
+    /**
+     * Requests a customer may send at once after having been quiet, on top of its rate.
+     */
+    private int customerBurst = 40;
+
+    /**
+     * Customers whose rate is tracked. Beyond that, customers seen rarely are forgotten and start again with
+     * a full burst.
+     */
+    private long maxCustomers = 100_000;
+
+    /**
+     * Requests in flight at startup, before any latency has been observed.
+     */
+    private int initialLimit = 20;
+
+    /**
+     * Requests in flight the adaptive limit never goes below.
+     */
+    private int minLimit = 4;
+
+    /**
+     * Requests in flight the adaptive limit never goes above.
+     */
+    private int maxLimit = 200;
+
+    /**
+     * How much slower than usual recent requests may be before the limit shrinks. At 1.5, the limit shrinks
+     * once requests take more than one and a half times their long-term latency.
+     */
+    private double latencyTolerance = 1.5;
+
+    /**
+     * {@code Retry-After} of requests rejected because the service or an endpoint is at its limit.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * Expensive endpoints, with how many of their requests may run at once, within the global limit, and
+     * how many may start per second.
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * HTTP method; empty for every method.
+         */
+        private String method;
+
+        /**
+         * URI template as mapped by the controller, such as {@code /api/appointments/stats}.
+         */
+        private String pattern;
+
+        private int maxConcurrent = 1;
+
+        /**
+         * Requests per second, on average, across all callers; zero for no rate limit. Keeps an endpoint that
+         * finishes quickly from being called back to back all the time.
+         */
+        private double rate = 0;
+
+        /**
+         * Requests that may start at once on top of the rate.
+         */
+        private int burst = 1;
+    }
+}
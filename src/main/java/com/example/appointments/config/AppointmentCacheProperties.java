@@ -0,0 +1,32 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.cache")
+public class AppointmentCacheProperties {
+
+    /**
+     * Maximum number of single appointments kept in the cache.
+     */
+    private long appointmentsMaximumSize = 10_000;
+
+    /**
+     * Maximum number of appointments held across all cached per-customer lists. Lists are weighed by
+     * their length so one very large customer cannot push the cache past this bound.
+     */
+    private long customerAppointmentsMaximumWeight = 100_000;
+
+    /**
+     * Maximum number of per-customer version summaries (list ETags) kept in the cache.
+     */
+    private long customerVersionsMaximumSize = 10_000;
+
+    /**
+     * How long an entry may be served after it was loaded.
+     */
+    private Duration timeToLive = Duration.ofMinutes(10);
+}
@@ -0,0 +1,268 @@
+package com.example.appointments.config;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes {@link AppointmentRequest}, {@link AppointmentResponse} and lists of responses as Protobuf,
+ * per {@code src/main/proto/appointments.proto}; reading responses serves Java clients of the API. The wire format is written directly with the Protobuf runtime
+ * rather than through generated message classes, so responses are not copied into a second object tree.
+ * <p>
+ * {@code fields} selection does not apply: absent values take no space in Protobuf anyway, and lists without
+ * notes come back from the queries with {@code null} notes.
+ */
+public class AppointmentProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.parseMediaType(APPLICATION_PROTOBUF_VALUE);
+
+    // Field numbers of appointments.proto
+    private static final int LIST_APPOINTMENTS = 1;
+    private static final int ID = 1;
+    private static final int TITLE = 2;
+    private static final int NOTES = 3;
+    private static final int CATEGORY = 4;
+    private static final int START_DATE = 5;
+    private static final int END_DATE = 6;
+    private static final int DONE = 7;
+    private static final int CUSTOMER_ID = 8;
+    private static final int VERSION = 9;
+    private static final int REQUEST_TITLE = 1;
+    private static final int REQUEST_NOTES = 2;
+    private static final int REQUEST_CATEGORY = 3;
+    private static final int REQUEST_START_DATE = 4;
+    private static final int REQUEST_END_DATE = 5;
+    private static final int REQUEST_DONE = 6;
+    private static final int REQUEST_CUSTOMER_ID = 7;
+
+    public AppointmentProtobufHttpMessageConverter() {
+        super(APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return AppointmentResponse.class == clazz || AppointmentRequest.class == clazz
+                || MappingJacksonValue.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return canRead(mediaType) && (type == AppointmentRequest.class || type == AppointmentResponse.class
+                || isResponseList(ResolvableType.forType(type)));
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        if (clazz == AppointmentResponse.class || clazz == MappingJacksonValue.class) {
+            return true;
+        }
+        return isResponseList(type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz));
+    }
+
+    // A known length lets Tomcat leave bodies under server.compression.min-response-size uncompressed
+    @Override
+    protected Long getContentLength(Object body, MediaType contentType) {
+        Object value = body instanceof MappingJacksonValue wrapper ? wrapper.getValue() : body;
+        if (value instanceof AppointmentResponse appointment) {
+            return (long) size(appointment);
+        }
+        if (value instanceof List<?> list && list.stream().allMatch(AppointmentResponse.class::isInstance)) {
+            long length = 0;
+            for (Object item : list) {
+                int size = size((AppointmentResponse) item);
+                length += CodedOutputStream.computeTagSize(LIST_APPOINTMENTS)
+                        + CodedOutputStream.computeUInt32SizeNoTag(size) + size;
+            }
+            return length;
+        }
+        return null;
+    }
+
+    @Override
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        Object value = body instanceof MappingJacksonValue wrapper ? wrapper.getValue() : body;
+        CodedOutputStream out = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (value instanceof AppointmentResponse appointment) {
+            write(out, appointment);
+        } else if (value instanceof List<?> list && list.stream().allMatch(AppointmentResponse.class::isInstance)) {
+            for (Object item : list) {
+                AppointmentResponse appointment = (AppointmentResponse) item;
+                out.writeTag(LIST_APPOINTMENTS, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                out.writeUInt32NoTag(size(appointment));
+                write(out, appointment);
+            }
+        } else {
+            throw new HttpMessageNotWritableException("No Protobuf representation for " + value.getClass());
+        }
+        out.flush();
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        if (type instanceof Class<?> clazz) {
+            return readInternal(clazz, inputMessage);
+        }
+        CodedInputStream in = CodedInputStream.newInstance(inputMessage.getBody());
+        try {
+            List<AppointmentResponse> appointments = new ArrayList<>();
+            int tag;
+            while ((tag = in.readTag()) != 0) {
+                if (WireFormat.getTagFieldNumber(tag) != LIST_APPOINTMENTS) {
+                    in.skipField(tag);
+                    continue;
+                }
+                int limit = in.pushLimit(in.readRawVarint32());
+                appointments.add(readResponse(in));
+                in.popLimit(limit);
+            }
+            return appointments;
+        } catch (IOException ex) {
+            throw malformed(ex, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        CodedInputStream in = CodedInputStream.newInstance(inputMessage.getBody());
+        try {
+            return clazz == AppointmentResponse.class ? readResponse(in) : readRequest(in);
+        } catch (IOException ex) {
+            throw malformed(ex, inputMessage);
+        }
+    }
+
+    private static AppointmentRequest readRequest(CodedInputStream in) throws IOException {
+        AppointmentRequest request = new AppointmentRequest();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case REQUEST_TITLE -> request.setTitle(in.readString());
+                case REQUEST_NOTES -> request.setNotes(in.readString());
+                case REQUEST_CATEGORY -> request.setCategory(in.readString());
+                case REQUEST_START_DATE -> request.setStartDate(toDateTime(in.readSInt64()));
+                case REQUEST_END_DATE -> request.setEndDate(toDateTime(in.readSInt64()));
+                case REQUEST_DONE -> request.setDone(in.readBool());
+                case REQUEST_CUSTOMER_ID -> request.setCustomerId(in.readString());
+                // Unknown fields are skipped, so clients may be built from a newer schema
+                default -> in.skipField(tag);
+            }
+        }
+        return request;
+    }
+
+    private static AppointmentResponse readResponse(CodedInputStream in) throws IOException {
+        AppointmentResponse response = new AppointmentResponse();
+        int tag;
+        while ((tag = in.readTag()) != 0) {
+            switch (WireFormat.getTagFieldNumber(tag)) {
+                case ID -> response.setId(in.readInt64());
+                case TITLE -> response.setTitle(in.readString());
+                case NOTES -> response.setNotes(in.readString());
+                case CATEGORY -> response.setCategory(in.readString());
+                case START_DATE -> response.setStartDate(toDateTime(in.readSInt64()));
+                case END_DATE -> response.setEndDate(toDateTime(in.readSInt64()));
+                case DONE -> response.setDone(in.readBool());
+                case CUSTOMER_ID -> response.setCustomerId(in.readString());
+                case VERSION -> response.setVersion(in.readInt64());
+                default -> in.skipField(tag);
+            }
+        }
+        return response;
+    }
+
+    private static HttpMessageNotReadableException malformed(IOException ex, HttpInputMessage inputMessage) {
+        return new HttpMessageNotReadableException("Malformed Protobuf body: " + ex.getMessage(), ex, inputMessage);
+    }
+
+    private static boolean isResponseList(ResolvableType type) {
+        return List.class.isAssignableFrom(type.toClass())
+                && type.asCollection().resolveGeneric() == AppointmentResponse.class;
+    }
+
+    private static void write(CodedOutputStream out, AppointmentResponse appointment) throws IOException {
+        if (appointment.getId() != null) {
+            out.writeInt64(ID, appointment.getId());
+        }
+        writeString(out, TITLE, appointment.getTitle());
+        writeString(out, NOTES, appointment.getNotes());
+        writeString(out, CATEGORY, appointment.getCategory());
+        if (appointment.getStartDate() != null) {
+            out.writeSInt64(START_DATE, toMillis(appointment.getStartDate()));
+        }
+        if (appointment.getEndDate() != null) {
+            out.writeSInt64(END_DATE, toMillis(appointment.getEndDate()));
+        }
+        if (appointment.getDone() != null) {
+            out.writeBool(DONE, appointment.getDone());
+        }
+        writeString(out, CUSTOMER_ID, appointment.getCustomerId());
+        if (appointment.getVersion() != null) {
+            out.writeInt64(VERSION, appointment.getVersion());
+        }
+    }
+
+    // Must add up exactly what write() produces: it prefixes each list element
+    private static int size(AppointmentResponse appointment) {
+        int size = 0;
+        if (appointment.getId() != null) {
+            size += CodedOutputStream.computeInt64Size(ID, appointment.getId());
+        }
+        size += stringSize(TITLE, appointment.getTitle());
+        size += stringSize(NOTES, appointment.getNotes());
+        size += stringSize(CATEGORY, appointment.getCategory());
+        if (appointment.getStartDate() != null) {
+            size += CodedOutputStream.computeSInt64Size(START_DATE, toMillis(appointment.getStartDate()));
+        }
+        if (appointment.getEndDate() != null) {
+            size += CodedOutputStream.computeSInt64Size(END_DATE, toMillis(appointment.getEndDate()));
+        }
+        if (appointment.getDone() != null) {
+            size += CodedOutputStream.computeBoolSize(DONE, appointment.getDone());
+        }
+        size += stringSize(CUSTOMER_ID, appointment.getCustomerId());
+        if (appointment.getVersion() != null) {
+            size += CodedOutputStream.computeInt64Size(VERSION, appointment.getVersion());
+        }
+        return size;
+    }
+
+    private static void writeString(CodedOutputStream out, int field, String value) throws IOException {
+        if (value != null) {
+            out.writeString(field, value);
+        }
+    }
+
+    private static int stringSize(int field, String value) {
+        return value != null ? CodedOutputStream.computeStringSize(field, value) : 0;
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.bulk")
+public class BulkProperties {
+
+    /**
+     * Items written per JDBC batch and per transaction.
+     */
+    private int batchSize = 500;
+
+    /**
+     * Maximum number of items accepted in a single bulk request.
+     */
+    private int maxItems = 10_000;
+
+    /**
+     * Customers whose locks a bulk write holds at once. The items of a chunk spanning more customers are
+     * written in groups of at most this many customers, each in transactions of its own, so one bulk request
+     * never holds more than this many of the customer lock stripes.
+     */
+    private int maxLockedCustomers = 16;
+}
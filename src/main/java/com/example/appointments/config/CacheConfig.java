@@ -0,0 +1,54 @@
+package com.example.appointments.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+/**
+ * Bounded Caffeine caches (W-TinyLFU eviction) in front of the appointment reads. Statistics are recorded
+ * so hit, miss and eviction counts show up under the {@code cache.*} metrics. Every cache is a
+ * {@link FillGuardedCaffeineCache}, so a read racing a write cannot put the state from before the write back.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String APPOINTMENTS = "appointments";
+    public static final String CUSTOMER_APPOINTMENTS = "customerAppointments";
+    public static final String CUSTOMER_VERSIONS = "customerVersions";
+
+    @Bean
+    public CacheManager cacheManager(AppointmentCacheProperties properties) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name,
+                    com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new FillGuardedCaffeineCache(name, cache, isAllowNullValues());
+            }
+        };
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(APPOINTMENTS, Caffeine.newBuilder()
+                .maximumSize(properties.getAppointmentsMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(CUSTOMER_APPOINTMENTS, Caffeine.newBuilder()
+                .maximumWeight(properties.getCustomerAppointmentsMaximumWeight())
+                .weigher((Object customerId, Object appointments) -> Math.max(1, ((List<?>) appointments).size()))
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(CUSTOMER_VERSIONS, Caffeine.newBuilder()
+                .maximumSize(properties.getCustomerVersionsMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
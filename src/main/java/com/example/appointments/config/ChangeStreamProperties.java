@@ -0,0 +1,49 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.changes")
+public class ChangeStreamProperties {
+
+    /**
+     * Most changes read from the outbox in one query, and numbered per shard in one relay run.
+     */
+    private int batchSize = 500;
+
+    /**
+     * How often the relay numbers the changes other instances committed, and how long a stream waits for the
+     * horizon to move before checking it is still open. Commits on this instance are relayed right away.
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+
+    /**
+     * Idle time after which a comment is sent, so proxies keep the connection open and closed clients are
+     * noticed.
+     */
+    private Duration heartbeat = Duration.ofSeconds(15);
+
+    /**
+     * How long a stream stays open. Clients reconnect with {@code Last-Event-ID} to resume where they were.
+     */
+    private Duration timeout = Duration.ofMinutes(30);
+
+    /**
+     * How long changes are kept in the outbox.
+     */
+    private Duration retention = Duration.ofDays(7);
+
+    /**
+     * Most change streams open at once on this instance. Every stream holds a client connection and a thread
+     * for as long as it is open; clients beyond this are answered 503 with a {@code Retry-After}.
+     */
+    private int maxStreams = 1000;
+
+    /**
+     * How long clients turned away at {@link #maxStreams} are asked to wait before connecting again.
+     */
+    private Duration retryAfter = Duration.ofSeconds(5);
+}
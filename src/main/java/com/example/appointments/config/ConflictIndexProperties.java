@@ -0,0 +1,21 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.conflict-index")
+public class ConflictIndexProperties {
+
+    /**
+     * Most customer schedules kept in memory. A schedule that is evicted is loaded again on its next use.
+     */
+    private long maximumCustomers = 10_000;
+
+    /**
+     * How long a customer's schedule is kept after it was last used.
+     */
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+}
@@ -0,0 +1,22 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.customer-locks")
+public class CustomerLockProperties {
+
+    /**
+     * Locks that customers are hashed onto. Customers sharing a stripe wait for each other, so more stripes
+     * mean fewer unrelated customers queueing behind a busy one.
+     */
+    private int stripes = 256;
+
+    /**
+     * How long a write waits for its customer's lock before the request is rejected with 503.
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,67 @@
+package com.example.appointments.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Puts a {@link ConcurrencyLimitingDataSource} in front of the connection pool when
+ * {@code appointments.db-concurrency.enabled} is set.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "appointments.db-concurrency", name = "enabled", havingValue = "true")
+public class DatabaseConcurrencyConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(DatabaseConcurrencyConfig.class);
+
+    // Static and bound straight from the Environment: post-processors are created before regular beans
+    @Bean
+    public static BeanPostProcessor concurrencyLimitingDataSourcePostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConcurrencyLimitingDataSource) {
+                    return bean;
+                }
+                DatabaseConcurrencyProperties properties = Binder.get(environment)
+                        .bindOrCreate("appointments.db-concurrency", DatabaseConcurrencyProperties.class);
+                int maxConcurrent = properties.getMaxConcurrent() > 0
+                        ? properties.getMaxConcurrent()
+                        : poolSize(dataSource);
+                log.info("Limiting data source '{}' to {} concurrent connections", beanName, maxConcurrent);
+                return new ConcurrencyLimitingDataSource(dataSource, maxConcurrent, properties.getAcquireTimeout());
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder concurrencyLimitingDataSourceMetrics(DataSource dataSource) {
+        return registry -> {
+            if (dataSource instanceof ConcurrencyLimitingDataSource limiter) {
+                limiter.bindTo(registry);
+            }
+        };
+    }
+
+    private static int poolSize(DataSource dataSource) {
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                return dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+            }
+        } catch (SQLException ex) {
+            log.debug("Could not unwrap data source {}", dataSource, ex);
+        }
+        throw new IllegalStateException("appointments.db-concurrency.max-concurrent must be set for "
+                + dataSource.getClass().getName());
+    }
+}
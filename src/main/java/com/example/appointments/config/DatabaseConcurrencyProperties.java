@@ -0,0 +1,27 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.db-concurrency")
+public class DatabaseConcurrencyProperties {
+
+    /**
+     * Whether callers have to take a permit before borrowing a connection. Meant for the virtual-thread
+     * mode, where the number of request threads is no longer bounded by the Tomcat pool.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Permits handed out at once. Zero sizes the limiter to the Hikari maximum pool size.
+     */
+    private int maxConcurrent = 0;
+
+    /**
+     * How long a caller queues for a permit before the request is rejected with 503.
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(5);
+}
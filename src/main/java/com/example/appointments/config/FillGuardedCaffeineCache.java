@@ -0,0 +1,104 @@
+package com.example.appointments.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Caffeine cache that drops the value of a read which missed before the same key was evicted. Without it, a
+ * read that loads the state from before a write, and puts it after the write's eviction, would serve that
+ * state until the entry expires.
+ * <p>
+ * Relies on {@code @Cacheable} looking the key up and putting the loaded value on the same thread, with no
+ * other lookup in the same cache in between. Evictions are counted per stripe of keys, so an eviction of
+ * another key on the same stripe costs at most one extra load.
+ */
+public class FillGuardedCaffeineCache extends CaffeineCache {
+
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray evictions = new AtomicLongArray(STRIPES);
+    private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>();
+
+    public FillGuardedCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues) {
+        super(name, cache, allowNullValues);
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = super.get(key);
+        if (value == null) {
+            lastMiss.set(new Miss(key, evictions.get(stripe(key))));
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Miss miss = lastMiss.get();
+        if (miss == null || !miss.key().equals(key)) {
+            super.put(key, value);
+            return;
+        }
+        lastMiss.remove();
+        int stripe = stripe(key);
+        if (evictions.get(stripe) != miss.evictions()) {
+            return;
+        }
+        super.put(key, value);
+        // An eviction between the check and the put removed nothing; take the value out again
+        if (evictions.get(stripe) != miss.evictions()) {
+            super.evict(key);
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        evicting(key);
+        super.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        evicting(key);
+        return super.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        evictingAll();
+        super.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        evictingAll();
+        return super.invalidate();
+    }
+
+    /**
+     * Records that the key is about to be removed through the native cache, bypassing {@link #evict}.
+     */
+    public void evicting(Object key) {
+        evictions.incrementAndGet(stripe(key));
+    }
+
+    /**
+     * Records that keys not known up front are about to be removed, e.g. every appointment of a purged
+     * customer: fills of every key that missed before are dropped.
+     */
+    public void evictingAll() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            evictions.incrementAndGet(stripe);
+        }
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & 0x7fffffff) % STRIPES;
+    }
+
+    private record Miss(Object key, long evictions) {
+    }
+}
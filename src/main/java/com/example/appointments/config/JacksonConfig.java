@@ -0,0 +1,29 @@
+package com.example.appointments.config;
+
+import com.example.appointments.dto.AppointmentResponse;
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Lets responses select which {@link AppointmentResponse} properties are written. Without a filter for
+ * {@link #APPOINTMENT_FIELDS_FILTER} every property is written as before.
+ */
+@Configuration
+public class JacksonConfig {
+
+    public static final String APPOINTMENT_FIELDS_FILTER = "appointmentFields";
+
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer appointmentFieldsCustomizer() {
+        return builder -> builder
+                .mixIn(AppointmentResponse.class, AppointmentFieldsMixin.class)
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    @JsonFilter(APPOINTMENT_FIELDS_FILTER)
+    interface AppointmentFieldsMixin {
+    }
+}
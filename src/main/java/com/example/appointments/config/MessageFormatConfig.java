@@ -0,0 +1,48 @@
+package com.example.appointments.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Binary representations next to JSON, chosen by {@code Accept} for responses and {@code Content-Type} for
+ * request bodies: CBOR and Smile through Jackson, with the same mapper configuration as JSON (field selection
+ * included), and Protobuf through {@link AppointmentProtobufHttpMessageConverter}. JSON stays the default
+ * when a client accepts anything.
+ */
+@Configuration
+@Profile("!reactive")
+public class MessageFormatConfig {
+
+    // Replace Spring MVC's default CBOR and Smile converters, which do not get Spring Boot's Jackson settings
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(new SmileFactory()).build());
+    }
+
+    @Bean
+    public WebMvcConfigurer protobufMessageConverterConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                // Last, so it is never picked for a client that did not ask for it
+                converters.add(new AppointmentProtobufHttpMessageConverter());
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.appointments.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Application metrics on top of what Spring Boot already publishes (HTTP server requests, Hikari, caches,
+ * Spring Data repository invocations): SQL statements by type and per request, and JSON serialization time.
+ * Service timings come from {@code @Timed} on the services.
+ * <p>
+ * All tags are bounded: URI templates rather than paths, and never customer or appointment identifiers
+ * ({@code management.metrics.web.server.max-uri-tags} caps the templates as well).
+ */
+@Configuration
+@Profile("!reactive")
+public class MetricsConfig {
+
+    private final MeterRegistry registry;
+
+    public MetricsConfig(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatementCounterCustomizer() {
+        SqlStatementCounter counter = new SqlStatementCounter(registry);
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, counter);
+    }
+
+    @Bean
+    public TimedJsonHttpMessageConverter timedJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        return new TimedJsonHttpMessageConverter(objectMapper, registry);
+    }
+
+    @Bean
+    public WebMvcConfigurer sqlStatementMetricsConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry interceptors) {
+                interceptors.addInterceptor(new SqlStatementMetricsInterceptor(registry));
+            }
+        };
+    }
+}
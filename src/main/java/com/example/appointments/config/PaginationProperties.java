@@ -0,0 +1,30 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.pagination")
+public class PaginationProperties {
+
+    /**
+     * Page size used when the client does not send a limit.
+     */
+    private int defaultLimit = 50;
+
+    /**
+     * Upper bound for the limit a client may request.
+     */
+    private int maxLimit = 500;
+
+    /**
+     * Most appointments an unfiltered {@code GET /api/appointments} returns. The response links to the keyset
+     * page that continues after them.
+     */
+    private int listLimit = 1000;
+
+    /**
+     * Number of rows read from the repository per window when streaming.
+     */
+    private int streamWindowSize = 500;
+}
@@ -0,0 +1,32 @@
+package com.example.appointments.config;
+
+import com.example.appointments.dto.AppointmentChangeEvent;
+import com.example.appointments.dto.AppointmentGroupCount;
+import com.example.appointments.dto.AppointmentInterval;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.CustomerVersionSummary;
+import com.example.appointments.dto.ScheduleEntry;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+import java.util.List;
+
+/**
+ * Reflection hints for the native image: the DTOs Hibernate instantiates from constructor expressions
+ * ({@code select new} in JPQL and {@code construct} in criteria queries). AOT processing cannot see those
+ * constructor calls, since they are only named in query strings.
+ */
+public class ProjectionRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final List<Class<?>> PROJECTIONS = List.of(AppointmentResponse.class, AppointmentInterval.class,
+            AppointmentChangeEvent.class, AppointmentGroupCount.class, CustomerVersionSummary.class,
+            ScheduleEntry.class);
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> projection : PROJECTIONS) {
+            hints.reflection().registerType(projection, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.purge")
+public class PurgeProperties {
+
+    /**
+     * Maximum rows removed by one DELETE statement when purging a customer. Each chunk commits on its own,
+     * which bounds how long row locks are held.
+     */
+    private int chunkSize = 5_000;
+}
@@ -0,0 +1,98 @@
+package com.example.appointments.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Puts a {@link ReplicaRoutingDataSource} in front of the primary data source when
+ * {@code appointments.replicas.enabled} is set, with a connection pool per configured replica.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "appointments.replicas", name = "enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaConfig.class);
+
+    // Static and bound straight from the Environment: post-processors are created before regular beans.
+    // Ordered, so it runs before the concurrency limiter, which then takes one permit per transaction
+    // whichever node serves it.
+    @Bean
+    public static BeanPostProcessor replicaRoutingDataSourcePostProcessor(Environment environment) {
+        return new OrderedPostProcessor(environment);
+    }
+
+    @Bean
+    public MeterBinder replicaRoutingDataSourceMetrics(DataSource dataSource) {
+        return registry -> {
+            try {
+                if (dataSource.isWrapperFor(ReplicaRoutingDataSource.class)) {
+                    dataSource.unwrap(ReplicaRoutingDataSource.class).bindTo(registry);
+                }
+            } catch (SQLException ex) {
+                log.debug("Could not unwrap data source {}", dataSource, ex);
+            }
+        };
+    }
+
+    private static HikariDataSource pool(ReplicaProperties.Node node, ReplicaProperties properties) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(node.getName());
+        pool.setJdbcUrl(node.getUrl());
+        pool.setUsername(node.getUsername());
+        pool.setPassword(node.getPassword());
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        pool.setConnectionTimeout(properties.getConnectionTimeout().toMillis());
+        pool.setReadOnly(true);
+        // A replica that is down at startup is left out of rotation rather than failing the application
+        pool.setInitializationFailTimeout(-1);
+        return pool;
+    }
+
+    private static final class OrderedPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final Environment environment;
+
+        private OrderedPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource dataSource) || bean instanceof ReplicaRoutingDataSource) {
+                return bean;
+            }
+            ReplicaProperties properties = Binder.get(environment)
+                    .bindOrCreate("appointments.replicas", ReplicaProperties.class);
+            if (properties.getNodes().isEmpty()) {
+                throw new IllegalStateException("appointments.replicas.nodes must list at least one replica");
+            }
+            List<ReplicaRoutingDataSource.Replica> replicas = properties.getNodes().stream()
+                    .map(node -> new ReplicaRoutingDataSource.Replica(node.getName(), pool(node, properties)))
+                    .toList();
+            log.info("Routing replica reads of data source '{}' to {} with {} selection", beanName,
+                    properties.getNodes().stream().map(ReplicaProperties.Node::getName).toList(),
+                    properties.getSelection());
+            return new ReplicaRoutingDataSource(dataSource, replicas, properties);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
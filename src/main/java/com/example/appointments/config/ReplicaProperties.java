@@ -0,0 +1,95 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.replicas")
+public class ReplicaProperties {
+
+    /**
+     * Whether reads marked for replicas are sent to the {@link #nodes}. Off, every statement runs on the
+     * primary data source.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Read replicas of the primary database, each with a connection pool of its own.
+     */
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * How a read picks one of the healthy replicas.
+     */
+    private Selection selection = Selection.ROUND_ROBIN;
+
+    /**
+     * Connections per replica pool.
+     */
+    private int maximumPoolSize = 10;
+
+    /**
+     * How long a read waits for a replica connection before the replica is taken out of rotation and the
+     * read moves on to the next one.
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(1);
+
+    /**
+     * How often every replica is checked, which is also how soon a failed one is taken back.
+     */
+    private Duration healthCheckInterval = Duration.ofSeconds(5);
+
+    /**
+     * How long a check waits for a replica to answer before counting it down.
+     */
+    private Duration healthCheckTimeout = Duration.ofSeconds(1);
+
+    /**
+     * How long after a committed write the customer and the appointment are read from the primary. Should
+     * exceed the replication lag, or a read right after a write can miss it and put the old state back into
+     * the cache.
+     */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /**
+     * Customers and appointments tracked for read-your-writes at most. Beyond this the oldest writes are
+     * forgotten early, which risks reading them from a lagging replica.
+     */
+    private long readYourWritesMaximumSize = 100_000;
+
+    @Data
+    public static class Node {
+
+        /**
+         * Name of the replica in logs, metrics and the pool name.
+         */
+        private String name;
+
+        /**
+         * JDBC URL of the replica.
+         */
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+
+    public enum Selection {
+
+        /**
+         * Each read goes to the next healthy replica in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Each read goes to the healthy replica with the fewest connections in use, so a replica that
+         * answers slowly gets less traffic.
+         */
+        LEAST_LOADED
+    }
+}
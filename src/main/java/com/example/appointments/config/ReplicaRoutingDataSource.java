@@ -0,0 +1,293 @@
+package com.example.appointments.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends reads to replicas and everything else to the primary. A connection goes to a replica only when both
+ * hold when its first statement runs:
+ * <ul>
+ *     <li>the transaction is read-only, so a write can never reach a replica, and</li>
+ *     <li>the caller is inside {@link #readFromReplica(Supplier)}, so reads that feed a write, such as the
+ *     conflict checks or the outbox sequence, stay on the primary even in a read-only transaction.</li>
+ * </ul>
+ * Connections are fetched lazily, so a transaction that begins before the read decides where it goes on
+ * its first statement.
+ * <p>
+ * Replicas are checked on creation and then every {@code health-check-interval}; one that fails a check, or
+ * fails to hand out a connection, is left out until it passes a check again. With no replica healthy, reads fall back to the
+ * primary.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaProperties.Selection selection;
+    private final Duration healthCheckTimeout;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthChecks;
+    private final ConcurrentHashMap<String, Counter> readCounters = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    /**
+     * @param replicas replica data sources by name, in the order round-robin visits them
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, ReplicaProperties properties) {
+        super(primary);
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.selection = properties.getSelection();
+        this.healthCheckTimeout = properties.getHealthCheckTimeout();
+        setReadOnlyDataSource(new ReadDataSource());
+        long interval = properties.getHealthCheckInterval().toMillis();
+        this.healthChecks = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "appointments-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Once up front, so reads start out on the replicas that are reachable
+        checkHealth();
+        healthChecks.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs {@code read} with its read-only transactions served by a replica.
+     */
+    public static <T> T readFromReplica(Supplier<T> read) {
+        Boolean previous = REPLICA_READ.get();
+        REPLICA_READ.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            if (previous == null) {
+                REPLICA_READ.remove();
+            } else {
+                REPLICA_READ.set(previous);
+            }
+        }
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Checks every replica once, taking failed ones out of rotation and bringing recovered ones back.
+     */
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource().getConnection()) {
+                healthy = connection.isValid((int) Math.max(1, healthCheckTimeout.toSeconds()));
+            } catch (SQLException | RuntimeException ex) {
+                log.debug("Health check of replica {} failed", replica.name(), ex);
+                healthy = false;
+            }
+            if (healthy) {
+                replica.markUp();
+            } else {
+                replica.markDown();
+            }
+        }
+    }
+
+    /**
+     * Publishes per replica whether it is in rotation and its connections in use, and counts the reads each
+     * node served; {@code primary} counts reads that fell back because no replica was healthy.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("appointments.db.replica.up", replica, r -> r.isUp() ? 1 : 0)
+                    .description("Whether the replica is in rotation")
+                    .tag("replica", replica.name())
+                    .register(registry);
+            Gauge.builder("appointments.db.replica.active", replica, Replica::getActive)
+                    .description("Replica connections in use")
+                    .tag("replica", replica.name())
+                    .register(registry);
+        }
+        this.registry = registry;
+    }
+
+    @Override
+    public void close() throws Exception {
+        healthChecks.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Connection readConnection() throws SQLException {
+        if (!Boolean.TRUE.equals(REPLICA_READ.get())) {
+            return primary.getConnection();
+        }
+        for (Replica replica : candidates()) {
+            try {
+                Connection connection = replica.open();
+                count(replica.name());
+                return connection;
+            } catch (SQLException ex) {
+                log.warn("Replica {} failed to hand out a connection: {}", replica.name(), ex.getMessage());
+                replica.markDown();
+            }
+        }
+        count("primary");
+        return primary.getConnection();
+    }
+
+    // Healthy replicas, in the order they should be tried
+    private List<Replica> candidates() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.isUp()) {
+                healthy.add(replica);
+            }
+        }
+        if (healthy.size() > 1) {
+            if (selection == ReplicaProperties.Selection.LEAST_LOADED) {
+                healthy.sort(Comparator.comparingInt(Replica::getActive));
+            } else {
+                int start = Math.floorMod(next.getAndIncrement(), healthy.size());
+                List<Replica> rotated = new ArrayList<>(healthy.subList(start, healthy.size()));
+                rotated.addAll(healthy.subList(0, start));
+                healthy = rotated;
+            }
+        }
+        return healthy;
+    }
+
+    private void count(String node) {
+        MeterRegistry current = registry;
+        if (current != null) {
+            readCounters.computeIfAbsent(node, name -> Counter.builder("appointments.db.replica.reads")
+                    .description("Replica reads by the node that served them")
+                    .tag("node", name)
+                    .register(current)).increment();
+        }
+    }
+
+    /**
+     * A replica and its state. It is out of rotation until it passes a health check.
+     */
+    public static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private final AtomicBoolean up = new AtomicBoolean();
+        private final AtomicInteger active = new AtomicInteger();
+
+        public Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public DataSource dataSource() {
+            return dataSource;
+        }
+
+        public boolean isUp() {
+            return up.get();
+        }
+
+        public int getActive() {
+            return active.get();
+        }
+
+        void markUp() {
+            if (up.compareAndSet(false, true)) {
+                log.info("Replica {} is in rotation", name);
+            }
+        }
+
+        void markDown() {
+            if (up.compareAndSet(true, false)) {
+                log.warn("Replica {} is out of rotation", name);
+            }
+        }
+
+        // Counts the connection as in use until it is closed
+        Connection open() throws SQLException {
+            Connection connection = dataSource.getConnection();
+            active.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        if (method.getName().equals("close")) {
+                            if (closed.compareAndSet(false, true)) {
+                                try {
+                                    connection.close();
+                                } finally {
+                                    active.decrementAndGet();
+                                }
+                            }
+                            return null;
+                        }
+                        if (method.getName().equals("isClosed") && closed.get()) {
+                            return true;
+                        }
+                        if (method.getName().equals("unwrap") && ((Class<?>) args[0]).isInstance(proxy)) {
+                            return proxy;
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getTargetException();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Where read-only connections come from: a replica inside {@link #readFromReplica(Supplier)}, the primary
+     * otherwise.
+     */
+    private final class ReadDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return readConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            // Replica pools authenticate with their own credentials
+            return readConnection();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.schedule-index")
+public class ScheduleIndexProperties {
+
+    /**
+     * Longest window accepted by {@code GET /api/appointments/upcoming}.
+     */
+    private Duration maxWithin = Duration.ofDays(7);
+
+    /**
+     * Most appointments returned by one upcoming lookup, earliest first.
+     */
+    private int maxResults = 1_000;
+}
@@ -0,0 +1,187 @@
+package com.example.appointments.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.flywaydb.core.Flyway;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Replaces the data source with a {@link ShardRoutingDataSource} over a connection pool per configured shard
+ * when {@code appointments.shards.enabled} is set, and migrates every shard on startup.
+ * <p>
+ * Appointment ids stay unique across shards because each shard's sequence hands out ids from a range of its
+ * own, {@value #ID_RANGE} ids wide, starting at its configured {@code id-range} times the range. The ranges
+ * are checked on startup to be set and distinct, so reordering the shards cannot hand out an id twice. Hibernate
+ * takes blocks of ids from whichever shard its current transaction is on, and since no two shards share a
+ * block, an id is never handed out twice. Ids survive moving a customer to another shard unchanged.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "appointments.shards", name = "enabled", havingValue = "true")
+public class ShardConfig {
+
+    /**
+     * Ids per shard, 2^40. Keeps ids of up to 8192 shards below 2^53, the largest integer JavaScript clients
+     * read exactly.
+     */
+    public static final long ID_RANGE = 1L << 40;
+
+    /**
+     * Ranges of {@link #ID_RANGE} ids below 2^53.
+     */
+    public static final int ID_RANGES = 8192;
+
+    private static final Logger log = LoggerFactory.getLogger(ShardConfig.class);
+    // Matches the allocation size of Appointment's sequence generator
+    private static final int ID_BLOCK = 50;
+
+    // Static and bound straight from the Environment: post-processors are created before regular beans.
+    // Ordered, so it runs before the concurrency limiter, which then limits connections across all shards.
+    @Bean
+    public static BeanPostProcessor shardRoutingDataSourcePostProcessor(Environment environment) {
+        return new OrderedPostProcessor(environment);
+    }
+
+    /**
+     * Migrates every shard with the configuration Spring Boot built for the data source, then moves each
+     * shard's sequence into its id range.
+     */
+    @Bean
+    public FlywayMigrationStrategy shardMigrationStrategy(DataSource dataSource) {
+        return flyway -> {
+            for (ShardRoutingDataSource.Shard shard : unwrap(dataSource).getShards()) {
+                Flyway.configure(flyway.getConfiguration().getClassLoader())
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shard.dataSource())
+                        .load()
+                        .migrate();
+                reserveIdRange(shard);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder shardRoutingDataSourceMetrics(DataSource dataSource) {
+        return registry -> unwrap(dataSource).bindTo(registry);
+    }
+
+    public static ShardRoutingDataSource unwrap(DataSource dataSource) {
+        try {
+            return dataSource.unwrap(ShardRoutingDataSource.class);
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Data source " + dataSource + " is not sharded", ex);
+        }
+    }
+
+    /**
+     * Fails unless every shard has a name and an {@code id-range} of its own.
+     */
+    static void checkNodes(List<ShardProperties.Node> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalStateException("appointments.shards.nodes must list at least one shard");
+        }
+        Set<String> names = new HashSet<>();
+        Map<Integer, String> ranges = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            ShardProperties.Node node = nodes.get(i);
+            if (node.getName() == null || node.getName().isBlank()) {
+                throw new IllegalStateException("appointments.shards.nodes[" + i + "].name must be set");
+            }
+            if (!names.add(node.getName())) {
+                throw new IllegalStateException("Shard '" + node.getName() + "' is listed twice in "
+                        + "appointments.shards.nodes");
+            }
+            Integer range = node.getIdRange();
+            if (range == null || range < 0 || range >= ID_RANGES) {
+                throw new IllegalStateException("appointments.shards.nodes[" + i + "].id-range of shard '"
+                        + node.getName() + "' must be set, from 0 to " + (ID_RANGES - 1));
+            }
+            String other = ranges.putIfAbsent(range, node.getName());
+            if (other != null) {
+                throw new IllegalStateException("Shards '" + other + "' and '" + node.getName()
+                        + "' both have id-range " + range + "; every shard needs a range of its own");
+            }
+        }
+    }
+
+    // Takes one id block from the sequence to see where it is, which only skips that block
+    private static void reserveIdRange(ShardRoutingDataSource.Shard shard) {
+        long first = shard.idRange() * ID_RANGE;
+        if (first == 0) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.dataSource());
+        Long next = jdbcTemplate.queryForObject("select next value for appointments_seq", Long.class);
+        if (next != null && next < first) {
+            // The pooled optimizer reads a sequence value as the last id of its block
+            jdbcTemplate.execute("alter sequence appointments_seq restart with " + (first + ID_BLOCK));
+            log.info("Shard {} hands out appointment ids from {}", shard.name(), first + 1);
+        }
+    }
+
+    private static HikariDataSource pool(ShardProperties.Node node, ShardProperties properties) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName(node.getName());
+        pool.setJdbcUrl(node.getUrl());
+        pool.setUsername(node.getUsername());
+        pool.setPassword(node.getPassword());
+        pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+        pool.setConnectionTimeout(properties.getConnectionTimeout().toMillis());
+        return pool;
+    }
+
+    private static final class OrderedPostProcessor implements BeanPostProcessor, Ordered {
+
+        private final Environment environment;
+
+        private OrderedPostProcessor(Environment environment) {
+            this.environment = environment;
+        }
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (!(bean instanceof DataSource) || bean instanceof ShardRoutingDataSource) {
+                return bean;
+            }
+            ShardProperties properties = Binder.get(environment)
+                    .bindOrCreate("appointments.shards", ShardProperties.class);
+            checkNodes(properties.getNodes());
+            if (environment.getProperty("appointments.replicas.enabled", Boolean.class, false)) {
+                throw new IllegalStateException("appointments.replicas cannot be combined with appointments.shards");
+            }
+            List<ShardRoutingDataSource.Shard> shards = new ArrayList<>();
+            for (ShardProperties.Node node : properties.getNodes()) {
+                shards.add(new ShardRoutingDataSource.Shard(node.getName(), node.getIdRange(), pool(node, properties)));
+            }
+            // The data source Spring Boot configured has not handed out a connection yet, so has no pool to close
+            log.info("Sharding data source '{}' by customer over {}", beanName,
+                    properties.getNodes().stream().map(ShardProperties.Node::getName).toList());
+            return new ShardRoutingDataSource(shards);
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.LOWEST_PRECEDENCE;
+        }
+    }
+}
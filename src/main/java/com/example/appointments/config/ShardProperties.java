@@ -0,0 +1,75 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.shards")
+public class ShardProperties {
+
+    /**
+     * Whether appointments are spread over the {@link #nodes} by customer. Off, everything is stored in the
+     * one database of {@code spring.datasource}; on, that database is not used.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The shards, each a database with the full schema and a connection pool of its own. Customers are
+     * placed by shard name and appointment ids by each shard's {@code id-range}, so neither depends on the
+     * order of this list. Never remove a shard that still holds appointments.
+     */
+    private List<Node> nodes = new ArrayList<>();
+
+    /**
+     * Points each shard takes on the hash ring. More points spread customers more evenly, at the cost of a
+     * slightly larger ring to search.
+     */
+    private int virtualNodes = 256;
+
+    /**
+     * Connections per shard pool.
+     */
+    private int maximumPoolSize = 10;
+
+    /**
+     * How long a statement waits for a connection of its shard.
+     */
+    private Duration connectionTimeout = Duration.ofSeconds(5);
+
+    /**
+     * Set while customers still have to be moved to the shard the ring assigns them, after shards were added.
+     * A customer with no appointments on its shard is then looked for on the others, so customers that have
+     * not been moved yet are read and written where they are. Costs one query per shard for such customers.
+     */
+    private boolean rebalancing = false;
+
+    @Data
+    public static class Node {
+
+        /**
+         * Name of the shard on the hash ring, in logs, metrics and the pool name. Renaming a shard moves its
+         * customers.
+         */
+        private String name;
+
+        /**
+         * Which range of {@link ShardConfig#ID_RANGE} ids the shard's appointment ids come from, from 0 up to
+         * {@link ShardConfig#ID_RANGES} - 1. Every shard needs a range of its own, and a shard keeps its range
+         * for good: ids stay unique across shards only as long as no two shards ever share one.
+         */
+        private Integer idRange;
+
+        /**
+         * JDBC URL of the shard.
+         */
+        private String url;
+
+        private String username;
+
+        private String password;
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.appointments.config;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Consistent hash ring placing customers on shards. Every shard takes {@code virtualNodes} points on a ring of
+ * 64-bit hashes, and a customer belongs to the shard of the first point at or after its own hash. Adding a
+ * shard only moves the customers whose hashes fall just before its new points, about one in
+ * {@code shards + 1}, and all of them to the new shard.
+ * <p>
+ * Points depend on shard names only, so every instance, and every restart, places customers the same way
+ * whatever the order of the configured shards. Lookups are a binary search over a sorted array.
+ */
+public final class ShardRing {
+
+    private final long[] points;
+    private final String[] owners;
+
+    public ShardRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A shard ring needs at least one shard");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Shards need at least one virtual node");
+        }
+        if (new HashSet<>(shards).size() != shards.size()) {
+            throw new IllegalArgumentException("Shard names must be unique: " + shards);
+        }
+        Point[] ring = new Point[shards.size() * virtualNodes];
+        int i = 0;
+        for (String shard : shards) {
+            for (int node = 0; node < virtualNodes; node++) {
+                ring[i++] = new Point(hash(shard + "#" + node), shard);
+            }
+        }
+        // Names break ties, so colliding points resolve the same way whatever the configured order
+        Arrays.sort(ring, Comparator.comparingLong(Point::hash).thenComparing(Point::shard));
+        this.points = new long[ring.length];
+        this.owners = new String[ring.length];
+        for (i = 0; i < ring.length; i++) {
+            points[i] = ring[i].hash();
+            owners[i] = ring[i].shard();
+        }
+    }
+
+    /**
+     * @return the shard the customer belongs to
+     */
+    public String shardOf(String customerId) {
+        int index = Arrays.binarySearch(points, hash(customerId));
+        if (index < 0) {
+            // Insertion point: the first point after the hash, wrapping around past the last one
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return owners[index];
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with MurmurHash3's mixer so that similar keys, such as
+     * {@code shard-a#1} and {@code shard-a#2}, land far apart. Stable across JVMs, unlike
+     * {@link String#hashCode()} spread over 32 bits.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private record Point(long hash, String shard) {
+    }
+}
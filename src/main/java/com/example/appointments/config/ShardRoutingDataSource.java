@@ -0,0 +1,149 @@
+package com.example.appointments.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Sends every connection to the shard selected with {@link #onShard(String, Supplier)} when its first
+ * statement runs. Connections are fetched lazily, so a transaction that begins before the shard is known
+ * still ends up on it, and stays there until it completes: a transaction never spans shards.
+ * <p>
+ * Connections fetched outside {@link #onShard(String, Supplier)} go to the first shard. Only work that is not
+ * about appointments should do that, such as Hibernate reading the database metadata on startup.
+ */
+public class ShardRoutingDataSource extends LazyConnectionDataSourceProxy implements MeterBinder, AutoCloseable {
+
+    private static final ThreadLocal<String> SHARD = new ThreadLocal<>();
+
+    private final List<Shard> shards;
+    private final Map<String, Counter> connectionCounters = new LinkedHashMap<>();
+    private volatile boolean bound;
+
+    /**
+     * @param shards shard data sources, in configuration order
+     */
+    public ShardRoutingDataSource(List<Shard> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Sharding needs at least one shard");
+        }
+        this.shards = List.copyOf(shards);
+        Router router = new Router();
+        Map<Object, Object> targets = new LinkedHashMap<>();
+        shards.forEach(shard -> targets.put(shard.name(), shard.dataSource()));
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(shards.get(0).dataSource());
+        // An unknown name is a bug, not a reason to write to the first shard
+        router.setLenientFallback(false);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Runs {@code work} with the connections it fetches served by the named shard.
+     */
+    public static <T> T onShard(String shard, Supplier<T> work) {
+        String previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                SHARD.remove();
+            } else {
+                SHARD.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the shards, in configuration order
+     */
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public Shard getShard(String name) {
+        for (Shard shard : shards) {
+            if (shard.name().equals(name)) {
+                return shard;
+            }
+        }
+        throw new IllegalArgumentException("Unknown shard '" + name + "'");
+    }
+
+    /**
+     * Counts the connections each shard served, which shows how evenly customers are spread, and publishes
+     * the Hikari pool metrics of every shard tagged with its pool name.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Shard shard : shards) {
+            connectionCounters.put(shard.name(), Counter.builder("appointments.db.shard.connections")
+                    .description("Connections served by each shard")
+                    .tag("shard", shard.name())
+                    .register(registry));
+            if (shard.dataSource() instanceof HikariDataSource pool && pool.getMetricsTrackerFactory() == null
+                    && pool.getMetricRegistry() == null) {
+                pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            }
+        }
+        bound = true;
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Shard shard : shards) {
+            if (shard.dataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * A shard and the range its appointment ids come from.
+     */
+    public record Shard(String name, int idRange, DataSource dataSource) {
+    }
+
+    private final class Router extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            String shard = SHARD.get();
+            if (bound) {
+                Counter counter = connectionCounters.get(shard != null ? shard : shards.get(0).name());
+                if (counter != null) {
+                    counter.increment();
+                }
+            }
+            return shard;
+        }
+
+        // Not a wrapper of whichever shard is current: pool metrics are bound per shard, not through here
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return iface.isInstance(this);
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return iface.cast(this);
+            }
+            throw new SQLException("Shard router does not wrap a " + iface.getName());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.appointments.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate {@link StatementInspector} that counts every SQL statement by type and, while a request is being
+ * tracked on the current thread, towards that request. Native queries are seen as well; the SQL itself is
+ * never used as a tag.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    /**
+     * Request attribute holding the number of statements the request issued, once it has completed.
+     */
+    public static final String STATEMENTS_ATTRIBUTE = SqlStatementCounter.class.getName() + ".statements";
+
+    private static final ThreadLocal<int[]> CURRENT_REQUEST = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public SqlStatementCounter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Starts counting the statements issued by the current thread.
+     */
+    public static void startRequest() {
+        CURRENT_REQUEST.set(new int[1]);
+    }
+
+    /**
+     * Stops counting for the current thread.
+     *
+     * @return statements issued since {@link #startRequest()}, or -1 if counting was not started
+     */
+    public static int finishRequest() {
+        int[] count = CURRENT_REQUEST.get();
+        CURRENT_REQUEST.remove();
+        return count != null ? count[0] : -1;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = CURRENT_REQUEST.get();
+        if (count != null) {
+            count[0]++;
+        }
+        counters.computeIfAbsent(type(sql), type -> Counter.builder("appointments.sql.statements")
+                        .description("SQL statements issued through Hibernate")
+                        .tag("type", type)
+                        .register(registry))
+                .increment();
+        return sql;
+    }
+
+    private static String type(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        String verb = trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+        return switch (verb) {
+            case "select", "insert", "update", "delete", "merge" -> verb;
+            default -> "other";
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.appointments.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per key, such as a customer, refilled at {@code rate} tokens per second up to {@code burst}
+ * tokens. Each bucket is a single timestamp from which its tokens have been accruing: taking a token moves it
+ * forward by one token's worth of time with one compare-and-set, and no thread refills anything. Buckets of
+ * keys not seen for a while are dropped once {@code maxKeys} are tracked; a dropped bucket was full anyway,
+ * or close to.
+ */
+public class TokenBucketLimiter {
+
+    private final Cache<String, AtomicLong> buckets;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final LongSupplier clock;
+
+    public TokenBucketLimiter(double rate, int burst, long maxKeys) {
+        this(rate, burst, maxKeys, System::nanoTime);
+    }
+
+    TokenBucketLimiter(double rate, int burst, long maxKeys, LongSupplier clock) {
+        if (rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Token buckets need a positive rate and burst");
+        }
+        this.buckets = Caffeine.newBuilder().maximumSize(maxKeys).build();
+        this.intervalNanos = (long) (1_000_000_000L / rate);
+        this.burstNanos = intervalNanos * burst;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the key's bucket.
+     *
+     * @return zero if a token was taken, otherwise the nanoseconds until the next one is available
+     */
+    public long tryAcquire(String key) {
+        long now = clock.getAsLong();
+        // Starts out full: accruing for as long as filling a bucket takes
+        AtomicLong accruingSince = buckets.get(key, k -> new AtomicLong(now - burstNanos));
+        while (true) {
+            long current = accruingSince.get();
+            // Tokens beyond the burst are not kept
+            long next = Math.max(current, now - burstNanos) + intervalNanos;
+            if (next > now) {
+                return next - now;
+            }
+            if (accruingSince.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.appointments.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "appointments.write-behind")
+public class WriteBehindProperties {
+
+    /**
+     * Whether {@code PUT /api/appointments/{id}} honours {@code Prefer: respond-async}. When disabled such
+     * requests are written synchronously as usual.
+     */
+    private boolean enabled = false;
+
+    /**
+     * How often queued updates are written.
+     */
+    private Duration flushInterval = Duration.ofMillis(50);
+
+    /**
+     * Most appointments written in one JDBC batch. A flush starts early once this many are queued.
+     */
+    private int maxBatch = 500;
+
+    /**
+     * Most appointments with queued updates. Updates to further appointments are written synchronously
+     * until the queue drains.
+     */
+    private int maxPending = 10_000;
+}
@@ -0,0 +1,100 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentUpdateItem;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.service.AppointmentBulkService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk variants of the appointment write endpoints. Each accepts either a JSON array or NDJSON
+ * (one item per line) and answers with a result per item.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/appointments/bulk")
+@RequiredArgsConstructor
+public class AppointmentBulkController {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentBulkController.class);
+    private final AppointmentBulkService appointmentBulkService;
+    private final ObjectMapper objectMapper;
+
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkResponse> createAppointments(@RequestBody List<AppointmentRequest> requests) {
+        log.info("Received request to create {} appointments", requests.size());
+        return ResponseEntity.ok(appointmentBulkService.createAppointments(requests));
+    }
+
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkResponse> createAppointmentsNdjson(InputStream body) throws IOException {
+        List<AppointmentRequest> requests = readNdjson(body, AppointmentRequest.class);
+        log.info("Received request to create {} appointments", requests.size());
+        return ResponseEntity.ok(appointmentBulkService.createAppointments(requests));
+    }
+
+    @PutMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkResponse> updateAppointments(@RequestBody List<AppointmentUpdateItem> items) {
+        log.info("Received request to update {} appointments", items.size());
+        return ResponseEntity.ok(appointmentBulkService.updateAppointments(items));
+    }
+
+    @PutMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkResponse> updateAppointmentsNdjson(InputStream body) throws IOException {
+        List<AppointmentUpdateItem> items = readNdjson(body, AppointmentUpdateItem.class);
+        log.info("Received request to update {} appointments", items.size());
+        return ResponseEntity.ok(appointmentBulkService.updateAppointments(items));
+    }
+
+    @DeleteMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkResponse> deleteAppointments(@RequestBody List<Long> ids) {
+        log.info("Received request to delete {} appointments", ids.size());
+        return ResponseEntity.ok(appointmentBulkService.deleteAppointments(ids));
+    }
+
+    @DeleteMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkResponse> deleteAppointmentsNdjson(InputStream body) throws IOException {
+        List<Long> ids = readNdjson(body, Long.class);
+        log.info("Received request to delete {} appointments", ids.size());
+        return ResponseEntity.ok(appointmentBulkService.deleteAppointments(ids));
+    }
+
+    /**
+     * Parses one item per non-blank line. A line that is not valid JSON becomes a {@code null} item so it
+     * is reported as a failed item instead of rejecting the whole request.
+     */
+    private <T> List<T> readNdjson(InputStream body, Class<T> type) throws IOException {
+        ObjectReader reader = objectMapper.readerFor(type);
+        List<T> items = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                items.add(reader.readValue(line));
+            } catch (JsonProcessingException e) {
+                items.add(null);
+            }
+        }
+        return items;
+    }
+}
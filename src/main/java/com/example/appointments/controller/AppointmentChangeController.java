@@ -0,0 +1,42 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.service.AppointmentChangeStream;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-Sent Events stream of appointment changes, read from the outbox by sequence number.
+ */
+@RestController
+@Profile("!reactive")
+@RequestMapping("/api/appointments/changes")
+@RequiredArgsConstructor
+public class AppointmentChangeController {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentChangeController.class);
+    static final String LAST_EVENT_ID = "Last-Event-ID";
+    private final AppointmentChangeStream changeStream;
+
+    /**
+     * Streams changes after {@code since}, or after {@code Last-Event-ID} when a client reconnects. Without
+     * either, only changes committed from now on are sent.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) String customerId,
+            @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId) {
+        Long after = lastEventId != null ? lastEventId : since;
+        log.info("Received request to stream appointment changes after {} for customer {}", after, customerId);
+        return changeStream.subscribe(after, customerId);
+    }
+}
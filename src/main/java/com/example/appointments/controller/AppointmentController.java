@@ -1,25 +1,56 @@
 package com.example.appointments.controller;
 
+import com.example.appointments.config.PaginationProperties;
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.dto.AppointmentPage;
 import com.example.appointments.dto.AppointmentRequest;
 import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.AppointmentStats;
+import com.example.appointments.dto.DeleteResponse;
+import com.example.appointments.dto.TimeSlot;
+import com.example.appointments.service.AppointmentETags;
 import com.example.appointments.service.AppointmentService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/appointments")
 @RequiredArgsConstructor
 public class AppointmentController {
 
     private static final Logger log = LoggerFactory.getLogger(AppointmentController.class);
+    static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+    // RFC 7240
+    static final String PREFER = "Prefer";
+    static final String PREFERENCE_APPLIED = "Preference-Applied";
+    static final String RESPOND_ASYNC = "respond-async";
     private final AppointmentService appointmentService;
+    private final PaginationProperties paginationProperties;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     public ResponseEntity<AppointmentResponse> createAppointment(@Valid @RequestBody AppointmentRequest request) {
@@ -28,45 +59,245 @@ public class AppointmentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
 
+    /**
+     * Lists appointments, optionally filtered by {@code customerId}, {@code category}, {@code done} and a
+     * {@code from}/{@code to} start date window, and sorted with {@code sort=property[,asc|desc]}. Without
+     * any of those the list stops after {@code appointments.pagination.list-limit} appointments, and a
+     * {@code Link} header with {@code rel="next"} points to the page that continues after them.
+     */
     @GetMapping
-    public ResponseEntity<List<AppointmentResponse>> getAllAppointments() {
+    public ResponseEntity<MappingJacksonValue> getAllAppointments(
+            AppointmentFilter filter,
+            Sort sort,
+            @RequestParam(required = false) String fields) {
         log.info("Received request to get all appointments");
-        List<AppointmentResponse> appointments = appointmentService.getAllAppointments();
-        return ResponseEntity.ok(appointments);
+        Set<String> selected = AppointmentFields.parse(fields);
+        boolean includeNotes = AppointmentFields.includesNotes(selected);
+        appointmentService.writeQueuedUpdates(filter.getCustomerId());
+        if (filter.hasCriteria() || filter.getCustomerId() != null || sort.isSorted()) {
+            return ResponseEntity.ok(AppointmentFields.select(
+                    appointmentService.findAppointments(filter, sort, includeNotes), selected));
+        }
+        AppointmentPage first = appointmentService.getAllAppointments(includeNotes);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (first.getNextCursor() != null) {
+            response.header(HttpHeaders.LINK, "</api/appointments/page?cursor=" + first.getNextCursor()
+                    + ">; rel=\"next\"");
+        }
+        return response.body(AppointmentFields.select(first.getItems(), selected));
+    }
+
+    /**
+     * Appointments of all customers starting within {@code within} (ISO-8601, e.g. {@code PT2H}) from now.
+     */
+    @GetMapping("/upcoming")
+    public ResponseEntity<List<AppointmentResponse>> getUpcomingAcrossCustomers(@RequestParam Duration within) {
+        log.info("Received request to get appointments starting within {}", within);
+        appointmentService.writeQueuedUpdates(null);
+        return ResponseEntity.ok(appointmentService.getUpcomingAcrossCustomers(within));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<AppointmentStats> getAppointmentStats(AppointmentFilter filter) {
+        log.info("Received request to get appointment stats");
+        appointmentService.writeQueuedUpdates(filter.getCustomerId());
+        return ResponseEntity.ok(appointmentService.getStats(filter));
+    }
+
+    @GetMapping("/page")
+    public ResponseEntity<AppointmentPage> getAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Received request to get appointments page");
+        appointmentService.writeQueuedUpdates(null);
+        AppointmentPage page = appointmentService.getAppointmentsPage(cursor, limit);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAppointments() {
+        log.info("Received request to stream all appointments");
+        int windowSize = paginationProperties.getStreamWindowSize();
+        ObjectWriter writer = objectMapper.writerFor(AppointmentResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        // Walk the table one keyset window at a time so only a single window is ever held in memory
+        StreamingResponseBody body = out -> {
+            appointmentService.writeQueuedUpdates(null);
+            String cursor = null;
+            do {
+                AppointmentPage page = appointmentService.getAppointmentsPage(cursor, windowSize);
+                for (AppointmentResponse appointment : page.getItems()) {
+                    writer.writeValue(out, appointment);
+                    out.write('\n');
+                }
+                out.flush();
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<AppointmentResponse> getAppointmentById(@PathVariable Long id) {
+    public ResponseEntity<AppointmentResponse> getAppointmentById(@PathVariable Long id, WebRequest webRequest) {
         log.info("Received request to get appointment with ID {}", id);
-        AppointmentResponse response = appointmentService.getAppointmentById(id);
-        return ResponseEntity.ok(response);
+        // Updates queued on this instance are visible here before they are written
+        AppointmentResponse response = appointmentService.findQueuedUpdate(id)
+                .orElseGet(() -> appointmentService.getAppointmentById(id));
+        String etag = AppointmentETags.of(response);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(response);
     }
 
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<List<AppointmentResponse>> getAppointmentsByCustomerId(@PathVariable String customerId) {
+    public ResponseEntity<MappingJacksonValue> getAppointmentsByCustomerId(
+            @PathVariable String customerId,
+            AppointmentFilter filter,
+            Sort sort,
+            @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
         log.info("Received request to get appointments for customer {}", customerId);
+        Set<String> selected = AppointmentFields.parse(fields);
+        // Updates queued on this instance are written first, so the list and its ETag include them
+        appointmentService.writeQueuedUpdates(customerId);
+        if (filter.hasCriteria() || sort.isSorted()) {
+            // Filtered views are queried directly; only the full list is cached
+            filter.setCustomerId(customerId);
+            List<AppointmentResponse> appointments = appointmentService.findAppointments(filter, sort,
+                    AppointmentFields.includesNotes(selected));
+            return ResponseEntity.ok(AppointmentFields.select(appointments, selected));
+        }
+        // Answer If-None-Match from the version summary before touching the rows
+        if (webRequest.checkNotModified(appointmentService.getCustomerAppointmentsETag(customerId))) {
+            return null;
+        }
+        // The cached list always has notes; leaving them out only saves serialization and bytes on the wire
         List<AppointmentResponse> appointments = appointmentService.getAppointmentsByCustomerId(customerId);
+        return ResponseEntity.ok().eTag(AppointmentETags.of(appointments))
+                .body(AppointmentFields.select(appointments, selected));
+    }
+
+    @GetMapping("/customer/{customerId}/upcoming")
+    public ResponseEntity<List<AppointmentResponse>> getUpcomingAppointments(
+            @PathVariable String customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from) {
+        log.info("Received request to get upcoming appointments for customer {}", customerId);
+        appointmentService.writeQueuedUpdates(customerId);
+        List<AppointmentResponse> appointments = appointmentService.getUpcomingAppointments(customerId, from);
+        return ResponseEntity.ok(appointments);
+    }
+
+    @GetMapping("/customer/{customerId}/overdue")
+    public ResponseEntity<List<AppointmentResponse>> getOverdueAppointments(@PathVariable String customerId) {
+        log.info("Received request to get overdue appointments for customer {}", customerId);
+        appointmentService.writeQueuedUpdates(customerId);
+        List<AppointmentResponse> appointments = appointmentService.getOverdueAppointments(customerId);
+        return ResponseEntity.ok(appointments);
+    }
+
+    @GetMapping("/customer/{customerId}/category/{category}")
+    public ResponseEntity<List<AppointmentResponse>> getAppointmentsByCategory(
+            @PathVariable String customerId,
+            @PathVariable String category,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Received request to get {} appointments for customer {}", category, customerId);
+        appointmentService.writeQueuedUpdates(customerId);
+        List<AppointmentResponse> appointments = appointmentService.getAppointmentsByCategory(customerId, category,
+                from, to);
         return ResponseEntity.ok(appointments);
     }
 
+    /**
+     * Free periods of the customer in {@code [from, to)}, at least {@code duration} long (ISO-8601, e.g.
+     * {@code PT30M}) when given.
+     */
+    @GetMapping("/customer/{customerId}/free-slots")
+    public ResponseEntity<List<TimeSlot>> getFreeSlots(
+            @PathVariable String customerId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Duration duration) {
+        log.info("Received request to get free slots for customer {}", customerId);
+        return ResponseEntity.ok(appointmentService.getFreeSlots(customerId, from, to, duration));
+    }
+
+    /**
+     * Updates an appointment. With {@code Prefer: respond-async} and write-behind enabled, an update that keeps
+     * the customer and the schedule is queued and answered with {@code 202 Accepted}.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<AppointmentResponse> updateAppointment(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestHeader(value = PREFER, required = false) String prefer,
             @Valid @RequestBody AppointmentRequest request) {
         log.info("Received request to update appointment with ID {}", id);
-        AppointmentResponse response = appointmentService.updateAppointment(id, request);
-        return ResponseEntity.ok(response);
+        if (ifMatch == null && prefersAsync(prefer)) {
+            Optional<AppointmentResponse> queued = appointmentService.queueUpdate(id, request);
+            if (queued.isPresent()) {
+                return ResponseEntity.accepted().eTag(AppointmentETags.of(queued.get()))
+                        .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                        .body(queued.get());
+            }
+        }
+        AppointmentResponse response = appointmentService.updateAppointment(id, request,
+                AppointmentETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response);
     }
 
     @PutMapping("/customer/{customerId}/appointment/{appointmentId}")
     public ResponseEntity<AppointmentResponse> updateAppointmentByCustomer(
             @PathVariable String customerId,
             @PathVariable Long appointmentId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody AppointmentRequest request) {
         log.info("Received request to update appointment {} for customer {}", appointmentId, customerId);
         AppointmentResponse response = appointmentService.updateAppointmentByCustomer(customerId, appointmentId,
-                request);
-        return ResponseEntity.ok(response);
+                request, AppointmentETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response);
+    }
+
+    @PatchMapping(value = "/{id}", consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<AppointmentResponse> patchAppointment(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        log.info("Received request to patch appointment with ID {}", id);
+        AppointmentResponse response = appointmentService.patchAppointment(id, patch,
+                AppointmentETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response);
+    }
+
+    @PatchMapping(value = "/customer/{customerId}/appointment/{appointmentId}",
+            consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<AppointmentResponse> patchAppointmentByCustomer(
+            @PathVariable String customerId,
+            @PathVariable Long appointmentId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+        log.info("Received request to patch appointment {} for customer {}", appointmentId, customerId);
+        AppointmentResponse response = appointmentService.patchAppointmentByCustomer(customerId, appointmentId,
+                patch, AppointmentETags.parseIfMatch(ifMatch));
+        return ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response);
+    }
+
+    @PostMapping("/{id}/done")
+    public ResponseEntity<Void> markAppointmentDone(@PathVariable Long id) {
+        log.info("Received request to mark appointment {} as done", id);
+        appointmentService.markAppointmentDone(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/customer/{customerId}/appointment/{appointmentId}/done")
+    public ResponseEntity<Void> markAppointmentDoneByCustomer(
+            @PathVariable String customerId,
+            @PathVariable Long appointmentId) {
+        log.info("Received request to mark appointment {} of customer {} as done", appointmentId, customerId);
+        appointmentService.markAppointmentDoneByCustomer(customerId, appointmentId);
+        return ResponseEntity.noContent().build();
     }
 
     @DeleteMapping("/{id}")
@@ -77,10 +308,10 @@ public class AppointmentController {
     }
 
     @DeleteMapping("/customer/{customerId}")
-    public ResponseEntity<Void> deleteAppointmentsByCustomerId(@PathVariable String customerId) {
+    public ResponseEntity<DeleteResponse> deleteAppointmentsByCustomerId(@PathVariable String customerId) {
         log.info("Received request to delete all appointments for customer {}", customerId);
-        appointmentService.deleteAppointmentsByCustomerId(customerId);
-        return ResponseEntity.noContent().build();
+        int deleted = appointmentService.deleteAppointmentsByCustomerId(customerId);
+        return ResponseEntity.ok(new DeleteResponse(deleted));
     }
 
     @DeleteMapping("/customer/{customerId}/appointment/{appointmentId}")
@@ -91,4 +322,18 @@ public class AppointmentController {
         appointmentService.deleteAppointmentByCustomer(customerId, appointmentId);
         return ResponseEntity.noContent().build();
     }
+
+    // Prefer holds comma-separated preferences, each optionally with a value and parameters
+    private static boolean prefersAsync(String prefer) {
+        if (prefer == null) {
+            return false;
+        }
+        for (String preference : prefer.split(",")) {
+            String token = preference.split("[;=]", 2)[0].trim();
+            if (RESPOND_ASYNC.equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
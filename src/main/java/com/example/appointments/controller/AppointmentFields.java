@@ -0,0 +1,55 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.config.JacksonConfig;
+import com.example.appointments.exception.InvalidFieldsException;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import org.springframework.http.converter.json.MappingJacksonValue;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parses the {@code fields} request parameter of the list endpoints: a comma-separated subset of the
+ * {@code AppointmentResponse} properties to write.
+ */
+final class AppointmentFields {
+
+    private static final List<String> PROPERTIES = List.of(
+            "id", "title", "notes", "category", "startDate", "endDate", "done", "customerId", "version");
+
+    private AppointmentFields() {
+    }
+
+    /**
+     * @return the selected properties, or {@code null} when the parameter is absent and all are written
+     */
+    static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!PROPERTIES.contains(name)) {
+                throw new InvalidFieldsException("Unknown field '" + name + "', expected any of " + PROPERTIES);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    static boolean includesNotes(Set<String> selected) {
+        return selected == null || selected.contains("notes");
+    }
+
+    static MappingJacksonValue select(Object body, Set<String> selected) {
+        MappingJacksonValue value = new MappingJacksonValue(body);
+        if (selected != null) {
+            value.setFilters(new SimpleFilterProvider().addFilter(JacksonConfig.APPOINTMENT_FIELDS_FILTER,
+                    SimpleBeanPropertyFilter.filterOutAllExcept(selected)));
+        }
+        return value;
+    }
+}
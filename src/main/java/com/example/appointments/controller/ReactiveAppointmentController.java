@@ -0,0 +1,158 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.dto.AppointmentPage;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.DeleteResponse;
+import com.example.appointments.service.AppointmentETags;
+import com.example.appointments.service.ReactiveAppointmentService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Same API surface as {@link AppointmentController}, served by WebFlux in the {@code reactive} profile.
+ * List endpoints return a {@link Flux}, which is written as a JSON array or, with
+ * {@code Accept: application/x-ndjson}, one appointment per line as rows arrive.
+ * <p>
+ * Conditional GETs need no explicit check here: WebFlux compares the returned {@code ETag} with
+ * {@code If-None-Match} and answers 304 without subscribing to the body.
+ */
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/appointments")
+@RequiredArgsConstructor
+public class ReactiveAppointmentController {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveAppointmentController.class);
+    private final ReactiveAppointmentService appointmentService;
+
+    @PostMapping
+    public Mono<ResponseEntity<AppointmentResponse>> createAppointment(@Valid @RequestBody AppointmentRequest request) {
+        log.info("Received request to create appointment for customer {}", request.getCustomerId());
+        return appointmentService.createAppointment(request)
+                .map(response -> ResponseEntity.status(HttpStatus.CREATED).body(response));
+    }
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<AppointmentResponse> getAllAppointments() {
+        log.info("Received request to get all appointments");
+        return appointmentService.getAllAppointments();
+    }
+
+    @GetMapping("/page")
+    public Mono<AppointmentPage> getAppointmentsPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Received request to get appointments page");
+        return appointmentService.getAppointmentsPage(cursor, limit);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AppointmentResponse> streamAllAppointments() {
+        log.info("Received request to stream all appointments");
+        return appointmentService.streamAllAppointments();
+    }
+
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<AppointmentResponse>> getAppointmentById(@PathVariable Long id) {
+        log.info("Received request to get appointment with ID {}", id);
+        return appointmentService.getAppointmentById(id)
+                .map(response -> ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response));
+    }
+
+    @GetMapping(value = "/customer/{customerId}",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Mono<ResponseEntity<Flux<AppointmentResponse>>> getAppointmentsByCustomerId(
+            @PathVariable String customerId) {
+        log.info("Received request to get appointments for customer {}", customerId);
+        // The tag comes from the version summary; rows are only read if the client's copy is stale
+        return appointmentService.getCustomerAppointmentsETag(customerId)
+                .map(etag -> ResponseEntity.ok().eTag(etag)
+                        .body(appointmentService.getAppointmentsByCustomerId(customerId)));
+    }
+
+    @GetMapping(value = "/customer/{customerId}/upcoming",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<AppointmentResponse> getUpcomingAppointments(
+            @PathVariable String customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from) {
+        log.info("Received request to get upcoming appointments for customer {}", customerId);
+        return appointmentService.getUpcomingAppointments(customerId, from);
+    }
+
+    @GetMapping(value = "/customer/{customerId}/overdue",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<AppointmentResponse> getOverdueAppointments(@PathVariable String customerId) {
+        log.info("Received request to get overdue appointments for customer {}", customerId);
+        return appointmentService.getOverdueAppointments(customerId);
+    }
+
+    @GetMapping(value = "/customer/{customerId}/category/{category}",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<AppointmentResponse> getAppointmentsByCategory(
+            @PathVariable String customerId,
+            @PathVariable String category,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        log.info("Received request to get {} appointments for customer {}", category, customerId);
+        return appointmentService.getAppointmentsByCategory(customerId, category, from, to);
+    }
+
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<AppointmentResponse>> updateAppointment(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody AppointmentRequest request) {
+        log.info("Received request to update appointment with ID {}", id);
+        return appointmentService.updateAppointment(id, request, AppointmentETags.parseIfMatch(ifMatch))
+                .map(response -> ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response));
+    }
+
+    @PutMapping("/customer/{customerId}/appointment/{appointmentId}")
+    public Mono<ResponseEntity<AppointmentResponse>> updateAppointmentByCustomer(
+            @PathVariable String customerId,
+            @PathVariable Long appointmentId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody AppointmentRequest request) {
+        log.info("Received request to update appointment {} for customer {}", appointmentId, customerId);
+        return appointmentService.updateAppointmentByCustomer(customerId, appointmentId, request,
+                        AppointmentETags.parseIfMatch(ifMatch))
+                .map(response -> ResponseEntity.ok().eTag(AppointmentETags.of(response)).body(response));
+    }
+
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteAppointment(@PathVariable Long id) {
+        log.info("Received request to delete appointment with ID {}", id);
+        return appointmentService.deleteAppointment(id)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+
+    @DeleteMapping("/customer/{customerId}")
+    public Mono<ResponseEntity<DeleteResponse>> deleteAppointmentsByCustomerId(@PathVariable String customerId) {
+        log.info("Received request to delete all appointments for customer {}", customerId);
+        return appointmentService.deleteAppointmentsByCustomerId(customerId)
+                .map(deleted -> ResponseEntity.ok(new DeleteResponse(deleted)));
+    }
+
+    @DeleteMapping("/customer/{customerId}/appointment/{appointmentId}")
+    public Mono<ResponseEntity<Void>> deleteAppointmentByCustomer(
+            @PathVariable String customerId,
+            @PathVariable Long appointmentId) {
+        log.info("Received request to delete appointment {} for customer {}", appointmentId, customerId);
+        return appointmentService.deleteAppointmentByCustomer(customerId, appointmentId)
+                .then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.appointments.dto;
+
+import com.example.appointments.model.AppointmentChange;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * One change as sent on the change stream. The appointment's state is not included; it can be read by id.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentChangeEvent {
+
+    private Long seq;
+    private AppointmentChange.Type type;
+    private Long appointmentId;
+    private String customerId;
+    private LocalDateTime changedAt;
+}
@@ -0,0 +1,35 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optional criteria of the list and stats endpoints, bound from query parameters. Unset criteria match
+ * everything; {@code from} is inclusive and {@code to} exclusive.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentFilter {
+
+    private String customerId;
+    private String category;
+    private Boolean done;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+
+    /**
+     * @return whether any criterion other than the customer is set
+     */
+    public boolean hasCriteria() {
+        return category != null || done != null || from != null || to != null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Number of appointments sharing a category, completion status and start day.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentGroupCount {
+
+    private String category;
+    private boolean done;
+    private LocalDate day;
+    private long count;
+}
@@ -0,0 +1,21 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * The time an appointment occupies, {@code [startDate, endDate)}, as read for conflict checks.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentInterval {
+
+    private Long id;
+    private String customerId;
+    private LocalDateTime startDate;
+    private LocalDateTime endDate;
+}
@@ -0,0 +1,20 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentPage {
+
+    private List<AppointmentResponse> items;
+
+    /**
+     * Opaque token to pass back as {@code cursor} to fetch the next page, or {@code null} on the last page.
+     */
+    private String nextCursor;
+}
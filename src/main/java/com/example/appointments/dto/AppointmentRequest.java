@@ -1,7 +1,10 @@
 package com.example.appointments.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +19,7 @@ public class AppointmentRequest {
     @NotBlank(message = "Title cannot be blank")
     private String title;
 
+    @Size(max = 1000, message = "Notes cannot exceed 1000 characters")
     private String notes;
 
     @NotBlank(message = "Category cannot be blank")
@@ -24,8 +28,16 @@ public class AppointmentRequest {
     @NotNull(message = "Start date cannot be null")
     private LocalDateTime startDate;
 
+    private LocalDateTime endDate;
+
     private Boolean done;
 
     @NotBlank(message = "Customer ID cannot be blank")
     private String customerId;
+
+    @JsonIgnore
+    @AssertTrue(message = "End date must be after start date")
+    public boolean isEndAfterStart() {
+        return endDate == null || startDate == null || endDate.isAfter(startDate);
+    }
 }
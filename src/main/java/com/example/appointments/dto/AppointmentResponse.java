@@ -1,6 +1,7 @@
 package com.example.appointments.dto;
 
 import com.example.appointments.model.Appointment;
+import com.example.appointments.model.AppointmentRecord;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,8 +18,10 @@ public class AppointmentResponse {
     private String notes;
     private String category;
     private LocalDateTime startDate;
+    private LocalDateTime endDate;
     private Boolean done;
     private String customerId;
+    private Long version;
 
     public static AppointmentResponse fromEntity(Appointment appointment) {
         return new AppointmentResponse(
@@ -27,7 +30,22 @@ public class AppointmentResponse {
                 appointment.getNotes(),
                 appointment.getCategory(),
                 appointment.getStartDate(),
+                appointment.getEndDate(),
                 appointment.getDone(),
-                appointment.getCustomerId());
+                appointment.getCustomerId(),
+                appointment.getVersion());
+    }
+
+    public static AppointmentResponse fromRecord(AppointmentRecord appointment) {
+        return new AppointmentResponse(
+                appointment.getId(),
+                appointment.getTitle(),
+                appointment.getNotes(),
+                appointment.getCategory(),
+                appointment.getStartDate(),
+                appointment.getEndDate(),
+                appointment.getDone(),
+                appointment.getCustomerId(),
+                appointment.getVersion());
     }
 }
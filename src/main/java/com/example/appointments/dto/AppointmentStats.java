@@ -0,0 +1,19 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentStats {
+
+    private long total;
+    private Map<String, Long> byCategory;
+    private Map<String, Long> byStatus;
+    private Map<LocalDate, Long> byDay;
+}
@@ -0,0 +1,15 @@
+package com.example.appointments.dto;
+
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class AppointmentUpdateItem extends AppointmentRequest {
+
+    @NotNull(message = "ID cannot be null")
+    private Long id;
+}
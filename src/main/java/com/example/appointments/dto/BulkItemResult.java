@@ -0,0 +1,29 @@
+package com.example.appointments.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+
+    /**
+     * Position of the item in the request, starting at 0.
+     */
+    private int index;
+
+    /**
+     * HTTP status the item would have had as a single request.
+     */
+    private int status;
+
+    private Long id;
+
+    private Map<String, String> errors;
+}
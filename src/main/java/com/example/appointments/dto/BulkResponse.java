@@ -0,0 +1,23 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkResponse {
+
+    private int total;
+    private int succeeded;
+    private int failed;
+    private List<BulkItemResult> results;
+
+    public static BulkResponse of(List<BulkItemResult> results, int successStatus) {
+        int succeeded = (int) results.stream().filter(result -> result.getStatus() == successStatus).count();
+        return new BulkResponse(results.size(), succeeded, results.size() - succeeded, results);
+    }
+}
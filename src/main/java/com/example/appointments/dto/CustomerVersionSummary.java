@@ -0,0 +1,21 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Aggregate that changes whenever any appointment of a customer is created, updated, deleted or moves
+ * between customers: the fingerprint sums a term per appointment that mixes its id with its version, so a
+ * new version or a different set of ids changes it, while the count and maximum id are cheap extra checks.
+ * The term is computed by {@link com.example.appointments.service.AppointmentETags#fingerprint}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerVersionSummary {
+
+    private long count;
+    private long fingerprint;
+    private long maxId;
+}
@@ -0,0 +1,19 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Id and start date of an appointment, the only columns the schedule index needs.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleEntry {
+
+    private Long id;
+    private LocalDateTime startDate;
+}
@@ -0,0 +1,19 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardRebalanceResult {
+
+    private int movedCustomers;
+    private long movedAppointments;
+    /**
+     * Customers left on a shard they do not belong to, because their appointments changed while they were
+     * moved. Running the rebalancer again moves them.
+     */
+    private int remainingCustomers;
+}
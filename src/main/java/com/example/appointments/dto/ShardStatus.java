@@ -0,0 +1,19 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShardStatus {
+
+    private String shard;
+    private long appointments;
+    private long customers;
+    /**
+     * Customers stored on this shard that the hash ring assigns to another one.
+     */
+    private long misplacedCustomers;
+}
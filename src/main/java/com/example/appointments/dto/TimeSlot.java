@@ -0,0 +1,19 @@
+package com.example.appointments.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * A free period {@code [start, end)} in a customer's schedule.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TimeSlot {
+
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
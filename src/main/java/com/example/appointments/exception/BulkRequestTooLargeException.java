@@ -0,0 +1,7 @@
+package com.example.appointments.exception;
+
+public class BulkRequestTooLargeException extends RuntimeException {
+    public BulkRequestTooLargeException(String message) {
+        super(message);
+    }
+}
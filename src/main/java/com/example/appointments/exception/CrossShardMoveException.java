@@ -0,0 +1,7 @@
+package com.example.appointments.exception;
+
+public class CrossShardMoveException extends RuntimeException {
+    public CrossShardMoveException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.appointments.exception;
+
+public class CustomerBusyException extends RuntimeException {
+    public CustomerBusyException(String message) {
+        super(message);
+    }
+}
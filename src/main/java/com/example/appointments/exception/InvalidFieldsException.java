@@ -0,0 +1,7 @@
+package com.example.appointments.exception;
+
+public class InvalidFieldsException extends RuntimeException {
+    public InvalidFieldsException(String message) {
+        super(message);
+    }
+}
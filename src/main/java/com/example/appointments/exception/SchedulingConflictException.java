@@ -0,0 +1,7 @@
+package com.example.appointments.exception;
+
+public class SchedulingConflictException extends RuntimeException {
+    public SchedulingConflictException(String message) {
+        super(message);
+    }
+}
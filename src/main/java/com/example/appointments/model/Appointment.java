@@ -4,18 +4,30 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "appointments")
+@Table(name = "appointments", indexes = {
+        // Leading customer_id also serves lookups by customer alone, so no single-column index is needed
+        @Index(name = "idx_appointments_customer_start", columnList = "customer_id, start_date"),
+        @Index(name = "idx_appointments_customer_done", columnList = "customer_id, done, start_date"),
+        @Index(name = "idx_appointments_customer_category", columnList = "customer_id, category, start_date"),
+        // Keyset pagination order
+        @Index(name = "idx_appointments_start_id", columnList = "start_date, id")
+})
+// UPDATEs list only the changed columns, so toggling done does not rewrite notes
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Appointment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence so Hibernate can assign ids up front and batch inserts; IDENTITY disables batching
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointments_seq")
+    @SequenceGenerator(name = "appointments_seq", sequenceName = "appointments_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
@@ -30,9 +42,16 @@ public class Appointment {
     @Column(nullable = false)
     private LocalDateTime startDate;
 
+    // Optional; only appointments with an end take part in conflict checks
+    private LocalDateTime endDate;
+
     @Column(nullable = false)
     private Boolean done = false;
 
     @Column(nullable = false)
     private String customerId;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
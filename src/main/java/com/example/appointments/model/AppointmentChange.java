@@ -0,0 +1,54 @@
+package com.example.appointments.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Outbox row recording one change to the appointments, written in the transaction that made the change and
+ * numbered by the relay after it committed.
+ */
+@Entity
+@Table(name = "appointment_changes", indexes = {
+        // Customer-filtered change streams read by sequence range within one customer
+        @Index(name = "idx_appointment_changes_customer_seq", columnList = "customer_id, seq"),
+        @Index(name = "idx_appointment_changes_seq", columnList = "seq", unique = true),
+        @Index(name = "idx_appointment_changes_changed_at", columnList = "changed_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED,
+        // Every appointment of the customer was deleted; appointmentId is null
+        PURGED
+    }
+
+    // Generated in memory, so inserts still batch; time-ordered, so they land next to each other in the index
+    @Id
+    @GeneratedValue
+    @UuidGenerator(style = UuidGenerator.Style.TIME)
+    private UUID id;
+
+    // Assigned by AppointmentOutbox#relay() once the change is committed, in the order changes become visible
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    private Long appointmentId;
+
+    @Column(nullable = false)
+    private String customerId;
+
+    @Column(nullable = false)
+    private LocalDateTime changedAt;
+}
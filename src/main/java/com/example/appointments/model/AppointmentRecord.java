@@ -0,0 +1,41 @@
+package com.example.appointments.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC mapping of the {@code appointments} table for the reactive profile. Columns follow the same
+ * snake_case naming as {@link Appointment}.
+ */
+@Table("appointments")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AppointmentRecord {
+
+    @Id
+    private Long id;
+
+    private String title;
+
+    private String notes;
+
+    private String category;
+
+    private LocalDateTime startDate;
+
+    private LocalDateTime endDate;
+
+    private Boolean done = false;
+
+    private String customerId;
+
+    @Version
+    private Long version;
+}
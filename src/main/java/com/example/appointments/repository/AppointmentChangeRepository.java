@@ -0,0 +1,60 @@
+package com.example.appointments.repository;
+
+import com.example.appointments.dto.AppointmentChangeEvent;
+import com.example.appointments.model.AppointmentChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface AppointmentChangeRepository extends JpaRepository<AppointmentChange, UUID> {
+
+    // Range scans of the seq index, so reading a delta costs the delta, not the table
+
+    @Query("select new com.example.appointments.dto.AppointmentChangeEvent("
+            + "c.seq, c.type, c.appointmentId, c.customerId, c.changedAt) from AppointmentChange c "
+            + "where c.seq > :after and c.seq <= :upTo order by c.seq asc")
+    List<AppointmentChangeEvent> findEvents(@Param("after") long after, @Param("upTo") long upTo, Limit limit);
+
+    @Query("select new com.example.appointments.dto.AppointmentChangeEvent("
+            + "c.seq, c.type, c.appointmentId, c.customerId, c.changedAt) from AppointmentChange c "
+            + "where c.customerId = :customerId and c.seq > :after and c.seq <= :upTo order by c.seq asc")
+    List<AppointmentChangeEvent> findEventsByCustomerId(@Param("customerId") String customerId,
+            @Param("after") long after, @Param("upTo") long upTo, Limit limit);
+
+    @Query("select coalesce(max(c.seq), 0) from AppointmentChange c")
+    long findMaxSeq();
+
+    // Changes below it were deleted by retention; 0 when there are none
+    @Query("select coalesce(min(c.seq), 0) from AppointmentChange c")
+    long findMinSeq();
+
+    // The newest numbered change recorded before the time; 0 when there is none
+    @Query("select coalesce(max(c.seq), 0) from AppointmentChange c where c.changedAt < :before")
+    long findMaxSeqChangedBefore(@Param("before") LocalDateTime before);
+
+    // Committed changes the relay has not numbered yet; uncommitted ones are not visible to it
+    @Query("select c from AppointmentChange c where c.seq is null order by c.changedAt asc")
+    List<AppointmentChange> findUnnumbered(Limit limit);
+
+    // Relays take turns on this row lock, held until their transaction completes
+    @Query(value = "select last_seq from appointment_change_relay where id = 1 for update", nativeQuery = true)
+    long lockRelay();
+
+    @Modifying
+    @Query(value = "update appointment_change_relay set last_seq = :seq where id = 1", nativeQuery = true)
+    int publishRelayed(@Param("seq") long seq);
+
+    @Modifying
+    @Transactional
+    @Query("delete from AppointmentChange c where c.seq <= :upTo")
+    int deleteUpTo(@Param("upTo") long upTo);
+}
@@ -0,0 +1,28 @@
+package com.example.appointments.repository;
+
+import com.example.appointments.dto.AppointmentGroupCount;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+/**
+ * Criteria queries that combine {@link Specification} filters with projections, which derived and
+ * {@code @Query} methods cannot express.
+ */
+public interface AppointmentQueries {
+
+    /**
+     * Reads the matching appointments straight into responses, without managed entities.
+     *
+     * @param includeNotes {@code false} to leave the notes column out of the query
+     */
+    List<AppointmentResponse> findResponses(Specification<Appointment> spec, Sort sort, boolean includeNotes);
+
+    /**
+     * Counts the matching appointments grouped by category, completion status and start day in one query.
+     */
+    List<AppointmentGroupCount> countByCategoryDoneAndDay(Specification<Appointment> spec);
+}
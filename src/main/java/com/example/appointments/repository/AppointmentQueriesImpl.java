@@ -0,0 +1,68 @@
+package com.example.appointments.repository;
+
+import com.example.appointments.dto.AppointmentGroupCount;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+class AppointmentQueriesImpl implements AppointmentQueries {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AppointmentResponse> findResponses(Specification<Appointment> spec, Sort sort, boolean includeNotes) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AppointmentResponse> query = cb.createQuery(AppointmentResponse.class);
+        Root<Appointment> root = query.from(Appointment.class);
+
+        query.select(cb.construct(AppointmentResponse.class,
+                root.get("id"),
+                root.get("title"),
+                includeNotes ? root.get("notes") : cb.nullLiteral(String.class),
+                root.get("category"),
+                root.get("startDate"),
+                root.get("endDate"),
+                root.get("done"),
+                root.get("customerId"),
+                root.get("version")));
+        where(query, root, cb, spec);
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public List<AppointmentGroupCount> countByCategoryDoneAndDay(Specification<Appointment> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AppointmentGroupCount> query = cb.createQuery(AppointmentGroupCount.class);
+        Root<Appointment> root = query.from(Appointment.class);
+
+        // Hibernate renders as() as an SQL cast, truncating the timestamp to its date
+        Expression<LocalDate> day = root.get("startDate").as(LocalDate.class);
+        query.select(cb.construct(AppointmentGroupCount.class,
+                root.get("category"), root.get("done"), day, cb.count(root)));
+        where(query, root, cb, spec);
+        query.groupBy(root.get("category"), root.get("done"), day);
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private static void where(CriteriaQuery<?> query, Root<Appointment> root, CriteriaBuilder cb,
+            Specification<Appointment> spec) {
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
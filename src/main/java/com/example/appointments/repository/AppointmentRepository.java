@@ -1,20 +1,163 @@
 package com.example.appointments.repository;
 
+import com.example.appointments.dto.AppointmentInterval;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.CustomerVersionSummary;
+import com.example.appointments.dto.ScheduleEntry;
 import com.example.appointments.model.Appointment;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, AppointmentQueries {
 
     List<Appointment> findByCustomerId(String customerId);
 
     Optional<Appointment> findByIdAndCustomerId(Long id, String customerId);
 
-    void deleteByCustomerId(String customerId);
+    // Lock the row with the SELECT that loads it, so its owner cannot change before the write commits
 
-    void deleteByIdAndCustomerId(Long id, String customerId);
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Appointment a where a.id = :id")
+    Optional<Appointment> findForUpdateById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a from Appointment a where a.id = :id and a.customerId = :customerId")
+    Optional<Appointment> findForUpdateByIdAndCustomerId(@Param("id") Long id,
+            @Param("customerId") String customerId);
+
+    boolean existsByCustomerId(String customerId);
+
+    // Constructor expressions build the responses straight from the result set: no managed entities,
+    // no dirty-checking snapshots and no second copy in AppointmentResponse.fromEntity
+
+    @Query("select new com.example.appointments.dto.AppointmentResponse("
+            + "a.id, a.title, a.notes, a.category, a.startDate, a.endDate, a.done, a.customerId, a.version) "
+            + "from Appointment a where a.customerId = :customerId")
+    List<AppointmentResponse> findResponsesByCustomerId(@Param("customerId") String customerId);
+
+    @Query("select new com.example.appointments.dto.AppointmentResponse("
+            + "a.id, a.title, a.notes, a.category, a.startDate, a.endDate, a.done, a.customerId, a.version) "
+            + "from Appointment a order by a.startDate asc, a.id asc")
+    List<AppointmentResponse> findFirstResponses(Limit limit);
+
+    @Query("select new com.example.appointments.dto.AppointmentResponse("
+            + "a.id, a.title, cast(null as String), a.category, a.startDate, a.endDate, a.done, a.customerId, a.version) "
+            + "from Appointment a order by a.startDate asc, a.id asc")
+    List<AppointmentResponse> findFirstResponsesWithoutNotes(Limit limit);
+
+    /**
+     * Deletes up to {@code limit} appointments of the customer in one statement and commits them,
+     * without loading the rows first.
+     *
+     * @return the number of rows deleted
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "delete from appointments where customer_id = :customerId fetch first :limit rows only",
+            nativeQuery = true)
+    int deleteChunkByCustomerId(@Param("customerId") String customerId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from Appointment a where a.id = :id and a.customerId = :customerId")
+    int deleteByIdAndCustomerId(@Param("id") Long id, @Param("customerId") String customerId);
+
+    // One statement that deletes the row and reads its owner back through H2's data change delta table;
+    // PostgreSQL would use DELETE ... RETURNING customer_id
+    @Query(value = "select customer_id from old table (delete from appointments where id = :id)", nativeQuery = true)
+    Optional<String> deleteByIdReturningCustomerId(@Param("id") Long id);
+
+    // Bumps the version by hand because bulk updates bypass Hibernate's optimistic locking
+    @Modifying
+    @Query("update Appointment a set a.done = true, a.version = a.version + 1 "
+            + "where a.id = :id and a.customerId = :customerId")
+    int markDoneByIdAndCustomerId(@Param("id") Long id, @Param("customerId") String customerId);
+
+    // Like markDoneByIdAndCustomerId, and reads the owner back in the same statement like
+    // deleteByIdReturningCustomerId
+    @Query(value = "select customer_id from final table "
+            + "(update appointments set done = true, version = version + 1 where id = :id)", nativeQuery = true)
+    Optional<String> markDoneReturningCustomerId(@Param("id") Long id);
+
+    @Query("select new com.example.appointments.dto.CustomerVersionSummary("
+            + "count(a), coalesce(sum(mod(mod(a.id, 2147483647) * 65599 + a.version, 2147483647)), 0), "
+            + "coalesce(max(a.id), 0)) "
+            + "from Appointment a where a.customerId = :customerId")
+    CustomerVersionSummary summarizeVersionsByCustomerId(@Param("customerId") String customerId);
+
+    @Query("select new com.example.appointments.dto.AppointmentInterval(a.id, a.customerId, a.startDate, a.endDate) "
+            + "from Appointment a where a.id in :ids")
+    List<AppointmentInterval> findIntervalsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select a from Appointment a "
+            + "where a.customerId = :customerId and a.startDate >= :from "
+            + "order by a.startDate asc")
+    List<Appointment> findUpcomingByCustomerId(@Param("customerId") String customerId,
+            @Param("from") LocalDateTime from);
+
+    @Query("select a from Appointment a "
+            + "where a.customerId = :customerId and a.done = false and a.startDate < :now "
+            + "order by a.startDate asc")
+    List<Appointment> findOverdueByCustomerId(@Param("customerId") String customerId,
+            @Param("now") LocalDateTime now);
+
+    @Query("select a from Appointment a "
+            + "where a.customerId = :customerId and a.category = :category "
+            + "and a.startDate >= :from and a.startDate < :to "
+            + "order by a.startDate asc")
+    List<Appointment> findByCustomerIdAndCategoryInWindow(@Param("customerId") String customerId,
+            @Param("category") String category, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Covered by the (start_date, id) index
+    @Query("select new com.example.appointments.dto.ScheduleEntry(a.id, a.startDate) from Appointment a "
+            + "where a.startDate >= :from order by a.startDate asc, a.id asc")
+    Stream<ScheduleEntry> streamScheduleFrom(@Param("from") LocalDateTime from);
+
+    @Query("select new com.example.appointments.dto.AppointmentResponse("
+            + "a.id, a.title, a.notes, a.category, a.startDate, a.endDate, a.done, a.customerId, a.version) "
+            + "from Appointment a where a.id in :ids order by a.startDate asc, a.id asc")
+    List<AppointmentResponse> findResponsesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select new com.example.appointments.dto.AppointmentInterval(a.id, a.customerId, a.startDate, a.endDate) "
+            + "from Appointment a where a.customerId = :customerId and a.endDate is not null")
+    List<AppointmentInterval> findIntervalsByCustomerId(@Param("customerId") String customerId);
+
+    @Query("select new com.example.appointments.dto.AppointmentInterval(a.id, a.customerId, a.startDate, a.endDate) "
+            + "from Appointment a where a.id = :id")
+    Optional<AppointmentInterval> findIntervalById(@Param("id") Long id);
+
+    // Reads the (customer_id, start_date) index backwards from :end and stops after the limit; a bound on
+    // end_date could not narrow that scan. Not flushed first: the conflict index already holds the intervals
+    // the current transaction changed, and a flush would break up the JDBC batch of a bulk write
+    @Query("select new com.example.appointments.dto.AppointmentInterval(a.id, a.customerId, a.startDate, a.endDate) "
+            + "from Appointment a where a.customerId = :customerId and a.startDate < :end and a.endDate is not null "
+            + "order by a.startDate desc, a.id desc")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FLUSH_MODE, value = "COMMIT"))
+    List<AppointmentInterval> findLatestStartingBefore(@Param("customerId") String customerId,
+            @Param("end") LocalDateTime end, Limit limit);
+
+    @Query("select a from Appointment a order by a.startDate asc, a.id asc")
+    List<Appointment> findFirstPage(Limit limit);
+
+    // The redundant startDate >= bound turns the keyset predicate into an index range scan
+    @Query("select a from Appointment a "
+            + "where a.startDate >= :startDate and (a.startDate > :startDate or a.id > :id) "
+            + "order by a.startDate asc, a.id asc")
+    List<Appointment> findPageAfter(@Param("startDate") LocalDateTime startDate, @Param("id") Long id, Limit limit);
 }
@@ -0,0 +1,46 @@
+package com.example.appointments.repository;
+
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.model.Appointment;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Builds the WHERE clause of filtered appointment queries. Only the criteria that are set become predicates,
+ * so the database can use the customer and start date indexes.
+ */
+public final class AppointmentSpecifications {
+
+    private AppointmentSpecifications() {
+    }
+
+    public static Specification<Appointment> matching(AppointmentFilter filter) {
+        return Specification.allOf(
+                filter.getCustomerId() != null ? customerIdEquals(filter.getCustomerId()) : null,
+                filter.getCategory() != null ? categoryEquals(filter.getCategory()) : null,
+                filter.getDone() != null ? doneEquals(filter.getDone()) : null,
+                filter.getFrom() != null ? startsAtOrAfter(filter.getFrom()) : null,
+                filter.getTo() != null ? startsBefore(filter.getTo()) : null);
+    }
+
+    private static Specification<Appointment> customerIdEquals(String customerId) {
+        return (root, query, cb) -> cb.equal(root.get("customerId"), customerId);
+    }
+
+    private static Specification<Appointment> categoryEquals(String category) {
+        return (root, query, cb) -> cb.equal(root.get("category"), category);
+    }
+
+    private static Specification<Appointment> doneEquals(boolean done) {
+        return (root, query, cb) -> cb.equal(root.get("done"), done);
+    }
+
+    private static Specification<Appointment> startsAtOrAfter(LocalDateTime from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("startDate"), from);
+    }
+
+    private static Specification<Appointment> startsBefore(LocalDateTime to) {
+        return (root, query, cb) -> cb.lessThan(root.get("startDate"), to);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.appointments.repository;
+
+import com.example.appointments.dto.CustomerVersionSummary;
+import com.example.appointments.model.AppointmentRecord;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reactive counterpart of {@link AppointmentRepository}, with the same queries in SQL.
+ */
+@Repository
+public interface ReactiveAppointmentRepository extends R2dbcRepository<AppointmentRecord, Long> {
+
+    Flux<AppointmentRecord> findByCustomerId(String customerId);
+
+    Mono<AppointmentRecord> findByIdAndCustomerId(Long id, String customerId);
+
+    @Modifying
+    @Query("delete from appointments where customer_id = :customerId fetch first :limit rows only")
+    Mono<Integer> deleteChunkByCustomerId(@Param("customerId") String customerId, @Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from appointments where id = :id")
+    Mono<Integer> deleteByIdReturningCount(@Param("id") Long id);
+
+    @Modifying
+    @Query("delete from appointments where id = :id and customer_id = :customerId")
+    Mono<Integer> deleteByIdAndCustomerId(@Param("id") Long id, @Param("customerId") String customerId);
+
+    @Query("select count(*) as count, "
+            + "coalesce(sum(mod(mod(id, 2147483647) * 65599 + version, 2147483647)), 0) as fingerprint, "
+            + "coalesce(max(id), 0) as max_id from appointments where customer_id = :customerId")
+    Mono<CustomerVersionSummary> summarizeVersionsByCustomerId(@Param("customerId") String customerId);
+
+    @Query("select * from appointments "
+            + "where customer_id = :customerId and start_date >= :from "
+            + "order by start_date asc")
+    Flux<AppointmentRecord> findUpcomingByCustomerId(@Param("customerId") String customerId,
+            @Param("from") LocalDateTime from);
+
+    @Query("select * from appointments "
+            + "where customer_id = :customerId and done = false and start_date < :now "
+            + "order by start_date asc")
+    Flux<AppointmentRecord> findOverdueByCustomerId(@Param("customerId") String customerId,
+            @Param("now") LocalDateTime now);
+
+    @Query("select * from appointments "
+            + "where customer_id = :customerId and category = :category "
+            + "and start_date >= :from and start_date < :to "
+            + "order by start_date asc")
+    Flux<AppointmentRecord> findByCustomerIdAndCategoryInWindow(@Param("customerId") String customerId,
+            @Param("category") String category, @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("select * from appointments order by start_date asc, id asc fetch first :limit rows only")
+    Flux<AppointmentRecord> findFirstPage(@Param("limit") int limit);
+
+    @Query("select * from appointments "
+            + "where start_date >= :startDate and (start_date > :startDate or id > :id) "
+            + "order by start_date asc, id asc fetch first :limit rows only")
+    Flux<AppointmentRecord> findPageAfter(@Param("startDate") LocalDateTime startDate, @Param("id") Long id,
+            @Param("limit") int limit);
+}
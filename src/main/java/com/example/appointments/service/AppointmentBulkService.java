@@ -0,0 +1,452 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.BulkProperties;
+import com.example.appointments.dto.AppointmentInterval;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentUpdateItem;
+import com.example.appointments.dto.BulkItemResult;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.exception.BulkRequestTooLargeException;
+import com.example.appointments.exception.CrossShardMoveException;
+import com.example.appointments.exception.CustomerBusyException;
+import com.example.appointments.exception.SchedulingConflictException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.model.AppointmentChange;
+import com.example.appointments.repository.AppointmentRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk create, update and delete. Items are validated one by one and written in chunks of
+ * {@code appointments.bulk.batch-size}, each chunk in its own transaction and JDBC batch, so a failing
+ * chunk does not roll back the chunks already written. Every item gets its own result.
+ * <p>
+ * Sharded, each chunk is written as one transaction per shard its items are on, so a shard that fails to
+ * write fails only its own items.
+ * <p>
+ * Items are written holding the {@link CustomerWriteLocks} of the customers they belong to or move to, so
+ * bulk writes take turns with the other writes of those customers. A chunk is split into groups of at most
+ * {@code appointments.bulk.max-locked-customers} customers, written one after the other, so a bulk request
+ * holds a few stripes at a time instead of nearly all of them.
+ */
+@Service
+@Profile("!reactive")
+@Timed(value = "appointments.service", description = "Appointment service calls")
+@RequiredArgsConstructor
+public class AppointmentBulkService {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentBulkService.class);
+    private static final Map<String, String> MALFORMED_ITEM = Map.of("item", "Item is missing or malformed");
+    private static final Map<String, String> WRITE_FAILED = Map.of("error", "Failed to write batch");
+
+    private final AppointmentRepository appointmentRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final BulkProperties bulkProperties;
+    private final AppointmentCacheEvictor cacheEvictor;
+    private final AppointmentScheduleIndex scheduleIndex;
+    private final AppointmentConflictIndex conflictIndex;
+    private final AppointmentOutbox outbox;
+    private final AppointmentWriteBehind writeBehind;
+    private final CustomerWriteLocks customerLocks;
+    private final ShardRouter shardRouter;
+
+    public BulkResponse createAppointments(List<AppointmentRequest> requests) {
+        checkSize(requests.size());
+        log.debug("Creating {} appointments in bulk", requests.size());
+
+        BulkItemResult[] results = new BulkItemResult[requests.size()];
+        forEachChunk(requests.size(), (from, to) -> {
+            Map<Integer, Appointment> pending = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                AppointmentRequest request = requests.get(i);
+                Map<String, String> errors = validate(request);
+                if (errors != null) {
+                    results[i] = failure(i, HttpStatus.BAD_REQUEST, errors);
+                    continue;
+                }
+                Appointment appointment = new Appointment();
+                apply(appointment, request);
+                appointment.setCustomerId(request.getCustomerId());
+                pending.put(i, appointment);
+            }
+            for (LockGroup<Appointment> group
+                    : lockGroups(pending, appointment -> Set.of(appointment.getCustomerId()))) {
+                try {
+                    customerLocks.runAll(group.customers(), () -> shardRouter.forEachShard(group.items().entrySet(),
+                            entry -> entry.getValue().getCustomerId(), entries -> create(toMap(entries), results)));
+                } catch (CustomerBusyException e) {
+                    busy(group.items().keySet(), e, results);
+                }
+            }
+        });
+
+        BulkResponse response = BulkResponse.of(Arrays.asList(results), HttpStatus.CREATED.value());
+        log.info("Created {} of {} appointments in bulk", response.getSucceeded(), response.getTotal());
+        return response;
+    }
+
+    public BulkResponse updateAppointments(List<AppointmentUpdateItem> items) {
+        checkSize(items.size());
+        log.debug("Updating {} appointments in bulk", items.size());
+
+        BulkItemResult[] results = new BulkItemResult[items.size()];
+        forEachChunk(items.size(), (from, to) -> {
+            Map<Integer, AppointmentUpdateItem> valid = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                AppointmentUpdateItem item = items.get(i);
+                Map<String, String> errors = validate(item);
+                if (errors != null) {
+                    results[i] = failure(i, HttpStatus.BAD_REQUEST, errors);
+                } else {
+                    valid.put(i, item);
+                }
+            }
+            writeAsOwners(valid, AppointmentUpdateItem::getId, AppointmentUpdateItem::getCustomerId, results,
+                    (remaining, locked) -> {
+                        Map<Integer, AppointmentUpdateItem> moved = new HashMap<>();
+                        shardRouter.forEachShardOfAppointments(remaining.entrySet(),
+                                entry -> entry.getValue().getId(),
+                                entries -> update(toMap(entries), locked, moved, results));
+                        return moved;
+                    });
+        });
+
+        BulkResponse response = BulkResponse.of(Arrays.asList(results), HttpStatus.OK.value());
+        log.info("Updated {} of {} appointments in bulk", response.getSucceeded(), response.getTotal());
+        return response;
+    }
+
+    public BulkResponse deleteAppointments(List<Long> ids) {
+        checkSize(ids.size());
+        log.debug("Deleting {} appointments in bulk", ids.size());
+
+        BulkItemResult[] results = new BulkItemResult[ids.size()];
+        forEachChunk(ids.size(), (from, to) -> {
+            Map<Integer, Long> valid = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                if (ids.get(i) == null) {
+                    results[i] = failure(i, HttpStatus.BAD_REQUEST, MALFORMED_ITEM);
+                } else {
+                    valid.put(i, ids.get(i));
+                }
+            }
+            writeAsOwners(valid, Function.identity(), id -> null, results, (remaining, locked) -> {
+                Map<Integer, Long> moved = new HashMap<>();
+                shardRouter.forEachShardOfAppointments(remaining.entrySet(), Map.Entry::getValue,
+                        entries -> delete(toMap(entries), locked, moved, results));
+                return moved;
+            });
+        });
+
+        BulkResponse response = BulkResponse.of(Arrays.asList(results), HttpStatus.NO_CONTENT.value());
+        log.info("Deleted {} of {} appointments in bulk", response.getSucceeded(), response.getTotal());
+        return response;
+    }
+
+    // Writes the part of a chunk that belongs to one shard
+    private void create(Map<Integer, Appointment> pending, BulkItemResult[] results) {
+        Map<Integer, String> conflicts = new HashMap<>();
+        boolean written = pending.isEmpty() || writeChunk(() -> {
+            // Checked one by one, so items of the same chunk are checked against each other as well
+            pending.entrySet().removeIf(entry -> {
+                Appointment appointment = entry.getValue();
+                try {
+                    conflictIndex.reserve(appointment, appointment.getCustomerId(), appointment.getStartDate(),
+                            appointment.getEndDate());
+                    return false;
+                } catch (SchedulingConflictException e) {
+                    conflicts.put(entry.getKey(), e.getMessage());
+                    return true;
+                }
+            });
+            appointmentRepository.saveAll(pending.values());
+            pending.values().stream().collect(Collectors.groupingBy(Appointment::getCustomerId,
+                            Collectors.mapping(Appointment::getId, Collectors.toList())))
+                    .forEach(cacheEvictor::evictCreated);
+            pending.values().forEach(appointment -> {
+                scheduleIndex.add(appointment.getId(), appointment.getStartDate());
+                outbox.record(AppointmentChange.Type.CREATED, appointment.getId(), appointment.getCustomerId());
+            });
+        });
+        conflicts.forEach((i, message) -> results[i] = written
+                ? failure(i, HttpStatus.CONFLICT, Map.of("error", message))
+                : failure(i, HttpStatus.INTERNAL_SERVER_ERROR, WRITE_FAILED));
+        pending.forEach((i, appointment) -> results[i] = written
+                ? new BulkItemResult(i, HttpStatus.CREATED.value(), appointment.getId(), null)
+                : failure(i, HttpStatus.INTERNAL_SERVER_ERROR, WRITE_FAILED));
+    }
+
+    // Leaves items of appointments whose customer is not locked to the caller, in moved
+    private void update(Map<Integer, AppointmentUpdateItem> valid, Set<String> locked,
+            Map<Integer, AppointmentUpdateItem> moved, BulkItemResult[] results) {
+        Set<Integer> missing = new HashSet<>();
+        Map<Integer, String> conflicts = new HashMap<>();
+        boolean written = writeChunk(() -> {
+            Set<Long> ids = valid.values().stream().map(AppointmentUpdateItem::getId).collect(Collectors.toSet());
+            Map<Long, Appointment> existing = appointmentRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Appointment::getId, Function.identity()));
+            // Managed entities are flushed as one batch of UPDATEs on commit
+            valid.forEach((i, item) -> {
+                Appointment appointment = existing.get(item.getId());
+                if (appointment == null) {
+                    missing.add(i);
+                    return;
+                }
+                if (!locked.contains(appointment.getCustomerId())) {
+                    moved.put(i, item);
+                    return;
+                }
+                try {
+                    shardRouter.checkSameShard(appointment.getCustomerId(), item.getCustomerId());
+                    conflictIndex.reserve(appointment, item.getCustomerId(), item.getStartDate(),
+                            item.getEndDate());
+                } catch (SchedulingConflictException | CrossShardMoveException e) {
+                    conflicts.put(i, e.getMessage());
+                    return;
+                }
+                cacheEvictor.evict(appointment.getId(), appointment.getCustomerId());
+                LocalDateTime previousStartDate = appointment.getStartDate();
+                String previousCustomerId = appointment.getCustomerId();
+                apply(appointment, item);
+                appointment.setCustomerId(item.getCustomerId());
+                cacheEvictor.evictCustomer(item.getCustomerId());
+                scheduleIndex.move(appointment.getId(), previousStartDate, appointment.getStartDate());
+                outbox.record(AppointmentChange.Type.UPDATED, appointment.getId(), item.getCustomerId());
+                if (!previousCustomerId.equals(item.getCustomerId())) {
+                    outbox.record(AppointmentChange.Type.UPDATED, appointment.getId(), previousCustomerId);
+                }
+            });
+        });
+        valid.forEach((i, item) -> {
+            if (moved.containsKey(i)) {
+                return;
+            }
+            if (missing.contains(i)) {
+                results[i] = notFound(i, item.getId());
+            } else if (conflicts.containsKey(i)) {
+                results[i] = written
+                        ? failure(i, HttpStatus.CONFLICT, Map.of("error", conflicts.get(i)))
+                        : failure(i, HttpStatus.INTERNAL_SERVER_ERROR, WRITE_FAILED);
+            } else {
+                results[i] = written
+                        ? new BulkItemResult(i, HttpStatus.OK.value(), item.getId(), null)
+                        : failure(i, HttpStatus.INTERNAL_SERVER_ERROR, WRITE_FAILED);
+            }
+        });
+    }
+
+    private void delete(Map<Integer, Long> valid, Set<String> locked, Map<Integer, Long> moved,
+            BulkItemResult[] results) {
+        Set<Long> existing = new HashSet<>();
+        Set<Long> movedIds = new HashSet<>();
+        boolean written = writeChunk(() -> {
+            Map<Boolean, List<AppointmentInterval>> byLocked = appointmentRepository
+                    .findIntervalsByIdIn(new HashSet<>(valid.values())).stream()
+                    .collect(Collectors.partitioningBy(appointment -> locked.contains(appointment.getCustomerId())));
+            byLocked.get(false).forEach(appointment -> movedIds.add(appointment.getId()));
+            List<AppointmentInterval> owned = byLocked.get(true);
+            owned.forEach(appointment -> existing.add(appointment.getId()));
+            appointmentRepository.deleteAllByIdInBatch(existing);
+            owned.forEach(appointment -> {
+                cacheEvictor.evict(appointment.getId(), appointment.getCustomerId());
+                conflictIndex.release(appointment.getId());
+                outbox.record(AppointmentChange.Type.DELETED, appointment.getId(), appointment.getCustomerId());
+            });
+        });
+        valid.forEach((i, id) -> {
+            if (movedIds.contains(id)) {
+                moved.put(i, id);
+            } else if (!written) {
+                results[i] = failure(i, HttpStatus.INTERNAL_SERVER_ERROR, WRITE_FAILED);
+            } else if (existing.contains(id)) {
+                results[i] = new BulkItemResult(i, HttpStatus.NO_CONTENT.value(), id, null);
+            } else {
+                results[i] = notFound(i, id);
+            }
+        });
+    }
+
+    /**
+     * Runs {@code write} holding the locks of the customers the items' appointments belong to and of the
+     * customers they move to, once per {@link #lockGroups lock group}. The owners are read before the locks are
+     * taken, so {@code write} is given the locked customers and returns the items whose appointment has
+     * changed hands since; those are written again, with their new owners locked. Updates queued for the
+     * appointments in {@link AppointmentWriteBehind} are written first. Items of a group whose locks are not
+     * free in time fail on their own, with 503.
+     */
+    private <T> void writeAsOwners(Map<Integer, T> items, Function<? super T, Long> idOf,
+            Function<? super T, String> movingTo, BulkItemResult[] results,
+            BiFunction<Map<Integer, T>, Set<String>, Map<Integer, T>> write) {
+        Map<Integer, T> remaining = items;
+        while (!remaining.isEmpty()) {
+            Set<Long> ids = remaining.values().stream().map(idOf).collect(Collectors.toSet());
+            Map<Long, String> owners = new HashMap<>();
+            shardRouter.onEveryShard(() -> appointmentRepository.findIntervalsByIdIn(ids))
+                    .forEach(owned -> owned.forEach(
+                            appointment -> owners.put(appointment.getId(), appointment.getCustomerId())));
+            Map<Integer, T> moved = new HashMap<>();
+            for (LockGroup<T> group : lockGroups(remaining, item -> {
+                Set<String> customers = new HashSet<>();
+                customers.add(owners.get(idOf.apply(item)));
+                customers.add(movingTo.apply(item));
+                customers.remove(null);
+                return customers;
+            })) {
+                try {
+                    moved.putAll(customerLocks.callAll(group.customers(), () -> {
+                        group.items().values().forEach(item -> writeBehind.flush(idOf.apply(item)));
+                        return write.apply(group.items(), group.customers());
+                    }));
+                } catch (CustomerBusyException e) {
+                    busy(group.items().keySet(), e, results);
+                }
+            }
+            remaining = moved;
+        }
+    }
+
+    /**
+     * Splits items into groups, in item order, whose customers number at most
+     * {@code appointments.bulk.max-locked-customers}. An item joins a group that holds all its customers
+     * already, or else the last group if they fit in.
+     */
+    private <T> List<LockGroup<T>> lockGroups(Map<Integer, T> items, Function<? super T, Set<String>> customersOf) {
+        int maxCustomers = bulkProperties.getMaxLockedCustomers();
+        List<LockGroup<T>> groups = new ArrayList<>();
+        new TreeMap<>(items).forEach((i, item) -> {
+            Set<String> customers = customersOf.apply(item);
+            LockGroup<T> group = groups.stream()
+                    .filter(candidate -> candidate.customers().containsAll(customers))
+                    .findFirst()
+                    .orElse(null);
+            if (group == null) {
+                group = groups.isEmpty() ? null : groups.get(groups.size() - 1);
+                if (group == null || !fitsIn(group, customers, maxCustomers)) {
+                    group = new LockGroup<>(new HashMap<>(), new HashSet<>());
+                    groups.add(group);
+                }
+            }
+            group.items().put(i, item);
+            group.customers().addAll(customers);
+        });
+        return groups;
+    }
+
+    private static boolean fitsIn(LockGroup<?> group, Set<String> customers, int maxCustomers) {
+        Set<String> together = new HashSet<>(group.customers());
+        together.addAll(customers);
+        return together.size() <= maxCustomers;
+    }
+
+    private void checkSize(int size) {
+        if (size > bulkProperties.getMaxItems()) {
+            throw new BulkRequestTooLargeException(
+                    "Bulk request has " + size + " items, the maximum is " + bulkProperties.getMaxItems());
+        }
+    }
+
+    private void forEachChunk(int size, ChunkAction action) {
+        int batchSize = bulkProperties.getBatchSize();
+        for (int from = 0; from < size; from += batchSize) {
+            action.apply(from, Math.min(from + batchSize, size));
+        }
+    }
+
+    /**
+     * Runs one chunk in its own transaction with JDBC batching sized to the chunk.
+     *
+     * @return whether the chunk was committed
+     */
+    private boolean writeChunk(Runnable work) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.unwrap(Session.class).setJdbcBatchSize(bulkProperties.getBatchSize());
+                work.run();
+            });
+            return true;
+        } catch (DataAccessException | PersistenceException e) {
+            log.error("Failed to write bulk chunk", e);
+            return false;
+        }
+    }
+
+    private Map<String, String> validate(Object item) {
+        if (item == null) {
+            return MALFORMED_ITEM;
+        }
+        Set<ConstraintViolation<Object>> violations = validator.validate(item);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        Map<String, String> errors = new HashMap<>();
+        violations.forEach(violation ->
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage())
+        );
+        return errors;
+    }
+
+    private static void apply(Appointment appointment, AppointmentRequest request) {
+        appointment.setTitle(request.getTitle());
+        appointment.setNotes(request.getNotes());
+        appointment.setCategory(request.getCategory());
+        appointment.setStartDate(request.getStartDate());
+        appointment.setEndDate(request.getEndDate());
+        appointment.setDone(request.getDone() != null ? request.getDone() : false);
+    }
+
+    private static <V> Map<Integer, V> toMap(List<Map.Entry<Integer, V>> entries) {
+        Map<Integer, V> map = new HashMap<>();
+        entries.forEach(entry -> map.put(entry.getKey(), entry.getValue()));
+        return map;
+    }
+
+    private static BulkItemResult failure(int index, HttpStatus status, Map<String, String> errors) {
+        return new BulkItemResult(index, status.value(), null, errors);
+    }
+
+    // Other groups, and the chunks before, stay written; the client may send these items again later
+    private static void busy(Set<Integer> indexes, CustomerBusyException e, BulkItemResult[] results) {
+        log.warn("{} bulk items not written: {}", indexes.size(), e.getMessage());
+        indexes.forEach(i -> results[i] = failure(i, HttpStatus.SERVICE_UNAVAILABLE, Map.of("error", e.getMessage())));
+    }
+
+    private static BulkItemResult notFound(int index, Long id) {
+        return new BulkItemResult(index, HttpStatus.NOT_FOUND.value(), id,
+                Map.of("error", "Appointment not found with id: " + id));
+    }
+
+    private record LockGroup<T>(Map<Integer, T> items, Set<String> customers) {
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void apply(int from, int to);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.CacheConfig;
+import com.example.appointments.config.FillGuardedCaffeineCache;
+import com.example.appointments.dto.AppointmentResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Invalidates the read caches after writes. A customer's list and its version summary are always evicted
+ * together so a list ETag never outlives the list it describes. Inside a transaction the eviction is deferred
+ * until commit, so a reader loading during the transaction refills the cache after it. A reader that loaded
+ * the pre-commit state and puts it after the eviction is turned away by {@link FillGuardedCaffeineCache}. The
+ * write is recorded with {@link ReplicaReads} at the same time, so the read that refills the cache does not
+ * come from a lagging replica.
+ */
+@Component
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class AppointmentCacheEvictor {
+
+    private final CacheManager cacheManager;
+    private final ReplicaReads replicaReads;
+
+    /**
+     * Evicts a single appointment and the list of the customer it belongs to.
+     */
+    public void evict(Long id, String customerId) {
+        afterCommit(() -> {
+            appointments().evict(id);
+            evictCustomerEntries(customerId);
+            replicaReads.appointmentWritten(id, customerId);
+        });
+    }
+
+    /**
+     * Evicts the list of a customer, e.g. after an appointment was added to it.
+     */
+    public void evictCustomer(String customerId) {
+        afterCommit(() -> {
+            evictCustomerEntries(customerId);
+            replicaReads.customerWritten(customerId);
+        });
+    }
+
+    /**
+     * Evicts the list of a customer new appointments were added to.
+     */
+    public void evictCreated(String customerId, Collection<Long> ids) {
+        afterCommit(() -> {
+            evictCustomerEntries(customerId);
+            replicaReads.customerWritten(customerId);
+            ids.forEach(id -> replicaReads.appointmentWritten(id, customerId));
+        });
+    }
+
+    /**
+     * Evicts the list of a customer and every cached appointment that belongs to it. The appointments that
+     * were not cached are not known here, so the fills of every read that missed before are turned away: one
+     * of them may have loaded an appointment the purge deleted.
+     */
+    public void evictAllOfCustomer(String customerId) {
+        afterCommit(() -> {
+            evictCustomerEntries(customerId);
+            replicaReads.customerWritten(customerId);
+            ((FillGuardedCaffeineCache) appointments()).evictingAll();
+            nativeMap(appointments()).values().removeIf(value -> {
+                AppointmentResponse appointment = (AppointmentResponse) value;
+                if (!Objects.equals(customerId, appointment.getCustomerId())) {
+                    return false;
+                }
+                replicaReads.appointmentWritten(appointment.getId(), customerId);
+                return true;
+            });
+        });
+    }
+
+    private void evictCustomerEntries(String customerId) {
+        customerAppointments().evict(customerId);
+        customerVersions().evict(customerId);
+    }
+
+    private Cache appointments() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.APPOINTMENTS));
+    }
+
+    private Cache customerAppointments() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.CUSTOMER_APPOINTMENTS));
+    }
+
+    private Cache customerVersions() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.CUSTOMER_VERSIONS));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> nativeMap(Cache cache) {
+        return ((com.github.benmanes.caffeine.cache.Cache<Object, Object>) cache.getNativeCache()).asMap();
+    }
+
+    private static void afterCommit(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eviction.run();
+                }
+            });
+        } else {
+            eviction.run();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ChangeStreamProperties;
+import com.example.appointments.dto.AppointmentChangeEvent;
+import com.example.appointments.exception.InvalidPageRequestException;
+import com.example.appointments.exception.ServiceOverloadedException;
+import com.example.appointments.repository.AppointmentChangeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Streams outbox changes to Server-Sent Events clients. Each stream runs on a virtual thread of its own,
+ * reads the changes after its last sequence number up to the {@link AppointmentOutbox#horizon()} in batches
+ * of {@code appointments.changes.batch-size}, and then waits for the relay to move the horizon. A client that
+ * is caught up costs no queries until something is relayed. Sharded, every batch is read from all shards at
+ * once and merged by sequence number, as a customer's earlier changes stay behind when it moves to another
+ * shard.
+ * <p>
+ * At most {@code appointments.changes.max-streams} streams are open at once; further subscriptions are
+ * rejected as overloaded. A client resuming after changes that retention already deleted first gets a
+ * {@code reset} event, so it knows to read the state again instead of applying an incomplete delta.
+ */
+@Component
+@Profile("!reactive")
+public class AppointmentChangeStream implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentChangeStream.class);
+    private static final Comparator<AppointmentChangeEvent> BY_SEQ =
+            Comparator.comparingLong(AppointmentChangeEvent::getSeq);
+
+    private final AppointmentOutbox outbox;
+    private final AppointmentChangeRepository changeRepository;
+    private final ShardRouter shardRouter;
+    private final ChangeStreamProperties properties;
+    private final Set<SseEmitter> streams = ConcurrentHashMap.newKeySet();
+    private final Semaphore places;
+    private volatile Counter sent;
+    private volatile Counter rejected;
+
+    public AppointmentChangeStream(AppointmentOutbox outbox, AppointmentChangeRepository changeRepository,
+            ShardRouter shardRouter, ChangeStreamProperties properties) {
+        if (properties.getBatchSize() < 1) {
+            throw new IllegalArgumentException("appointments.changes.batch-size must be at least 1");
+        }
+        if (properties.getMaxStreams() < 0) {
+            throw new IllegalArgumentException("appointments.changes.max-streams must not be negative");
+        }
+        this.places = new Semaphore(properties.getMaxStreams());
+        this.outbox = outbox;
+        this.changeRepository = changeRepository;
+        this.shardRouter = shardRouter;
+        this.properties = properties;
+    }
+
+    /**
+     * Opens a stream of the changes after {@code since}.
+     *
+     * @param since      last sequence number the client has seen, or {@code null} to start with the changes
+     *                   committed from now on
+     * @param customerId only stream changes of this customer, or {@code null} for all
+     * @throws ServiceOverloadedException if {@code appointments.changes.max-streams} streams are open
+     */
+    public SseEmitter subscribe(Long since, String customerId) {
+        if (since != null && since < 0) {
+            throw new InvalidPageRequestException("'since' must not be negative");
+        }
+        long start = since != null ? since : outbox.horizon();
+        // Released when the stream's thread ends
+        if (!places.tryAcquire()) {
+            increment(rejected, 1);
+            throw new ServiceOverloadedException("Too many open change streams, retry later",
+                    Math.max(1, properties.getRetryAfter().toSeconds()));
+        }
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(error -> open.set(false));
+        streams.add(emitter);
+        Thread.ofVirtual().name("appointment-changes").start(() -> stream(emitter, open, start, customerId));
+        log.debug("Opened change stream after {} for customer {}", start, customerId);
+        return emitter;
+    }
+
+    /**
+     * @return open change streams
+     */
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("appointments.changes.streams", this, AppointmentChangeStream::getStreamCount)
+                .description("Open change streams")
+                .register(registry);
+        sent = Counter.builder("appointments.changes.sent")
+                .description("Changes sent to change streams")
+                .register(registry);
+        rejected = Counter.builder("appointments.changes.rejected")
+                .description("Change streams rejected because appointments.changes.max-streams were open")
+                .register(registry);
+    }
+
+    private void stream(SseEmitter emitter, AtomicBoolean open, long since, String customerId) {
+        Limit batch = Limit.of(properties.getBatchSize());
+        long heartbeat = properties.getHeartbeat().toNanos();
+        long lastSent = System.nanoTime();
+        try {
+            long cursor = skipDeleted(emitter, since);
+            // A closed stream is noticed at the latest one poll interval later
+            while (open.get()) {
+                long horizon = outbox.awaitHorizonAfter(cursor, properties.getPollInterval());
+                if (horizon > cursor) {
+                    long after = cursor;
+                    // Every shard returns its first batch after the cursor, so the first batch of them all is exact
+                    List<AppointmentChangeEvent> events = ShardRouter.merge(shardRouter.onEveryShard(
+                            () -> customerId != null
+                                    ? changeRepository.findEventsByCustomerId(customerId, after, horizon, batch)
+                                    : changeRepository.findEvents(after, horizon, batch)),
+                            BY_SEQ, batch.max());
+                    for (AppointmentChangeEvent event : events) {
+                        emitter.send(SseEmitter.event().id(String.valueOf(event.getSeq()))
+                                .data(event, MediaType.APPLICATION_JSON));
+                    }
+                    if (!events.isEmpty()) {
+                        increment(sent, events.size());
+                        lastSent = System.nanoTime();
+                    }
+                    // A short batch means nothing else up to the horizon matches
+                    cursor = events.size() == batch.max() ? events.get(events.size() - 1).getSeq() : horizon;
+                }
+                if (System.nanoTime() - lastSent >= heartbeat) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    lastSent = System.nanoTime();
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            // The client went away or the emitter completed in the meantime
+            log.debug("Change stream closed: {}", ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        } catch (RuntimeException ex) {
+            log.error("Change stream failed", ex);
+            emitter.completeWithError(ex);
+        } finally {
+            places.release();
+            streams.remove(emitter);
+        }
+    }
+
+    /**
+     * Sends a {@code reset} event when retention deleted changes after {@code since}, which the client can no
+     * longer get, and moves past them.
+     *
+     * @return the cursor to read on from
+     */
+    private long skipDeleted(SseEmitter emitter, long since) throws IOException {
+        long horizon = outbox.horizon();
+        // Numbers are given out without gaps and retention deletes up to a number, so the oldest one left tells
+        // what was deleted
+        long oldest = shardRouter.onEveryShard(changeRepository::findMinSeq).stream()
+                .mapToLong(Long::longValue)
+                .filter(seq -> seq > 0)
+                .min()
+                .orElse(horizon + 1);
+        if (since >= oldest - 1) {
+            return since;
+        }
+        log.debug("Change stream after {} resets to {}: older changes were deleted", since, oldest - 1);
+        emitter.send(SseEmitter.event().name("reset").id(String.valueOf(oldest - 1))
+                .data(Map.of("after", since, "resumedAfter", oldest - 1), MediaType.APPLICATION_JSON));
+        return oldest - 1;
+    }
+
+    private static void increment(Counter counter, int amount) {
+        if (counter != null) {
+            counter.increment(amount);
+        }
+    }
+}
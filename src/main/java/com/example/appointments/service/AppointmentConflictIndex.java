@@ -0,0 +1,408 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ConflictIndexProperties;
+import com.example.appointments.dto.AppointmentInterval;
+import com.example.appointments.dto.TimeSlot;
+import com.example.appointments.exception.SchedulingConflictException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Per-customer index of the time appointments occupy, used to reject double bookings and to list free slots.
+ * Each customer's intervals sit in a {@link TreeMap} keyed by start, guarded by a lock of the customer's own,
+ * so writes for different customers never wait for each other. The intervals of a customer never overlap,
+ * which leaves the one starting last before the new end as the only possible conflict: a single O(log n)
+ * lookup.
+ * <p>
+ * A customer's schedule is loaded from the database the first time it is needed. A write holds its interval
+ * from the check until its transaction completes: a commit keeps it and releases the interval it replaces, a
+ * rollback drops it. An interval is confirmed against the database before a write is rejected because of
+ * it, so an entry left behind by a delete that raced with the load cannot block the slot for good.
+ * <p>
+ * The index only sees the writes of this instance. A write it lets through is therefore checked once more
+ * with an overlap query in the writing transaction, which finds appointments written by other instances
+ * since the schedule was loaded; the index learns the interval it missed.
+ * <p>
+ * At most {@code appointments.conflict-index.maximum-customers} schedules are kept, each until it has not been
+ * used for {@code expire-after-access}; an evicted schedule is loaded again on its next use. Writes of a
+ * customer run under its lock in {@link CustomerWriteLocks}, so the intervals they hold while in flight are
+ * not what keeps them apart, and losing them with an evicted schedule lets no double booking through.
+ */
+@Component
+@Profile("!reactive")
+public class AppointmentConflictIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentConflictIndex.class);
+
+    private final AppointmentRepository appointmentRepository;
+    // Bounded, so looking up the free slots of arbitrary customer ids cannot grow the heap without limit
+    private final Cache<String, CustomerSchedule> schedules;
+    // Committed interval of every indexed appointment, so updates and deletes by id find the one to release
+    private final ConcurrentHashMap<Long, Slot> committedSlots = new ConcurrentHashMap<>();
+
+    public AppointmentConflictIndex(AppointmentRepository appointmentRepository,
+            ConflictIndexProperties properties) {
+        this.appointmentRepository = appointmentRepository;
+        this.schedules = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumCustomers())
+                .expireAfterAccess(properties.getExpireAfterAccess())
+                // Evicted schedules are forgotten on the calling thread, which never holds a schedule's lock
+                // while it uses the cache
+                .executor(Runnable::run)
+                .removalListener((String customerId, CustomerSchedule schedule, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        forget(schedule);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Checks {@code [startDate, endDate)} against the customer's other appointments and holds it until the
+     * current transaction completes. Call it before changing the appointment. Without an end date the
+     * appointment takes no time, and the interval it had is released on commit.
+     *
+     * @param appointment the appointment being created or updated; a new one is given its id on save, which
+     *                    is read once the transaction commits
+     * @throws SchedulingConflictException if the interval overlaps another appointment of the customer
+     */
+    public void reserve(Appointment appointment, String customerId, LocalDateTime startDate, LocalDateTime endDate) {
+        Long id = appointment.getId();
+        if (endDate == null) {
+            if (id != null) {
+                release(id);
+            }
+            return;
+        }
+
+        CustomerSchedule schedule = schedule(customerId);
+        Slot previous;
+        Slot held;
+        schedule.lock.lock();
+        try {
+            load(customerId, schedule);
+            Slot committed = id != null ? committedSlots.get(id) : null;
+            previous = committed != null && committed.customerId().equals(customerId) ? committed : null;
+            Slot conflict = confirmedOverlap(schedule, startDate, endDate, previous);
+            if (conflict == null) {
+                conflict = storedOverlap(schedule, customerId, startDate, endDate, id);
+            }
+            if (conflict != null) {
+                throw new SchedulingConflictException("Appointment from " + startDate + " to " + endDate
+                        + " overlaps " + (conflict.id() != null ? "appointment " + conflict.id() : "appointments")
+                        + " of customer " + customerId + " from " + conflict.start() + " to " + conflict.end());
+            }
+            // Overlapping old and new intervals are held as one, so the schedule stays free of overlaps
+            boolean merge = previous != null && previous.overlaps(startDate, endDate);
+            if (merge) {
+                schedule.slots.remove(previous.start(), previous);
+            } else {
+                previous = null;
+            }
+            held = merge
+                    ? new Slot(id, customerId, min(previous.start(), startDate), max(previous.end(), endDate), true)
+                    : new Slot(id, customerId, startDate, endDate, true);
+            schedule.put(held);
+        } finally {
+            schedule.lock.unlock();
+        }
+
+        Slot merged = previous;
+        onCompletion(committed -> {
+            if (committed) {
+                commit(schedule, held, new Slot(appointment.getId(), customerId, startDate, endDate, false));
+            } else {
+                replace(schedule, held, merged != null && committedSlots.get(merged.id()) == merged ? merged : null);
+            }
+        });
+    }
+
+    /**
+     * Releases the interval of a deleted appointment once the current transaction commits.
+     */
+    public void release(Long id) {
+        onCompletion(committed -> {
+            if (committed) {
+                Slot slot = committedSlots.remove(id);
+                if (slot != null) {
+                    remove(slot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Releases every committed interval of a customer whose appointments were all deleted. The schedule is
+     * loaded again on its next use, so appointments written without the customer's lock while the purge ran,
+     * such as bulk creates, are not forgotten.
+     */
+    public void releaseCustomer(String customerId) {
+        CustomerSchedule schedule = schedules.getIfPresent(customerId);
+        if (schedule == null) {
+            return;
+        }
+        schedule.lock.lock();
+        try {
+            schedule.slots.values().removeIf(slot -> {
+                if (slot.pending()) {
+                    return false;
+                }
+                if (slot.id() != null) {
+                    committedSlots.remove(slot.id(), slot);
+                }
+                return true;
+            });
+            schedule.loaded = false;
+        } finally {
+            schedule.lock.unlock();
+        }
+    }
+
+    /**
+     * @return the gaps of at least {@code minimum} between the customer's appointments in {@code [from, to)},
+     *         earliest first. Intervals still held by uncommitted writes count as taken.
+     */
+    public List<TimeSlot> freeSlots(String customerId, LocalDateTime from, LocalDateTime to, Duration minimum) {
+        CustomerSchedule schedule = schedule(customerId);
+        List<TimeSlot> free = new ArrayList<>();
+        schedule.lock.lock();
+        try {
+            load(customerId, schedule);
+            LocalDateTime cursor = from;
+            Map.Entry<LocalDateTime, Slot> before = schedule.slots.lowerEntry(from);
+            if (before != null && before.getValue().end().isAfter(cursor)) {
+                cursor = before.getValue().end();
+            }
+            for (Slot slot : schedule.slots.subMap(from, true, to, false).values()) {
+                addIfFits(free, cursor, slot.start(), minimum);
+                cursor = max(cursor, slot.end());
+            }
+            addIfFits(free, cursor, to, minimum);
+        } finally {
+            schedule.lock.unlock();
+        }
+        return free;
+    }
+
+    private CustomerSchedule schedule(String customerId) {
+        return schedules.get(customerId, key -> new CustomerSchedule());
+    }
+
+    // Drops the committed intervals of an evicted schedule, and the schedule's own contents in case a write
+    // still holds it
+    private void forget(CustomerSchedule schedule) {
+        schedule.lock.lock();
+        try {
+            schedule.slots.values().forEach(slot -> {
+                if (slot.id() != null) {
+                    committedSlots.remove(slot.id(), slot);
+                }
+            });
+            schedule.slots.clear();
+            schedule.loaded = false;
+        } finally {
+            schedule.lock.unlock();
+        }
+    }
+
+    // Called with the schedule locked, before anything else touches it
+    private void load(String customerId, CustomerSchedule schedule) {
+        if (schedule.loaded) {
+            return;
+        }
+        List<AppointmentInterval> intervals = new ArrayList<>(appointmentRepository.findIntervalsByCustomerId(customerId));
+        intervals.sort(Comparator.comparing(AppointmentInterval::getStartDate));
+        Slot last = null;
+        for (AppointmentInterval interval : intervals) {
+            Slot slot = new Slot(interval.getId(), customerId, interval.getStartDate(), interval.getEndDate(), false);
+            if (last != null && last.overlaps(slot.start(), slot.end())) {
+                // Written without a check, e.g. by the reactive profile: kept as one taken block without an id
+                log.warn("Appointments of customer {} overlap around {}", customerId, slot.start());
+                schedule.slots.remove(last.start(), last);
+                if (last.id() != null) {
+                    committedSlots.remove(last.id(), last);
+                }
+                slot = new Slot(null, customerId, last.start(), max(last.end(), slot.end()), false);
+            } else {
+                committedSlots.put(slot.id(), slot);
+            }
+            schedule.put(slot);
+            last = slot;
+        }
+        schedule.loaded = true;
+        log.debug("Loaded {} appointment intervals of customer {}", intervals.size(), customerId);
+    }
+
+    // Called with the schedule locked
+    private Slot confirmedOverlap(CustomerSchedule schedule, LocalDateTime start, LocalDateTime end, Slot own) {
+        Slot conflict = schedule.overlap(start, end, own);
+        while (conflict != null && isStale(conflict)) {
+            log.debug("Dropping stale interval of appointment {}", conflict.id());
+            schedule.slots.remove(conflict.start(), conflict);
+            committedSlots.remove(conflict.id(), conflict);
+            conflict = schedule.overlap(start, end, own);
+        }
+        return conflict;
+    }
+
+    // Called with the schedule locked, once the index found no overlap. Stored intervals do not overlap each
+    // other, so the one starting last before the end is the only one that can reach past the start; the one
+    // before it is read too in case that is the appointment being moved
+    private Slot storedOverlap(CustomerSchedule schedule, String customerId, LocalDateTime start, LocalDateTime end,
+            Long id) {
+        AppointmentInterval interval = appointmentRepository
+                .findLatestStartingBefore(customerId, end, Limit.of(id == null ? 1 : 2)).stream()
+                .filter(stored -> !stored.getId().equals(id))
+                .findFirst()
+                .orElse(null);
+        if (interval == null || !interval.getEndDate().isAfter(start)) {
+            return null;
+        }
+        Slot slot = new Slot(interval.getId(), customerId, interval.getStartDate(), interval.getEndDate(), false);
+        // Learned unless the index places the appointment elsewhere or the interval clashes with one it holds
+        if (!committedSlots.containsKey(slot.id()) && schedule.overlap(slot.start(), slot.end(), null) == null) {
+            log.debug("Learned interval of appointment {} written elsewhere", slot.id());
+            schedule.put(slot);
+            committedSlots.put(slot.id(), slot);
+        }
+        return slot;
+    }
+
+    // Held intervals belong to writes still in flight and cannot be checked against the database
+    private boolean isStale(Slot slot) {
+        if (slot.pending() || slot.id() == null) {
+            return false;
+        }
+        Optional<AppointmentInterval> current = appointmentRepository.findIntervalById(slot.id());
+        return current.isEmpty()
+                || !slot.customerId().equals(current.get().getCustomerId())
+                || !slot.start().equals(current.get().getStartDate())
+                || !slot.end().equals(current.get().getEndDate());
+    }
+
+    // Keeps the committed interval, unless an eviction dropped the held one in the meantime
+    private void commit(CustomerSchedule schedule, Slot held, Slot slot) {
+        Slot replaced;
+        schedule.lock.lock();
+        try {
+            if (!schedule.slots.remove(held.start(), held)) {
+                return;
+            }
+            schedule.put(slot);
+            replaced = committedSlots.put(slot.id(), slot);
+        } finally {
+            schedule.lock.unlock();
+        }
+        if (replaced != null) {
+            remove(replaced);
+        }
+    }
+
+    private static void replace(CustomerSchedule schedule, Slot from, Slot to) {
+        schedule.lock.lock();
+        try {
+            // A purge may have dropped the held interval in the meantime
+            if (schedule.slots.remove(from.start(), from) && to != null) {
+                schedule.put(to);
+            }
+        } finally {
+            schedule.lock.unlock();
+        }
+    }
+
+    private void remove(Slot slot) {
+        CustomerSchedule schedule = schedules.getIfPresent(slot.customerId());
+        if (schedule == null) {
+            return;
+        }
+        schedule.lock.lock();
+        try {
+            schedule.slots.remove(slot.start(), slot);
+        } finally {
+            schedule.lock.unlock();
+        }
+    }
+
+    private static void addIfFits(List<TimeSlot> free, LocalDateTime start, LocalDateTime end, Duration minimum) {
+        if (start.isBefore(end) && Duration.between(start, end).compareTo(minimum) >= 0) {
+            free.add(new TimeSlot(start, end));
+        }
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static void onCompletion(Consumer<Boolean> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    action.accept(status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            action.accept(true);
+        }
+    }
+
+    /**
+     * @param pending whether the interval is held by a write that has not committed yet
+     */
+    private record Slot(Long id, String customerId, LocalDateTime start, LocalDateTime end, boolean pending) {
+
+        boolean overlaps(LocalDateTime otherStart, LocalDateTime otherEnd) {
+            return start.isBefore(otherEnd) && otherStart.isBefore(end);
+        }
+    }
+
+    private static final class CustomerSchedule {
+
+        // Not synchronized: a virtual thread waiting on a monitor would pin its carrier during the load query
+        final ReentrantLock lock = new ReentrantLock();
+        final TreeMap<LocalDateTime, Slot> slots = new TreeMap<>();
+        boolean loaded;
+
+        void put(Slot slot) {
+            slots.put(slot.start(), slot);
+        }
+
+        /**
+         * @return the interval overlapping {@code [start, end)}, ignoring {@code own}, or {@code null}. With no
+         *         overlaps among the others, only the one starting last before {@code end} can overlap.
+         */
+        Slot overlap(LocalDateTime start, LocalDateTime end, Slot own) {
+            Map.Entry<LocalDateTime, Slot> before = slots.lowerEntry(end);
+            if (before != null && before.getValue() == own) {
+                before = slots.lowerEntry(own.start());
+            }
+            return before != null && before.getValue().end().isAfter(start) ? before.getValue() : null;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.exception.InvalidPageRequestException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.model.AppointmentRecord;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in the {@code (startDate, id)} ordering of appointments.
+ * Clients only ever see the encoded form, so the layout can change without breaking them.
+ */
+@Value
+public class AppointmentCursor {
+
+    private static final char SEPARATOR = '|';
+
+    LocalDateTime startDate;
+    Long id;
+
+    public static AppointmentCursor after(Appointment appointment) {
+        return new AppointmentCursor(appointment.getStartDate(), appointment.getId());
+    }
+
+    public static AppointmentCursor after(AppointmentResponse appointment) {
+        return new AppointmentCursor(appointment.getStartDate(), appointment.getId());
+    }
+
+    public static AppointmentCursor after(AppointmentRecord appointment) {
+        return new AppointmentCursor(appointment.getStartDate(), appointment.getId());
+    }
+
+    public String encode() {
+        String raw = startDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static AppointmentCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new InvalidPageRequestException("Invalid cursor: " + token);
+            }
+            return new AppointmentCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidPageRequestException("Invalid cursor: " + token);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.CustomerVersionSummary;
+import com.example.appointments.exception.PreconditionFailedException;
+
+import java.util.List;
+
+/**
+ * Entity tags for appointment resources. A single appointment is tagged with its {@code @Version};
+ * a customer's list is tagged with its {@link CustomerVersionSummary}, which can be computed either
+ * in SQL or from the list itself and yields the same tag for the same rows.
+ * <p>
+ * List tags are weak: the same rows are served as JSON, CBOR, Smile or Protobuf, compressed or not, and
+ * Tomcat does not compress responses carrying a strong tag.
+ */
+public final class AppointmentETags {
+
+    // Both also spelled out in the summary queries of the repositories
+    private static final long FINGERPRINT_MODULUS = 2_147_483_647L;
+    private static final long ID_MULTIPLIER = 65_599L;
+
+    private AppointmentETags() {
+    }
+
+    public static String of(AppointmentResponse appointment) {
+        return quote(String.valueOf(appointment.getVersion()));
+    }
+
+    public static String of(CustomerVersionSummary summary) {
+        return "W/" + quote(summary.getCount() + "-" + summary.getFingerprint() + "-" + summary.getMaxId());
+    }
+
+    public static String of(List<AppointmentResponse> appointments) {
+        long fingerprint = 0;
+        long maxId = 0;
+        for (AppointmentResponse appointment : appointments) {
+            fingerprint += fingerprint(appointment.getId(), appointment.getVersion());
+            maxId = Math.max(maxId, appointment.getId());
+        }
+        return of(new CustomerVersionSummary(appointments.size(), fingerprint, maxId));
+    }
+
+    /**
+     * Term one appointment adds to the fingerprint of its customer's list. Ids less than 2<sup>31</sup> - 1
+     * apart never give the same term for the same version, so an appointment leaving the list and another one
+     * entering it changes the sum even when their versions match. Each term is below 2<sup>31</sup>, so the
+     * sum cannot overflow.
+     */
+    public static long fingerprint(long id, long version) {
+        return Math.floorMod(Math.floorMod(id, FINGERPRINT_MODULUS) * ID_MULTIPLIER + version, FINGERPRINT_MODULUS);
+    }
+
+    /**
+     * Parses an {@code If-Match} header value into the version it requires.
+     *
+     * @return the expected version, or {@code null} when the header is absent or {@code *}
+     * @throws PreconditionFailedException when the value cannot match any version, e.g. a weak tag
+     */
+    public static Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("If-Match does not match the current version");
+        }
+        try {
+            return Long.valueOf(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("If-Match does not match the current version");
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+}
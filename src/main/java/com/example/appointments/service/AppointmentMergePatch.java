@@ -0,0 +1,52 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.exception.InvalidPatchException;
+import com.example.appointments.model.Appointment;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Set;
+
+/**
+ * Applies a JSON Merge Patch (RFC 7396) to an appointment. Members present in the patch replace the current
+ * values, {@code null} clears them and absent members are kept; the result is validated like a full
+ * {@link AppointmentRequest}.
+ */
+@Component
+@RequiredArgsConstructor
+public class AppointmentMergePatch {
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    public AppointmentRequest apply(Appointment current, JsonNode patch) {
+        if (patch == null || !patch.isObject()) {
+            throw new InvalidPatchException("Merge patch must be a JSON object");
+        }
+        AppointmentRequest merged = new AppointmentRequest(current.getTitle(), current.getNotes(),
+                current.getCategory(), current.getStartDate(), current.getEndDate(), current.getDone(),
+                current.getCustomerId());
+        try {
+            objectMapper.readerForUpdating(merged).readValue(patch);
+        } catch (JsonProcessingException e) {
+            throw new InvalidPatchException("Invalid merge patch: " + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        Set<ConstraintViolation<AppointmentRequest>> violations = validator.validate(merged);
+        if (!violations.isEmpty()) {
+            throw new ConstraintViolationException(violations);
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ChangeStreamProperties;
+import com.example.appointments.model.AppointmentChange;
+import com.example.appointments.repository.AppointmentChangeRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Transactional outbox for appointment changes. Writes record their changes as {@link AppointmentChange} rows
+ * persisted in their own transaction, so the rows commit or roll back with the change and are inserted in the
+ * same flush, batched like any other insert.
+ * <p>
+ * Rows are inserted without a sequence number. The {@link #relay()} numbers the committed ones afterwards and
+ * then publishes the highest number as the {@link #horizon()} readers stop at. A change is only numbered once
+ * it is visible, so numbers follow commit order and a reader never passes a change that commits later. Every
+ * instance runs the relay, after each of its own commits and every {@code appointments.changes.poll-interval}
+ * to pick up the commits of the others, and the runs take turns on a row lock, so the numbers are unique
+ * however many instances write the table.
+ * <p>
+ * Sharded, every shard has a table of its own, written in the transactions of its shard. The relay row is on
+ * the first shard and a run numbers the shards one after the other, so numbers are unique across shards and
+ * readers merge the tables by number.
+ */
+@Component
+@Profile("!reactive")
+public class AppointmentOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentOutbox.class);
+
+    private final EntityManager entityManager;
+    private final AppointmentChangeRepository changeRepository;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate newTransaction;
+    private final ShardRouter shardRouter;
+    private final Limit relayBatch;
+    private final Duration pollInterval;
+    private final ScheduledExecutorService retention;
+    // Not synchronized: change streams on virtual threads wait on its conditions
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+    private final Condition requested = lock.newCondition();
+    // Negative until the first relay run; guarded by lock
+    private long horizon = -1;
+    // Guarded by lock
+    private boolean relayRequested;
+    private volatile Thread relayer;
+
+    public AppointmentOutbox(EntityManager entityManager, AppointmentChangeRepository changeRepository,
+            PlatformTransactionManager transactionManager, ShardRouter shardRouter,
+            ChangeStreamProperties properties) {
+        Duration keep = properties.getRetention();
+        if (keep.toMillis() < 1) {
+            throw new IllegalArgumentException("appointments.changes.retention must be at least 1ms");
+        }
+        this.entityManager = entityManager;
+        this.changeRepository = changeRepository;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.shardRouter = shardRouter;
+        this.relayBatch = Limit.of(properties.getBatchSize());
+        this.pollInterval = properties.getPollInterval();
+        long period = Math.min(keep.toMillis(), Duration.ofHours(1).toMillis());
+        this.retention = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "appointments-outbox-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        retention.scheduleWithFixedDelay(() -> deleteOlderThan(keep), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Numbers what was committed while the instance was down and starts relaying.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void warm() {
+        log.info("Appointment change outbox starts after sequence number {}", relay());
+        if (relayer == null) {
+            relayer = Thread.ofPlatform().name("appointments-outbox-relay").daemon().start(this::relayUntilClosed);
+        }
+    }
+
+    /**
+     * Records a change in the current transaction, or in a transaction of its own when there is none.
+     *
+     * @param appointmentId the changed appointment, or {@code null} for {@link AppointmentChange.Type#PURGED}
+     */
+    public void record(AppointmentChange.Type type, Long appointmentId, String customerId) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            transaction.executeWithoutResult(status -> record(type, appointmentId, customerId));
+            return;
+        }
+        entityManager.persist(new AppointmentChange(null, null, type, appointmentId, customerId,
+                LocalDateTime.now()));
+        // Once per transaction: its commit has the relay number the changes right away
+        if (!TransactionSynchronizationManager.hasResource(this)) {
+            TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+            TransactionSynchronizationManager.registerSynchronization(new RelayOnCommit());
+        }
+    }
+
+    /**
+     * @return the highest sequence number below which every change is committed and numbered; later commits
+     *         only get higher numbers
+     */
+    public long horizon() {
+        lock.lock();
+        try {
+            if (horizon >= 0) {
+                return horizon;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return relay();
+    }
+
+    /**
+     * Waits until the horizon moves past {@code after}, for at most {@code timeout}.
+     *
+     * @return the horizon, which is still {@code after} or lower if the wait timed out
+     */
+    public long awaitHorizonAfter(long after, Duration timeout) throws InterruptedException {
+        long current = horizon();
+        if (current > after) {
+            return current;
+        }
+        lock.lock();
+        try {
+            long remaining = timeout.toNanos();
+            while (horizon <= after && remaining > 0) {
+                remaining = advanced.awaitNanos(remaining);
+            }
+            return horizon;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Numbers the changes committed since the last run, up to {@code appointments.changes.batch-size} per
+     * shard, and publishes the highest number. Runs of all instances take turns on the relay row's lock, which
+     * is held until the numbers are published: a reader that sees a number as published also sees every change
+     * numbered up to it.
+     *
+     * @return the horizon after the run
+     */
+    public long relay() {
+        AtomicLong numbered = new AtomicLong();
+        AtomicBoolean more = new AtomicBoolean();
+        long published = shardRouter.onFirstShard(() -> transaction.execute(status -> {
+            long last = changeRepository.lockRelay();
+            // A run that failed between numbering changes and publishing them left numbers above the published one
+            numbered.set(Math.max(last, shardRouter.onEveryShard(changeRepository::findMaxSeq).stream()
+                    .mapToLong(Long::longValue)
+                    .max()
+                    .orElse(0)));
+            // Numbered and committed shard by shard before the number is published; the updates are batched
+            shardRouter.onEachShardInTurn(() -> newTransaction.executeWithoutResult(shardStatus -> {
+                List<AppointmentChange> changes = changeRepository.findUnnumbered(relayBatch);
+                changes.forEach(change -> change.setSeq(numbered.incrementAndGet()));
+                if (changes.size() == relayBatch.max()) {
+                    more.set(true);
+                }
+            }));
+            if (numbered.get() > last) {
+                changeRepository.publishRelayed(numbered.get());
+            }
+            return numbered.get();
+        }));
+        lock.lock();
+        try {
+            if (published > horizon) {
+                horizon = published;
+                advanced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (more.get()) {
+            requestRelay();
+        }
+        return published;
+    }
+
+    /**
+     * Deletes changes up to the newest published one recorded before {@code now - keep}. Numbers follow commit
+     * order, not the time a change was recorded, so deleting by time could leave holes in the numbering; up to
+     * a number, the deleted changes stay a prefix of it, which readers rely on to tell what was deleted. Older
+     * changes numbered above it go with a later run.
+     *
+     * @return the number of changes deleted
+     */
+    public int deleteOlderThan(Duration keep) {
+        LocalDateTime before = LocalDateTime.now().minus(keep);
+        long newest = shardRouter.onEveryShard(() -> changeRepository.findMaxSeqChangedBefore(before)).stream()
+                .mapToLong(Long::longValue)
+                .max()
+                .orElse(0);
+        long upTo = Math.min(newest, horizon());
+        if (upTo <= 0) {
+            return 0;
+        }
+        int deleted = shardRouter.onEveryShard(() -> changeRepository.deleteUpTo(upTo)).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        if (deleted > 0) {
+            log.info("Deleted {} appointment changes older than {}", deleted, keep);
+        }
+        return deleted;
+    }
+
+    @PreDestroy
+    public void close() {
+        retention.shutdownNow();
+        Thread thread = relayer;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void requestRelay() {
+        lock.lock();
+        try {
+            relayRequested = true;
+            requested.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void relayUntilClosed() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                lock.lock();
+                try {
+                    long remaining = pollInterval.toNanos();
+                    while (!relayRequested && remaining > 0) {
+                        remaining = requested.awaitNanos(remaining);
+                    }
+                    relayRequested = false;
+                } finally {
+                    lock.unlock();
+                }
+                relay();
+            } catch (InterruptedException ex) {
+                return;
+            } catch (RuntimeException ex) {
+                log.warn("Relaying appointment changes failed, retrying in {}", pollInterval, ex);
+            }
+        }
+    }
+
+    /**
+     * Has the relay run once the transaction commits. The marker is unbound while the transaction is
+     * suspended, so a nested transaction registers its own.
+     */
+    private final class RelayOnCommit implements TransactionSynchronization {
+
+        @Override
+        public void suspend() {
+            TransactionSynchronizationManager.unbindResource(AppointmentOutbox.this);
+        }
+
+        @Override
+        public void resume() {
+            TransactionSynchronizationManager.bindResource(AppointmentOutbox.this, Boolean.TRUE);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(AppointmentOutbox.this);
+            if (status == STATUS_COMMITTED) {
+                requestRelay();
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.ScheduleEntry;
+import com.example.appointments.repository.AppointmentRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * In-process index of upcoming appointment start times, answering "what starts in the next N minutes" across
+ * all customers without touching the table. Appointments are bucketed by start second in a
+ * {@link ConcurrentSkipListMap}; each bucket is a sorted {@code long[]} of ids that is replaced, never
+ * modified, so lookups need no locking.
+ * <p>
+ * Only future appointments are kept and past buckets are dropped as lookups move forward. Writes are applied
+ * after commit. Deletes that do not know the start date are not applied at all: callers resolve the ids and
+ * drop the ones that no longer exist with {@link #removeFromWindow}.
+ */
+@Component
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class AppointmentScheduleIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentScheduleIndex.class);
+    private static final long[] NO_IDS = new long[0];
+
+    private final AppointmentRepository appointmentRepository;
+    private final ShardRouter shardRouter;
+    private final ConcurrentSkipListMap<Long, long[]> buckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * Loads every appointment that has not started yet. Rows arrive ordered by start date, so each bucket is
+     * built once instead of growing one id at a time. Shards are loaded at the same time; buckets they share
+     * are merged.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warm() {
+        long started = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int loaded = shardRouter.readEveryShard(() -> load(now)).stream().mapToInt(Integer::intValue).sum();
+        log.info("Schedule index warmed with {} upcoming appointments in {} ms", loaded,
+                (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Runs in a read-only transaction, which the stream needs
+    private int load(LocalDateTime from) {
+        long[] buffer = new long[16];
+        int size = 0;
+        long bucket = Long.MIN_VALUE;
+        int loaded = 0;
+        try (Stream<ScheduleEntry> entries = appointmentRepository.streamScheduleFrom(from)) {
+            for (Iterator<ScheduleEntry> it = entries.iterator(); it.hasNext(); loaded++) {
+                ScheduleEntry entry = it.next();
+                long key = key(entry.getStartDate());
+                if (key != bucket) {
+                    putAll(bucket, buffer, size);
+                    bucket = key;
+                    size = 0;
+                }
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, size * 2);
+                }
+                buffer[size++] = entry.getId();
+            }
+        }
+        putAll(bucket, buffer, size);
+        return loaded;
+    }
+
+    public void add(long id, LocalDateTime startDate) {
+        afterCommit(() -> insert(id, key(startDate)));
+    }
+
+    public void move(long id, LocalDateTime previousStartDate, LocalDateTime startDate) {
+        if (previousStartDate.equals(startDate)) {
+            return;
+        }
+        afterCommit(() -> {
+            delete(id, key(previousStartDate));
+            insert(id, key(startDate));
+        });
+    }
+
+    /**
+     * @return ids of the appointments starting in {@code [from, to)}, earliest first, at most {@code limit}
+     */
+    public long[] idsStartingBetween(LocalDateTime from, LocalDateTime to, int limit) {
+        long[] result = NO_IDS;
+        int size = 0;
+        for (long[] ids : buckets.subMap(key(from), true, key(to), false).values()) {
+            int take = Math.min(ids.length, limit - size);
+            if (size + take > result.length) {
+                result = Arrays.copyOf(result, Math.max(size + take, result.length * 2));
+            }
+            System.arraycopy(ids, 0, result, size, take);
+            size += take;
+            if (size == limit) {
+                break;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Drops ids found to be stale from the buckets in {@code [from, to)}.
+     */
+    public void removeFromWindow(Collection<Long> ids, LocalDateTime from, LocalDateTime to) {
+        for (Long bucket : buckets.subMap(key(from), true, key(to), false).keySet()) {
+            for (Long id : ids) {
+                delete(id, bucket);
+            }
+        }
+    }
+
+    /**
+     * Drops every bucket before {@code time}; those appointments are no longer upcoming.
+     */
+    public void removeBefore(LocalDateTime time) {
+        buckets.headMap(key(time)).clear();
+    }
+
+    /**
+     * @return number of indexed appointments, counted bucket by bucket
+     */
+    public long size() {
+        long size = 0;
+        for (long[] ids : buckets.values()) {
+            size += ids.length;
+        }
+        return size;
+    }
+
+    private void putAll(long bucket, long[] buffer, int size) {
+        if (size == 0) {
+            return;
+        }
+        long[] ids = Arrays.copyOf(buffer, size);
+        Arrays.sort(ids);
+        buckets.merge(bucket, ids, AppointmentScheduleIndex::union);
+    }
+
+    private void insert(long id, long bucket) {
+        buckets.compute(bucket, (key, ids) -> {
+            if (ids == null) {
+                return new long[] {id};
+            }
+            int position = Arrays.binarySearch(ids, id);
+            if (position >= 0) {
+                return ids;
+            }
+            int insertAt = -position - 1;
+            long[] grown = new long[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, insertAt);
+            grown[insertAt] = id;
+            System.arraycopy(ids, insertAt, grown, insertAt + 1, ids.length - insertAt);
+            return grown;
+        });
+    }
+
+    private void delete(long id, long bucket) {
+        // Returning null removes the bucket once it is empty
+        buckets.computeIfPresent(bucket, (key, ids) -> {
+            int position = Arrays.binarySearch(ids, id);
+            if (position < 0) {
+                return ids;
+            }
+            if (ids.length == 1) {
+                return null;
+            }
+            long[] shrunk = new long[ids.length - 1];
+            System.arraycopy(ids, 0, shrunk, 0, position);
+            System.arraycopy(ids, position + 1, shrunk, position, ids.length - position - 1);
+            return shrunk;
+        });
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] merged = new long[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length || j < b.length) {
+            long next = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (size == 0 || merged[size - 1] != next) {
+                merged[size++] = next;
+            }
+        }
+        return size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+
+    // Local date-times carry no zone; UTC only turns them into an ordered number
+    private static long key(LocalDateTime startDate) {
+        return startDate.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -1,130 +1,810 @@
 package com.example.appointments.service;
 
+import com.example.appointments.config.CacheConfig;
+import com.example.appointments.config.PaginationProperties;
+import com.example.appointments.config.PurgeProperties;
+import com.example.appointments.config.ScheduleIndexProperties;
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.dto.AppointmentGroupCount;
+import com.example.appointments.dto.AppointmentPage;
 import com.example.appointments.dto.AppointmentRequest;
 import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.AppointmentStats;
+import com.example.appointments.dto.TimeSlot;
 import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.exception.CrossShardMoveException;
+import com.example.appointments.exception.InvalidDateRangeException;
+import com.example.appointments.exception.InvalidFieldsException;
+import com.example.appointments.exception.InvalidPageRequestException;
+import com.example.appointments.exception.PreconditionFailedException;
 import com.example.appointments.model.Appointment;
+import com.example.appointments.model.AppointmentChange;
 import com.example.appointments.repository.AppointmentRepository;
+import com.example.appointments.repository.AppointmentSpecifications;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.annotation.Timed;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
+@Profile("!reactive")
+@Timed(value = "appointments.service", description = "Appointment service calls")
 @RequiredArgsConstructor
 public class AppointmentService {
 
     private static final Logger log = LoggerFactory.getLogger(AppointmentService.class);
+    private static final List<String> SORTABLE_PROPERTIES = List.of("startDate", "title", "category", "done", "id");
+    private static final Sort DEFAULT_SORT = Sort.by("startDate", "id");
+    private static final Comparator<Appointment> PAGE_ORDER =
+            Comparator.comparing(Appointment::getStartDate).thenComparing(Appointment::getId);
+    private static final Comparator<AppointmentResponse> START_ORDER =
+            Comparator.comparing(AppointmentResponse::getStartDate).thenComparing(AppointmentResponse::getId);
     private final AppointmentRepository appointmentRepository;
+    private final PaginationProperties paginationProperties;
+    private final PurgeProperties purgeProperties;
+    private final AppointmentCacheEvictor cacheEvictor;
+    private final AppointmentMergePatch mergePatch;
+    private final AppointmentScheduleIndex scheduleIndex;
+    private final ScheduleIndexProperties scheduleIndexProperties;
+    private final AppointmentConflictIndex conflictIndex;
+    private final CustomerWriteLocks customerLocks;
+    private final TransactionOperations transactionOperations;
+    private final AppointmentWriteBehind writeBehind;
+    private final AppointmentOutbox outbox;
+    private final ReplicaReads replicaReads;
+    private final ShardRouter shardRouter;
 
+    /**
+     * Creates the appointment on the customer's lock. The INSERT is only flushed on commit, so an appointment
+     * rejected for overlapping another one of the customer is never written.
+     */
     public AppointmentResponse createAppointment(AppointmentRequest request) {
-        log.info("Creating appointment for customer {}", request.getCustomerId());
+        log.debug("Creating appointment for customer {}", request.getCustomerId());
 
-        Appointment appointment = new Appointment();
-        appointment.setTitle(request.getTitle());
-        appointment.setNotes(request.getNotes());
-        appointment.setCategory(request.getCategory());
-        appointment.setStartDate(request.getStartDate());
-        appointment.setDone(request.getDone() != null ? request.getDone() : false);
-        appointment.setCustomerId(request.getCustomerId());
+        return customerLocks.call(request.getCustomerId(), () -> shardRouter.onCustomer(request.getCustomerId(),
+                () -> transactionOperations.execute(status -> {
+            Appointment appointment = new Appointment();
+            conflictIndex.reserve(appointment, request.getCustomerId(), request.getStartDate(),
+                    request.getEndDate());
+            appointment.setTitle(request.getTitle());
+            appointment.setNotes(request.getNotes());
+            appointment.setCategory(request.getCategory());
+            appointment.setStartDate(request.getStartDate());
+            appointment.setEndDate(request.getEndDate());
+            appointment.setDone(request.getDone() != null ? request.getDone() : false);
+            appointment.setCustomerId(request.getCustomerId());
 
-        Appointment saved = appointmentRepository.save(appointment);
-        log.info("Created appointment with ID {}", saved.getId());
+            Appointment saved = appointmentRepository.save(appointment);
+            cacheEvictor.evictCreated(saved.getCustomerId(), List.of(saved.getId()));
+            scheduleIndex.add(saved.getId(), saved.getStartDate());
+            outbox.record(AppointmentChange.Type.CREATED, saved.getId(), saved.getCustomerId());
+            log.info("Created appointment with ID {}", saved.getId());
 
-        return AppointmentResponse.fromEntity(saved);
+            return AppointmentResponse.fromEntity(saved);
+        })));
     }
 
-    public List<AppointmentResponse> getAllAppointments() {
-        log.debug("Retrieving all appointments");
-        return appointmentRepository.findAll().stream()
+    /**
+     * Returns the first {@code appointments.pagination.list-limit} appointments in {@code (startDate, id)}
+     * order, the same order as {@link #getAppointmentsPage}, so a longer list continues there. Served by a
+     * replica when there are any, so it may miss the latest writes.
+     *
+     * @param includeNotes {@code false} to leave the notes column out of the query; {@code notes} is then
+     *                     {@code null} in every response
+     * @return the appointments, with the cursor of the page after them if there are more
+     */
+    public AppointmentPage getAllAppointments(boolean includeNotes) {
+        int listLimit = paginationProperties.getListLimit();
+        log.debug("Retrieving the first {} appointments", listLimit);
+        // Read one extra row to know whether there are more without a count query
+        Limit fetchLimit = Limit.of(listLimit + 1);
+        List<AppointmentResponse> rows = ShardRouter.merge(shardRouter.readEveryShard(() -> replicaReads.read(
+                () -> includeNotes
+                        ? appointmentRepository.findFirstResponses(fetchLimit)
+                        : appointmentRepository.findFirstResponsesWithoutNotes(fetchLimit))),
+                START_ORDER, listLimit + 1);
+        if (rows.size() <= listLimit) {
+            return new AppointmentPage(rows, null);
+        }
+        rows = rows.subList(0, listLimit);
+        return new AppointmentPage(rows, AppointmentCursor.after(rows.get(listLimit - 1)).encode());
+    }
+
+    /**
+     * Returns the appointments matching the filter, sorted in the database. Unsorted requests are ordered by
+     * {@code (startDate, id)}.
+     */
+    public List<AppointmentResponse> findAppointments(AppointmentFilter filter, Sort sort, boolean includeNotes) {
+        log.debug("Retrieving appointments matching {} sorted by {}", filter, sort);
+        validateRange(filter);
+        Sort order = resolveSort(sort);
+        return ShardRouter.merge(readMatching(filter, () -> appointmentRepository.findResponses(
+                AppointmentSpecifications.matching(filter), order, includeNotes)), comparator(order));
+    }
+
+    /**
+     * Counts the appointments matching the filter per category, completion status and start day. The counts
+     * are grouped in SQL, so only one row per group is read.
+     */
+    public AppointmentStats getStats(AppointmentFilter filter) {
+        log.debug("Computing appointment stats for {}", filter);
+        validateRange(filter);
+        List<AppointmentGroupCount> groups = ShardRouter.concat(readMatching(filter,
+                () -> appointmentRepository.countByCategoryDoneAndDay(AppointmentSpecifications.matching(filter))));
+
+        long total = 0;
+        Map<String, Long> byCategory = new TreeMap<>();
+        Map<String, Long> byStatus = new TreeMap<>(Map.of("done", 0L, "pending", 0L));
+        Map<LocalDate, Long> byDay = new TreeMap<>();
+        for (AppointmentGroupCount group : groups) {
+            total += group.getCount();
+            byCategory.merge(group.getCategory(), group.getCount(), Long::sum);
+            byStatus.merge(group.isDone() ? "done" : "pending", group.getCount(), Long::sum);
+            byDay.merge(group.getDay(), group.getCount(), Long::sum);
+        }
+        return new AppointmentStats(total, byCategory, byStatus, byDay);
+    }
+
+    // All appointments of a customer are on its shard; any other filter has to read every shard
+    private <T> List<List<T>> readMatching(AppointmentFilter filter, Supplier<List<T>> read) {
+        if (filter.getCustomerId() != null) {
+            return List.of(shardRouter.readCustomer(filter.getCustomerId(), read));
+        }
+        return shardRouter.readEveryShard(read);
+    }
+
+    private static void validateRange(AppointmentFilter filter) {
+        if (filter.getFrom() != null && filter.getTo() != null && !filter.getFrom().isBefore(filter.getTo())) {
+            throw new InvalidDateRangeException("'from' must be before 'to'");
+        }
+    }
+
+    private static Sort resolveSort(Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return DEFAULT_SORT;
+        }
+        for (Sort.Order order : sort) {
+            if (!SORTABLE_PROPERTIES.contains(order.getProperty())) {
+                throw new InvalidFieldsException("Cannot sort by '" + order.getProperty() + "', expected any of "
+                        + SORTABLE_PROPERTIES);
+            }
+        }
+        // The id tie-breaker keeps the order stable between requests
+        return sort.getOrderFor("id") != null ? sort : sort.and(Sort.by("id"));
+    }
+
+    // Sorts the merged results of several shards the way each shard sorted its own
+    private static Comparator<AppointmentResponse> comparator(Sort sort) {
+        Comparator<AppointmentResponse> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<AppointmentResponse> next = switch (order.getProperty()) {
+                case "startDate" -> Comparator.comparing(AppointmentResponse::getStartDate);
+                case "title" -> Comparator.comparing(AppointmentResponse::getTitle);
+                case "category" -> Comparator.comparing(AppointmentResponse::getCategory);
+                case "done" -> Comparator.comparing(AppointmentResponse::getDone);
+                default -> Comparator.comparing(AppointmentResponse::getId);
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator;
+    }
+
+    /**
+     * Returns one keyset page of appointments ordered by {@code (startDate, id)}.
+     * Pass the {@code nextCursor} of the previous page to continue; {@code null} starts from the beginning.
+     * Sharded, every shard reads its own first rows after the cursor and the page takes the first of them all,
+     * so the cursor works across shards unchanged.
+     */
+    public AppointmentPage getAppointmentsPage(String cursor, Integer limit) {
+        int pageSize = resolveLimit(limit);
+        log.debug("Retrieving appointments page of size {}", pageSize);
+
+        // Read one extra row to know whether another page exists without a count query
+        Limit fetchLimit = Limit.of(pageSize + 1);
+        AppointmentCursor after = cursor == null || cursor.isBlank() ? null : AppointmentCursor.decode(cursor);
+        List<Appointment> rows = ShardRouter.merge(shardRouter.readEveryShard(() -> after == null
+                ? appointmentRepository.findFirstPage(fetchLimit)
+                : appointmentRepository.findPageAfter(after.getStartDate(), after.getId(), fetchLimit)),
+                PAGE_ORDER, pageSize + 1);
+
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = AppointmentCursor.after(rows.get(pageSize - 1)).encode();
+        }
+
+        List<AppointmentResponse> items = rows.stream()
                 .map(AppointmentResponse::fromEntity)
                 .collect(Collectors.toList());
+        return new AppointmentPage(items, nextCursor);
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return paginationProperties.getDefaultLimit();
+        }
+        if (limit < 1) {
+            throw new InvalidPageRequestException("Limit must be at least 1");
+        }
+        return Math.min(limit, paginationProperties.getMaxLimit());
     }
 
+    @Cacheable(cacheNames = CacheConfig.APPOINTMENTS, key = "#id")
     public AppointmentResponse getAppointmentById(Long id) {
         log.debug("Retrieving appointment with ID {}", id);
-        Appointment appointment = appointmentRepository.findById(id)
+        // Every shard at once: the id does not tell the shard, as customers can move between shards
+        Appointment appointment = shardRouter.onEveryShard(() -> replicaReads.readAppointment(id,
+                        () -> appointmentRepository.findById(id))).stream()
+                .flatMap(Optional::stream)
+                .findFirst()
                 .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
         return AppointmentResponse.fromEntity(appointment);
     }
 
+    @Cacheable(cacheNames = CacheConfig.CUSTOMER_APPOINTMENTS, key = "#customerId")
     public List<AppointmentResponse> getAppointmentsByCustomerId(String customerId) {
-        log.info("Retrieving appointments for customer {}", customerId);
-        return appointmentRepository.findByCustomerId(customerId).stream()
+        log.debug("Retrieving appointments for customer {}", customerId);
+        // Unmodifiable because the same instance is handed to every caller while it is cached. No transaction:
+        // the projection needs none, and one would take a connection even when the cache answers.
+        return List.copyOf(shardRouter.onCustomer(customerId, () -> replicaReads.readCustomer(customerId,
+                () -> appointmentRepository.findResponsesByCustomerId(customerId))));
+    }
+
+    /**
+     * Returns the appointments of all customers starting within the given time from now, earliest first. The
+     * ids come from the in-memory schedule index; only their rows are read, by primary key.
+     */
+    public List<AppointmentResponse> getUpcomingAcrossCustomers(Duration within) {
+        if (within.isNegative() || within.isZero() || within.compareTo(scheduleIndexProperties.getMaxWithin()) > 0) {
+            throw new InvalidDateRangeException("'within' must be positive and at most "
+                    + scheduleIndexProperties.getMaxWithin());
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(within);
+        log.debug("Retrieving appointments of all customers starting before {}", until);
+
+        scheduleIndex.removeBefore(now);
+        long[] ids = scheduleIndex.idsStartingBetween(now, until, scheduleIndexProperties.getMaxResults());
+        if (ids.length == 0) {
+            return List.of();
+        }
+        List<Long> idList = Arrays.stream(ids).boxed().toList();
+        List<AppointmentResponse> found = ShardRouter.merge(
+                shardRouter.onEveryShard(() -> appointmentRepository.findResponsesByIdIn(idList)), START_ORDER);
+        List<AppointmentResponse> upcoming = found.stream()
+                .filter(appointment -> !appointment.getStartDate().isBefore(now)
+                        && appointment.getStartDate().isBefore(until))
+                .toList();
+
+        if (upcoming.size() < ids.length) {
+            // Deleted appointments, or a write that was rolled back: drop them and re-index what still exists
+            Set<Long> stale = Arrays.stream(ids).boxed().collect(Collectors.toSet());
+            upcoming.forEach(appointment -> stale.remove(appointment.getId()));
+            scheduleIndex.removeFromWindow(stale, now, until);
+            found.stream()
+                    .filter(appointment -> stale.contains(appointment.getId()))
+                    .forEach(appointment -> scheduleIndex.add(appointment.getId(), appointment.getStartDate()));
+        }
+        return upcoming;
+    }
+
+    /**
+     * Returns the ETag of a customer's appointment list from an aggregate query, so conditional requests
+     * can be answered without loading or serializing the rows.
+     */
+    @Cacheable(cacheNames = CacheConfig.CUSTOMER_VERSIONS, key = "#customerId")
+    public String getCustomerAppointmentsETag(String customerId) {
+        log.debug("Computing appointments ETag for customer {}", customerId);
+        // Routed like the list, so after a write both come from the primary
+        return AppointmentETags.of(shardRouter.onCustomer(customerId, () -> replicaReads.readCustomer(customerId,
+                () -> appointmentRepository.summarizeVersionsByCustomerId(customerId))));
+    }
+
+    public List<AppointmentResponse> getUpcomingAppointments(String customerId, LocalDateTime from) {
+        log.debug("Retrieving upcoming appointments for customer {}", customerId);
+        LocalDateTime since = from != null ? from : LocalDateTime.now();
+        List<Appointment> upcoming = shardRouter.readCustomer(customerId,
+                () -> appointmentRepository.findUpcomingByCustomerId(customerId, since));
+        return upcoming.stream()
                 .map(AppointmentResponse::fromEntity)
                 .collect(Collectors.toList());
     }
 
-    public AppointmentResponse updateAppointment(Long id, AppointmentRequest request) {
-        log.info("Updating appointment with ID {}", id);
+    public List<AppointmentResponse> getOverdueAppointments(String customerId) {
+        log.debug("Retrieving overdue appointments for customer {}", customerId);
+        List<Appointment> overdue = shardRouter.readCustomer(customerId,
+                () -> appointmentRepository.findOverdueByCustomerId(customerId, LocalDateTime.now()));
+        return overdue.stream()
+                .map(AppointmentResponse::fromEntity)
+                .collect(Collectors.toList());
+    }
 
-        Appointment appointment = appointmentRepository.findById(id)
-                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
+    public List<AppointmentResponse> getAppointmentsByCategory(String customerId, String category,
+            LocalDateTime from, LocalDateTime to) {
+        log.debug("Retrieving {} appointments for customer {} between {} and {}", category, customerId, from, to);
+        if (!from.isBefore(to)) {
+            throw new InvalidDateRangeException("'from' must be before 'to'");
+        }
+        List<Appointment> inWindow = shardRouter.readCustomer(customerId,
+                () -> appointmentRepository.findByCustomerIdAndCategoryInWindow(customerId, category, from, to));
+        return inWindow.stream()
+                .map(AppointmentResponse::fromEntity)
+                .collect(Collectors.toList());
+    }
 
-        appointment.setTitle(request.getTitle());
-        appointment.setNotes(request.getNotes());
-        appointment.setCategory(request.getCategory());
-        appointment.setStartDate(request.getStartDate());
-        appointment.setDone(request.getDone() != null ? request.getDone() : false);
-        appointment.setCustomerId(request.getCustomerId());
+    /**
+     * Returns the periods of at least {@code minimum} in {@code [from, to)} when the customer has no
+     * appointment. Only appointments with an end date take up time.
+     */
+    public List<TimeSlot> getFreeSlots(String customerId, LocalDateTime from, LocalDateTime to, Duration minimum) {
+        log.debug("Retrieving free slots of customer {} between {} and {}", customerId, from, to);
+        if (!from.isBefore(to)) {
+            throw new InvalidDateRangeException("'from' must be before 'to'");
+        }
+        Duration length = minimum != null ? minimum : Duration.ZERO;
+        if (length.isNegative()) {
+            throw new InvalidDateRangeException("'duration' must not be negative");
+        }
+        return shardRouter.onCustomer(customerId, () -> conflictIndex.freeSlots(customerId, from, to, length));
+    }
+
+    /**
+     * Loads the appointment and changes it in place, so the commit issues one versioned UPDATE through dirty
+     * checking instead of a merge that reads the row again. Runs on the lock of the appointment's customer,
+     * and of the customer it moves to.
+     *
+     * @param expectedVersion version the client last saw (from {@code If-Match}), or {@code null} to
+     *                        update whatever version is current
+     * @throws CrossShardMoveException if the appointment would move to a customer on another shard
+     */
+    public AppointmentResponse updateAppointment(Long id, AppointmentRequest request, Long expectedVersion) {
+        log.debug("Updating appointment with ID {}", id);
+        return writeAsOwner(id, request.getCustomerId(), (owner, lock) -> {
+            Optional<Appointment> found = findForUpdate(id, owner);
+            if (found.isEmpty() || !lock.hold(found.get().getCustomerId())) {
+                return Optional.empty();
+            }
+            Appointment appointment = found.get();
+            checkVersion(appointment, expectedVersion);
+            shardRouter.checkSameShard(appointment.getCustomerId(), request.getCustomerId());
+            conflictIndex.reserve(appointment, request.getCustomerId(), request.getStartDate(), request.getEndDate());
+            String previousCustomerId = appointment.getCustomerId();
+            LocalDateTime previousStartDate = appointment.getStartDate();
+            Long previousVersion = appointment.getVersion();
 
-        Appointment updated = appointmentRepository.save(appointment);
-        log.info("Updated appointment with ID {}", updated.getId());
+            appointment.setTitle(request.getTitle());
+            appointment.setNotes(request.getNotes());
+            appointment.setCategory(request.getCategory());
+            appointment.setStartDate(request.getStartDate());
+            appointment.setEndDate(request.getEndDate());
+            appointment.setDone(request.getDone() != null ? request.getDone() : false);
+            appointment.setCustomerId(request.getCustomerId());
+
+            // Flush now so the response carries the incremented version
+            appointmentRepository.flush();
+            scheduleIndex.move(appointment.getId(), previousStartDate, appointment.getStartDate());
+            cacheEvictor.evict(id, previousCustomerId);
+            cacheEvictor.evictCustomer(appointment.getCustomerId());
+            recordUpdate(appointment, previousVersion, previousCustomerId);
+            log.info("Updated appointment with ID {}", id);
+
+            return Optional.of(AppointmentResponse.fromEntity(appointment));
+        });
+    }
 
-        return AppointmentResponse.fromEntity(updated);
+    /**
+     * Queues a full update for the write-behind flusher instead of writing it now; see
+     * {@link AppointmentWriteBehind}.
+     *
+     * @return the appointment as it will be once written, or empty if the update has to be written with
+     *         {@link #updateAppointment}
+     */
+    public Optional<AppointmentResponse> queueUpdate(Long id, AppointmentRequest request) {
+        Optional<AppointmentResponse> queued = writeBehind.submit(id, request);
+        if (queued.isPresent()) {
+            log.debug("Queued update of appointment with ID {}", id);
+        }
+        return queued;
+    }
+
+    /**
+     * @return the appointment with its queued update applied, if an update is queued on this instance
+     */
+    public Optional<AppointmentResponse> findQueuedUpdate(Long id) {
+        return writeBehind.find(id);
+    }
+
+    /**
+     * Writes the updates queued on this instance for the customer's appointments, or for all appointments
+     * when {@code customerId} is {@code null}, so a list read that follows includes them.
+     */
+    public void writeQueuedUpdates(String customerId) {
+        if (customerId != null) {
+            writeBehind.flushCustomer(customerId);
+        } else {
+            writeBehind.flush();
+        }
     }
 
+    /**
+     * Updates an appointment of the customer. Writes to the same customer take turns on the customer's lock,
+     * each in its own transaction, so concurrent updates are applied one after the other instead of failing
+     * on the version check.
+     */
     public AppointmentResponse updateAppointmentByCustomer(String customerId, Long appointmentId,
-            AppointmentRequest request) {
-        log.info("Updating appointment {} for customer {}", appointmentId, customerId);
+            AppointmentRequest request, Long expectedVersion) {
+        log.debug("Updating appointment {} for customer {}", appointmentId, customerId);
+        return customerLocks.call(customerId, () -> {
+            writeBehind.flush(appointmentId);
+            return shardRouter.onCustomer(customerId,
+                    () -> transactionOperations.execute(status -> {
+                        Appointment appointment = appointmentRepository.findByIdAndCustomerId(appointmentId, customerId)
+                                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: "
+                                        + appointmentId + " for customer: " + customerId));
+                        checkVersion(appointment, expectedVersion);
+                        conflictIndex.reserve(appointment, customerId, request.getStartDate(), request.getEndDate());
+                        LocalDateTime previousStartDate = appointment.getStartDate();
+                        Long previousVersion = appointment.getVersion();
 
-        Appointment appointment = appointmentRepository.findByIdAndCustomerId(appointmentId, customerId)
-                .orElseThrow(() -> new AppointmentNotFoundException(
-                        "Appointment not found with id: " + appointmentId + " for customer: " + customerId));
+                        appointment.setTitle(request.getTitle());
+                        appointment.setNotes(request.getNotes());
+                        appointment.setCategory(request.getCategory());
+                        appointment.setStartDate(request.getStartDate());
+                        appointment.setEndDate(request.getEndDate());
+                        appointment.setDone(request.getDone() != null ? request.getDone() : false);
 
-        appointment.setTitle(request.getTitle());
-        appointment.setNotes(request.getNotes());
-        appointment.setCategory(request.getCategory());
-        appointment.setStartDate(request.getStartDate());
-        appointment.setDone(request.getDone() != null ? request.getDone() : false);
+                        appointmentRepository.flush();
+                        scheduleIndex.move(appointment.getId(), previousStartDate, appointment.getStartDate());
+                        cacheEvictor.evict(appointmentId, customerId);
+                        recordUpdate(appointment, previousVersion, customerId);
+                        log.info("Updated appointment {} for customer {}", appointmentId, customerId);
 
-        Appointment updated = appointmentRepository.save(appointment);
-        log.info("Updated appointment {} for customer {}", updated.getId(), customerId);
+                        return AppointmentResponse.fromEntity(appointment);
+                    }));
+        });
+    }
+
+    /**
+     * Applies a JSON Merge Patch. Only the columns whose values change are written. Runs on the lock of the
+     * appointment's customer, and of the customer the patch moves it to.
+     *
+     * @throws CrossShardMoveException if the appointment would move to a customer on another shard
+     */
+    public AppointmentResponse patchAppointment(Long id, JsonNode patch, Long expectedVersion) {
+        log.debug("Patching appointment with ID {}", id);
+        String movingTo = patch.path("customerId").isTextual() ? patch.path("customerId").asText() : null;
+        return writeAsOwner(id, movingTo, (owner, lock) -> {
+            Optional<Appointment> found = findForUpdate(id, owner);
+            if (found.isEmpty() || !lock.hold(found.get().getCustomerId())) {
+                return Optional.empty();
+            }
+            Appointment appointment = found.get();
+            checkVersion(appointment, expectedVersion);
+            String previousCustomerId = appointment.getCustomerId();
+            LocalDateTime previousStartDate = appointment.getStartDate();
+            Long previousVersion = appointment.getVersion();
+
+            AppointmentRequest merged = mergePatch.apply(appointment, patch);
+            shardRouter.checkSameShard(appointment.getCustomerId(), merged.getCustomerId());
+            conflictIndex.reserve(appointment, merged.getCustomerId(), merged.getStartDate(), merged.getEndDate());
+            appointment.setTitle(merged.getTitle());
+            appointment.setNotes(merged.getNotes());
+            appointment.setCategory(merged.getCategory());
+            appointment.setStartDate(merged.getStartDate());
+            appointment.setEndDate(merged.getEndDate());
+            appointment.setDone(merged.getDone() != null ? merged.getDone() : false);
+            appointment.setCustomerId(merged.getCustomerId());
+
+            appointmentRepository.flush();
+            scheduleIndex.move(appointment.getId(), previousStartDate, appointment.getStartDate());
+            cacheEvictor.evict(id, previousCustomerId);
+            cacheEvictor.evictCustomer(appointment.getCustomerId());
+            recordUpdate(appointment, previousVersion, previousCustomerId);
+            log.info("Patched appointment with ID {}", id);
+
+            return Optional.of(AppointmentResponse.fromEntity(appointment));
+        });
+    }
 
-        return AppointmentResponse.fromEntity(updated);
+    /**
+     * Applies a JSON Merge Patch to an appointment of the customer. The customer itself cannot be changed
+     * through this path.
+     */
+    public AppointmentResponse patchAppointmentByCustomer(String customerId, Long appointmentId, JsonNode patch,
+            Long expectedVersion) {
+        log.debug("Patching appointment {} for customer {}", appointmentId, customerId);
+        return customerLocks.call(customerId, () -> {
+            writeBehind.flush(appointmentId);
+            return shardRouter.onCustomer(customerId,
+                    () -> transactionOperations.execute(status -> {
+                        Appointment appointment = appointmentRepository.findByIdAndCustomerId(appointmentId, customerId)
+                                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: "
+                                        + appointmentId + " for customer: " + customerId));
+                        checkVersion(appointment, expectedVersion);
+                        LocalDateTime previousStartDate = appointment.getStartDate();
+                        Long previousVersion = appointment.getVersion();
+
+                        AppointmentRequest merged = mergePatch.apply(appointment, patch);
+                        conflictIndex.reserve(appointment, customerId, merged.getStartDate(), merged.getEndDate());
+                        appointment.setTitle(merged.getTitle());
+                        appointment.setNotes(merged.getNotes());
+                        appointment.setCategory(merged.getCategory());
+                        appointment.setStartDate(merged.getStartDate());
+                        appointment.setEndDate(merged.getEndDate());
+                        appointment.setDone(merged.getDone() != null ? merged.getDone() : false);
+
+                        appointmentRepository.flush();
+                        scheduleIndex.move(appointment.getId(), previousStartDate, appointment.getStartDate());
+                        cacheEvictor.evict(appointmentId, customerId);
+                        recordUpdate(appointment, previousVersion, customerId);
+                        log.info("Patched appointment {} for customer {}", appointmentId, customerId);
+
+                        return AppointmentResponse.fromEntity(appointment);
+                    }));
+        });
     }
 
-    @Transactional
+    /**
+     * Marks an appointment as done with a single UPDATE, without loading it, on the lock of its customer. The
+     * UPDATE reads the customer back, so the lock is taken off the row it changed.
+     */
+    public void markAppointmentDone(Long id) {
+        log.debug("Marking appointment {} as done", id);
+        writeAsOwner(id, null, (owner, lock) -> {
+            Optional<String> customerId = owner == null
+                    ? appointmentRepository.markDoneReturningCustomerId(id)
+                    : Optional.of(owner)
+                            .filter(customer -> appointmentRepository.markDoneByIdAndCustomerId(id, customer) > 0);
+            if (customerId.isEmpty() || !lock.hold(customerId.get())) {
+                return Optional.empty();
+            }
+            cacheEvictor.evict(id, customerId.get());
+            outbox.record(AppointmentChange.Type.UPDATED, id, customerId.get());
+            return customerId;
+        });
+    }
+
+    public void markAppointmentDoneByCustomer(String customerId, Long appointmentId) {
+        log.debug("Marking appointment {} of customer {} as done", appointmentId, customerId);
+        customerLocks.run(customerId, () -> {
+            writeBehind.flush(appointmentId);
+            shardRouter.onCustomer(customerId,
+                    () -> transactionOperations.executeWithoutResult(status -> {
+                        if (appointmentRepository.markDoneByIdAndCustomerId(appointmentId, customerId) == 0) {
+                            throw new AppointmentNotFoundException(
+                                    "Appointment not found with id: " + appointmentId + " for customer: " + customerId);
+                        }
+                        cacheEvictor.evict(appointmentId, customerId);
+                        outbox.record(AppointmentChange.Type.UPDATED, appointmentId, customerId);
+                    }));
+        });
+    }
+
+    // Nothing is recorded when nothing changed, as then no UPDATE was issued either
+    private void recordUpdate(Appointment appointment, Long previousVersion, String previousCustomerId) {
+        if (Objects.equals(previousVersion, appointment.getVersion())) {
+            return;
+        }
+        outbox.record(AppointmentChange.Type.UPDATED, appointment.getId(), appointment.getCustomerId());
+        if (!previousCustomerId.equals(appointment.getCustomerId())) {
+            // Tells streams of the previous customer that the appointment left
+            outbox.record(AppointmentChange.Type.UPDATED, appointment.getId(), previousCustomerId);
+        }
+    }
+
+    /**
+     * Fails fast when the client's version is stale. A concurrent write between this check and the UPDATE
+     * is still caught by Hibernate's version predicate on the UPDATE itself.
+     */
+    private static void checkVersion(Appointment appointment, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(appointment.getVersion())) {
+            throw new PreconditionFailedException("Appointment " + appointment.getId() + " is at version "
+                    + appointment.getVersion() + ", not " + expectedVersion);
+        }
+    }
+
+    /**
+     * Deletes the appointment on the lock of its customer. The DELETE reads the customer back, so the lock is
+     * taken off the row it removed.
+     */
     public void deleteAppointment(Long id) {
-        log.info("Deleting appointment with ID {}", id);
-        if (!appointmentRepository.existsById(id)) {
-            throw new AppointmentNotFoundException("Appointment not found with id: " + id);
+        log.debug("Deleting appointment with ID {}", id);
+        writeAsOwner(id, null, (owner, lock) -> {
+            Optional<String> customerId = owner == null
+                    ? appointmentRepository.deleteByIdReturningCustomerId(id)
+                    : Optional.of(owner)
+                            .filter(customer -> appointmentRepository.deleteByIdAndCustomerId(id, customer) > 0);
+            if (customerId.isEmpty() || !lock.hold(customerId.get())) {
+                return Optional.empty();
+            }
+            cacheEvictor.evict(id, customerId.get());
+            conflictIndex.release(id);
+            outbox.record(AppointmentChange.Type.DELETED, id, customerId.get());
+            log.info("Deleted appointment with ID {}", id);
+            return customerId;
+        });
+    }
+
+    private Optional<Appointment> findForUpdate(Long id, String owner) {
+        return owner == null
+                ? appointmentRepository.findForUpdateById(id)
+                : appointmentRepository.findForUpdateByIdAndCustomerId(id, owner);
+    }
+
+    /**
+     * Runs a write by id on the lock of the appointment's customer, and of {@code movingTo} as well when the
+     * write may move the appointment to another customer, in a transaction on the appointment's shard.
+     * <p>
+     * The customer is not read up front. {@code write} is given a {@code null} owner first: its first
+     * statement locks the row by id alone, the write itself where it is a single UPDATE or DELETE, and it hands
+     * the owner that row names to {@link OwnerLock#hold}. That takes the customer's lock only if it is free
+     * and no update of the appointment is queued in {@link AppointmentWriteBehind}; otherwise {@code write}
+     * returns empty, the transaction rolls back and the write is done again the slow way: waiting for the
+     * lock before its transaction, writing the queued update first, and given the owner so it only writes the
+     * appointment while it still belongs to it. Empty from a first attempt that took no lock means there is
+     * no such appointment.
+     */
+    private <T> T writeAsOwner(Long id, String movingTo, BiFunction<String, OwnerLock, Optional<T>> write) {
+        String owner = null;
+        while (true) {
+            String expected = owner;
+            OwnerLock lock = new OwnerLock(id, expected, movingTo);
+            Supplier<Optional<T>> attempt = () -> shardRouter.onAppointment(id,
+                    () -> transactionOperations.execute(status -> {
+                        Optional<T> written = write.apply(expected, lock);
+                        if (written.isEmpty()) {
+                            status.setRollbackOnly();
+                        }
+                        return written;
+                    }));
+            Optional<T> written = expected == null
+                    ? attempt.get()
+                    : customerLocks.callAll(customersOf(expected, movingTo), () -> {
+                        writeBehind.flush(id);
+                        return attempt.get();
+                    });
+            if (written.isPresent()) {
+                return written.get();
+            }
+            if (lock.busy != null) {
+                log.debug("Customer {} of appointment {} is busy, waiting for its lock", lock.busy, id);
+                owner = lock.busy;
+            } else if (expected == null) {
+                throw new AppointmentNotFoundException("Appointment not found with id: " + id);
+            } else {
+                log.debug("Appointment {} left customer {} before its lock was taken", id, expected);
+                owner = null;
+            }
         }
-        appointmentRepository.deleteById(id);
-        log.info("Deleted appointment with ID {}", id);
     }
 
-    @Transactional
-    public void deleteAppointmentsByCustomerId(String customerId) {
-        log.info("Deleting all appointments for customer {}", customerId);
-        appointmentRepository.deleteByCustomerId(customerId);
-        log.info("Deleted all appointments for customer {}", customerId);
+    private static List<String> customersOf(String owner, String movingTo) {
+        return movingTo == null || movingTo.equals(owner) ? List.of(owner) : List.of(owner, movingTo);
     }
 
-    @Transactional
-    public void deleteAppointmentByCustomer(String customerId, Long appointmentId) {
-        log.info("Deleting appointment {} for customer {}", appointmentId, customerId);
+    /**
+     * The customer locks of one attempt of {@link #writeAsOwner}: already held around the transaction when the
+     * attempt was given the owner, or otherwise taken by {@link #hold} without waiting and held until the
+     * transaction completes.
+     */
+    private final class OwnerLock {
+
+        private final Long id;
+        private final String held;
+        private final String movingTo;
+        private String busy;
+
+        private OwnerLock(Long id, String held, String movingTo) {
+            this.id = id;
+            this.held = held;
+            this.movingTo = movingTo;
+        }
+
+        /**
+         * @return whether the write holds the lock of {@code owner}, whose row it has locked, and may go on
+         */
+        boolean hold(String owner) {
+            if (held != null) {
+                return true;
+            }
+            if (writeBehind.find(id).isEmpty()
+                    && customerLocks.tryHoldUntilCompletion(customersOf(owner, movingTo))) {
+                return true;
+            }
+            busy = owner;
+            return false;
+        }
+    }
+
+    /**
+     * Purges all appointments of a customer with set-based DELETE statements of at most
+     * {@code appointments.purge.chunk-size} rows, each committed on its own together with a
+     * {@link AppointmentChange.Type#PURGED} change. Holds the customer's lock throughout, so writes by
+     * customer neither land between the chunks nor between the last chunk and the release of the customer's
+     * intervals. Updates of the customer queued in {@link AppointmentWriteBehind} are dropped first.
+     *
+     * @return the number of appointments deleted
+     */
+    public int deleteAppointmentsByCustomerId(String customerId) {
+        log.debug("Deleting all appointments for customer {}", customerId);
+        return customerLocks.call(customerId, () -> shardRouter.onCustomer(customerId, () -> {
+            int discarded = writeBehind.discardCustomer(customerId);
+            if (discarded > 0) {
+                log.debug("Dropped {} queued updates of customer {} before purging it", discarded, customerId);
+            }
+            int chunkSize = purgeProperties.getChunkSize();
+            int deleted = 0;
+            int chunk;
+            try {
+                do {
+                    chunk = transactionOperations.execute(status -> deleteChunk(customerId, chunkSize));
+                    deleted += chunk;
+                } while (chunk == chunkSize);
+            } finally {
+                // Chunks already committed stay deleted when a later one fails
+                if (deleted > 0) {
+                    cacheEvictor.evictAllOfCustomer(customerId);
+                    conflictIndex.releaseCustomer(customerId);
+                }
+            }
+
+            if (deleted == 0) {
+                throw new AppointmentNotFoundException("No appointments found for customer: " + customerId);
+            }
+            log.info("Deleted {} appointments for customer {}", deleted, customerId);
+            return deleted;
+        }));
+    }
 
-        if (!appointmentRepository.findByIdAndCustomerId(appointmentId, customerId).isPresent()) {
-            throw new AppointmentNotFoundException(
-                    "Appointment not found with id: " + appointmentId + " for customer: " + customerId);
+    // Every committed chunk has its change, so a purge cut short is still seen by change streams
+    private int deleteChunk(String customerId, int chunkSize) {
+        int deleted = appointmentRepository.deleteChunkByCustomerId(customerId, chunkSize);
+        if (deleted > 0) {
+            outbox.record(AppointmentChange.Type.PURGED, null, customerId);
         }
+        return deleted;
+    }
 
-        appointmentRepository.deleteByIdAndCustomerId(appointmentId, customerId);
-        log.info("Deleted appointment {} for customer {}", appointmentId, customerId);
+    public void deleteAppointmentByCustomer(String customerId, Long appointmentId) {
+        log.debug("Deleting appointment {} for customer {}", appointmentId, customerId);
+        customerLocks.run(customerId, () -> {
+            writeBehind.flush(appointmentId);
+            shardRouter.onCustomer(customerId,
+                    () -> transactionOperations.executeWithoutResult(status -> {
+                        if (appointmentRepository.deleteByIdAndCustomerId(appointmentId, customerId) == 0) {
+                            throw new AppointmentNotFoundException(
+                                    "Appointment not found with id: " + appointmentId + " for customer: " + customerId);
+                        }
+                        cacheEvictor.evict(appointmentId, customerId);
+                        conflictIndex.release(appointmentId);
+                        outbox.record(AppointmentChange.Type.DELETED, appointmentId, customerId);
+                        log.info("Deleted appointment {} for customer {}", appointmentId, customerId);
+                    }));
+        });
     }
 }
@@ -0,0 +1,492 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.CacheConfig;
+import com.example.appointments.config.WriteBehindProperties;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.model.AppointmentChange;
+import com.example.appointments.repository.AppointmentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Write-behind queue for full updates of appointments that are pushed many times a second. An accepted update
+ * replaces whatever is queued for the appointment, and a flusher writes the latest state of every queued
+ * appointment as one JDBC batch every {@code appointments.write-behind.flush-interval}, or sooner once
+ * {@code max-batch} appointments are queued: any number of updates to one appointment between two flushes
+ * cost a single UPDATE.
+ * <p>
+ * Updates are accepted on the lock of the appointment's customer in {@link CustomerWriteLocks}, and writes
+ * of the appointment that bypass the queue call {@link #flush(Long)} on that lock before they read it: they
+ * apply on top of the queued state, which is written first, so no queued state is built on a version that
+ * such a write has already replaced. Each UPDATE is still guarded by the version the queued state was built
+ * on, so a write by another instance that lands first wins and the queued state is dropped as superseded.
+ * Reads by id on this instance see queued states through {@link #find}. List reads on this instance write
+ * the queued states they may include first, through {@link #flushCustomer} or {@link #flush()}; other
+ * instances see them once written.
+ * <p>
+ * Only updates that keep the customer, start and end date are queued. The others move the appointment in the
+ * conflict and schedule indexes, which only happens inside the writing transaction.
+ */
+@Component
+@Profile("!reactive")
+public class AppointmentWriteBehind implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentWriteBehind.class);
+    private static final String UPDATE = "update appointments set title = ?, notes = ?, category = ?, done = ?, "
+            + "version = version + 1 where id = ? and version = ?";
+
+    private final WriteBehindProperties properties;
+    private final AppointmentRepository appointmentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionOperations transactionOperations;
+    private final AppointmentCacheEvictor cacheEvictor;
+    private final CacheManager cacheManager;
+    private final AppointmentOutbox outbox;
+    private final CustomerWriteLocks customerLocks;
+    private final ShardRouter shardRouter;
+    private final ConcurrentHashMap<Long, QueuedWrite> queued = new ConcurrentHashMap<>();
+    // Taken off the queue but not committed yet; updates accepted meanwhile build on these
+    private final ConcurrentHashMap<Long, QueuedWrite> flushing = new ConcurrentHashMap<>();
+    // Not synchronized: the flush runs a batch against the database while holding it
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final LongAdder acceptedTotal = new LongAdder();
+    private final LongAdder writtenTotal = new LongAdder();
+    private volatile boolean accepting;
+    private volatile Counter accepted;
+    private volatile Counter written;
+    private volatile Counter superseded;
+    private volatile Timer flushTimer;
+    private volatile Timer delayTimer;
+
+    public AppointmentWriteBehind(WriteBehindProperties properties, AppointmentRepository appointmentRepository,
+            JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations,
+            AppointmentCacheEvictor cacheEvictor, CacheManager cacheManager, AppointmentOutbox outbox,
+            CustomerWriteLocks customerLocks, ShardRouter shardRouter) {
+        if (properties.getMaxBatch() < 1) {
+            throw new IllegalArgumentException("appointments.write-behind.max-batch must be at least 1");
+        }
+        this.properties = properties;
+        this.appointmentRepository = appointmentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.cacheEvictor = cacheEvictor;
+        this.cacheManager = cacheManager;
+        this.outbox = outbox;
+        this.customerLocks = customerLocks;
+        this.shardRouter = shardRouter;
+        this.accepting = properties.isEnabled();
+        if (properties.isEnabled()) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "appointments-write-behind");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = properties.getFlushInterval().toNanos();
+            flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.NANOSECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Queues a full update of the appointment.
+     *
+     * @return the appointment as it will be once written, with the version it will have, or empty if the
+     *         update has to be written synchronously: write-behind is disabled or shutting down, the update
+     *         changes the customer or the schedule, or {@code max-pending} appointments are queued already
+     * @throws AppointmentNotFoundException if the appointment does not exist
+     */
+    public Optional<AppointmentResponse> submit(Long id, AppointmentRequest request) {
+        if (!accepting) {
+            return Optional.empty();
+        }
+        // An appointment of another customer does not keep the request's customer, and is not queued
+        return customerLocks.call(request.getCustomerId(), () -> queue(id, request));
+    }
+
+    private Optional<AppointmentResponse> queue(Long id, AppointmentRequest request) {
+        AppointmentResponse current = current(id);
+        if (!keepsSchedule(current, request)) {
+            return Optional.empty();
+        }
+        if (!queued.containsKey(id) && queued.size() >= properties.getMaxPending()) {
+            requestFlush();
+            return Optional.empty();
+        }
+
+        QueuedWrite write = queued.compute(id, (key, previous) -> previous != null
+                ? previous.replacedBy(request)
+                : QueuedWrite.on(current, request, System.nanoTime()));
+        acceptedTotal.increment();
+        increment(accepted, 1);
+        if (!accepting) {
+            // Raced with the drain on shutdown, which may have missed it
+            flush();
+        } else if (queued.size() >= properties.getMaxBatch()) {
+            requestFlush();
+        }
+        return Optional.of(write.state());
+    }
+
+    /**
+     * @return the state of the appointment's queued or not yet committed update, if there is one
+     */
+    public Optional<AppointmentResponse> find(Long id) {
+        QueuedWrite write = queued.get(id);
+        if (write == null) {
+            write = flushing.get(id);
+        }
+        return write != null ? Optional.of(write.state()) : Optional.empty();
+    }
+
+    /**
+     * @return appointments with updates waiting to be written
+     */
+    public int getQueueSize() {
+        return queued.size();
+    }
+
+    /**
+     * Writes everything queued so far, in batches of at most {@code max-batch}. A batch that fails is queued
+     * again and its failure thrown, leaving the batches after it queued; the flusher tries again on its next
+     * run, {@code flush-interval} later.
+     */
+    public void flush() {
+        if (!queued.isEmpty() || !flushing.isEmpty()) {
+            flush(write -> true);
+        }
+    }
+
+    /**
+     * Writes the update queued for the appointment, if there is one, and waits for one being written. Call it
+     * holding the lock of the appointment's customer before a write of the appointment that bypasses the
+     * queue, so the write reads the queued state back from the database and applies on top of it. Throws if
+     * the update cannot be written, so such a write does not go ahead without it.
+     */
+    public void flush(Long id) {
+        if (queued.containsKey(id) || flushing.containsKey(id)) {
+            flush(write -> write.state().getId().equals(id));
+        }
+    }
+
+    /**
+     * Writes the updates queued for the customer's appointments, and waits for those being written, so a read
+     * of the customer's appointments that follows includes them.
+     */
+    public void flushCustomer(String customerId) {
+        Predicate<QueuedWrite> ofCustomer = write -> write.state().getCustomerId().equals(customerId);
+        if (queued.values().stream().anyMatch(ofCustomer) || flushing.values().stream().anyMatch(ofCustomer)) {
+            flush(ofCustomer);
+        }
+    }
+
+    /**
+     * Drops the updates queued for the customer's appointments, and waits for those being written. Call it
+     * holding the customer's lock before purging the customer, so reads by id stop returning the purged
+     * appointments from the queue and no queued update outlives the purge.
+     *
+     * @return the number of updates dropped
+     */
+    public int discardCustomer(String customerId) {
+        flushLock.lock();
+        try {
+            int dropped = 0;
+            for (Map.Entry<Long, QueuedWrite> entry : queued.entrySet()) {
+                if (entry.getValue().state().getCustomerId().equals(customerId)
+                        && queued.remove(entry.getKey(), entry.getValue())) {
+                    dropped++;
+                }
+            }
+            return dropped;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting updates and writes what is queued. Runs after the web server has stopped and before the
+     * data source is closed.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        accepting = false;
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        int remaining = queued.size();
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.error("Lost {} queued appointment updates on shutdown", queued.size() + flushing.size(), ex);
+            return;
+        }
+        if (remaining > 0) {
+            log.info("Wrote {} queued appointment updates on shutdown", remaining);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("appointments.write.behind.queued", this, AppointmentWriteBehind::getQueueSize)
+                .description("Appointments with updates waiting to be written")
+                .register(registry);
+        Gauge.builder("appointments.write.behind.coalesce.ratio", this, AppointmentWriteBehind::coalesceRatio)
+                .description("Updates accepted per UPDATE written since startup")
+                .register(registry);
+        accepted = Counter.builder("appointments.write.behind.accepted")
+                .description("Updates accepted into the write-behind queue")
+                .register(registry);
+        written = Counter.builder("appointments.write.behind.written")
+                .description("Queued appointment states written to the database")
+                .register(registry);
+        superseded = Counter.builder("appointments.write.behind.superseded")
+                .description("Queued appointment states dropped because another write changed the row first")
+                .register(registry);
+        flushTimer = Timer.builder("appointments.write.behind.flush")
+                .description("Time to write one batch of queued updates")
+                .register(registry);
+        delayTimer = Timer.builder("appointments.write.behind.delay")
+                .description("Time from accepting an update until it was committed")
+                .register(registry);
+    }
+
+    private AppointmentResponse current(Long id) {
+        Optional<AppointmentResponse> pending = find(id);
+        if (pending.isPresent()) {
+            return pending.get();
+        }
+        AppointmentResponse cached = appointments().get(id, AppointmentResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+        return shardRouter.onAppointment(id, () -> appointmentRepository.findResponsesByIdIn(List.of(id))).stream()
+                .findFirst()
+                .orElseThrow(() -> new AppointmentNotFoundException("Appointment not found with id: " + id));
+    }
+
+    // Waiting for the lock also waits for the states another flush is writing. The flusher never takes a
+    // customer's lock, so writers holding one can wait here without deadlocking. A failed batch ends the
+    // flush instead of being taken again at once, which would spin on the lock while the database is down.
+    private void flush(Predicate<QueuedWrite> which) {
+        flushLock.lock();
+        try {
+            List<QueuedWrite> batch;
+            do {
+                batch = take(properties.getMaxBatch(), which);
+                if (!batch.isEmpty()) {
+                    try {
+                        // One transaction per shard; the customers of queued states never change
+                        shardRouter.forEachShard(batch, write -> write.state().getCustomerId(), this::write);
+                    } catch (RuntimeException ex) {
+                        int failed = requeue(batch);
+                        log.warn("Failed to write {} queued appointment updates, queued them again", failed);
+                        throw ex;
+                    }
+                }
+            } while (batch.size() == properties.getMaxBatch());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<QueuedWrite> take(int limit, Predicate<QueuedWrite> which) {
+        List<QueuedWrite> batch = new ArrayList<>();
+        for (Long id : queued.keySet()) {
+            if (batch.size() == limit) {
+                break;
+            }
+            // Moved inside compute, so a concurrent reader finds the write in one of the two maps
+            queued.computeIfPresent(id, (key, write) -> {
+                if (!which.test(write)) {
+                    return write;
+                }
+                flushing.put(key, write);
+                batch.add(write);
+                return null;
+            });
+        }
+        return batch;
+    }
+
+    // Puts back the states of the batch not written yet: those of the failed shard and of the shards after it
+    private int requeue(List<QueuedWrite> batch) {
+        int requeued = 0;
+        for (QueuedWrite write : batch) {
+            if (flushing.remove(write.state().getId(), write)) {
+                queued.merge(write.state().getId(), write, (newer, failed) -> newer.rebasedOn(failed));
+                requeued++;
+            }
+        }
+        return requeued;
+    }
+
+    private void write(List<QueuedWrite> batch) {
+        long start = System.nanoTime();
+        int[] counts = transactionOperations.execute(status -> {
+            int[] rows = jdbcTemplate.batchUpdate(UPDATE, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement statement, int i) throws SQLException {
+                    QueuedWrite write = batch.get(i);
+                    statement.setString(1, write.state().getTitle());
+                    statement.setString(2, write.state().getNotes());
+                    statement.setString(3, write.state().getCategory());
+                    statement.setBoolean(4, write.state().getDone());
+                    statement.setLong(5, write.state().getId());
+                    statement.setLong(6, write.expectedVersion());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return batch.size();
+                }
+            });
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] != 0) {
+                    AppointmentResponse state = batch.get(i).state();
+                    cacheEvictor.evict(state.getId(), state.getCustomerId());
+                    outbox.record(AppointmentChange.Type.UPDATED, state.getId(), state.getCustomerId());
+                }
+            }
+            return rows;
+        });
+
+        long committed = System.nanoTime();
+        int updated = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            QueuedWrite write = batch.get(i);
+            flushing.remove(write.state().getId(), write);
+            if (Objects.requireNonNull(counts)[i] == 0) {
+                log.info("Queued update of appointment {} was superseded by another write", write.state().getId());
+                increment(superseded, 1);
+                continue;
+            }
+            updated++;
+            Timer timer = delayTimer;
+            if (timer != null) {
+                timer.record(committed - write.acceptedAt(), TimeUnit.NANOSECONDS);
+            }
+        }
+        writtenTotal.add(updated);
+        increment(written, updated);
+        Timer timer = flushTimer;
+        if (timer != null) {
+            timer.record(committed - start, TimeUnit.NANOSECONDS);
+        }
+        log.debug("Wrote {} of {} queued appointment updates", updated, batch.size());
+    }
+
+    private void requestFlush() {
+        if (flusher == null || !flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        } catch (RejectedExecutionException ex) {
+            // Shutting down; the drain writes the queue
+            flushRequested.set(false);
+        }
+    }
+
+    // An exception escaping a scheduled run would cancel every later run
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.error("Write-behind flush failed", ex);
+        }
+    }
+
+    private double coalesceRatio() {
+        long writes = writtenTotal.sum();
+        return writes == 0 ? 0 : acceptedTotal.sum() / (double) writes;
+    }
+
+    private Cache appointments() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.APPOINTMENTS));
+    }
+
+    private static boolean keepsSchedule(AppointmentResponse current, AppointmentRequest request) {
+        return Objects.equals(current.getCustomerId(), request.getCustomerId())
+                && Objects.equals(current.getStartDate(), request.getStartDate())
+                && Objects.equals(current.getEndDate(), request.getEndDate());
+    }
+
+    private static void increment(Counter counter, int amount) {
+        if (counter != null) {
+            counter.increment(amount);
+        }
+    }
+
+    /**
+     * @param state           the appointment as it will be once written, carrying the version it will have
+     * @param expectedVersion version of the row the UPDATE applies to
+     * @param acceptedAt      {@link System#nanoTime()} of the first update coalesced into this one
+     */
+    private record QueuedWrite(AppointmentResponse state, long expectedVersion, long acceptedAt) {
+
+        static QueuedWrite on(AppointmentResponse current, AppointmentRequest request, long acceptedAt) {
+            return new QueuedWrite(apply(current, request, current.getVersion() + 1), current.getVersion(),
+                    acceptedAt);
+        }
+
+        QueuedWrite replacedBy(AppointmentRequest request) {
+            return new QueuedWrite(apply(state, request, state.getVersion()), expectedVersion, acceptedAt);
+        }
+
+        // A newer write built on a failed one takes over the row version the failed one expected
+        QueuedWrite rebasedOn(QueuedWrite failed) {
+            return new QueuedWrite(apply(state, failed.state().getVersion()), failed.expectedVersion(),
+                    failed.acceptedAt());
+        }
+
+        private static AppointmentResponse apply(AppointmentResponse current, AppointmentRequest request,
+                long version) {
+            return new AppointmentResponse(current.getId(), request.getTitle(), request.getNotes(),
+                    request.getCategory(), current.getStartDate(), current.getEndDate(),
+                    request.getDone() != null ? request.getDone() : false, current.getCustomerId(), version);
+        }
+
+        private static AppointmentResponse apply(AppointmentResponse state, long version) {
+            return new AppointmentResponse(state.getId(), state.getTitle(), state.getNotes(), state.getCategory(),
+                    state.getStartDate(), state.getEndDate(), state.getDone(), state.getCustomerId(), version);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.CustomerLockProperties;
+import com.example.appointments.exception.CustomerBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes writes per customer on a fixed set of lock stripes, so writes for one customer run one after
+ * the other while writes for customers on other stripes run in parallel. Callers take the lock before their
+ * transaction begins and keep it until it has committed: the next writer then reads what the previous one
+ * wrote, and waiting writers hold no database connection. Writes by id, which learn the customer from the row
+ * they lock, take it without waiting from inside their transaction instead.
+ * <p>
+ * Uncontended acquisitions cost one {@code tryLock}. Only writers that find their stripe taken are counted
+ * and timed.
+ */
+@Component
+@Profile("!reactive")
+public class CustomerWriteLocks implements MeterBinder {
+
+    private final ReentrantLock[] stripes;
+    private final long acquireTimeoutNanos;
+    private volatile Counter contended;
+    private volatile Counter timeouts;
+    private volatile Timer waitTimer;
+
+    public CustomerWriteLocks(CustomerLockProperties properties) {
+        if (properties.getStripes() < 1) {
+            throw new IllegalArgumentException("appointments.customer-locks.stripes must be at least 1");
+        }
+        this.stripes = new ReentrantLock[properties.getStripes()];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.acquireTimeoutNanos = properties.getAcquireTimeout().toNanos();
+    }
+
+    /**
+     * Runs {@code write} holding the customer's lock.
+     *
+     * @throws CustomerBusyException if the lock is not free within {@code appointments.customer-locks.acquire-timeout}
+     */
+    public <T> T call(String customerId, Supplier<T> write) {
+        ReentrantLock lock = stripe(customerId);
+        acquire(lock, customerId);
+        try {
+            return write.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void run(String customerId, Runnable write) {
+        call(customerId, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code write} holding the locks of all the customers, e.g. of the items of a bulk write. Their
+     * stripes are taken in index order, not in the order of the customer ids, so writers of overlapping sets
+     * of customers always take shared stripes in the same order and cannot deadlock.
+     *
+     * @throws CustomerBusyException if any lock is not free within
+     *                               {@code appointments.customer-locks.acquire-timeout}
+     */
+    public <T> T callAll(Collection<String> customerIds, Supplier<T> write) {
+        TreeMap<Integer, String> byStripe = new TreeMap<>();
+        customerIds.forEach(customerId -> byStripe.putIfAbsent(index(customerId), customerId));
+        List<ReentrantLock> held = new ArrayList<>(byStripe.size());
+        try {
+            for (Map.Entry<Integer, String> entry : byStripe.entrySet()) {
+                acquire(stripes[entry.getKey()], entry.getValue());
+                held.add(stripes[entry.getKey()]);
+            }
+            return write.get();
+        } finally {
+            unlock(held);
+        }
+    }
+
+    public void runAll(Collection<String> customerIds, Runnable write) {
+        callAll(customerIds, () -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * Takes the locks of all the customers if every one of them is free right now, and holds them until the
+     * current transaction completes. Never waits, so a writer may call it while its transaction holds row
+     * locks: a writer waiting for a customer lock never holds a row lock, and this never waits holding one.
+     *
+     * @return whether the locks were taken; if not, none are held
+     */
+    public boolean tryHoldUntilCompletion(Collection<String> customerIds) {
+        TreeSet<Integer> indexes = new TreeSet<>();
+        customerIds.forEach(customerId -> indexes.add(index(customerId)));
+        List<ReentrantLock> held = new ArrayList<>(indexes.size());
+        for (int index : indexes) {
+            if (!stripes[index].tryLock()) {
+                increment(contended);
+                unlock(held);
+                return false;
+            }
+            held.add(stripes[index]);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlock(held);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * @return writers currently queued for a lock, across all stripes
+     */
+    public int getQueueLength() {
+        int queued = 0;
+        for (ReentrantLock stripe : stripes) {
+            queued += stripe.getQueueLength();
+        }
+        return queued;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("appointments.customer.locks.stripes", stripes, array -> array.length)
+                .description("Lock stripes customers are hashed onto")
+                .register(registry);
+        Gauge.builder("appointments.customer.locks.pending", this, CustomerWriteLocks::getQueueLength)
+                .description("Writes waiting for their customer's lock")
+                .register(registry);
+        contended = Counter.builder("appointments.customer.locks.contended")
+                .description("Writes that found their customer's lock taken")
+                .register(registry);
+        timeouts = Counter.builder("appointments.customer.locks.timeouts")
+                .description("Writes rejected because their customer's lock stayed taken")
+                .register(registry);
+        waitTimer = Timer.builder("appointments.customer.locks.wait")
+                .description("Time contended writes waited for their customer's lock")
+                .register(registry);
+    }
+
+    private ReentrantLock stripe(String customerId) {
+        return stripes[index(customerId)];
+    }
+
+    private int index(String customerId) {
+        int hash = customerId.hashCode();
+        // Folds the high bits into the low ones the modulo keeps
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+
+    private void acquire(ReentrantLock lock, String customerId) {
+        if (lock.tryLock()) {
+            return;
+        }
+        increment(contended);
+        long start = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CustomerBusyException("Interrupted while waiting to write appointments of customer "
+                    + customerId);
+        }
+        Timer timer = waitTimer;
+        if (timer != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!acquired) {
+            increment(timeouts);
+            throw new CustomerBusyException("Appointments of customer " + customerId + " are being written by "
+                    + "other requests, retry later");
+        }
+    }
+
+    private static void unlock(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private static void increment(Counter counter) {
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.PaginationProperties;
+import com.example.appointments.config.PurgeProperties;
+import com.example.appointments.dto.AppointmentPage;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.exception.InvalidDateRangeException;
+import com.example.appointments.exception.InvalidPageRequestException;
+import com.example.appointments.exception.PreconditionFailedException;
+import com.example.appointments.model.AppointmentRecord;
+import com.example.appointments.repository.ReactiveAppointmentRepository;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Non-blocking counterpart of {@link AppointmentService} for the {@code reactive} profile. Same rules and
+ * errors; results are not cached.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveAppointmentService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReactiveAppointmentService.class);
+    private final ReactiveAppointmentRepository appointmentRepository;
+    private final PaginationProperties paginationProperties;
+    private final PurgeProperties purgeProperties;
+
+    public Mono<AppointmentResponse> createAppointment(AppointmentRequest request) {
+        log.info("Creating appointment for customer {}", request.getCustomerId());
+
+        AppointmentRecord appointment = new AppointmentRecord();
+        appointment.setTitle(request.getTitle());
+        appointment.setNotes(request.getNotes());
+        appointment.setCategory(request.getCategory());
+        appointment.setStartDate(request.getStartDate());
+        appointment.setEndDate(request.getEndDate());
+        appointment.setDone(request.getDone() != null ? request.getDone() : false);
+        appointment.setCustomerId(request.getCustomerId());
+
+        return appointmentRepository.save(appointment)
+                .doOnNext(saved -> log.info("Created appointment with ID {}", saved.getId()))
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    public Flux<AppointmentResponse> getAllAppointments() {
+        log.debug("Retrieving all appointments");
+        return appointmentRepository.findAll().map(AppointmentResponse::fromRecord);
+    }
+
+    /**
+     * Returns one keyset page of appointments ordered by {@code (startDate, id)}; see
+     * {@link AppointmentService#getAppointmentsPage(String, Integer)}.
+     */
+    public Mono<AppointmentPage> getAppointmentsPage(String cursor, Integer limit) {
+        return Mono.fromCallable(() -> resolveLimit(limit))
+                .flatMap(pageSize -> {
+                    log.debug("Retrieving appointments page of size {}", pageSize);
+                    // Read one extra row to know whether another page exists without a count query
+                    Flux<AppointmentRecord> rows;
+                    if (cursor == null || cursor.isBlank()) {
+                        rows = appointmentRepository.findFirstPage(pageSize + 1);
+                    } else {
+                        AppointmentCursor after = AppointmentCursor.decode(cursor);
+                        rows = appointmentRepository.findPageAfter(after.getStartDate(), after.getId(), pageSize + 1);
+                    }
+                    return rows.collectList().map(list -> toPage(list, pageSize));
+                });
+    }
+
+    private static AppointmentPage toPage(List<AppointmentRecord> rows, int pageSize) {
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            nextCursor = AppointmentCursor.after(rows.get(pageSize - 1)).encode();
+        }
+        return new AppointmentPage(rows.stream().map(AppointmentResponse::fromRecord).toList(), nextCursor);
+    }
+
+    /**
+     * Emits every appointment in {@code (startDate, id)} order, fetching the next keyset window only once
+     * the subscriber has consumed the previous one.
+     */
+    public Flux<AppointmentResponse> streamAllAppointments() {
+        log.debug("Streaming all appointments");
+        int windowSize = paginationProperties.getStreamWindowSize();
+        return getAppointmentsPage(null, windowSize)
+                .expand(page -> page.getNextCursor() == null
+                        ? Mono.empty()
+                        : getAppointmentsPage(page.getNextCursor(), windowSize))
+                .concatMapIterable(AppointmentPage::getItems);
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return paginationProperties.getDefaultLimit();
+        }
+        if (limit < 1) {
+            throw new InvalidPageRequestException("Limit must be at least 1");
+        }
+        return Math.min(limit, paginationProperties.getMaxLimit());
+    }
+
+    public Mono<AppointmentResponse> getAppointmentById(Long id) {
+        log.debug("Retrieving appointment with ID {}", id);
+        return appointmentRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new AppointmentNotFoundException(
+                        "Appointment not found with id: " + id)))
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    public Flux<AppointmentResponse> getAppointmentsByCustomerId(String customerId) {
+        log.info("Retrieving appointments for customer {}", customerId);
+        return appointmentRepository.findByCustomerId(customerId).map(AppointmentResponse::fromRecord);
+    }
+
+    public Mono<String> getCustomerAppointmentsETag(String customerId) {
+        log.debug("Computing appointments ETag for customer {}", customerId);
+        return appointmentRepository.summarizeVersionsByCustomerId(customerId).map(AppointmentETags::of);
+    }
+
+    public Flux<AppointmentResponse> getUpcomingAppointments(String customerId, LocalDateTime from) {
+        log.debug("Retrieving upcoming appointments for customer {}", customerId);
+        return Flux.defer(() -> appointmentRepository.findUpcomingByCustomerId(customerId,
+                        from != null ? from : LocalDateTime.now()))
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    public Flux<AppointmentResponse> getOverdueAppointments(String customerId) {
+        log.debug("Retrieving overdue appointments for customer {}", customerId);
+        return Flux.defer(() -> appointmentRepository.findOverdueByCustomerId(customerId, LocalDateTime.now()))
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    public Flux<AppointmentResponse> getAppointmentsByCategory(String customerId, String category,
+            LocalDateTime from, LocalDateTime to) {
+        log.debug("Retrieving {} appointments for customer {} between {} and {}", category, customerId, from, to);
+        if (!from.isBefore(to)) {
+            return Flux.error(new InvalidDateRangeException("'from' must be before 'to'"));
+        }
+        return appointmentRepository.findByCustomerIdAndCategoryInWindow(customerId, category, from, to)
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    @Transactional
+    public Mono<AppointmentResponse> updateAppointment(Long id, AppointmentRequest request, Long expectedVersion) {
+        log.info("Updating appointment with ID {}", id);
+        return appointmentRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new AppointmentNotFoundException(
+                        "Appointment not found with id: " + id)))
+                .flatMap(appointment -> {
+                    checkVersion(appointment, expectedVersion);
+                    appointment.setTitle(request.getTitle());
+                    appointment.setNotes(request.getNotes());
+                    appointment.setCategory(request.getCategory());
+                    appointment.setStartDate(request.getStartDate());
+                    appointment.setEndDate(request.getEndDate());
+                    appointment.setDone(request.getDone() != null ? request.getDone() : false);
+                    appointment.setCustomerId(request.getCustomerId());
+                    return appointmentRepository.save(appointment);
+                })
+                .doOnNext(updated -> log.info("Updated appointment with ID {}", updated.getId()))
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    @Transactional
+    public Mono<AppointmentResponse> updateAppointmentByCustomer(String customerId, Long appointmentId,
+            AppointmentRequest request, Long expectedVersion) {
+        log.info("Updating appointment {} for customer {}", appointmentId, customerId);
+        return appointmentRepository.findByIdAndCustomerId(appointmentId, customerId)
+                .switchIfEmpty(Mono.error(() -> new AppointmentNotFoundException(
+                        "Appointment not found with id: " + appointmentId + " for customer: " + customerId)))
+                .flatMap(appointment -> {
+                    checkVersion(appointment, expectedVersion);
+                    appointment.setTitle(request.getTitle());
+                    appointment.setNotes(request.getNotes());
+                    appointment.setCategory(request.getCategory());
+                    appointment.setStartDate(request.getStartDate());
+                    appointment.setEndDate(request.getEndDate());
+                    appointment.setDone(request.getDone() != null ? request.getDone() : false);
+                    return appointmentRepository.save(appointment);
+                })
+                .doOnNext(updated -> log.info("Updated appointment {} for customer {}", updated.getId(), customerId))
+                .map(AppointmentResponse::fromRecord);
+    }
+
+    private static void checkVersion(AppointmentRecord appointment, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(appointment.getVersion())) {
+            throw new PreconditionFailedException("Appointment " + appointment.getId() + " is at version "
+                    + appointment.getVersion() + ", not " + expectedVersion);
+        }
+    }
+
+    public Mono<Void> deleteAppointment(Long id) {
+        log.info("Deleting appointment with ID {}", id);
+        return appointmentRepository.deleteByIdReturningCount(id)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new AppointmentNotFoundException("Appointment not found with id: " + id))
+                        : Mono.<Void>empty())
+                .doOnSuccess(ignored -> log.info("Deleted appointment with ID {}", id));
+    }
+
+    /**
+     * Purges all appointments of a customer in chunks of {@code appointments.purge.chunk-size} rows, each
+     * committed on its own.
+     *
+     * @return the number of appointments deleted
+     */
+    public Mono<Integer> deleteAppointmentsByCustomerId(String customerId) {
+        log.info("Deleting all appointments for customer {}", customerId);
+        int chunkSize = purgeProperties.getChunkSize();
+        return appointmentRepository.deleteChunkByCustomerId(customerId, chunkSize)
+                .expand(chunk -> chunk == chunkSize
+                        ? appointmentRepository.deleteChunkByCustomerId(customerId, chunkSize)
+                        : Mono.empty())
+                .reduce(0, Integer::sum)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new AppointmentNotFoundException(
+                                "No appointments found for customer: " + customerId))
+                        : Mono.just(deleted))
+                .doOnNext(deleted -> log.info("Deleted {} appointments for customer {}", deleted, customerId));
+    }
+
+    public Mono<Void> deleteAppointmentByCustomer(String customerId, Long appointmentId) {
+        log.info("Deleting appointment {} for customer {}", appointmentId, customerId);
+        return appointmentRepository.deleteByIdAndCustomerId(appointmentId, customerId)
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.error(new AppointmentNotFoundException(
+                                "Appointment not found with id: " + appointmentId + " for customer: " + customerId))
+                        : Mono.<Void>empty())
+                .doOnSuccess(ignored -> log.info("Deleted appointment {} for customer {}", appointmentId,
+                        customerId));
+    }
+}
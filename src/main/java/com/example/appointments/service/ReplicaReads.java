@@ -0,0 +1,107 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ReplicaProperties;
+import com.example.appointments.config.ReplicaRoutingDataSource;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Marks the reads a replica may serve, and keeps reads of recently written customers and appointments on the
+ * primary (read your writes). Writes are recorded on commit, together with the cache eviction, so the read
+ * that refills the cache sees the write even while the replicas lag behind.
+ * <p>
+ * A marked read runs in a read-only transaction, joining the caller's if there is one, since only read-only
+ * connections are routed. Without {@code appointments.replicas.enabled} every read simply runs as it is, on
+ * the only data source there is.
+ */
+@Component
+@Profile("!reactive")
+public class ReplicaReads implements MeterBinder {
+
+    private final boolean enabled;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Cache<String, Boolean> writtenCustomers;
+    private final Cache<Long, Boolean> writtenAppointments;
+    private volatile Counter pinned;
+
+    public ReplicaReads(ReplicaProperties properties, PlatformTransactionManager transactionManager) {
+        this.enabled = properties.isEnabled();
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        this.writtenCustomers = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getReadYourWritesWindow())
+                .maximumSize(properties.getReadYourWritesMaximumSize())
+                .build();
+        this.writtenAppointments = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getReadYourWritesWindow())
+                .maximumSize(properties.getReadYourWritesMaximumSize())
+                .build();
+    }
+
+    /**
+     * Records a committed write of the customer's appointments.
+     */
+    public void customerWritten(String customerId) {
+        if (enabled && customerId != null) {
+            writtenCustomers.put(customerId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Records a committed write of the appointment, and so of its customer.
+     */
+    public void appointmentWritten(Long id, String customerId) {
+        if (enabled && id != null) {
+            writtenAppointments.put(id, Boolean.TRUE);
+        }
+        customerWritten(customerId);
+    }
+
+    /**
+     * Runs a read that is not about any customer in particular on a replica. It may miss the latest writes.
+     */
+    public <T> T read(Supplier<T> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        return ReplicaRoutingDataSource.readFromReplica(() -> readOnlyTransaction.execute(status -> read.get()));
+    }
+
+    /**
+     * Runs a read of the customer's appointments on a replica, unless the customer was written recently.
+     */
+    public <T> T readCustomer(String customerId, Supplier<T> read) {
+        return pinned(writtenCustomers.getIfPresent(customerId) != null) ? read.get() : read(read);
+    }
+
+    /**
+     * Runs a read of the appointment on a replica, unless it was written recently.
+     */
+    public <T> T readAppointment(Long id, Supplier<T> read) {
+        return pinned(writtenAppointments.getIfPresent(id) != null) ? read.get() : read(read);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        pinned = Counter.builder("appointments.db.replica.pinned")
+                .description("Reads kept on the primary because they follow a write")
+                .register(registry);
+    }
+
+    private boolean pinned(boolean recentlyWritten) {
+        Counter counter = pinned;
+        if (recentlyWritten && counter != null) {
+            counter.increment();
+        }
+        return recentlyWritten;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ShardConfig;
+import com.example.appointments.config.ShardRoutingDataSource;
+import com.example.appointments.dto.ShardRebalanceResult;
+import com.example.appointments.dto.ShardStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves customers to the shard the hash ring assigns them, after shards were added. Exposed as the
+ * {@code shards} actuator endpoint: reading it counts appointments, customers and misplaced customers per
+ * shard, posting to it moves every misplaced customer.
+ * <p>
+ * A customer is moved holding its write lock, so its customer-scoped writes wait for the move. Its
+ * appointments are copied to the owner in one transaction there, keeping ids and versions, and only then
+ * deleted where they were, each only if its version is still the one copied. Until the copy commits the
+ * customer is read and written where it was, as {@code appointments.shards.rebalancing} finds it there; from
+ * then on on the owner. An appointment written by id during its move keeps its newer version on the old
+ * shard, and the next run copies it over the owner's.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(prefix = "appointments.shards", name = "enabled", havingValue = "true")
+@Endpoint(id = "shards")
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+    private static final String SELECT = "select id, title, notes, category, start_date, end_date, done, "
+            + "customer_id, version from appointments where customer_id = ?";
+    private static final String INSERT = "insert into appointments (id, title, notes, category, start_date, "
+            + "end_date, done, customer_id, version) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "update appointments set title = ?, notes = ?, category = ?, "
+            + "start_date = ?, end_date = ?, done = ?, customer_id = ?, version = ? where id = ?";
+
+    private final ShardRoutingDataSource shards;
+    private final ShardRouter shardRouter;
+    private final CustomerWriteLocks customerLocks;
+
+    public ShardRebalancer(DataSource dataSource, ShardRouter shardRouter, CustomerWriteLocks customerLocks) {
+        this.shards = ShardConfig.unwrap(dataSource);
+        this.shardRouter = shardRouter;
+        this.customerLocks = customerLocks;
+    }
+
+    @ReadOperation
+    public List<ShardStatus> status() {
+        List<ShardStatus> status = new ArrayList<>();
+        for (ShardRoutingDataSource.Shard shard : shards.getShards()) {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(shard.dataSource());
+            Long appointments = jdbcTemplate.queryForObject("select count(*) from appointments", Long.class);
+            List<String> customers = customersOn(jdbcTemplate);
+            long misplaced = customers.stream()
+                    .filter(customerId -> !shardRouter.ownerOf(customerId).equals(shard.name()))
+                    .count();
+            status.add(new ShardStatus(shard.name(), appointments != null ? appointments : 0, customers.size(),
+                    misplaced));
+        }
+        return status;
+    }
+
+    /**
+     * Moves every customer stored on a shard other than its owner, one customer at a time.
+     */
+    @WriteOperation
+    public ShardRebalanceResult rebalance() {
+        ShardRebalanceResult result = new ShardRebalanceResult();
+        for (ShardRoutingDataSource.Shard source : shards.getShards()) {
+            for (String customerId : customersOn(new JdbcTemplate(source.dataSource()))) {
+                String owner = shardRouter.ownerOf(customerId);
+                if (owner.equals(source.name())) {
+                    continue;
+                }
+                ShardRoutingDataSource.Shard target = shards.getShard(owner);
+                Move move = customerLocks.call(customerId, () -> move(customerId, source, target));
+                result.setMovedAppointments(result.getMovedAppointments() + move.copied());
+                if (move.left() == 0) {
+                    result.setMovedCustomers(result.getMovedCustomers() + 1);
+                } else {
+                    result.setRemainingCustomers(result.getRemainingCustomers() + 1);
+                }
+            }
+        }
+        log.info("Moved {} customers with {} appointments to their shards, {} customers left to move",
+                result.getMovedCustomers(), result.getMovedAppointments(), result.getRemainingCustomers());
+        return result;
+    }
+
+    private Move move(String customerId, ShardRoutingDataSource.Shard source, ShardRoutingDataSource.Shard target) {
+        JdbcTemplate from = new JdbcTemplate(source.dataSource());
+        JdbcTemplate to = new JdbcTemplate(target.dataSource());
+        List<Row> rows = from.query(SELECT, ShardRebalancer::row, customerId);
+        if (rows.isEmpty()) {
+            return new Move(0, 0);
+        }
+        // Rows already on the owner were copied by an earlier run; only a newer version replaces them
+        Map<Long, Long> copied = new HashMap<>();
+        to.query(SELECT, (RowCallbackHandler) rs -> copied.put(rs.getLong("id"), rs.getLong("version")), customerId);
+        Integer changed = new TransactionTemplate(new DataSourceTransactionManager(target.dataSource()))
+                .execute(status -> {
+                    int count = 0;
+                    for (Row row : rows) {
+                        Long version = copied.get(row.id());
+                        if (version == null) {
+                            to.update(INSERT, row.id(), row.title(), row.notes(), row.category(), row.startDate(),
+                                    row.endDate(), row.done(), row.customerId(), row.version());
+                            count++;
+                        } else if (version < row.version()) {
+                            to.update(UPDATE, row.title(), row.notes(), row.category(), row.startDate(),
+                                    row.endDate(), row.done(), row.customerId(), row.version(), row.id());
+                            count++;
+                        }
+                    }
+                    return count;
+                });
+        int left = 0;
+        for (Row row : rows) {
+            if (from.update("delete from appointments where id = ? and version = ?", row.id(), row.version()) == 0) {
+                left++;
+            }
+        }
+        log.debug("Moved customer {} from shard {} to {}: {} appointments copied, {} left", customerId,
+                source.name(), target.name(), changed, left);
+        return new Move(changed != null ? changed : 0, left);
+    }
+
+    private static List<String> customersOn(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList("select distinct customer_id from appointments", String.class);
+    }
+
+    private static Row row(ResultSet rs, int rowNum) throws SQLException {
+        return new Row(rs.getLong("id"), rs.getString("title"), rs.getString("notes"), rs.getString("category"),
+                rs.getObject("start_date", LocalDateTime.class), rs.getObject("end_date", LocalDateTime.class),
+                rs.getBoolean("done"), rs.getString("customer_id"), rs.getLong("version"));
+    }
+
+    private record Row(long id, String title, String notes, String category, LocalDateTime startDate,
+            LocalDateTime endDate, boolean done, String customerId, long version) {
+    }
+
+    private record Move(int copied, int left) {
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ShardProperties;
+import com.example.appointments.config.ShardRing;
+import com.example.appointments.config.ShardRoutingDataSource;
+import com.example.appointments.dto.AppointmentInterval;
+import com.example.appointments.exception.CrossShardMoveException;
+import com.example.appointments.repository.AppointmentRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Decides which shard appointment work runs on. Work about one customer runs on the customer's shard; work
+ * about one appointment on the shard holding it; reads about all appointments run on every shard at once, on
+ * virtual threads, and their results are merged by the caller.
+ * <p>
+ * The shard has to be chosen before a transaction fetches its first connection, so callers select it first
+ * and begin their transaction inside. Lookups that find a shard run on threads of their own, outside the
+ * caller's transaction. Without {@code appointments.shards.enabled} all work simply runs as it is, on the
+ * only database there is.
+ */
+@Component
+@Profile("!reactive")
+public class ShardRouter {
+
+    private final boolean enabled;
+    private final boolean rebalancing;
+    private final List<String> shards;
+    private final ShardRing ring;
+    private final AppointmentRepository appointmentRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+
+    public ShardRouter(ShardProperties properties, AppointmentRepository appointmentRepository,
+            PlatformTransactionManager transactionManager) {
+        this.enabled = properties.isEnabled();
+        this.rebalancing = properties.isRebalancing();
+        this.shards = properties.getNodes().stream().map(ShardProperties.Node::getName).toList();
+        this.ring = enabled ? new ShardRing(shards, properties.getVirtualNodes()) : null;
+        this.appointmentRepository = appointmentRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        this.executor = enabled
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("appointments-shard-", 0).factory())
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the shard names, in configuration order
+     */
+    public List<String> getShards() {
+        return shards;
+    }
+
+    /**
+     * @return the shard the ring assigns the customer to, where its appointments belong
+     */
+    public String ownerOf(String customerId) {
+        return ring.shardOf(customerId);
+    }
+
+    /**
+     * @return the shard the customer's appointments are on. That is its owner, except while
+     *         {@code rebalancing} for customers that have not been moved yet.
+     */
+    public String shardOf(String customerId) {
+        String owner = ownerOf(customerId);
+        if (!rebalancing) {
+            return owner;
+        }
+        List<Boolean> found = onEveryShard(() -> appointmentRepository.existsByCustomerId(customerId));
+        if (found.get(shards.indexOf(owner))) {
+            return owner;
+        }
+        int elsewhere = found.indexOf(Boolean.TRUE);
+        return elsewhere >= 0 ? shards.get(elsewhere) : owner;
+    }
+
+    /**
+     * Runs work about the customer's appointments on its shard.
+     */
+    public <T> T onCustomer(String customerId, Supplier<T> work) {
+        return enabled ? ShardRoutingDataSource.onShard(shardOf(customerId), work) : work.get();
+    }
+
+    public void onCustomer(String customerId, Runnable work) {
+        onCustomer(customerId, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs a read of the customer's appointments on its shard, in a read-only transaction.
+     */
+    public <T> T readCustomer(String customerId, Supplier<T> read) {
+        return onCustomer(customerId, () -> readOnlyTransaction.execute(status -> read.get()));
+    }
+
+    /**
+     * Runs work about the appointment on the shard holding it. A missing appointment runs on the first shard,
+     * where the work finds it missing like it would anywhere else.
+     */
+    public <T> T onAppointment(Long id, Supplier<T> work) {
+        return enabled ? ShardRoutingDataSource.onShard(shardOfAppointment(id), work) : work.get();
+    }
+
+    public void onAppointment(Long id, Runnable work) {
+        onAppointment(id, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Fails when an appointment would move between customers on different shards. Such a move would write
+     * two databases, which no transaction covers.
+     */
+    public void checkSameShard(String customerId, String otherCustomerId) {
+        if (enabled && !customerId.equals(otherCustomerId)
+                && !shardOf(customerId).equals(shardOf(otherCustomerId))) {
+            throw new CrossShardMoveException("Cannot move an appointment from customer " + customerId
+                    + " to customer " + otherCustomerId + ", who is stored on another shard");
+        }
+    }
+
+    /**
+     * Runs {@code work} on every shard at once, each without a transaction of its own.
+     *
+     * @return the results in shard order; unsharded, the one result of running it in the calling thread
+     */
+    public <T> List<T> onEveryShard(Supplier<T> work) {
+        if (!enabled) {
+            return Collections.singletonList(work.get());
+        }
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (String shard : shards) {
+            futures.add(executor.submit(() -> ShardRoutingDataSource.onShard(shard, work)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", ex);
+        } catch (ExecutionException ex) {
+            futures.forEach(future -> future.cancel(true));
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Shard work failed", ex.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Runs {@code work} on the first shard, which keeps what all shards share, such as the outbox relay's row.
+     */
+    public <T> T onFirstShard(Supplier<T> work) {
+        return enabled ? ShardRoutingDataSource.onShard(shards.get(0), work) : work.get();
+    }
+
+    /**
+     * Runs {@code work} on every shard in the calling thread, one after the other in shard order.
+     */
+    public void onEachShardInTurn(Runnable work) {
+        if (!enabled) {
+            work.run();
+            return;
+        }
+        for (String shard : shards) {
+            ShardRoutingDataSource.onShard(shard, () -> {
+                work.run();
+                return null;
+            });
+        }
+    }
+
+    /**
+     * Runs a read on every shard at once, each in a read-only transaction of its own. Unsharded, it runs in
+     * the calling thread, joining its transaction if there is one.
+     *
+     * @return the results in shard order
+     */
+    public <T> List<T> readEveryShard(Supplier<T> read) {
+        return onEveryShard(() -> readOnlyTransaction.execute(status -> read.get()));
+    }
+
+    /**
+     * Splits {@code items} by the shard of their customer and runs {@code work} once per shard on it, one shard
+     * after the other, with the items in their original order.
+     */
+    public <T> void forEachShard(Collection<T> items, Function<? super T, String> customerOf,
+            Consumer<List<T>> work) {
+        if (!enabled) {
+            work.accept(List.copyOf(items));
+            return;
+        }
+        Map<String, String> shardsOfCustomers = new HashMap<>();
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            String shard = shardsOfCustomers.computeIfAbsent(customerOf.apply(item), this::shardOf);
+            groups.computeIfAbsent(shard, key -> new ArrayList<>()).add(item);
+        }
+        groups.forEach((shard, group) -> ShardRoutingDataSource.onShard(shard, () -> {
+            work.accept(group);
+            return null;
+        }));
+    }
+
+    /**
+     * Splits {@code items} by the shard holding their appointment and runs {@code work} once per shard on it,
+     * one shard after the other. Items of missing appointments go to the first shard, where the work finds
+     * them missing.
+     */
+    public <T> void forEachShardOfAppointments(Collection<T> items, Function<? super T, Long> idOf,
+            Consumer<List<T>> work) {
+        if (!enabled) {
+            work.accept(List.copyOf(items));
+            return;
+        }
+        List<Long> ids = items.stream().map(idOf).toList();
+        List<List<AppointmentInterval>> found = onEveryShard(() -> appointmentRepository.findIntervalsByIdIn(ids));
+        Map<Long, String> shardsOfIds = new HashMap<>();
+        for (int i = 0; i < found.size(); i++) {
+            String shard = shards.get(i);
+            // Found twice in the middle of a move, where the copy on the owner is complete
+            found.get(i).forEach(appointment -> shardsOfIds.merge(appointment.getId(), shard,
+                    (first, second) -> ownerOf(appointment.getCustomerId())));
+        }
+        Map<String, List<T>> groups = new LinkedHashMap<>();
+        for (T item : items) {
+            String shard = shardsOfIds.getOrDefault(idOf.apply(item), shards.get(0));
+            groups.computeIfAbsent(shard, key -> new ArrayList<>()).add(item);
+        }
+        groups.forEach((shard, group) -> ShardRoutingDataSource.onShard(shard, () -> {
+            work.accept(group);
+            return null;
+        }));
+    }
+
+    /**
+     * Merges results of every shard, each sorted by {@code order}, keeping at most {@code limit}.
+     */
+    public static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order, int limit) {
+        if (sorted.size() == 1) {
+            List<T> only = sorted.get(0);
+            return only.size() > limit ? only.subList(0, limit) : only;
+        }
+        List<T> merged = new ArrayList<>();
+        sorted.forEach(merged::addAll);
+        // TimSort finds the sorted run of every shard and merges the runs
+        merged.sort(order);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+
+    public static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order) {
+        return merge(sorted, order, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Puts the results of every shard together, in shard order.
+     */
+    public static <T> List<T> concat(List<List<T>> results) {
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        List<T> all = new ArrayList<>();
+        results.forEach(all::addAll);
+        return all;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private String shardOfAppointment(Long id) {
+        List<Optional<AppointmentInterval>> found = onEveryShard(() -> appointmentRepository.findIntervalById(id));
+        String holder = null;
+        for (int i = 0; i < found.size(); i++) {
+            if (found.get(i).isPresent()) {
+                if (holder != null) {
+                    // In the middle of a move, where the copy on the owner is complete
+                    return ownerOf(found.get(i).get().getCustomerId());
+                }
+                holder = shards.get(i);
+            }
+        }
+        return holder != null ? holder : shards.get(0);
+    }
+}
@@ -0,0 +1,20 @@
+-- Appointments as mapped by Appointment. Ids come from a sequence in blocks of 50 (pooled optimizer).
+create sequence appointments_seq start with 1 increment by 50;
+
+create table appointments (
+    id          bigint        not null,
+    title       varchar(255)  not null,
+    notes       varchar(1000),
+    category    varchar(255)  not null,
+    start_date  timestamp(6)  not null,
+    end_date    timestamp(6),
+    done        boolean       not null,
+    customer_id varchar(255)  not null,
+    version     bigint        not null,
+    primary key (id)
+);
+
+create index idx_appointments_customer_start on appointments (customer_id, start_date);
+create index idx_appointments_customer_done on appointments (customer_id, done, start_date);
+create index idx_appointments_customer_category on appointments (customer_id, category, start_date);
+create index idx_appointments_start_id on appointments (start_date, id);
@@ -0,0 +1,12 @@
+-- Outbox of appointment changes, read by sequence range for the change stream (see AppointmentChange)
+create table appointment_changes (
+    seq            bigint        not null,
+    type           enum ('CREATED', 'DELETED', 'PURGED', 'UPDATED') not null,
+    appointment_id bigint,
+    customer_id    varchar(255)  not null,
+    changed_at     timestamp(6)  not null,
+    primary key (seq)
+);
+
+create index idx_appointment_changes_customer_seq on appointment_changes (customer_id, seq);
+create index idx_appointment_changes_changed_at on appointment_changes (changed_at);
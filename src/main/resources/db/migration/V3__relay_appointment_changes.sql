@@ -0,0 +1,19 @@
+-- Changes are numbered by the relay once committed (see AppointmentOutbox), so rows are keyed by a
+-- time-ordered UUID assigned on insert and seq stays empty until the relay gets to them
+alter table appointment_changes add column id uuid;
+update appointment_changes set id = random_uuid();
+alter table appointment_changes alter column id set not null;
+alter table appointment_changes drop primary key;
+alter table appointment_changes add primary key (id);
+alter table appointment_changes alter column seq set null;
+create unique index idx_appointment_changes_seq on appointment_changes (seq);
+
+-- The one row relays lock to take turns, holding the highest number readers may read up to. Sharded, only
+-- the first shard's row is used.
+create table appointment_change_relay (
+    id        int     not null,
+    last_seq  bigint  not null,
+    primary key (id)
+);
+
+insert into appointment_change_relay (id, last_seq) select 1, coalesce(max(seq), 0) from appointment_changes;
@@ -0,0 +1,17 @@
+-- Schema for the reactive profile, where Hibernate does not generate it. Mirrors the Appointment entity.
+create table if not exists appointments (
+    id bigint generated by default as identity primary key,
+    title varchar(255) not null,
+    notes varchar(1000),
+    category varchar(255) not null,
+    start_date timestamp(6) not null,
+    end_date timestamp(6),
+    done boolean not null,
+    customer_id varchar(255) not null,
+    version bigint not null
+);
+
+create index if not exists idx_appointments_customer_start on appointments (customer_id, start_date);
+create index if not exists idx_appointments_customer_done on appointments (customer_id, done, start_date);
+create index if not exists idx_appointments_customer_category on appointments (customer_id, category, start_date);
+create index if not exists idx_appointments_start_id on appointments (start_date, id);
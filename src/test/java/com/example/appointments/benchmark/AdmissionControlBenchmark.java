@@ -0,0 +1,148 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Shows what admission control does for well-behaved customers while one tenant floods the service. Each
+ * well-behaved customer has one connection reading its upcoming appointments about ten times a second, well
+ * within its rate. The flooding tenant opens many connections without pausing, half of them on its own
+ * customer's endpoints and half on {@code GET /api/appointments}, which reads the whole table. Every SQL
+ * statement is delayed to stand in for a real database, and the pool has 10 connections.
+ * <p>
+ * The application is started once without and once with {@code appointments.admission}, and the p99 of the
+ * well-behaved customers is measured alone and next to the flood. Without admission control the flood
+ * queues for the pool in front of them; with it the flood is turned away with 429 and 503 while they keep
+ * close to the latency they see alone.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=AdmissionControlBenchmark}; tune with
+ * {@code -Dbenchmark.customers=...}, {@code -Dbenchmark.flood-connections=...}, {@code -Dbenchmark.seconds=...}
+ * and {@code -Dbenchmark.db-latency-ms=...}.
+ */
+@Tag("benchmark")
+class AdmissionControlBenchmark {
+
+    private static final int CUSTOMERS = Integer.getInteger("benchmark.customers", 20);
+    private static final int FLOOD_CONNECTIONS = Integer.getInteger("benchmark.flood-connections", 200);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 10);
+    private static final long DB_LATENCY_NANOS = Duration.ofMillis(
+            Integer.getInteger("benchmark.db-latency-ms", 2)).toNanos();
+    private static final Duration THINK_TIME = Duration.ofMillis(100);
+    private static final int APPOINTMENTS_PER_CUSTOMER = 50;
+    private static final String FLOODER = "FLOOD0001";
+
+    @Test
+    void compareWithAndWithoutAdmissionControl() throws Exception {
+        Measurement unprotected = measure(false);
+        Measurement protectedByAdmission = measure(true);
+
+        System.out.printf("%n=== %d well-behaved customers, %d flooding connections, %d s, %d ms simulated statement "
+                + "latency ===%n", CUSTOMERS, FLOOD_CONNECTIONS, SECONDS, DB_LATENCY_NANOS / 1_000_000);
+        System.out.println("without admission control");
+        unprotected.print();
+        System.out.println("with admission control");
+        protectedByAdmission.print();
+
+        assertEquals(0, protectedByAdmission.flooded().statuses().getOrDefault(429, 0L));
+        assertTrue(protectedByAdmission.flood().statuses().getOrDefault(429, 0L) > 0);
+        assertTrue(protectedByAdmission.flooded().percentileMillis(99) < unprotected.flooded().percentileMillis(99),
+                "Admission control should keep the p99 of well-behaved customers below the unprotected one");
+    }
+
+    private Measurement measure(boolean admission) throws Exception {
+        // Passed as arguments so they take precedence over application.yml
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:admission-" + admission,
+                "--spring.datasource.hikari.maximum-pool-size=10",
+                "--appointments.admission.enabled=" + admission,
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.appointments=WARN"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new SimulatedLatency(DB_LATENCY_NANOS)))
+                .run(args)) {
+            seed(context.getBean(AppointmentRepository.class));
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+
+            HttpLoadGenerator customers = new HttpLoadGenerator(CUSTOMERS);
+            HttpLoadGenerator flood = new HttpLoadGenerator(FLOOD_CONNECTIONS);
+            // Warm-up lets the JIT settle and the adaptive limit find its level
+            customers.run(Duration.ofSeconds(SECONDS), THINK_TIME, random -> customerRequest(port, random));
+            HttpLoadGenerator.Result alone = customers.run(Duration.ofSeconds(SECONDS), THINK_TIME,
+                    random -> customerRequest(port, random));
+
+            try (ExecutorService runner = Executors.newVirtualThreadPerTaskExecutor()) {
+                Future<HttpLoadGenerator.Result> flooding = runner.submit(
+                        () -> flood.run(Duration.ofSeconds(SECONDS), random -> floodRequest(port, random)));
+                Future<HttpLoadGenerator.Result> flooded = runner.submit(() -> customers.run(
+                        Duration.ofSeconds(SECONDS), THINK_TIME, random -> customerRequest(port, random)));
+                return new Measurement(alone, flooded.get(), flooding.get());
+            }
+        }
+    }
+
+    private static HttpRequest customerRequest(int port, ThreadLocalRandom random) {
+        return get(port, "/api/appointments/customer/CUST" + random.nextInt(CUSTOMERS) + "/upcoming");
+    }
+
+    private static HttpRequest floodRequest(int port, ThreadLocalRandom random) {
+        return get(port, random.nextBoolean()
+                ? "/api/appointments/customer/" + FLOODER + "/upcoming"
+                : "/api/appointments");
+    }
+
+    private static HttpRequest get(int port, String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+
+    private static void seed(AppointmentRepository repository) {
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        for (int c = 0; c <= CUSTOMERS; c++) {
+            String customerId = c < CUSTOMERS ? "CUST" + c : FLOODER;
+            for (int i = 0; i < APPOINTMENTS_PER_CUSTOMER; i++) {
+                Appointment appointment = new Appointment();
+                appointment.setTitle("Appointment " + i);
+                appointment.setCategory("Medical");
+                appointment.setStartDate(start.plusHours(i));
+                appointment.setDone(false);
+                appointment.setCustomerId(customerId);
+                appointments.add(appointment);
+            }
+        }
+        repository.saveAll(appointments);
+    }
+
+    private record Measurement(HttpLoadGenerator.Result alone, HttpLoadGenerator.Result flooded,
+            HttpLoadGenerator.Result flood) {
+
+        void print() {
+            System.out.println("  well-behaved, alone:      " + alone);
+            System.out.println("  well-behaved, with flood: " + flooded);
+            System.out.println("  flooding tenant:          " + flood);
+        }
+    }
+}
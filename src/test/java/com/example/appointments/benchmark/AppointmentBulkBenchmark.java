@@ -0,0 +1,99 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares importing appointments one {@code POST /api/appointments} at a time, as
+ * {@code init-appointments.sh} used to, with a single NDJSON {@code POST /api/appointments/bulk}.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=AppointmentBulkBenchmark}; change the item count with
+ * {@code -Dbenchmark.items=...}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.appointments=WARN"
+})
+class AppointmentBulkBenchmark {
+
+    private static final int ITEMS = Integer.getInteger("benchmark.items", 5_000);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void compareSingleAndBulkImport() throws Exception {
+        // Warm up both paths so the comparison is not dominated by JIT and connection setup
+        importOneByOne(200);
+        importBulk(200);
+        appointmentRepository.deleteAllInBatch();
+
+        long singleNanos = importOneByOne(ITEMS);
+        assertEquals(ITEMS, appointmentRepository.count());
+        appointmentRepository.deleteAllInBatch();
+
+        long bulkNanos = importBulk(ITEMS);
+        assertEquals(ITEMS, appointmentRepository.count());
+
+        System.out.printf("%n=== importing %,d appointments ===%n", ITEMS);
+        System.out.printf("single POST loop: %,8d ms (%,.0f items/s)%n",
+                singleNanos / 1_000_000, ITEMS / (singleNanos / 1e9));
+        System.out.printf("bulk NDJSON POST: %,8d ms (%,.0f items/s)%n",
+                bulkNanos / 1_000_000, ITEMS / (bulkNanos / 1e9));
+        System.out.printf("speedup: %.1fx%n", (double) singleNanos / bulkNanos);
+    }
+
+    private long importOneByOne(int items) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < items; i++) {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(uri("/api/appointments"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(item(i)))
+                    .build(), HttpResponse.BodyHandlers.discarding());
+            assertEquals(201, response.statusCode());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long importBulk(int items) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < items; i++) {
+            body.append(item(i)).append('\n');
+        }
+        long start = System.nanoTime();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri("/api/appointments/bulk"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, response.statusCode());
+        return System.nanoTime() - start;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static String item(int i) {
+        return "{\"title\":\"Appointment " + i + "\",\"notes\":\"Imported\",\"category\":\"Medical\","
+                + "\"startDate\":\"" + LocalDateTime.of(2025, 11, 15, 8, 0).plusMinutes(i) + "\","
+                + "\"done\":false,\"customerId\":\"CUST" + (i % 100) + "\"}";
+    }
+}
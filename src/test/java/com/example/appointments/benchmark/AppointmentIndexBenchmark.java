@@ -0,0 +1,209 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.model.Appointment;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Compares query plans and latencies of the repository's customer-scoped queries on an H2 table
+ * with and without the indexes declared on {@link Appointment}.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=AppointmentIndexBenchmark}. The row count defaults to
+ * one million and can be changed with {@code -Dbenchmark.rows=...}.
+ */
+@Tag("benchmark")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class AppointmentIndexBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 1_000_000);
+    private static final int APPOINTMENTS_PER_CUSTOMER = 100;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 20;
+    private static final String[] CATEGORIES = {"Medical", "Dental", "Finance", "Legal", "Automotive"};
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 8, 0);
+    private static final LocalDateTime NOW = BASE.plusDays(APPOINTMENTS_PER_CUSTOMER / 2);
+
+    private final Map<String, Query> queries = new LinkedHashMap<>();
+    private Connection connection;
+
+    @BeforeAll
+    void seed() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:index-benchmark;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=0", "sa", "");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table appointments ("
+                    + "id bigint primary key, title varchar(255) not null, notes varchar(1000), "
+                    + "category varchar(255) not null, start_date timestamp(6) not null, "
+                    + "done boolean not null, customer_id varchar(255) not null)");
+        }
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into appointments values (?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < ROWS; i++) {
+                int customer = i / APPOINTMENTS_PER_CUSTOMER;
+                int sequence = i % APPOINTMENTS_PER_CUSTOMER;
+                insert.setLong(1, i + 1);
+                insert.setString(2, "Appointment " + i);
+                insert.setString(3, "Notes for appointment " + i);
+                insert.setString(4, CATEGORIES[sequence % CATEGORIES.length]);
+                insert.setTimestamp(5, Timestamp.valueOf(BASE.plusDays(sequence).plusMinutes(customer % 600)));
+                insert.setBoolean(6, sequence % 3 == 0);
+                insert.setString(7, customerId(customer));
+                insert.addBatch();
+                if (i % 10_000 == 9_999) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        // Each run targets a different customer so H2 cannot answer from a cached result
+        Timestamp now = Timestamp.valueOf(NOW);
+        queries.put("findByCustomerId", new Query(
+                "select * from appointments where customer_id = ?",
+                run -> new Object[] {customerId(run)}));
+        queries.put("findByIdAndCustomerId", new Query(
+                "select * from appointments where id = ? and customer_id = ?",
+                run -> new Object[] {(long) run * APPOINTMENTS_PER_CUSTOMER + 1, customerId(run)}));
+        queries.put("findUpcomingByCustomerId", new Query(
+                "select * from appointments where customer_id = ? and start_date >= ? order by start_date",
+                run -> new Object[] {customerId(run), now}));
+        queries.put("findOverdueByCustomerId", new Query(
+                "select * from appointments where customer_id = ? and done = false and start_date < ? "
+                        + "order by start_date",
+                run -> new Object[] {customerId(run), now}));
+        queries.put("findByCustomerIdAndCategoryInWindow", new Query(
+                "select * from appointments where customer_id = ? and category = ? "
+                        + "and start_date >= ? and start_date < ? order by start_date",
+                run -> new Object[] {customerId(run), "Dental", Timestamp.valueOf(BASE), now}));
+        queries.put("findPageAfter", new Query(
+                "select * from appointments where start_date >= ? and (start_date > ? or id > ?) "
+                        + "order by start_date, id fetch first 51 rows only",
+                run -> {
+                    Timestamp after = Timestamp.valueOf(NOW.plusMinutes(run));
+                    return new Object[] {after, after, (long) run};
+                }));
+        queries.put("deleteByCustomerId (predicate)", new Query(
+                "select count(*) from appointments where customer_id = ?",
+                run -> new Object[] {customerId(run)}));
+    }
+
+    @AfterAll
+    void close() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    void compareQueriesWithAndWithoutIndexes() throws SQLException {
+        System.out.printf("%n=== %,d appointments, %d per customer ===%n", ROWS, APPOINTMENTS_PER_CUSTOMER);
+        Map<String, double[]> before = measureAll("without indexes");
+
+        try (Statement statement = connection.createStatement()) {
+            for (String ddl : indexDdl()) {
+                statement.execute(ddl);
+            }
+        }
+        Map<String, double[]> after = measureAll("with indexes");
+
+        System.out.printf("%n%-38s %14s %14s %10s%n", "query", "before p50 ms", "after p50 ms", "speedup");
+        for (String name : queries.keySet()) {
+            double beforeMs = before.get(name)[0];
+            double afterMs = after.get(name)[0];
+            System.out.printf("%-38s %14.3f %14.3f %9.1fx%n", name, beforeMs, afterMs, beforeMs / afterMs);
+        }
+    }
+
+    private Map<String, double[]> measureAll(String label) throws SQLException {
+        System.out.printf("%n--- %s ---%n", label);
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Query> entry : queries.entrySet()) {
+            Query query = entry.getValue();
+            System.out.printf("%s%n  plan: %s%n", entry.getKey(), explain(query).replaceAll("\\s+", " "));
+            double[] latencies = measure(query);
+            System.out.printf("  p50 %.3f ms, p95 %.3f ms%n", latencies[0], latencies[1]);
+            results.put(entry.getKey(), latencies);
+        }
+        return results;
+    }
+
+    private String explain(Query query) throws SQLException {
+        try (PreparedStatement statement = query.prepare(connection, "explain ", 0);
+                ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private double[] measure(Query query) throws SQLException {
+        List<Long> samples = new ArrayList<>();
+        for (int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+            long start = System.nanoTime();
+            try (PreparedStatement statement = query.prepare(connection, "", run * 97 % customers());
+                    ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    rs.getObject(1);
+                }
+            }
+            if (run >= WARMUP_RUNS) {
+                samples.add(System.nanoTime() - start);
+            }
+        }
+        long[] sorted = samples.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new double[] {
+                sorted[sorted.length / 2] / 1_000_000.0,
+                sorted[(int) Math.ceil(sorted.length * 0.95) - 1] / 1_000_000.0};
+    }
+
+    /**
+     * Builds the DDL from the entity mapping so the benchmark always measures the indexes that ship.
+     */
+    private static List<String> indexDdl() {
+        Table table = Appointment.class.getAnnotation(Table.class);
+        return Arrays.stream(table.indexes())
+                .map((Index index) -> "create index " + index.name() + " on " + table.name()
+                        + " (" + index.columnList() + ")")
+                .toList();
+    }
+
+    private static int customers() {
+        return ROWS / APPOINTMENTS_PER_CUSTOMER;
+    }
+
+    private static String customerId(int customer) {
+        return String.format("CUST%06d", customer);
+    }
+
+    private record Query(String sql, IntFunction<Object[]> parametersForRun) {
+
+        PreparedStatement prepare(Connection connection, String prefix, int run) throws SQLException {
+            Object[] parameters = parametersForRun.apply(run);
+            PreparedStatement statement = connection.prepareStatement(prefix + sql);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.repository.AppointmentRepository;
+import com.example.appointments.service.AppointmentBulkService;
+import com.example.appointments.service.AppointmentService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares purging one customer the way the derived {@code deleteByCustomerId} did (load every entity,
+ * then remove it row by row) with the chunked set-based DELETE used by
+ * {@link AppointmentService#deleteAppointmentsByCustomerId(String)}.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=CustomerPurgeBenchmark}; change the customer size with
+ * {@code -Dbenchmark.rows=...}.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.example.appointments=WARN"
+})
+class CustomerPurgeBenchmark {
+
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 100_000);
+    private static final String CUSTOMER = "PURGE-ME";
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentBulkService appointmentBulkService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void compareEntityAndSetBasedPurge() {
+        seed();
+        long entityStart = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status ->
+                appointmentRepository.deleteAll(appointmentRepository.findByCustomerId(CUSTOMER)));
+        long entityNanos = System.nanoTime() - entityStart;
+        assertEquals(0, appointmentRepository.count());
+
+        seed();
+        long setStart = System.nanoTime();
+        int deleted = appointmentService.deleteAppointmentsByCustomerId(CUSTOMER);
+        long setNanos = System.nanoTime() - setStart;
+        assertEquals(ROWS, deleted);
+        assertEquals(0, appointmentRepository.count());
+
+        System.out.printf("%n=== purging a customer with %,d appointments ===%n", ROWS);
+        System.out.printf("load + delete per entity: %,8d ms%n", entityNanos / 1_000_000);
+        System.out.printf("chunked set-based delete: %,8d ms%n", setNanos / 1_000_000);
+        System.out.printf("speedup: %.1fx%n", (double) entityNanos / setNanos);
+    }
+
+    private void seed() {
+        List<AppointmentRequest> chunk = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            chunk.add(new AppointmentRequest("Appointment " + i, null, "Medical",
+                    LocalDateTime.of(2025, 1, 1, 8, 0).plusMinutes(i), null, false, CUSTOMER));
+            if (chunk.size() == 10_000 || i == ROWS - 1) {
+                appointmentBulkService.createAppointments(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+        assertEquals(ROWS, appointmentRepository.count());
+    }
+}
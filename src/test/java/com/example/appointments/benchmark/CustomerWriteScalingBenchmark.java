@@ -0,0 +1,110 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.example.appointments.service.AppointmentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput of {@code patchAppointmentByCustomer} from a fixed number of writers spread over 1 to
+ * {@code WRITERS} customers. Writers of one customer take turns on its lock, so with one customer the writes
+ * run one at a time and throughput should grow with the number of customers until the writers run out.
+ * Every statement is delayed to stand in for a remote database, which keeps the single-core sandbox from
+ * being the bottleneck.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=CustomerWriteScalingBenchmark}; tune with
+ * {@code -Dbenchmark.seconds=...} and {@code -Dbenchmark.db-latency-ms=...}.
+ */
+@Tag("benchmark")
+class CustomerWriteScalingBenchmark {
+
+    private static final int WRITERS = 32;
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 5);
+    private static final long DB_LATENCY_NANOS = Duration.ofMillis(
+            Integer.getInteger("benchmark.db-latency-ms", 5)).toNanos();
+
+    @Test
+    void scalesWithCustomers() throws Exception {
+        String[] args = {
+                "--spring.datasource.hikari.maximum-pool-size=" + (WRITERS + 8),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.appointments=WARN"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new SimulatedLatency(DB_LATENCY_NANOS)))
+                .run(args)) {
+            AppointmentService service = context.getBean(AppointmentService.class);
+            AppointmentRepository repository = context.getBean(AppointmentRepository.class);
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+
+            System.out.printf("%n=== %d writers, %d s per run, %d ms simulated statement latency ===%n",
+                    WRITERS, SECONDS, DB_LATENCY_NANOS / 1_000_000);
+            double single = 0;
+            double widest = 0;
+            for (int customers = 1; customers <= WRITERS; customers *= 2) {
+                double perSecond = run(service, repository, objectMapper, customers);
+                if (customers == 1) {
+                    single = perSecond;
+                }
+                widest = perSecond;
+                System.out.printf("%2d customers: %,8.0f writes/s (%.1fx)%n", customers, perSecond, perSecond / single);
+            }
+            assertTrue(widest > single);
+        }
+    }
+
+    private static double run(AppointmentService service, AppointmentRepository repository, ObjectMapper objectMapper,
+            int customers) throws Exception {
+        String prefix = "SCALE" + customers + "-";
+        List<Appointment> appointments = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            appointments.add(new Appointment(null, "Appointment " + w, null, "Medical",
+                    LocalDateTime.of(2030, 1, 1, 8, 0).plusHours(w), null, false, prefix + (w % customers), null));
+        }
+        repository.saveAll(appointments);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<Integer>> writers = new ArrayList<>();
+            for (Appointment appointment : appointments) {
+                writers.add(executor.submit(() -> {
+                    int writes = 0;
+                    while (running.get()) {
+                        service.patchAppointmentByCustomer(appointment.getCustomerId(), appointment.getId(),
+                                objectMapper.createObjectNode().put("notes", "write " + writes), null);
+                        writes++;
+                    }
+                    return writes;
+                }));
+            }
+            Thread.sleep(Duration.ofSeconds(SECONDS));
+            running.set(false);
+            int total = 0;
+            for (Future<Integer> writer : writers) {
+                total += writer.get();
+            }
+            return total / (double) SECONDS;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
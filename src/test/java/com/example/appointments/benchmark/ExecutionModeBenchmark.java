@@ -0,0 +1,108 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the default platform-thread Tomcat pool with the {@code virtual} profile under many concurrent
+ * connections. Each mode starts its own application instance with the same 20-connection pool, and every
+ * SQL statement is delayed to stand in for the network round trip to a real database (H2 in memory would
+ * otherwise never block).
+ * <p>
+ * The mix is 80% cached {@code GET /api/appointments/{id}} and 20% uncached
+ * {@code GET /api/appointments/customer/{customerId}/upcoming}. With platform threads the slow queries
+ * occupy the 200 request threads and cached reads queue behind them; with virtual threads the slow queries
+ * wait for a database permit while cached reads keep being served.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=ExecutionModeBenchmark}; tune with
+ * {@code -Dbenchmark.connections=...}, {@code -Dbenchmark.seconds=...}, {@code -Dbenchmark.warmup-seconds=...}
+ * and {@code -Dbenchmark.db-latency-ms=...}.
+ */
+@Tag("benchmark")
+class ExecutionModeBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("benchmark.connections", 5_000);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 20);
+    private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmup-seconds", 20);
+    private static final long DB_LATENCY_NANOS = Duration.ofMillis(
+            Integer.getInteger("benchmark.db-latency-ms", 5)).toNanos();
+    private static final int APPOINTMENTS = 1_000;
+    private static final int CUSTOMERS = 100;
+
+    @Test
+    void comparePlatformAndVirtualThreads() throws Exception {
+        HttpLoadGenerator.Result platform = measure("platform");
+        HttpLoadGenerator.Result virtual = measure("virtual");
+
+        System.out.printf("%n=== %,d connections, %d s, %d ms simulated statement latency ===%n",
+                CONNECTIONS, SECONDS, DB_LATENCY_NANOS / 1_000_000);
+        System.out.println("platform threads: " + platform);
+        System.out.println("virtual threads:  " + virtual);
+        assertTrue(platform.requests() > 0 && virtual.requests() > 0);
+    }
+
+    private HttpLoadGenerator.Result measure(String mode) throws Exception {
+        // Passed as arguments so they take precedence over application.yml
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + mode,
+                "--spring.datasource.hikari.maximum-pool-size=20",
+                "--server.tomcat.max-connections=10000",
+                "--server.tomcat.accept-count=1000",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.appointments=WARN"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .profiles(mode.equals("virtual") ? new String[]{"virtual"} : new String[0])
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new SimulatedLatency(DB_LATENCY_NANOS)))
+                .run(args)) {
+            seed(context.getBean(AppointmentRepository.class));
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+
+            HttpLoadGenerator load = new HttpLoadGenerator(CONNECTIONS);
+            // Warm-up fills the appointment cache and lets the JIT settle
+            load.run(Duration.ofSeconds(WARMUP_SECONDS), random -> request(port, random));
+            return load.run(Duration.ofSeconds(SECONDS), random -> request(port, random));
+        }
+    }
+
+    private static HttpRequest request(int port, ThreadLocalRandom random) {
+        String path = random.nextInt(100) < 80
+                ? "/api/appointments/" + (1 + random.nextInt(APPOINTMENTS))
+                : "/api/appointments/customer/CUST" + random.nextInt(CUSTOMERS) + "/upcoming";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+
+    private static void seed(AppointmentRepository repository) {
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setTitle("Appointment " + i);
+            appointment.setCategory("Medical");
+            appointment.setStartDate(start.plusHours(i));
+            appointment.setDone(false);
+            appointment.setCustomerId("CUST" + (i % CUSTOMERS));
+            appointments.add(appointment);
+        }
+        repository.saveAll(appointments);
+    }
+}
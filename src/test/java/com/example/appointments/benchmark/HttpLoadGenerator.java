@@ -0,0 +1,125 @@
+package com.example.appointments.benchmark;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Closed-loop HTTP load generator for the benchmarks: each simulated connection runs on its own virtual
+ * thread and sends its next request as soon as the previous response arrived, for a fixed duration.
+ */
+class HttpLoadGenerator {
+
+    private final HttpClient client;
+    private final int connections;
+
+    HttpLoadGenerator(int connections) {
+        this.connections = connections;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Runs the load for the given duration. The request function receives a random number so callers can
+     * mix request types.
+     */
+    Result run(Duration duration, Function<ThreadLocalRandom, HttpRequest> requests) throws InterruptedException {
+        return run(duration, Duration.ZERO, requests);
+    }
+
+    /**
+     * Runs the load with every connection pausing for {@code thinkTime} after each response, like a client
+     * that keeps to a request rate of its own. The pauses are not part of the latencies.
+     */
+    Result run(Duration duration, Duration thinkTime, Function<ThreadLocalRandom, HttpRequest> requests)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + duration.toNanos();
+        long[][] latencies = new long[connections][];
+        int[] counts = new int[connections];
+        Map<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong failures = new AtomicLong();
+
+        long start = System.nanoTime();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < connections; c++) {
+                int connection = c;
+                workers.execute(() -> {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(requests.apply(random),
+                                    HttpResponse.BodyHandlers.discarding());
+                            statuses.computeIfAbsent(response.statusCode(), s -> new AtomicLong()).incrementAndGet();
+                        } catch (Exception ex) {
+                            failures.incrementAndGet();
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = System.nanoTime() - sent;
+                        if (!thinkTime.isZero()) {
+                            try {
+                                Thread.sleep(thinkTime);
+                            } catch (InterruptedException ex) {
+                                break;
+                            }
+                        }
+                    }
+                    latencies[connection] = samples;
+                    counts[connection] = count;
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int total = Arrays.stream(counts).sum();
+        long[] all = new long[total];
+        int offset = 0;
+        for (int c = 0; c < connections; c++) {
+            System.arraycopy(latencies[c], 0, all, offset, counts[c]);
+            offset += counts[c];
+        }
+        Arrays.sort(all);
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.get()));
+        return new Result(total, failures.get(), statusCounts, elapsed, all);
+    }
+
+    record Result(long requests, long failures, Map<Integer, Long> statuses, long elapsedNanos, long[] sortedLatencies) {
+
+        double throughput() {
+            return requests / (elapsedNanos / 1e9);
+        }
+
+        double percentileMillis(double percentile) {
+            if (sortedLatencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%,9d requests %,9.0f req/s  p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms  "
+                            + "statuses %s  failures %d", requests, throughput(), percentileMillis(50),
+                    percentileMillis(99), percentileMillis(100), statuses, failures);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Per-request cost of logging: the default configuration (SQL echoed to stdout, DEBUG application logging,
+ * synchronous console) against the {@code prod} profile (no SQL echo, application logging at WARN, a 1%
+ * access log and asynchronous appenders). Each mode starts its own application instance and is driven with
+ * the same mix of 80% {@code GET /api/appointments/customer/{customerId}/upcoming} and 20%
+ * {@code POST /api/appointments/{id}/done}.
+ * <p>
+ * Besides throughput and latency it reports process CPU time per request. Load generator and server share
+ * the JVM, so the absolute figure includes the client, but the difference between the modes is the
+ * logging.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=LoggingOverheadBenchmark}; tune with
+ * {@code -Dbenchmark.connections=...}, {@code -Dbenchmark.seconds=...} and
+ * {@code -Dbenchmark.warmup-seconds=...}. The default run prints its whole SQL log, so expect a lot of output.
+ */
+@Tag("benchmark")
+class LoggingOverheadBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("benchmark.connections", 32);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 10);
+    private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmup-seconds", 5);
+    private static final int APPOINTMENTS = 1_000;
+    private static final int CUSTOMERS = 100;
+
+    @Test
+    void compareDefaultAndProdLogging() throws Exception {
+        Measurement standard = measure("default");
+        Measurement prod = measure("prod");
+
+        System.out.printf("%n=== %d connections, %d s ===%n", CONNECTIONS, SECONDS);
+        System.out.println("default logging: " + standard);
+        System.out.println("prod profile:    " + prod);
+        System.out.printf("CPU saved per request: %.0f us%n",
+                standard.cpuMicrosPerRequest() - prod.cpuMicrosPerRequest());
+        assertTrue(standard.result().requests() > 0 && prod.result().requests() > 0);
+    }
+
+    private Measurement measure(String mode) throws Exception {
+        // Passed as arguments so they take precedence over application.yml
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:logging-" + mode,
+                "--appointments.logging.slow-query-file=target/slow-queries.log"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .profiles(mode.equals("prod") ? new String[]{"prod"} : new String[0])
+                .run(args)) {
+            seed(context.getBean(AppointmentRepository.class));
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+
+            HttpLoadGenerator load = new HttpLoadGenerator(CONNECTIONS);
+            load.run(Duration.ofSeconds(WARMUP_SECONDS), random -> request(port, random));
+            long cpuBefore = processCpuNanos();
+            HttpLoadGenerator.Result result = load.run(Duration.ofSeconds(SECONDS), random -> request(port, random));
+            return new Measurement(result, processCpuNanos() - cpuBefore);
+        }
+    }
+
+    private static HttpRequest request(int port, ThreadLocalRandom random) {
+        if (random.nextInt(100) < 80) {
+            return HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                            + "/api/appointments/customer/CUST" + random.nextInt(CUSTOMERS) + "/upcoming"))
+                    .timeout(Duration.ofSeconds(60))
+                    .GET()
+                    .build();
+        }
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/api/appointments/" + (1 + random.nextInt(APPOINTMENTS)) + "/done"))
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+
+    private static void seed(AppointmentRepository repository) {
+        List<Appointment> appointments = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            Appointment appointment = new Appointment();
+            appointment.setTitle("Appointment " + i);
+            appointment.setCategory("Medical");
+            appointment.setStartDate(start.plusHours(i));
+            appointment.setDone(false);
+            appointment.setCustomerId("CUST" + (i % CUSTOMERS));
+            appointments.add(appointment);
+        }
+        repository.saveAll(appointments);
+    }
+
+    private record Measurement(HttpLoadGenerator.Result result, long cpuNanos) {
+
+        double cpuMicrosPerRequest() {
+            return result.requests() == 0 ? 0 : cpuNanos / 1_000.0 / result.requests();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s  CPU %,.0f us/request", result, cpuMicrosPerRequest());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.appointments.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delays every prepared statement by a fixed latency, standing in for the network round trip to a real
+ * database (H2 in memory would otherwise never block). Registered ahead of the application's own
+ * post-processors, so it sits between the connection pool and the concurrency limiter and the delay is
+ * spent while holding a pooled connection, as a remote round trip would be.
+ */
+class SimulatedLatency implements BeanPostProcessor {
+
+    private final long latencyNanos;
+
+    SimulatedLatency(long latencyNanos) {
+        this.latencyNanos = latencyNanos;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource dataSource)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class<?>[]{DataSource.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(method, dataSource, args);
+                    return result instanceof Connection connection ? delaying(connection) : result;
+                });
+    }
+
+    private Connection delaying(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().startsWith("prepare")) {
+                        LockSupport.parkNanos(latencyNanos);
+                    }
+                    return invoke(method, connection, args);
+                });
+    }
+
+    private static Object invoke(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
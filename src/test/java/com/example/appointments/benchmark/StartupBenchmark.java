@@ -0,0 +1,176 @@
+package com.example.appointments.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Startup time and memory of each packaging mode, measured on the built artifacts in separate processes with
+ * the {@code prod} profile: the plain jar, the jar with Spring AOT ({@code -Paot}), the extracted jar with a
+ * CDS archive ({@code -Pcds}, plus AOT when built with both) and the native image ({@code -Pnative}). Modes
+ * whose artifacts are missing are skipped.
+ * <p>
+ * Reports the time from launching the process to the first successful request, Spring Boot's own
+ * {@code application.ready.time}, and the resident set size once ready. Build first, then run:
+ * <pre>
+ * mvn -Paot,cds package -DskipTests
+ * mvn -Pnative native:compile -DskipTests   # optional, needs GraalVM
+ * mvn -Pbenchmark test -Dtest=StartupBenchmark
+ * </pre>
+ * Each mode is started {@code -Dbenchmark.runs=...} times (default 5) and the median is reported. RSS is read
+ * from {@code /proc}, so it is only reported on Linux.
+ */
+@Tag("benchmark")
+class StartupBenchmark {
+
+    private static final int RUNS = Integer.getInteger("benchmark.runs", 5);
+    private static final Duration TIMEOUT = Duration.ofSeconds(60);
+    private static final Path TARGET = Path.of("target");
+    private static final String FINAL_NAME = System.getProperty("benchmark.final-name",
+            "appointments-api-0.0.1-SNAPSHOT");
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void compareStartupModes() throws Exception {
+        Path jar = TARGET.resolve(FINAL_NAME + ".jar");
+        assumeTrue(Files.exists(jar), "Package the application first: mvn -Paot,cds package -DskipTests");
+        boolean aot = Files.isDirectory(TARGET.resolve("spring-aot/main/classes"));
+        Path cdsJar = TARGET.resolve("cds").resolve(FINAL_NAME + ".jar");
+        Path archive = TARGET.resolve("cds/application.jsa");
+        Path nativeImage = TARGET.resolve("appointments-api");
+
+        List<String> java = List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        List<Mode> modes = new ArrayList<>();
+        modes.add(new Mode("jar", concat(java, "-jar", jar.toString())));
+        if (aot) {
+            modes.add(new Mode("jar + AOT", concat(java, "-Dspring.aot.enabled=true", "-jar", jar.toString())));
+        }
+        if (Files.exists(archive)) {
+            modes.add(new Mode(aot ? "CDS + AOT" : "CDS", concat(java, "-XX:SharedArchiveFile=" + archive,
+                    "-Dspring.aot.enabled=" + aot, "-jar", cdsJar.toString())));
+        }
+        if (Files.isExecutable(nativeImage)) {
+            modes.add(new Mode("native", List.of(nativeImage.toString())));
+        }
+
+        List<String> lines = new ArrayList<>();
+        for (Mode mode : modes) {
+            lines.add(measure(mode));
+        }
+
+        System.out.printf("%n=== Startup, median of %d runs, prod profile ===%n", RUNS);
+        System.out.printf("%-10s %18s %18s %10s%n", "mode", "first request ms", "ready (Boot) ms", "RSS MB");
+        lines.forEach(System.out::println);
+        assertTrue(!lines.isEmpty());
+    }
+
+    private String measure(Mode mode) throws Exception {
+        long[] firstRequest = new long[RUNS];
+        long[] ready = new long[RUNS];
+        long[] rss = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            int port = freePort();
+            List<String> command = concat(mode.command(), "--server.port=" + port, "--spring.profiles.active=prod",
+                    "--appointments.logging.slow-query-file=target/slow-queries.log");
+            long start = System.nanoTime();
+            Process process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            try {
+                awaitFirstRequest(port, process);
+                firstRequest[run] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                ready[run] = readyMillis(port);
+                rss[run] = rssKilobytes(process.pid());
+            } finally {
+                process.destroy();
+                if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                    process.destroyForcibly().waitFor();
+                }
+            }
+        }
+        return String.format("%-10s %18d %18d %10s", mode.name(), median(firstRequest), median(ready),
+                median(rss) < 0 ? "n/a" : String.valueOf(median(rss) / 1024));
+    }
+
+    private void awaitFirstRequest(int port, Process process) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/appointments/page"))
+                .timeout(Duration.ofSeconds(5))
+                .build();
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Exited with " + process.exitValue() + ": " + process.info());
+            }
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException ex) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("Not serving after " + TIMEOUT);
+    }
+
+    private long readyMillis(int port) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/actuator/metrics/application.ready.time")).build();
+        JsonNode metric = objectMapper.readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+        return Math.round(metric.path("measurements").path(0).path("value").asDouble() * 1000);
+    }
+
+    private static long rssKilobytes(long pid) throws IOException {
+        Path status = Path.of("/proc", String.valueOf(pid), "status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        return Files.readAllLines(status).stream()
+                .filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static List<String> concat(List<String> head, String... tail) {
+        List<String> command = new ArrayList<>(head);
+        command.addAll(Arrays.asList(tail));
+        return command;
+    }
+
+    private record Mode(String name, List<String> command) {
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.dto.AppointmentRequest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the servlet stack (platform and virtual threads) with the {@code reactive} profile for memory per
+ * open connection and tail latency under many concurrent connections. Every request is an uncached
+ * {@code GET /api/appointments/customer/{customerId}/upcoming}, so both stacks do the same database work.
+ * <p>
+ * Memory is sampled in the middle of the measured run after a full GC: the growth of retained heap and live
+ * threads over the idle baseline, divided by the number of connections. The load generator runs in the same
+ * JVM, so its per-connection state is included equally for every stack; compare the stacks with each other
+ * rather than reading the figures as absolute server cost. Thread stacks live outside the heap and are only
+ * reflected in the thread count.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=WebStackBenchmark}; tune with {@code -Dbenchmark.connections=...},
+ * {@code -Dbenchmark.seconds=...} and {@code -Dbenchmark.warmup-seconds=...}.
+ */
+@Tag("benchmark")
+class WebStackBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("benchmark.connections", 5_000);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 20);
+    private static final int WARMUP_SECONDS = Integer.getInteger("benchmark.warmup-seconds", 20);
+    private static final int APPOINTMENTS = 1_000;
+    private static final int CUSTOMERS = 100;
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compareServletAndReactiveStacks() throws Exception {
+        Map<String, String> results = new LinkedHashMap<>();
+        results.put("servlet (platform)", measure());
+        results.put("servlet (virtual) ", measure("virtual"));
+        results.put("reactive          ", measure("reactive"));
+
+        System.out.printf("%n=== %,d connections, %d s ===%n", CONNECTIONS, SECONDS);
+        results.forEach((stack, result) -> System.out.println(stack + " " + result));
+        assertTrue(results.values().stream().noneMatch(String::isEmpty));
+    }
+
+    private String measure(String... profiles) throws Exception {
+        String name = profiles.length == 0 ? "servlet" : profiles[0];
+        // Passed as arguments so they take precedence over application.yml
+        String[] args = {
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + name,
+                "--spring.r2dbc.url=r2dbc:h2:mem:///" + name,
+                "--server.tomcat.max-connections=10000",
+                "--server.tomcat.accept-count=1000",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.appointments=WARN"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .profiles(profiles)
+                .run(args)) {
+            int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+            seed(port);
+
+            HttpLoadGenerator load = new HttpLoadGenerator(CONNECTIONS);
+            load.run(Duration.ofSeconds(WARMUP_SECONDS), random -> request(port, random));
+
+            long baselineHeap = heapAfterGc();
+            int baselineThreads = threads.getThreadCount();
+            long[] underLoad = new long[2];
+            Thread sampler = Thread.ofVirtual().start(() -> {
+                try {
+                    Thread.sleep(Duration.ofSeconds(SECONDS).dividedBy(2));
+                    underLoad[0] = heapAfterGc();
+                    underLoad[1] = threads.getThreadCount();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            HttpLoadGenerator.Result result = load.run(Duration.ofSeconds(SECONDS), random -> request(port, random));
+            sampler.join();
+
+            return String.format("%s  heap/conn %,7.1f KB  threads %,5d -> %,5d", result,
+                    (underLoad[0] - baselineHeap) / 1024.0 / CONNECTIONS, baselineThreads, underLoad[1]);
+        }
+    }
+
+    private long heapAfterGc() {
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static HttpRequest request(int port, ThreadLocalRandom random) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port
+                        + "/api/appointments/customer/CUST" + random.nextInt(CUSTOMERS) + "/upcoming"))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+
+    // Seeded over HTTP so the same code path works against either persistence stack
+    private static void seed(int port) {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        List<AppointmentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < APPOINTMENTS; i++) {
+            requests.add(new AppointmentRequest("Appointment " + i, null, "Medical", start.plusHours(i), null, false,
+                    "CUST" + (i % CUSTOMERS)));
+        }
+        for (AppointmentRequest request : requests) {
+            client.post().uri("/api/appointments").bodyValue(request).retrieve().toBodilessEntity().block();
+        }
+    }
+}
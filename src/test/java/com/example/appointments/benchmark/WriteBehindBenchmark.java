@@ -0,0 +1,131 @@
+package com.example.appointments.benchmark;
+
+import com.example.appointments.AppointmentsApiApplication;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.example.appointments.service.AppointmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Writers pushing the state of their own appointment as fast as they can, written synchronously and through
+ * the write-behind queue. Every statement is delayed to stand in for a remote database. Prints accepted
+ * updates per second and the UPDATE statements it took to write them.
+ * <p>
+ * Run with {@code mvn -Pbenchmark test -Dtest=WriteBehindBenchmark}; tune with {@code -Dbenchmark.seconds=...},
+ * {@code -Dbenchmark.writers=...} and {@code -Dbenchmark.db-latency-ms=...}.
+ */
+@Tag("benchmark")
+class WriteBehindBenchmark {
+
+    private static final int WRITERS = Integer.getInteger("benchmark.writers", 16);
+    private static final int SECONDS = Integer.getInteger("benchmark.seconds", 5);
+    private static final long DB_LATENCY_NANOS = Duration.ofMillis(
+            Integer.getInteger("benchmark.db-latency-ms", 2)).toNanos();
+
+    @Test
+    void compareWriteModes() throws Exception {
+        String[] args = {
+                "--appointments.write-behind.enabled=true",
+                "--spring.datasource.hikari.maximum-pool-size=" + (WRITERS + 4),
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.appointments=WARN"};
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AppointmentsApiApplication.class)
+                .web(WebApplicationType.NONE)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new SimulatedLatency(DB_LATENCY_NANOS)))
+                .run(args)) {
+            AppointmentService service = context.getBean(AppointmentService.class);
+            AppointmentRepository repository = context.getBean(AppointmentRepository.class);
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+
+            System.out.printf("%n=== %d writers, %d s per mode, %d ms simulated statement latency ===%n",
+                    WRITERS, SECONDS, DB_LATENCY_NANOS / 1_000_000);
+            List<Appointment> appointments = seed(repository);
+
+            long synchronous = run(appointments, update -> service.updateAppointment(update.id(), update.body(), null));
+            System.out.printf("synchronous:  %,8.0f updates/s, %,8d UPDATE statements%n",
+                    synchronous / (double) SECONDS, synchronous);
+
+            double writtenBefore = registry.get("appointments.write.behind.written").counter().count();
+            long queued = run(appointments, update -> {
+                if (service.queueUpdate(update.id(), update.body()).isEmpty()) {
+                    service.updateAppointment(update.id(), update.body(), null);
+                }
+            });
+            // Leave time for the last flush
+            Thread.sleep(500);
+            long written = (long) (registry.get("appointments.write.behind.written").counter().count() - writtenBefore);
+            System.out.printf("write-behind: %,8.0f updates/s, %,8d UPDATE statements (%.0f updates per UPDATE)%n",
+                    queued / (double) SECONDS, written, queued / (double) Math.max(1, written));
+            assertTrue(queued > synchronous);
+        }
+    }
+
+    private static List<Appointment> seed(AppointmentRepository repository) {
+        List<Appointment> appointments = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            appointments.add(new Appointment(null, "Kiosk " + w, null, "Medical",
+                    LocalDateTime.of(2030, 1, 1, 8, 0).plusHours(w), null, false, "KIOSK" + w, null));
+        }
+        return repository.saveAll(appointments);
+    }
+
+    private static long run(List<Appointment> appointments, Write write) throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            List<Future<Long>> writers = new ArrayList<>();
+            for (Appointment appointment : appointments) {
+                writers.add(executor.submit(() -> {
+                    long writes = 0;
+                    while (running.get()) {
+                        AppointmentRequest body = new AppointmentRequest();
+                        body.setTitle(appointment.getTitle());
+                        body.setNotes("status " + writes);
+                        body.setCategory(appointment.getCategory());
+                        body.setStartDate(appointment.getStartDate());
+                        body.setDone(writes % 2 == 0);
+                        body.setCustomerId(appointment.getCustomerId());
+                        write.apply(new Update(appointment.getId(), body));
+                        writes++;
+                    }
+                    return writes;
+                }));
+            }
+            Thread.sleep(Duration.ofSeconds(SECONDS));
+            running.set(false);
+            long total = 0;
+            for (Future<Long> writer : writers) {
+                total += writer.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private record Update(Long id, AppointmentRequest body) {
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void apply(Update update);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.appointments.config;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogFilterTest {
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(AccessLogFilter.LOGGER);
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @AfterEach
+    void tearDown() {
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    void testSampledRequestIsLoggedAsOneLineWithTemplate() throws Exception {
+        filter(1.0, Duration.ofSeconds(1)).doFilter(request(), new MockHttpServletResponse(), handler(200));
+
+        assertEquals(1, appender.list.size());
+        String line = appender.list.get(0).getFormattedMessage();
+        assertTrue(line.startsWith("method=GET uri=/api/appointments/customer/{customerId} status=200 duration_ms="),
+                line);
+        assertTrue(line.endsWith(" statements=2 reason=sampled"), line);
+        assertFalse(line.contains("123456789A"));
+    }
+
+    @Test
+    void testUnsampledRequestIsNotLogged() throws Exception {
+        filter(0.0, Duration.ofSeconds(1)).doFilter(request(), new MockHttpServletResponse(), handler(200));
+
+        assertTrue(appender.list.isEmpty());
+    }
+
+    @Test
+    void testServerErrorIsAlwaysLogged() throws Exception {
+        filter(0.0, Duration.ofSeconds(1)).doFilter(request(), new MockHttpServletResponse(), handler(503));
+
+        assertEquals(1, appender.list.size());
+        assertTrue(appender.list.get(0).getFormattedMessage().contains("status=503"));
+        assertTrue(appender.list.get(0).getFormattedMessage().endsWith("reason=error"));
+    }
+
+    @Test
+    void testSlowRequestIsAlwaysLogged() throws Exception {
+        filter(0.0, Duration.ZERO).doFilter(request(), new MockHttpServletResponse(), handler(200));
+
+        assertEquals(1, appender.list.size());
+        assertTrue(appender.list.get(0).getFormattedMessage().endsWith("reason=slow"));
+    }
+
+    @Test
+    void testExceptionIsLoggedAsServerError() {
+        FilterChain failing = (request, response) -> {
+            throw new ServletException("boom");
+        };
+
+        assertThrows(ServletException.class,
+                () -> filter(0.0, Duration.ofSeconds(1)).doFilter(request(), new MockHttpServletResponse(), failing));
+        assertEquals(1, appender.list.size());
+        assertTrue(appender.list.get(0).getFormattedMessage().contains("status=500"));
+    }
+
+    @Test
+    void testSampleRateOutOfRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> filter(1.5, Duration.ofSeconds(1)));
+    }
+
+    private static AccessLogFilter filter(double sampleRate, Duration slowThreshold) {
+        AccessLogProperties properties = new AccessLogProperties();
+        properties.setSampleRate(sampleRate);
+        properties.setSlowThreshold(slowThreshold);
+        return new AccessLogFilter(properties);
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/api/appointments/customer/123456789A");
+    }
+
+    // Stands in for the dispatcher: sets the attributes the handler mapping and statement interceptor leave
+    private static FilterChain handler(int status) {
+        return (request, response) -> {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+                    "/api/appointments/customer/{customerId}");
+            request.setAttribute(SqlStatementCounter.STATEMENTS_ATTRIBUTE, 2);
+            ((HttpServletResponse) response).setStatus(status);
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    @Test
+    void testRejectsBeyondLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, 1.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release();
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+    }
+
+    @Test
+    void testGrowsWhileLatencyHoldsAndLimitIsUsed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 100, 1.5);
+
+        for (int i = 0; i < 200; i++) {
+            fill(limit);
+            drain(limit, 10 * MILLISECOND);
+        }
+
+        assertEquals(100, limit.getLimit());
+    }
+
+    @Test
+    void testDoesNotGrowWhileLimitIsNotUsed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 4, 100, 1.5);
+
+        for (int i = 0; i < 200; i++) {
+            limit.tryAcquire();
+            limit.release(10 * MILLISECOND);
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void testShrinksToMinimumWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 4, 100, 1.5);
+        for (int i = 0; i < 100; i++) {
+            fill(limit);
+            drain(limit, 10 * MILLISECOND);
+        }
+        int before = limit.getLimit();
+
+        for (int i = 0; i < 20; i++) {
+            fill(limit);
+            drain(limit, 100 * MILLISECOND);
+        }
+
+        assertTrue(limit.getLimit() < before / 2, "Limit " + limit.getLimit() + " after " + before);
+        for (int i = 0; i < 100; i++) {
+            fill(limit);
+            drain(limit, 1000 * MILLISECOND);
+        }
+        assertEquals(4, limit.getLimit());
+    }
+
+    private static void fill(AdaptiveConcurrencyLimit limit) {
+        while (limit.tryAcquire()) {
+            // Takes every place there is
+        }
+    }
+
+    private static void drain(AdaptiveConcurrencyLimit limit, long latencyNanos) {
+        while (limit.getInFlight() > 0) {
+            limit.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.appointments.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Admission control through Tomcat, where streaming responses complete asynchronously.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "appointments.admission.enabled=true",
+        "appointments.admission.customer-rate=0.1",
+        "appointments.admission.customer-burst=3",
+        "appointments.admission.endpoints[0].method=GET",
+        "appointments.admission.endpoints[0].pattern=/api/appointments/stats",
+        "appointments.admission.endpoints[0].max-concurrent=0",
+        "appointments.admission.endpoints[1].pattern=/api/appointments/stream",
+        "appointments.admission.endpoints[1].max-concurrent=1",
+        "appointments.admission.endpoints[2].method=GET",
+        "appointments.admission.endpoints[2].pattern=/api/appointments/upcoming",
+        "appointments.admission.endpoints[2].max-concurrent=10",
+        "appointments.admission.endpoints[2].rate=0.1"})
+class AdmissionControlTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AdmissionInterceptor admissionInterceptor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    void testCustomerBeyondItsBurstIsRateLimited() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, get("/api/appointments/customer/FLOOD0001/upcoming").statusCode());
+        }
+
+        HttpResponse<String> limited = get("/api/appointments/customer/FLOOD0001/upcoming");
+
+        assertEquals(429, limited.statusCode());
+        assertEquals("10", limited.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(limited.body().contains("Too many requests for customer FLOOD0001"));
+        assertNotEquals(429, get("/api/appointments/customer/CALM00001/upcoming").statusCode());
+        assertTrue(meterRegistry.get("appointments.admission.rejected").tag("reason", "customer-rate")
+                .counter().count() >= 1);
+    }
+
+    @Test
+    void testEndpointAtItsLimitIsShed() throws Exception {
+        HttpResponse<String> shed = get("/api/appointments/stats");
+
+        assertEquals(503, shed.statusCode());
+        assertEquals("1", shed.headers().firstValue("Retry-After").orElse(null));
+        assertEquals(200, get("/api/appointments").statusCode());
+    }
+
+    @Test
+    void testEndpointBeyondItsRateIsRateLimited() throws Exception {
+        assertEquals(200, get("/api/appointments/upcoming?within=PT1H").statusCode());
+
+        HttpResponse<String> limited = get("/api/appointments/upcoming?within=PT1H");
+
+        assertEquals(429, limited.statusCode());
+        assertEquals("10", limited.headers().firstValue("Retry-After").orElse(null));
+        assertTrue(limited.body().contains("Too many requests to GET /api/appointments/upcoming"));
+    }
+
+    @Test
+    void testStreamsGiveBackTheirPlacesWhenComplete() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, get("/api/appointments/stream").statusCode());
+        }
+
+        // The async context completes just after the last byte is sent
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (admissionInterceptor.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, admissionInterceptor.getInFlight());
+    }
+
+    private HttpResponse<String> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
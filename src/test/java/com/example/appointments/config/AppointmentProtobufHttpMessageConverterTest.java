@@ -0,0 +1,82 @@
+package com.example.appointments.config;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AppointmentProtobufHttpMessageConverterTest {
+
+    private static final MediaType PROTOBUF = AppointmentProtobufHttpMessageConverter.APPLICATION_PROTOBUF;
+    private static final Type RESPONSE_LIST = new ParameterizedTypeReference<List<AppointmentResponse>>() {
+    }.getType();
+
+    private final AppointmentProtobufHttpMessageConverter converter = new AppointmentProtobufHttpMessageConverter();
+
+    @Test
+    void testListRoundTrip() throws Exception {
+        AppointmentResponse full = new AppointmentResponse(1L, "Checkup", "Fasting", "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), LocalDateTime.of(2030, 1, 1, 10, 30), true, "123456789A", 3L);
+        // Dates before the epoch encode as negative millis
+        AppointmentResponse sparse = new AppointmentResponse(2L, "Títle ✓", null, "Dental",
+                LocalDateTime.of(1969, 12, 31, 23, 59), null, false, "123456789A", 0L);
+        List<AppointmentResponse> appointments = List.of(full, sparse);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(appointments, RESPONSE_LIST, PROTOBUF, output);
+
+        Object read = converter.read(RESPONSE_LIST, null, new MockHttpInputMessage(output.getBodyAsBytes()));
+        assertEquals(appointments, read);
+        assertEquals(PROTOBUF, output.getHeaders().getContentType());
+        assertEquals(output.getBodyAsBytes().length, output.getHeaders().getContentLength());
+    }
+
+    @Test
+    void testMappingJacksonValueIsUnwrapped() throws Exception {
+        AppointmentResponse appointment = new AppointmentResponse(1L, "Checkup", null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, "123456789A", 0L);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(new MappingJacksonValue(List.of(appointment)), MappingJacksonValue.class, PROTOBUF, output);
+
+        assertEquals(List.of(appointment),
+                converter.read(RESPONSE_LIST, null, new MockHttpInputMessage(output.getBodyAsBytes())));
+    }
+
+    @Test
+    void testAbsentFieldsTakeNoSpace() throws Exception {
+        AppointmentResponse appointment = new AppointmentResponse(null, null, null, null, null, null, null, null, null);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(appointment, AppointmentResponse.class, PROTOBUF, output);
+
+        assertEquals(0, output.getBodyAsBytes().length);
+        assertEquals(new AppointmentRequest(),
+                converter.read(AppointmentRequest.class, null, new MockHttpInputMessage(new byte[0])));
+    }
+
+    @Test
+    void testSupportedTypes() {
+        assertTrue(converter.canRead(AppointmentRequest.class, null, PROTOBUF));
+        assertTrue(converter.canRead(RESPONSE_LIST, null, PROTOBUF));
+        assertTrue(converter.canWrite(RESPONSE_LIST, List.class, PROTOBUF));
+        assertTrue(converter.canWrite(MappingJacksonValue.class, MappingJacksonValue.class, PROTOBUF));
+        assertFalse(converter.canWrite(Map.class, Map.class, PROTOBUF));
+        assertFalse(converter.canWrite(RESPONSE_LIST, List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(new ParameterizedTypeReference<List<String>>() {
+        }.getType(), null, PROTOBUF));
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+@SpringBootTest
+@ActiveProfiles("virtual")
+class DatabaseConcurrencyConfigTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void testVirtualProfileLimitsConnectionsToPoolSize() {
+        ConcurrencyLimitingDataSource limited = assertInstanceOf(ConcurrencyLimitingDataSource.class, dataSource);
+        assertEquals(20, limited.getMaxConcurrent());
+    }
+}
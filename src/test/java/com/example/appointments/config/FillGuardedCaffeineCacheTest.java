@@ -0,0 +1,77 @@
+package com.example.appointments.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FillGuardedCaffeineCacheTest {
+
+    private final FillGuardedCaffeineCache cache =
+            new FillGuardedCaffeineCache("test", Caffeine.newBuilder().build(), false);
+
+    @Test
+    void testFillAfterMissIsKept() {
+        assertNull(cache.get(1L));
+        cache.put(1L, "loaded");
+
+        assertEquals("loaded", cache.get(1L).get());
+    }
+
+    @Test
+    void testFillOfReadThatMissedBeforeEvictionIsDropped() {
+        assertNull(cache.get(1L));
+        // The write commits and evicts while the read is still loading
+        cache.evict(1L);
+        cache.put(1L, "before write");
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void testEvictionThroughNativeCacheIsCounted() {
+        assertNull(cache.get(1L));
+        cache.evicting(1L);
+        cache.put(1L, "before write");
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void testEvictingAllDropsPendingFillsOfEveryKey() {
+        assertNull(cache.get(1L));
+        cache.evictingAll();
+        cache.put(1L, "before purge");
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void testClearDropsPendingFills() {
+        assertNull(cache.get(1L));
+        cache.clear();
+        cache.put(1L, "before clear");
+
+        assertNull(cache.get(1L));
+    }
+
+    @Test
+    void testEvictionOfOtherKeyAfterFillIsIgnored() {
+        assertNull(cache.get(1L));
+        cache.put(1L, "loaded");
+        cache.evict(1L);
+
+        assertNull(cache.get(2L));
+        cache.put(2L, "other");
+
+        assertEquals("other", cache.get(2L).get());
+    }
+
+    @Test
+    void testPutWithoutLookupIsKept() {
+        cache.put(1L, "written");
+
+        assertEquals("written", cache.get(1L).get());
+    }
+}
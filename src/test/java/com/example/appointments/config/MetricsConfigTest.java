@@ -0,0 +1,51 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
+class MetricsConfigTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void testPrometheusScrapeBreaksDownRequestTime() throws Exception {
+        mockMvc.perform(post("/api/appointments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Checkup\",\"category\":\"Medical\","
+                                + "\"startDate\":\"2030-01-01T10:00:00\",\"customerId\":\"METRICS1\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/appointments/customer/METRICS1/upcoming"))
+                .andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(scrape.contains("appointments_service_seconds_bucket{"));
+        assertTrue(scrape.contains("method=\"getUpcomingAppointments\""));
+        assertTrue(scrape.contains("spring_data_repository_invocations_seconds_bucket{"));
+        assertTrue(scrape.contains("appointments_sql_statements_total{"));
+        assertTrue(scrape.contains("appointments_sql_statements_per_request_statements_count{"));
+        assertTrue(scrape.contains("uri=\"/api/appointments/customer/{customerId}/upcoming\""));
+        assertTrue(scrape.contains("appointments_http_serialization_seconds_count{"));
+        assertTrue(scrape.contains("hikaricp_connections_pending{"));
+        assertTrue(scrape.contains("cache_gets_total{"));
+        assertFalse(scrape.contains("METRICS1"));
+    }
+}
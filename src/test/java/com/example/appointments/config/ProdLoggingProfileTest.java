@@ -0,0 +1,43 @@
+package com.example.appointments.config;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.core.env.Environment;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "appointments.logging.slow-query-file=target/slow-queries.log")
+@ActiveProfiles("prod")
+class ProdLoggingProfileTest {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private FilterRegistrationBean<AccessLogFilter> accessLogFilter;
+
+    @Test
+    void testProdProfileLogsAsynchronouslyWithoutSqlEcho() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        AsyncAppender console = (AsyncAppender) root.getAppender("ASYNC_CONSOLE");
+
+        assertNotNull(console);
+        assertTrue(console.isNeverBlock());
+        assertEquals(8192, console.getQueueSize());
+        assertNotNull(context.getLogger("org.hibernate.SQL_SLOW").getAppender("ASYNC_SLOW_QUERY"));
+        assertFalse(context.getLogger("org.hibernate.SQL_SLOW").isAdditive());
+        assertEquals(Level.WARN, context.getLogger("com.example.appointments").getEffectiveLevel());
+        assertEquals(Level.INFO, context.getLogger(AccessLogFilter.LOGGER).getEffectiveLevel());
+        assertEquals("false", environment.getProperty("spring.jpa.show-sql"));
+        assertNotNull(accessLogFilter.getFilter());
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import java.lang.reflect.Constructor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProjectionRuntimeHintsTest {
+
+    @Test
+    void testProjectionConstructorsAreRegisteredForReflection() {
+        RuntimeHints hints = new RuntimeHints();
+        new ProjectionRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        for (Class<?> projection : ProjectionRuntimeHints.PROJECTIONS) {
+            for (Constructor<?> constructor : projection.getConstructors()) {
+                assertTrue(RuntimeHintsPredicates.reflection().onConstructor(constructor).invoke().test(hints),
+                        constructor.toString());
+            }
+        }
+    }
+}
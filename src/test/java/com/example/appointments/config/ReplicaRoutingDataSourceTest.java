@@ -0,0 +1,146 @@
+package com.example.appointments.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ReplicaRoutingDataSourceTest {
+
+    @Mock(name = "primary")
+    private DataSource primary;
+
+    @Mock(name = "first")
+    private DataSource first;
+
+    @Mock(name = "second")
+    private DataSource second;
+
+    @Mock(name = "primary connection")
+    private Connection primaryConnection;
+
+    @Mock(name = "first connection")
+    private Connection firstConnection;
+
+    @Mock(name = "second connection")
+    private Connection secondConnection;
+
+    private final ReplicaProperties properties = new ReplicaProperties();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        properties.setHealthCheckInterval(Duration.ofHours(1));
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(first.getConnection()).thenReturn(firstConnection);
+        when(second.getConnection()).thenReturn(secondConnection);
+        when(firstConnection.isValid(anyInt())).thenReturn(true);
+        when(secondConnection.isValid(anyInt())).thenReturn(true);
+    }
+
+    @Test
+    void testWritesAndUnmarkedReadsUsePrimary() throws Exception {
+        try (ReplicaRoutingDataSource dataSource = routing()) {
+            assertEquals("primary connection", target(dataSource, false));
+            assertEquals("primary connection", target(dataSource, true));
+            assertEquals("primary connection",
+                    ReplicaRoutingDataSource.readFromReplica(() -> target(dataSource, false)));
+        }
+    }
+
+    @Test
+    void testRoundRobinAlternatesReplicas() throws Exception {
+        try (ReplicaRoutingDataSource dataSource = routing()) {
+            List<String> targets = ReplicaRoutingDataSource.readFromReplica(() -> List.of(
+                    target(dataSource, true), target(dataSource, true), target(dataSource, true)));
+
+            assertNotEquals(targets.get(0), targets.get(1));
+            assertEquals(targets.get(0), targets.get(2));
+            assertTrue(targets.stream().allMatch(target -> target.startsWith("first")
+                    || target.startsWith("second")));
+        }
+    }
+
+    @Test
+    void testLeastLoadedAvoidsBusyReplica() throws Exception {
+        properties.setSelection(ReplicaProperties.Selection.LEAST_LOADED);
+        try (ReplicaRoutingDataSource dataSource = routing()) {
+            Connection held = dataSource.getReplicas().get(0).open();
+
+            assertEquals("second connection", ReplicaRoutingDataSource.readFromReplica(() -> target(dataSource, true)));
+            assertEquals(1, dataSource.getReplicas().get(0).getActive());
+
+            held.close();
+            held.close();
+            assertEquals(0, dataSource.getReplicas().get(0).getActive());
+        }
+    }
+
+    @Test
+    void testFailedReplicaLeavesRotationUntilHealthy() throws Exception {
+        try (ReplicaRoutingDataSource dataSource = routing()) {
+            when(first.getConnection()).thenThrow(new SQLTransientConnectionException("replica down"));
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals("second connection",
+                        ReplicaRoutingDataSource.readFromReplica(() -> target(dataSource, true)));
+            }
+            assertFalse(dataSource.getReplicas().get(0).isUp());
+
+            doReturn(firstConnection).when(first).getConnection();
+            dataSource.checkHealth();
+            assertTrue(dataSource.getReplicas().get(0).isUp());
+        }
+    }
+
+    @Test
+    void testReadsFallBackToPrimaryWithoutHealthyReplica() throws Exception {
+        when(firstConnection.isValid(anyInt())).thenReturn(false);
+        when(second.getConnection()).thenThrow(new SQLTransientConnectionException("replica down"));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+        try (ReplicaRoutingDataSource dataSource = routing()) {
+            dataSource.bindTo(registry);
+
+            assertEquals("primary connection", ReplicaRoutingDataSource.readFromReplica(() -> target(dataSource, true)));
+            assertEquals(0, registry.get("appointments.db.replica.up").tag("replica", "first").gauge().value());
+            assertEquals(1, registry.get("appointments.db.replica.reads").tag("node", "primary").counter().count());
+        }
+    }
+
+    private ReplicaRoutingDataSource routing() {
+        ReplicaRoutingDataSource dataSource = new ReplicaRoutingDataSource(primary, List.of(
+                new ReplicaRoutingDataSource.Replica("first", first),
+                new ReplicaRoutingDataSource.Replica("second", second)), properties);
+        // Known defaults, so the lazy proxy does not open a connection to find them out
+        dataSource.setDefaultAutoCommit(true);
+        dataSource.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return dataSource;
+    }
+
+    // The connection a statement would run on; the replica proxy delegates toString() to it
+    private static String target(DataSource dataSource, boolean readOnly) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setReadOnly(readOnly);
+            return ((ConnectionProxy) connection).getTargetConnection().toString();
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
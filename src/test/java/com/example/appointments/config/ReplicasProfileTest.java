@@ -0,0 +1,42 @@
+package com.example.appointments.config;
+
+import com.example.appointments.service.AppointmentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A fixed URL: the replica nodes point at ${spring.datasource.url}, and ${random.uuid} differs on every lookup
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:replicas-profile")
+@ActiveProfiles("replicas")
+class ReplicasProfileTest {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testReplicasProfileRoutesReadsToHealthyReplicas() throws Exception {
+        ReplicaRoutingDataSource routing = dataSource.unwrap(ReplicaRoutingDataSource.class);
+        assertEquals(2, routing.getReplicas().size());
+        assertTrue(routing.getReplicas().stream().allMatch(ReplicaRoutingDataSource.Replica::isUp));
+
+        appointmentService.getAllAppointments(true);
+        appointmentService.getAllAppointments(true);
+
+        assertEquals(1, meterRegistry.get("appointments.db.replica.reads").tag("node", "replica-1").counter().count());
+        assertEquals(1, meterRegistry.get("appointments.db.replica.reads").tag("node", "replica-2").counter().count());
+        assertEquals(1, meterRegistry.get("appointments.db.replica.up").tag("replica", "replica-1").gauge().value());
+    }
+}
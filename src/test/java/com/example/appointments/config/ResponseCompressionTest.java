@@ -0,0 +1,85 @@
+package com.example.appointments.config;
+
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDateTime;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tomcat's gzip compression, which MockMvc does not go through.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ResponseCompressionTest {
+
+    private static final String CUSTOMER = "GZIP00001";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAll(appointmentRepository.findByCustomerId(CUSTOMER));
+        appointmentRepository.saveAll(IntStream.range(0, 50)
+                .mapToObj(i -> new Appointment(null, "Appointment " + i, "Bring previous test results", "Medical",
+                        LocalDateTime.of(2030, 1, 1, 8, 0).plusMinutes(30L * i), null, false, CUSTOMER, null))
+                .toList());
+    }
+
+    @Test
+    void testCustomerListIsCompressedInEveryFormat() throws Exception {
+        for (String format : new String[] {"application/json", "application/cbor", "application/x-jackson-smile",
+                "application/x-protobuf"}) {
+            HttpResponse<byte[]> identity = get("/api/appointments/customer/" + CUSTOMER, format, "identity");
+            HttpResponse<byte[]> gzip = get("/api/appointments/customer/" + CUSTOMER, format, "gzip");
+
+            assertEquals("gzip", gzip.headers().firstValue("Content-Encoding").orElse(null), format);
+            assertTrue(gzip.body().length < identity.body().length / 2, format);
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.body()))) {
+                assertEquals(identity.body().length, in.readAllBytes().length, format);
+            }
+            // The weak list tag lets Tomcat compress and matches the uncompressed representation
+            assertTrue(gzip.headers().firstValue("ETag").orElseThrow().startsWith("W/"), format);
+            assertEquals(identity.headers().firstValue("ETag"), gzip.headers().firstValue("ETag"), format);
+        }
+    }
+
+    @Test
+    void testResponsesOfKnownLengthBelowThresholdAreNotCompressed() throws Exception {
+        Long id = appointmentRepository.findByCustomerId(CUSTOMER).get(0).getId();
+
+        HttpResponse<byte[]> response = get("/api/appointments/" + id, "application/x-protobuf", "gzip");
+
+        assertEquals(200, response.statusCode());
+        assertEquals(String.valueOf(response.body().length),
+                response.headers().firstValue("Content-Length").orElse(null));
+        assertTrue(response.headers().firstValue("Content-Encoding").isEmpty());
+    }
+
+    private HttpResponse<byte[]> get(String path, String accept, String encoding) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("Accept", accept)
+                .header("Accept-Encoding", encoding)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
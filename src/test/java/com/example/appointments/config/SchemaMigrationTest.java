@@ -0,0 +1,25 @@
+package com.example.appointments.config;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The Flyway migrations must produce the schema the entities map to. The application itself skips this check
+ * at startup; here Hibernate validates the migrated schema and fails the context on any mismatch.
+ */
+@SpringBootTest(properties = "spring.jpa.hibernate.ddl-auto=validate")
+class SchemaMigrationTest {
+
+    @Autowired
+    private Flyway flyway;
+
+    @Test
+    void testMigrationsMatchTheEntityMappings() {
+        assertEquals(0, flyway.info().pending().length);
+        assertEquals("3", flyway.info().current().getVersion().getVersion());
+    }
+}
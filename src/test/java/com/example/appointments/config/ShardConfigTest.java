@@ -0,0 +1,53 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardConfigTest {
+
+    @Test
+    void testDistinctIdRangesInAnyOrderAreAccepted() {
+        assertDoesNotThrow(() -> ShardConfig.checkNodes(List.of(node("shard-2", 1), node("shard-1", 0),
+                node("shard-3", ShardConfig.ID_RANGES - 1))));
+    }
+
+    @Test
+    void testMissingIdRangeFailsStartup() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> ShardConfig.checkNodes(List.of(node("shard-1", 0), node("shard-2", null))));
+        assertEquals("appointments.shards.nodes[1].id-range of shard 'shard-2' must be set, from 0 to 8191",
+                exception.getMessage());
+    }
+
+    @Test
+    void testIdRangeOutsideTheIdSpaceFailsStartup() {
+        assertThrows(IllegalStateException.class,
+                () -> ShardConfig.checkNodes(List.of(node("shard-1", ShardConfig.ID_RANGES))));
+        assertThrows(IllegalStateException.class, () -> ShardConfig.checkNodes(List.of(node("shard-1", -1))));
+    }
+
+    @Test
+    void testSharedIdRangeFailsStartup() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> ShardConfig.checkNodes(List.of(node("shard-1", 0), node("shard-2", 1), node("shard-3", 1))));
+        assertEquals("Shards 'shard-2' and 'shard-3' both have id-range 1; every shard needs a range of its own",
+                exception.getMessage());
+    }
+
+    @Test
+    void testDuplicateNameFailsStartup() {
+        IllegalStateException exception = assertThrows(IllegalStateException.class,
+                () -> ShardConfig.checkNodes(List.of(node("shard-1", 0), node("shard-1", 1))));
+        assertEquals("Shard 'shard-1' is listed twice in appointments.shards.nodes", exception.getMessage());
+    }
+
+    private static ShardProperties.Node node(String name, Integer idRange) {
+        ShardProperties.Node node = new ShardProperties.Node();
+        node.setName(name);
+        node.setIdRange(idRange);
+        return node;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRingTest {
+
+    private static final int CUSTOMERS = 30_000;
+
+    @Test
+    void testPlacementDependsOnShardNamesOnly() {
+        ShardRing ring = new ShardRing(List.of("shard-1", "shard-2", "shard-3"), 256);
+        ShardRing reordered = new ShardRing(List.of("shard-3", "shard-1", "shard-2"), 256);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.shardOf("customer-" + i), reordered.shardOf("customer-" + i));
+        }
+    }
+
+    @Test
+    void testCustomersAreSpreadEvenly() {
+        ShardRing ring = new ShardRing(List.of("shard-1", "shard-2", "shard-3", "shard-4"), 256);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            counts.merge(ring.shardOf("customer-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(4, counts.size());
+        // Within 15% of an even share
+        counts.values().forEach(count -> assertTrue(Math.abs(count - CUSTOMERS / 4) < CUSTOMERS / 4 * 0.15,
+                "Uneven spread " + counts));
+    }
+
+    @Test
+    void testAddingShardOnlyMovesCustomersToIt() {
+        ShardRing before = new ShardRing(List.of("shard-1", "shard-2", "shard-3"), 256);
+        ShardRing after = new ShardRing(List.of("shard-1", "shard-2", "shard-3", "shard-4"), 256);
+
+        int moved = 0;
+        for (int i = 0; i < CUSTOMERS; i++) {
+            String owner = after.shardOf("customer-" + i);
+            if (!owner.equals(before.shardOf("customer-" + i))) {
+                assertEquals("shard-4", owner);
+                moved++;
+            }
+        }
+
+        // About a quarter of the customers
+        assertTrue(moved > CUSTOMERS * 0.2 && moved < CUSTOMERS * 0.3, "Moved " + moved);
+    }
+
+    @Test
+    void testHashIsStable() {
+        assertEquals(ShardRing.hash("customer-1"), ShardRing.hash("customer-1"));
+        assertNotEquals(ShardRing.hash("shard-1#1"), ShardRing.hash("shard-1#2"));
+    }
+
+    @Test
+    void testRejectsDuplicateShardNames() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardRing(List.of("shard-1", "shard-1"), 16));
+    }
+}
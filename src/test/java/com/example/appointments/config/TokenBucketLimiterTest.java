@@ -0,0 +1,58 @@
+package com.example.appointments.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TokenBucketLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(1_000 * SECOND);
+    // Two tokens per second, up to four at once
+    private final TokenBucketLimiter limiter = new TokenBucketLimiter(2, 4, 100, clock::get);
+
+    @Test
+    void testNewCustomerStartsWithFullBurst() {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, limiter.tryAcquire("CUST00001"));
+        }
+
+        assertEquals(SECOND / 2, limiter.tryAcquire("CUST00001"));
+    }
+
+    @Test
+    void testTokensRefillAtRate() {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire("CUST00001");
+        }
+
+        clock.addAndGet(SECOND / 4);
+        assertEquals(SECOND / 4, limiter.tryAcquire("CUST00001"));
+        clock.addAndGet(SECOND / 4);
+        assertEquals(0, limiter.tryAcquire("CUST00001"));
+        assertEquals(SECOND / 2, limiter.tryAcquire("CUST00001"));
+    }
+
+    @Test
+    void testQuietCustomerKeepsNoMoreThanBurst() {
+        limiter.tryAcquire("CUST00001");
+        clock.addAndGet(60 * SECOND);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, limiter.tryAcquire("CUST00001"));
+        }
+        assertEquals(SECOND / 2, limiter.tryAcquire("CUST00001"));
+    }
+
+    @Test
+    void testCustomersHaveBucketsOfTheirOwn() {
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire("CUST00001");
+        }
+
+        assertEquals(0, limiter.tryAcquire("CUST00002"));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.BulkItemResult;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.service.AppointmentBulkService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AppointmentBulkController.class)
+class AppointmentBulkControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AppointmentBulkService appointmentBulkService;
+
+    @Test
+    void testCreateAppointmentsFromJsonArray() throws Exception {
+        when(appointmentBulkService.createAppointments(anyList()))
+                .thenReturn(BulkResponse.of(List.of(new BulkItemResult(0, 201, 1L, null)), 201));
+
+        mockMvc.perform(post("/api/appointments/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"title\":\"Checkup\",\"category\":\"Medical\","
+                        + "\"startDate\":\"2025-11-15T10:00:00\",\"customerId\":\"123456789A\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[0].status").value(201))
+                .andExpect(jsonPath("$.results[0].id").value(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCreateAppointmentsFromNdjsonKeepsMalformedLines() throws Exception {
+        when(appointmentBulkService.createAppointments(anyList())).thenReturn(BulkResponse.of(List.of(), 201));
+
+        mockMvc.perform(post("/api/appointments/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"title\":\"Checkup\",\"category\":\"Medical\",\"customerId\":\"123456789A\"}\n"
+                        + "{not json\n"
+                        + "\n"))
+                .andExpect(status().isOk());
+
+        ArgumentCaptor<List<AppointmentRequest>> captor = ArgumentCaptor.forClass(List.class);
+        verify(appointmentBulkService).createAppointments(captor.capture());
+        assertEquals(2, captor.getValue().size());
+        assertEquals("Checkup", captor.getValue().get(0).getTitle());
+        assertNull(captor.getValue().get(1));
+    }
+
+    @Test
+    void testDeleteAppointmentsFromNdjson() throws Exception {
+        when(appointmentBulkService.deleteAppointments(List.of(1L, 2L)))
+                .thenReturn(BulkResponse.of(List.of(new BulkItemResult(0, 204, 1L, null),
+                        new BulkItemResult(1, 204, 2L, null)), 204));
+
+        mockMvc.perform(delete("/api/appointments/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("1\n2\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(2));
+    }
+
+    @Test
+    void testMalformedJsonArrayIsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/appointments/bulk")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{"))
+                .andExpect(status().isBadRequest());
+    }
+}
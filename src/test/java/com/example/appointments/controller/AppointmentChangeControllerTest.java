@@ -0,0 +1,85 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.exception.InvalidPageRequestException;
+import com.example.appointments.exception.ServiceOverloadedException;
+import com.example.appointments.service.AppointmentChangeStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AppointmentChangeController.class)
+class AppointmentChangeControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AppointmentChangeStream changeStream;
+
+    @Test
+    void testStreamChangesStartsAsyncStream() throws Exception {
+        when(changeStream.subscribe(41L, "123456789A")).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/appointments/changes")
+                        .param("since", "41")
+                        .param("customerId", "123456789A")
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(changeStream).subscribe(41L, "123456789A");
+    }
+
+    @Test
+    void testLastEventIdTakesPrecedenceOverSince() throws Exception {
+        when(changeStream.subscribe(57L, null)).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/appointments/changes")
+                        .param("since", "41")
+                        .header(AppointmentChangeController.LAST_EVENT_ID, "57"))
+                .andExpect(request().asyncStarted());
+
+        verify(changeStream).subscribe(57L, null);
+    }
+
+    @Test
+    void testStreamChangesWithoutPositionStartsAtTheHorizon() throws Exception {
+        when(changeStream.subscribe(isNull(), isNull())).thenReturn(new SseEmitter());
+
+        mockMvc.perform(get("/api/appointments/changes"))
+                .andExpect(request().asyncStarted());
+
+        verify(changeStream).subscribe(null, null);
+    }
+
+    @Test
+    void testNegativeSinceIsBadRequest() throws Exception {
+        when(changeStream.subscribe(-1L, null))
+                .thenThrow(new InvalidPageRequestException("'since' must not be negative"));
+
+        mockMvc.perform(get("/api/appointments/changes").param("since", "-1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("'since' must not be negative"));
+    }
+
+    @Test
+    void testTooManyStreamsIsServiceUnavailable() throws Exception {
+        when(changeStream.subscribe(null, null))
+                .thenThrow(new ServiceOverloadedException("Too many open change streams, retry later", 5));
+
+        mockMvc.perform(get("/api/appointments/changes"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+                .andExpect(jsonPath("$.error").value("Too many open change streams, retry later"));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.config.ChangeStreamProperties;
+import com.example.appointments.exception.ServiceOverloadedException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentChangeRepository;
+import com.example.appointments.repository.AppointmentRepository;
+import com.example.appointments.service.AppointmentChangeStream;
+import com.example.appointments.service.AppointmentOutbox;
+import com.example.appointments.service.AppointmentService;
+import com.example.appointments.service.ShardRouter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * The change stream end to end: commits through the service show up on an open stream, filtered by customer.
+ * Also the limit on open streams and the reset sent to clients resuming after deleted changes.
+ */
+@SpringBootTest(properties = "appointments.changes.poll-interval=50ms")
+@AutoConfigureMockMvc
+class AppointmentChangeStreamTest {
+
+    private static final long WAIT_MILLIS = 10_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentOutbox outbox;
+
+    @Autowired
+    private AppointmentChangeRepository changeRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Test
+    void testCommittedChangesAreStreamedForTheCustomer() throws Exception {
+        String customerId = "STREAM" + System.nanoTime();
+        MvcResult result = mockMvc.perform(get("/api/appointments/changes").param("customerId", customerId))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        try {
+            Appointment other = save("OTHER" + System.nanoTime());
+            Appointment appointment = save(customerId);
+            appointmentService.markAppointmentDone(appointment.getId());
+            long seq = outbox.relay();
+
+            // The id line and the data are separate writes, so wait for the data
+            String content = awaitContent(result.getResponse(), "\"appointmentId\":" + appointment.getId());
+            assertTrue(content.contains("id:" + seq), content);
+            assertTrue(content.contains("\"type\":\"UPDATED\""), content);
+            assertFalse(content.contains("\"appointmentId\":" + other.getId() + ","), content);
+        } finally {
+            result.getRequest().getAsyncContext().complete();
+        }
+    }
+
+    @Test
+    void testReconnectResumesAfterLastEventId() throws Exception {
+        String customerId = "RESUME" + System.nanoTime();
+        Appointment appointment = save(customerId);
+        long before = outbox.relay();
+        appointmentService.markAppointmentDone(appointment.getId());
+        long seq = outbox.relay();
+
+        MvcResult result = mockMvc.perform(get("/api/appointments/changes")
+                        .param("customerId", customerId)
+                        .header(AppointmentChangeController.LAST_EVENT_ID, String.valueOf(before)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        try {
+            String content = awaitContent(result.getResponse(), "\"customerId\":\"" + customerId + "\"");
+            assertTrue(content.contains("id:" + seq), content);
+        } finally {
+            result.getRequest().getAsyncContext().complete();
+        }
+    }
+
+    @Test
+    void testResumingAfterDeletedChangesStartsWithReset() throws Exception {
+        String customerId = "RESET" + System.nanoTime();
+        long seen = outbox.relay();
+        appointmentService.markAppointmentDone(save(customerId).getId());
+        outbox.relay();
+        // Retention deletes the change the client has not seen yet
+        outbox.deleteOlderThan(Duration.ZERO);
+        Appointment appointment = save(customerId);
+        appointmentService.markAppointmentDone(appointment.getId());
+        long seq = outbox.relay();
+
+        MvcResult result = mockMvc.perform(get("/api/appointments/changes")
+                        .param("customerId", customerId)
+                        .param("since", String.valueOf(seen)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        try {
+            String content = awaitContent(result.getResponse(), "\"appointmentId\":" + appointment.getId());
+            assertTrue(content.contains("event:reset"), content);
+            assertTrue(content.contains("id:" + (seq - 1)), content);
+            assertTrue(content.indexOf("id:" + (seq - 1)) < content.indexOf("id:" + seq), content);
+        } finally {
+            result.getRequest().getAsyncContext().complete();
+        }
+    }
+
+    @Test
+    void testStreamsBeyondTheLimitAreRejected() throws Exception {
+        ChangeStreamProperties properties = new ChangeStreamProperties();
+        properties.setMaxStreams(1);
+        properties.setPollInterval(Duration.ofMillis(20));
+        properties.setHeartbeat(Duration.ofMillis(20));
+        AppointmentChangeStream limited = new AppointmentChangeStream(outbox, changeRepository, shardRouter,
+                properties);
+        SseEmitter first = limited.subscribe(null, "LIMIT" + System.nanoTime());
+
+        ServiceOverloadedException exception = assertThrows(ServiceOverloadedException.class,
+                () -> limited.subscribe(null, "LIMIT" + System.nanoTime()));
+        assertEquals(5, exception.getRetryAfterSeconds());
+
+        // The place is given back once the stream notices it was closed, at its next heartbeat
+        first.complete();
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        while (limited.getStreamCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        limited.subscribe(null, "LIMIT" + System.nanoTime()).complete();
+    }
+
+    private Appointment save(String customerId) {
+        return appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, customerId, null));
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + WAIT_MILLIS;
+        String content = response.getContentAsString();
+        while (!content.contains(expected) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = response.getContentAsString();
+        }
+        assertTrue(content.contains(expected), content);
+        return content;
+    }
+}
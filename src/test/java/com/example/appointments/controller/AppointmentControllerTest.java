@@ -1,28 +1,59 @@
 package com.example.appointments.controller;
 
+import com.example.appointments.config.JacksonConfig;
+import com.example.appointments.config.PaginationProperties;
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.dto.AppointmentPage;
 import com.example.appointments.dto.AppointmentRequest;
 import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.AppointmentStats;
+import com.example.appointments.dto.TimeSlot;
+import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.exception.PreconditionFailedException;
+import com.example.appointments.exception.SchedulingConflictException;
 import com.example.appointments.service.AppointmentService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(AppointmentController.class)
+@Import(JacksonConfig.class)
+@EnableConfigurationProperties(PaginationProperties.class)
 class AppointmentControllerTest {
 
     @Autowired
@@ -57,6 +88,7 @@ class AppointmentControllerTest {
         appointmentResponse.setStartDate(startDate);
         appointmentResponse.setDone(false);
         appointmentResponse.setCustomerId("123456789A");
+        appointmentResponse.setVersion(3L);
     }
 
     @Test
@@ -73,51 +105,406 @@ class AppointmentControllerTest {
                 .andExpect(jsonPath("$.customerId").value("123456789A"));
     }
 
+    @Test
+    void testCreateOverlappingAppointmentReturnsConflict() throws Exception {
+        when(appointmentService.createAppointment(any(AppointmentRequest.class)))
+                .thenThrow(new SchedulingConflictException("Appointment overlaps appointment 2"));
+
+        mockMvc.perform(post("/api/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointmentRequest)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Appointment overlaps appointment 2"));
+    }
+
+    @Test
+    void testCreateAppointmentEndingBeforeStartIsRejected() throws Exception {
+        appointmentRequest.setEndDate(appointmentRequest.getStartDate().minusMinutes(30));
+
+        mockMvc.perform(post("/api/appointments")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointmentRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.endAfterStart").value("End date must be after start date"));
+    }
+
+    @Test
+    void testGetFreeSlots() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 9, 0);
+        when(appointmentService.getFreeSlots("123456789A", from, from.plusHours(8), Duration.ofMinutes(30)))
+                .thenReturn(List.of(new TimeSlot(from.plusHours(1), from.plusHours(2))));
+
+        mockMvc.perform(get("/api/appointments/customer/123456789A/free-slots")
+                        .param("from", "2030-01-01T09:00:00")
+                        .param("to", "2030-01-01T17:00:00")
+                        .param("duration", "PT30M"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start").value("2030-01-01T10:00:00"))
+                .andExpect(jsonPath("$[0].end").value("2030-01-01T11:00:00"));
+    }
+
     @Test
     void testGetAllAppointments() throws Exception {
-        List<AppointmentResponse> responses = Arrays.asList(appointmentResponse);
-        when(appointmentService.getAllAppointments()).thenReturn(responses);
+        when(appointmentService.getAllAppointments(true))
+                .thenReturn(new AppointmentPage(Arrays.asList(appointmentResponse), null));
 
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
                 .andExpect(jsonPath("$[0].id").value(1L))
                 .andExpect(jsonPath("$[0].title").value("Test Appointment"));
     }
 
+    @Test
+    void testGetAllAppointmentsBeyondListLimitLinksToNextPage() throws Exception {
+        when(appointmentService.getAllAppointments(true))
+                .thenReturn(new AppointmentPage(List.of(appointmentResponse), "next"));
+
+        mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, "</api/appointments/page?cursor=next>; rel=\"next\""))
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    @Test
+    void testGetAppointmentsPage() throws Exception {
+        when(appointmentService.getAppointmentsPage(isNull(), eq(1)))
+                .thenReturn(new AppointmentPage(List.of(appointmentResponse), "next"));
+
+        mockMvc.perform(get("/api/appointments/page").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1L))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void testStreamAllAppointments() throws Exception {
+        AppointmentResponse second = new AppointmentResponse(2L, "Second", null, "Dental",
+                appointmentResponse.getStartDate(), null, false, "123456789B", 0L);
+        when(appointmentService.getAppointmentsPage(isNull(), eq(500)))
+                .thenReturn(new AppointmentPage(List.of(appointmentResponse), "next"));
+        when(appointmentService.getAppointmentsPage(eq("next"), eq(500)))
+                .thenReturn(new AppointmentPage(List.of(second), null));
+
+        MvcResult result = mockMvc.perform(get("/api/appointments/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1L, objectMapper.readValue(lines[0], AppointmentResponse.class).getId());
+        assertEquals(2L, objectMapper.readValue(lines[1], AppointmentResponse.class).getId());
+    }
+
     @Test
     void testGetAppointmentById() throws Exception {
         when(appointmentService.getAppointmentById(1L)).thenReturn(appointmentResponse);
 
         mockMvc.perform(get("/api/appointments/1"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
                 .andExpect(jsonPath("$.id").value(1L))
                 .andExpect(jsonPath("$.title").value("Test Appointment"));
     }
 
+    @Test
+    void testGetAppointmentByIdNotModified() throws Exception {
+        when(appointmentService.getAppointmentById(1L)).thenReturn(appointmentResponse);
+
+        mockMvc.perform(get("/api/appointments/1").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
     @Test
     void testGetAppointmentsByCustomerId() throws Exception {
         List<AppointmentResponse> responses = Arrays.asList(appointmentResponse);
+        when(appointmentService.getCustomerAppointmentsETag("123456789A")).thenReturn("\"1-3-1\"");
         when(appointmentService.getAppointmentsByCustomerId("123456789A")).thenReturn(responses);
 
         mockMvc.perform(get("/api/appointments/customer/123456789A"))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3-1\""))
                 .andExpect(jsonPath("$[0].id").value(1L))
                 .andExpect(jsonPath("$[0].customerId").value("123456789A"));
     }
 
+    @Test
+    void testGetAllAppointmentsWithSelectedFields() throws Exception {
+        appointmentResponse.setNotes(null);
+        when(appointmentService.getAllAppointments(false))
+                .thenReturn(new AppointmentPage(List.of(appointmentResponse), null));
+
+        mockMvc.perform(get("/api/appointments").param("fields", "id,title,startDate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[0].title").value("Test Appointment"))
+                .andExpect(jsonPath("$[0].notes").doesNotExist())
+                .andExpect(jsonPath("$[0].customerId").doesNotExist());
+    }
+
+    @Test
+    void testGetAppointmentsByCustomerIdWithoutNotes() throws Exception {
+        when(appointmentService.getCustomerAppointmentsETag("123456789A")).thenReturn("\"1-3-1\"");
+        when(appointmentService.getAppointmentsByCustomerId("123456789A")).thenReturn(List.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments/customer/123456789A")
+                        .param("fields", "id,title,category,startDate,done,customerId,version"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3-1\""))
+                .andExpect(jsonPath("$[0].version").value(3L))
+                .andExpect(jsonPath("$[0].notes").doesNotExist());
+    }
+
+    @Test
+    void testGetAllAppointmentsWithUnknownField() throws Exception {
+        mockMvc.perform(get("/api/appointments").param("fields", "id,secret"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+        verify(appointmentService, never()).getAllAppointments(anyBoolean());
+    }
+
+    @Test
+    void testGetAllAppointmentsFiltered() throws Exception {
+        when(appointmentService.findAppointments(any(AppointmentFilter.class), any(Sort.class), eq(true)))
+                .thenReturn(List.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments")
+                        .param("category", "Medical")
+                        .param("done", "false")
+                        .param("from", "2025-11-01T00:00:00")
+                        .param("sort", "startDate,desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L));
+
+        verify(appointmentService).findAppointments(
+                eq(new AppointmentFilter(null, "Medical", false, LocalDateTime.of(2025, 11, 1, 0, 0), null)),
+                eq(Sort.by(Sort.Direction.DESC, "startDate")), eq(true));
+        verify(appointmentService, never()).getAllAppointments(anyBoolean());
+    }
+
+    @Test
+    void testGetAppointmentsByCustomerIdFilteredBypassesCache() throws Exception {
+        when(appointmentService.findAppointments(any(AppointmentFilter.class), any(Sort.class), eq(true)))
+                .thenReturn(List.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments/customer/123456789A").param("done", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L));
+
+        verify(appointmentService).findAppointments(
+                eq(new AppointmentFilter("123456789A", null, true, null, null)), eq(Sort.unsorted()), eq(true));
+        verify(appointmentService, never()).getAppointmentsByCustomerId(any());
+        verify(appointmentService, never()).getCustomerAppointmentsETag(any());
+    }
+
+    @Test
+    void testGetUpcomingAcrossCustomers() throws Exception {
+        when(appointmentService.getUpcomingAcrossCustomers(Duration.ofHours(2))).thenReturn(List.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments/upcoming").param("within", "PT2H"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L));
+    }
+
+    @Test
+    void testGetUpcomingAcrossCustomersRequiresWindow() throws Exception {
+        mockMvc.perform(get("/api/appointments/upcoming"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testGetAppointmentStats() throws Exception {
+        when(appointmentService.getStats(any(AppointmentFilter.class))).thenReturn(new AppointmentStats(3,
+                Map.of("Medical", 3L), Map.of("done", 1L, "pending", 2L), Map.of(LocalDate.of(2025, 11, 15), 3L)));
+
+        mockMvc.perform(get("/api/appointments/stats").param("customerId", "123456789A"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.byCategory.Medical").value(3))
+                .andExpect(jsonPath("$.byStatus.pending").value(2))
+                .andExpect(jsonPath("$.byDay['2025-11-15']").value(3));
+    }
+
+    @Test
+    void testGetAppointmentsByCustomerIdNotModifiedSkipsLoad() throws Exception {
+        when(appointmentService.getCustomerAppointmentsETag("123456789A")).thenReturn("\"1-3-1\"");
+
+        mockMvc.perform(get("/api/appointments/customer/123456789A").header("If-None-Match", "\"1-3-1\""))
+                .andExpect(status().isNotModified());
+        verify(appointmentService, never()).getAppointmentsByCustomerId("123456789A");
+    }
+
+    @Test
+    void testGetAppointmentsByCategory() throws Exception {
+        when(appointmentService.getAppointmentsByCategory("123456789A", "Medical",
+                LocalDateTime.of(2025, 11, 1, 0, 0), LocalDateTime.of(2025, 12, 1, 0, 0)))
+                .thenReturn(List.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments/customer/123456789A/category/Medical")
+                .param("from", "2025-11-01T00:00:00")
+                .param("to", "2025-12-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].category").value("Medical"));
+    }
+
+    @Test
+    void testGetAppointmentsByCategoryMissingRange() throws Exception {
+        mockMvc.perform(get("/api/appointments/customer/123456789A/category/Medical"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testUpdateAppointment() throws Exception {
-        when(appointmentService.updateAppointment(eq(1L), any(AppointmentRequest.class)))
+        when(appointmentService.updateAppointment(eq(1L), any(AppointmentRequest.class), isNull()))
                 .thenReturn(appointmentResponse);
 
         mockMvc.perform(put("/api/appointments/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointmentRequest)))
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
                 .andExpect(jsonPath("$.id").value(1L))
                 .andExpect(jsonPath("$.title").value("Test Appointment"));
     }
 
+    @Test
+    void testUpdateAppointmentRespondAsyncIsQueued() throws Exception {
+        appointmentResponse.setVersion(4L);
+        when(appointmentService.queueUpdate(eq(1L), any(AppointmentRequest.class)))
+                .thenReturn(Optional.of(appointmentResponse));
+
+        mockMvc.perform(put("/api/appointments/1")
+                .header("Prefer", "respond-async, wait=5")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointmentRequest)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("$.version").value(4L));
+
+        verify(appointmentService, never()).updateAppointment(any(), any(), any());
+    }
+
+    @Test
+    void testUpdateAppointmentRespondAsyncFallsBackToSynchronousWrite() throws Exception {
+        when(appointmentService.queueUpdate(eq(1L), any(AppointmentRequest.class))).thenReturn(Optional.empty());
+        when(appointmentService.updateAppointment(eq(1L), any(AppointmentRequest.class), isNull()))
+                .thenReturn(appointmentResponse);
+
+        mockMvc.perform(put("/api/appointments/1")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointmentRequest)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Preference-Applied"));
+    }
+
+    @Test
+    void testUpdateAppointmentWithIfMatchIsNeverQueued() throws Exception {
+        when(appointmentService.updateAppointment(eq(1L), any(AppointmentRequest.class), eq(3L)))
+                .thenReturn(appointmentResponse);
+
+        mockMvc.perform(put("/api/appointments/1")
+                .header("If-Match", "\"3\"")
+                .header("Prefer", "respond-async")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointmentRequest)))
+                .andExpect(status().isOk());
+
+        verify(appointmentService, never()).queueUpdate(any(), any());
+    }
+
+    @Test
+    void testGetAppointmentByIdReturnsQueuedUpdate() throws Exception {
+        appointmentResponse.setVersion(4L);
+        when(appointmentService.findQueuedUpdate(1L)).thenReturn(Optional.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""));
+
+        verify(appointmentService, never()).getAppointmentById(1L);
+    }
+
+    @Test
+    void testGetAppointmentsByCustomerIdWritesQueuedUpdatesFirst() throws Exception {
+        when(appointmentService.getCustomerAppointmentsETag("123456789A")).thenReturn("\"1-3-1\"");
+        when(appointmentService.getAppointmentsByCustomerId("123456789A")).thenReturn(List.of(appointmentResponse));
+
+        mockMvc.perform(get("/api/appointments/customer/123456789A"))
+                .andExpect(status().isOk());
+
+        InOrder order = inOrder(appointmentService);
+        order.verify(appointmentService).writeQueuedUpdates("123456789A");
+        order.verify(appointmentService).getCustomerAppointmentsETag("123456789A");
+        order.verify(appointmentService).getAppointmentsByCustomerId("123456789A");
+    }
+
+    @Test
+    void testUpdateAppointmentWithStaleIfMatch() throws Exception {
+        when(appointmentService.updateAppointment(eq(1L), any(AppointmentRequest.class), eq(2L)))
+                .thenThrow(new PreconditionFailedException("Appointment 1 is at version 3, not 2"));
+
+        mockMvc.perform(put("/api/appointments/1")
+                .header("If-Match", "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointmentRequest)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void testPatchAppointment() throws Exception {
+        appointmentResponse.setDone(true);
+        appointmentResponse.setVersion(4L);
+        when(appointmentService.patchAppointment(eq(1L), any(JsonNode.class), eq(3L)))
+                .thenReturn(appointmentResponse);
+
+        mockMvc.perform(patch("/api/appointments/1")
+                .header("If-Match", "\"3\"")
+                .contentType(AppointmentController.MERGE_PATCH_JSON)
+                .content("{\"done\":true}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4\""))
+                .andExpect(jsonPath("$.done").value(true));
+    }
+
+    @Test
+    void testPatchAppointmentWithInvalidResult() throws Exception {
+        when(appointmentService.patchAppointment(eq(1L), any(JsonNode.class), isNull()))
+                .thenAnswer(invocation -> {
+                    throw new ConstraintViolationException(Validation.buildDefaultValidatorFactory().getValidator()
+                            .validate(new AppointmentRequest("", null, "Medical", LocalDateTime.now(), null, false, "A")));
+                });
+
+        mockMvc.perform(patch("/api/appointments/1")
+                .contentType(AppointmentController.MERGE_PATCH_JSON)
+                .content("{\"title\":\"\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.title").value("Title cannot be blank"));
+    }
+
+    @Test
+    void testMarkAppointmentDone() throws Exception {
+        mockMvc.perform(post("/api/appointments/1/done"))
+                .andExpect(status().isNoContent());
+
+        verify(appointmentService).markAppointmentDone(1L);
+    }
+
+    @Test
+    void testMarkAppointmentDoneNotFound() throws Exception {
+        doThrow(new AppointmentNotFoundException("Appointment not found with id: 1"))
+                .when(appointmentService).markAppointmentDoneByCustomer("123456789A", 1L);
+
+        mockMvc.perform(post("/api/appointments/customer/123456789A/appointment/1/done"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void testDeleteAppointment() throws Exception {
         mockMvc.perform(delete("/api/appointments/1"))
@@ -126,8 +513,20 @@ class AppointmentControllerTest {
 
     @Test
     void testDeleteAppointmentsByCustomerId() throws Exception {
+        when(appointmentService.deleteAppointmentsByCustomerId("123456789A")).thenReturn(3);
+
         mockMvc.perform(delete("/api/appointments/customer/123456789A"))
-                .andExpect(status().isNoContent());
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(3));
+    }
+
+    @Test
+    void testDeleteAppointmentsByCustomerIdNotFound() throws Exception {
+        when(appointmentService.deleteAppointmentsByCustomerId("123456789A"))
+                .thenThrow(new AppointmentNotFoundException("No appointments found for customer: 123456789A"));
+
+        mockMvc.perform(delete("/api/appointments/customer/123456789A"))
+                .andExpect(status().isNotFound());
     }
 
     @Test
@@ -0,0 +1,241 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the number of SQL statements each endpoint issues, as recorded by the
+ * {@code appointments.sql.statements.per.request} summary, so an extra round trip shows up as a test failure.
+ * Every write that changes something also inserts one outbox row.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AppointmentSqlStatementCountTest {
+
+    private static final String CUSTOMER = "SQLCOUNT1";
+    private static final String BODY = "{\"title\":\"Checkup\",\"category\":\"Medical\","
+            + "\"startDate\":\"2030-01-01T10:00:00\",\"customerId\":\"" + CUSTOMER + "\"}";
+    private static final String CHANGED_BODY = BODY.replace("Checkup", "Follow-up");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAllInBatch();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        appointment = appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, CUSTOMER, null));
+    }
+
+    @Test
+    void testCreateIssuesOneInsert() throws Exception {
+        int statements = statements(post("/api/appointments").contentType(MediaType.APPLICATION_JSON).content(BODY),
+                "/api/appointments", status().isCreated());
+
+        // Plus one sequence fetch whenever the pooled block of 50 ids runs out
+        assertTrue(statements == 2 || statements == 3, "statements: " + statements);
+    }
+
+    @Test
+    void testGetByIdIsServedFromCacheAfterFirstRead() throws Exception {
+        String uri = "/api/appointments/" + appointment.getId();
+
+        assertEquals(1, statements(get(uri), "/api/appointments/{id}", status().isOk()));
+        assertEquals(0, statements(get(uri), "/api/appointments/{id}", status().isOk()));
+    }
+
+    @Test
+    void testGetByCustomerAnswersConditionalRequestWithoutQueries() throws Exception {
+        String uri = "/api/appointments/customer/" + CUSTOMER;
+
+        assertEquals(2, statements(get(uri), "/api/appointments/customer/{customerId}", status().isOk()));
+        String etag = mockMvc.perform(get(uri)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertEquals(0, statements(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag),
+                "/api/appointments/customer/{customerId}", status().isNotModified()));
+    }
+
+    @Test
+    void testQueryEndpointsIssueOneSelect() throws Exception {
+        assertEquals(1, statements(get("/api/appointments/customer/" + CUSTOMER + "/upcoming"),
+                "/api/appointments/customer/{customerId}/upcoming", status().isOk()));
+        assertEquals(1, statements(get("/api/appointments/customer/" + CUSTOMER + "/overdue"),
+                "/api/appointments/customer/{customerId}/overdue", status().isOk()));
+        assertEquals(1, statements(get("/api/appointments/customer/" + CUSTOMER + "/category/Medical")
+                        .param("from", "2030-01-01T00:00:00").param("to", "2030-01-02T00:00:00"),
+                "/api/appointments/customer/{customerId}/category/{category}", status().isOk()));
+        assertEquals(1, statements(get("/api/appointments/page"), "/api/appointments/page", status().isOk()));
+    }
+
+    @Test
+    void testListsIssueOneSelect() throws Exception {
+        assertEquals(1, statements(get("/api/appointments"), "/api/appointments", status().isOk()));
+        assertEquals(1, statements(get("/api/appointments").param("fields", "id,title"), "/api/appointments",
+                status().isOk()));
+    }
+
+    @Test
+    void testFilteredListIssuesOneSelect() throws Exception {
+        assertEquals(1, statements(get("/api/appointments").param("customerId", CUSTOMER).param("done", "false")
+                        .param("sort", "title,desc"),
+                "/api/appointments", status().isOk()));
+        assertEquals(1, statements(get("/api/appointments/customer/" + CUSTOMER).param("category", "Medical"),
+                "/api/appointments/customer/{customerId}", status().isOk()));
+    }
+
+    @Test
+    void testStatsIssueOneSelect() throws Exception {
+        assertEquals(1, statements(get("/api/appointments/stats").param("customerId", CUSTOMER),
+                "/api/appointments/stats", status().isOk()));
+        mockMvc.perform(get("/api/appointments/stats").param("customerId", CUSTOMER))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.byCategory.Medical").value(1))
+                .andExpect(jsonPath("$.byStatus.pending").value(1))
+                .andExpect(jsonPath("$.byDay['2030-01-01']").value(1));
+    }
+
+    @Test
+    void testUpcomingAcrossCustomersReadsOnlyIndexedRows() throws Exception {
+        String soon = LocalDateTime.now().plusHours(1).withNano(0).toString();
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                        .content(BODY.replace("2030-01-01T10:00:00", soon)))
+                .andExpect(status().isCreated());
+
+        assertEquals(1, statements(get("/api/appointments/upcoming").param("within", "PT2H"),
+                "/api/appointments/upcoming", status().isOk()));
+        mockMvc.perform(get("/api/appointments/upcoming").param("within", "PT2H"))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].startDate").value(soon));
+        assertEquals(0, statements(get("/api/appointments/upcoming").param("within", "PT1M"),
+                "/api/appointments/upcoming", status().isOk()));
+    }
+
+    @Test
+    void testUpdateIssuesOneSelectAndOneUpdate() throws Exception {
+        assertEquals(3, statements(put("/api/appointments/" + appointment.getId())
+                        .contentType(MediaType.APPLICATION_JSON).content(CHANGED_BODY),
+                "/api/appointments/{id}", status().isOk()));
+        assertEquals(3, statements(put("/api/appointments/customer/" + CUSTOMER + "/appointment/" + appointment.getId())
+                        .contentType(MediaType.APPLICATION_JSON).content(BODY),
+                "/api/appointments/customer/{customerId}/appointment/{appointmentId}", status().isOk()));
+    }
+
+    @Test
+    void testUpdateWithoutChangesIssuesNoUpdate() throws Exception {
+        assertEquals(1, statements(put("/api/appointments/" + appointment.getId())
+                        .contentType(MediaType.APPLICATION_JSON).content(BODY),
+                "/api/appointments/{id}", status().isOk()));
+    }
+
+    @Test
+    void testPatchIssuesOneSelectAndOneUpdate() throws Exception {
+        assertEquals(3, statements(patch("/api/appointments/" + appointment.getId())
+                        .contentType(AppointmentController.MERGE_PATCH_JSON).content("{\"done\":true}"),
+                "/api/appointments/{id}", status().isOk()));
+        assertEquals(3, statements(patch("/api/appointments/customer/" + CUSTOMER + "/appointment/"
+                        + appointment.getId()).contentType(AppointmentController.MERGE_PATCH_JSON)
+                        .content("{\"notes\":\"Bring results\"}"),
+                "/api/appointments/customer/{customerId}/appointment/{appointmentId}", status().isOk()));
+    }
+
+    @Test
+    void testMarkDoneIssuesOneUpdate() throws Exception {
+        assertEquals(2, statements(post("/api/appointments/" + appointment.getId() + "/done"),
+                "/api/appointments/{id}/done", status().isNoContent()));
+        assertEquals(2, statements(post("/api/appointments/customer/" + CUSTOMER + "/appointment/"
+                        + appointment.getId() + "/done"),
+                "/api/appointments/customer/{customerId}/appointment/{appointmentId}/done", status().isNoContent()));
+        assertEquals(1, statements(post("/api/appointments/" + (appointment.getId() + 1000) + "/done"),
+                "/api/appointments/{id}/done", status().isNotFound()));
+    }
+
+    @Test
+    void testUpdateWithStaleVersionIssuesNoUpdate() throws Exception {
+        assertEquals(1, statements(put("/api/appointments/" + appointment.getId())
+                        .header(HttpHeaders.IF_MATCH, "\"99\"")
+                        .contentType(MediaType.APPLICATION_JSON).content(BODY),
+                "/api/appointments/{id}", status().isPreconditionFailed()));
+    }
+
+    @Test
+    void testUpdateOfMissingAppointmentIssuesOneSelect() throws Exception {
+        assertEquals(1, statements(put("/api/appointments/" + (appointment.getId() + 1000))
+                        .contentType(MediaType.APPLICATION_JSON).content(BODY),
+                "/api/appointments/{id}", status().isNotFound()));
+    }
+
+    @Test
+    void testDeleteIssuesOneDelete() throws Exception {
+        assertEquals(2, statements(delete("/api/appointments/" + appointment.getId()),
+                "/api/appointments/{id}", status().isNoContent()));
+        assertEquals(1, statements(delete("/api/appointments/" + appointment.getId()),
+                "/api/appointments/{id}", status().isNotFound()));
+    }
+
+    @Test
+    void testDeleteByCustomerIssuesOneDelete() throws Exception {
+        assertEquals(2, statements(delete("/api/appointments/customer/" + CUSTOMER + "/appointment/" + appointment.getId()),
+                "/api/appointments/customer/{customerId}/appointment/{appointmentId}", status().isNoContent()));
+        assertEquals(1, statements(delete("/api/appointments/customer/" + CUSTOMER + "/appointment/" + appointment.getId()),
+                "/api/appointments/customer/{customerId}/appointment/{appointmentId}", status().isNotFound()));
+    }
+
+    @Test
+    void testPurgeIssuesOneDeletePerChunk() throws Exception {
+        assertEquals(2, statements(delete("/api/appointments/customer/" + CUSTOMER),
+                "/api/appointments/customer/{customerId}", status().isOk()));
+    }
+
+    private int statements(MockHttpServletRequestBuilder request, String uriTemplate, ResultMatcher expectedStatus)
+            throws Exception {
+        String method = request.buildRequest(new MockServletContext()).getMethod();
+        double before = total(method, uriTemplate);
+        mockMvc.perform(request).andExpect(expectedStatus);
+        return (int) (total(method, uriTemplate) - before);
+    }
+
+    private double total(String method, String uriTemplate) {
+        DistributionSummary summary = meterRegistry.find("appointments.sql.statements.per.request")
+                .tag("method", method)
+                .tag("uri", uriTemplate)
+                .summary();
+        return summary != null ? summary.totalAmount() : 0;
+    }
+}
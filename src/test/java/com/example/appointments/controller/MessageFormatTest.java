@@ -0,0 +1,162 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.config.AppointmentProtobufHttpMessageConverter;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Request and response bodies in CBOR, Smile and Protobuf, chosen by {@code Content-Type} and {@code Accept}.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MessageFormatTest {
+
+    private static final String CUSTOMER = "FORMATS01";
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType PROTOBUF = AppointmentProtobufHttpMessageConverter.APPLICATION_PROTOBUF;
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private final ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory());
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAll(appointmentRepository.findByCustomerId(CUSTOMER));
+        appointmentRepository.save(new Appointment(null, "Checkup", "Fasting", "Medical", START, null, false,
+                CUSTOMER, null));
+    }
+
+    @Test
+    void testJsonStaysTheDefault() throws Exception {
+        mockMvc.perform(get("/api/appointments/customer/" + CUSTOMER).accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void testCborRequestAndResponse() throws Exception {
+        byte[] body = cborMapper.writeValueAsBytes(Map.of("title", "Dentist", "category", "Dental",
+                "startDate", "2030-02-01T09:00:00", "customerId", CUSTOMER));
+
+        byte[] created = mockMvc.perform(post("/api/appointments").contentType(CBOR).accept(CBOR).content(body))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentTypeCompatibleWith(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode appointment = cborMapper.readTree(created);
+        assertEquals("Dentist", appointment.get("title").asText());
+        assertEquals("2030-02-01T09:00:00", appointment.get("startDate").asText());
+    }
+
+    @Test
+    void testSmileListKeepsFieldSelection() throws Exception {
+        byte[] list = mockMvc.perform(get("/api/appointments/customer/" + CUSTOMER).param("fields", "id,title")
+                        .accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode appointments = smileMapper.readTree(list);
+        assertEquals(1, appointments.size());
+        assertEquals("Checkup", appointments.get(0).get("title").asText());
+        assertFalse(appointments.get(0).has("notes"));
+    }
+
+    @Test
+    void testProtobufRequestAndResponse() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        CodedOutputStream out = CodedOutputStream.newInstance(body);
+        out.writeString(1, "Dentist");
+        out.writeString(3, "Dental");
+        out.writeSInt64(4, millis(START.plusDays(1)));
+        out.writeString(7, CUSTOMER);
+        out.writeString(99, "from a newer schema");
+        out.flush();
+
+        byte[] created = mockMvc.perform(post("/api/appointments").contentType(PROTOBUF).accept(PROTOBUF)
+                        .content(body.toByteArray()))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentTypeCompatibleWith(PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        UnknownFieldSet appointment = UnknownFieldSet.parseFrom(created);
+        assertEquals("Dentist", string(appointment, 2));
+        assertEquals("Dental", string(appointment, 4));
+        assertEquals(CUSTOMER, string(appointment, 8));
+        assertTrue(appointment.getField(1).getVarintList().get(0) > 0);
+    }
+
+    @Test
+    void testProtobufList() throws Exception {
+        byte[] list = mockMvc.perform(get("/api/appointments/customer/" + CUSTOMER).accept(PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(PROTOBUF))
+                .andExpect(header().string(HttpHeaders.ETAG, startsWith("W/\"")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<ByteString> appointments = UnknownFieldSet.parseFrom(list).getField(1)
+                .getLengthDelimitedList();
+        assertEquals(1, appointments.size());
+        UnknownFieldSet appointment = UnknownFieldSet.parseFrom(appointments.get(0));
+        assertEquals("Checkup", string(appointment, 2));
+        assertEquals("Fasting", string(appointment, 3));
+        assertEquals(millis(START), decodeZigZag(appointment.getField(5).getVarintList().get(0)));
+        assertEquals(0, appointment.getField(7).getVarintList().get(0));
+    }
+
+    @Test
+    void testMalformedProtobufIsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/appointments").contentType(PROTOBUF).content(new byte[] {(byte) 0x0a, 0x7f}))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static String string(UnknownFieldSet message, int field) {
+        return message.getField(field).getLengthDelimitedList().get(0).toStringUtf8();
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static long decodeZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.appointments.controller;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.repository.ReactiveAppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Runs the reactive profile end to end on WebFlux and R2DBC.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveAppointmentControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveAppointmentRepository appointmentRepository;
+
+    private AppointmentRequest appointmentRequest;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAll().block();
+        appointmentRequest = new AppointmentRequest("Test Appointment", "Test Notes", "Medical",
+                LocalDateTime.of(2030, 11, 15, 10, 0), null, false, "123456789A");
+    }
+
+    @Test
+    void testCreateAndGetAppointment() {
+        AppointmentResponse created = create(appointmentRequest);
+        assertNotNull(created.getId());
+        assertEquals(0L, created.getVersion());
+
+        webTestClient.get().uri("/api/appointments/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"0\"")
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Test Appointment")
+                .jsonPath("$.startDate").isEqualTo("2030-11-15T10:00:00");
+
+        webTestClient.get().uri("/api/appointments/{id}", created.getId())
+                .header("If-None-Match", "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    void testCreateAppointmentWithValidationError() {
+        appointmentRequest.setTitle("");
+
+        webTestClient.post().uri("/api/appointments")
+                .bodyValue(appointmentRequest)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.title").isEqualTo("Title cannot be blank");
+    }
+
+    @Test
+    void testGetAppointmentNotFound() {
+        webTestClient.get().uri("/api/appointments/999")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Appointment not found with id: 999");
+    }
+
+    @Test
+    void testCustomerListAsJsonAndNdjson() {
+        create(appointmentRequest);
+        appointmentRequest.setStartDate(appointmentRequest.getStartDate().plusDays(1));
+        create(appointmentRequest);
+
+        webTestClient.get().uri("/api/appointments/customer/123456789A")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists("ETag")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2);
+
+        List<AppointmentResponse> streamed = webTestClient.get().uri("/api/appointments/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(AppointmentResponse.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+        assertNotNull(streamed);
+        assertEquals(2, streamed.size());
+    }
+
+    @Test
+    void testUpdateWithStaleIfMatch() {
+        AppointmentResponse created = create(appointmentRequest);
+        appointmentRequest.setTitle("Updated");
+
+        webTestClient.put().uri("/api/appointments/{id}", created.getId())
+                .header("If-Match", "\"0\"")
+                .bodyValue(appointmentRequest)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("ETag", "\"1\"");
+
+        webTestClient.put().uri("/api/appointments/{id}", created.getId())
+                .header("If-Match", "\"0\"")
+                .bodyValue(appointmentRequest)
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    void testDeleteAppointmentsByCustomerId() {
+        create(appointmentRequest);
+        create(appointmentRequest);
+
+        webTestClient.delete().uri("/api/appointments/customer/123456789A")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.deleted").isEqualTo(2);
+
+        webTestClient.delete().uri("/api/appointments/customer/123456789A")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private AppointmentResponse create(AppointmentRequest request) {
+        return webTestClient.post().uri("/api/appointments")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(AppointmentResponse.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
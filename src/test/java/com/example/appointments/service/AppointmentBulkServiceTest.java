@@ -0,0 +1,183 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentUpdateItem;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.exception.BulkRequestTooLargeException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {"appointments.bulk.batch-size=2", "appointments.bulk.max-locked-customers=2",
+        "appointments.customer-locks.acquire-timeout=100ms"})
+class AppointmentBulkServiceTest {
+
+    @Autowired
+    private AppointmentBulkService appointmentBulkService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private CustomerWriteLocks customerLocks;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void testCreateAppointmentsAcrossBatches() {
+        List<AppointmentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            requests.add(request("Appointment " + i));
+        }
+        requests.add(2, request(""));
+        requests.add(null);
+
+        BulkResponse response = appointmentBulkService.createAppointments(requests);
+
+        assertEquals(7, response.getTotal());
+        assertEquals(5, response.getSucceeded());
+        assertEquals(2, response.getFailed());
+        assertEquals(400, response.getResults().get(2).getStatus());
+        assertEquals("Title cannot be blank", response.getResults().get(2).getErrors().get("title"));
+        assertEquals(400, response.getResults().get(6).getStatus());
+        assertEquals(201, response.getResults().get(0).getStatus());
+        assertNotNull(response.getResults().get(0).getId());
+        assertEquals(5, appointmentRepository.count());
+    }
+
+    @Test
+    void testChunkOfMoreCustomersThanLockedAtOnceIsWrittenInGroups() {
+        AppointmentRequest other = request("Other customer");
+        other.setCustomerId("123456789B");
+        AppointmentRequest third = request("Third customer");
+        third.setCustomerId("123456789C");
+        Appointment moving = appointmentRepository.save(entity("Moving"));
+        AppointmentUpdateItem move = updateItem(moving.getId(), "Moved");
+        move.setCustomerId("123456789D");
+
+        BulkResponse created = appointmentBulkService.createAppointments(List.of(request("First"), other));
+        BulkResponse updated = appointmentBulkService.updateAppointments(List.of(move));
+        BulkResponse more = appointmentBulkService.createAppointments(List.of(request("Second"), other, third));
+
+        assertEquals(2, created.getSucceeded());
+        assertEquals(1, updated.getSucceeded());
+        assertEquals("123456789D", appointmentRepository.findById(moving.getId()).orElseThrow().getCustomerId());
+        assertEquals(3, more.getSucceeded());
+        assertEquals(6, appointmentRepository.count());
+    }
+
+    @Test
+    void testItemsOfABusyCustomerFailWithoutFailingTheRequest() throws Exception {
+        AppointmentRequest busy = request("Busy customer");
+        busy.setCustomerId("123456789B");
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> customerLocks.run("123456789B", () -> {
+                held.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            held.await();
+
+            BulkResponse response = appointmentBulkService.createAppointments(
+                    List.of(request("First"), request("Second"), busy));
+
+            assertEquals(2, response.getSucceeded());
+            assertEquals(201, response.getResults().get(1).getStatus());
+            assertEquals(503, response.getResults().get(2).getStatus());
+            assertEquals(2, appointmentRepository.count());
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testUpdateAppointmentsReportsMissingIds() {
+        Appointment existing = appointmentRepository.save(entity("Original"));
+
+        AppointmentUpdateItem update = updateItem(existing.getId(), "Updated");
+        AppointmentUpdateItem missing = updateItem(existing.getId() + 1000, "Missing");
+        AppointmentUpdateItem invalid = updateItem(null, "No id");
+
+        BulkResponse response = appointmentBulkService.updateAppointments(Arrays.asList(update, missing, invalid));
+
+        assertEquals(1, response.getSucceeded());
+        assertEquals(200, response.getResults().get(0).getStatus());
+        assertEquals(404, response.getResults().get(1).getStatus());
+        assertEquals(400, response.getResults().get(2).getStatus());
+        assertEquals("Updated", appointmentRepository.findById(existing.getId()).orElseThrow().getTitle());
+    }
+
+    @Test
+    void testDeleteAppointments() {
+        Appointment first = appointmentRepository.save(entity("First"));
+        Appointment second = appointmentRepository.save(entity("Second"));
+
+        BulkResponse response = appointmentBulkService.deleteAppointments(
+                Arrays.asList(first.getId(), -1L, second.getId(), null));
+
+        assertEquals(2, response.getSucceeded());
+        assertEquals(204, response.getResults().get(0).getStatus());
+        assertEquals(404, response.getResults().get(1).getStatus());
+        assertEquals(204, response.getResults().get(2).getStatus());
+        assertEquals(400, response.getResults().get(3).getStatus());
+        assertEquals(0, appointmentRepository.count());
+    }
+
+    @Test
+    void testRejectsTooManyItems() {
+        List<Long> ids = Collections.nCopies(10_001, 1L);
+
+        assertThrows(BulkRequestTooLargeException.class, () -> {
+            appointmentBulkService.deleteAppointments(ids);
+        });
+    }
+
+    private static AppointmentRequest request(String title) {
+        return new AppointmentRequest(title, "Notes", "Medical", LocalDateTime.of(2025, 11, 15, 10, 0), null, false,
+                "123456789A");
+    }
+
+    private static AppointmentUpdateItem updateItem(Long id, String title) {
+        AppointmentUpdateItem item = new AppointmentUpdateItem();
+        item.setId(id);
+        item.setTitle(title);
+        item.setCategory("Medical");
+        item.setStartDate(LocalDateTime.of(2025, 11, 15, 10, 0));
+        item.setCustomerId("123456789A");
+        return item;
+    }
+
+    private static Appointment entity(String title) {
+        Appointment appointment = new Appointment();
+        appointment.setTitle(title);
+        appointment.setCategory("Medical");
+        appointment.setStartDate(LocalDateTime.of(2025, 11, 15, 10, 0));
+        appointment.setDone(false);
+        appointment.setCustomerId("123456789A");
+        return appointment;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ConflictIndexProperties;
+import com.example.appointments.dto.AppointmentInterval;
+import com.example.appointments.dto.TimeSlot;
+import com.example.appointments.exception.SchedulingConflictException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentConflictIndexTest {
+
+    private static final String CUSTOMER = "123456789A";
+    private static final LocalDateTime NINE = LocalDateTime.of(2030, 1, 1, 9, 0);
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    private AppointmentConflictIndex conflictIndex;
+
+    @BeforeEach
+    void setUp() {
+        conflictIndex = new AppointmentConflictIndex(appointmentRepository, new ConflictIndexProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testOverlappingAppointmentIsRejected() {
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE, NINE.plusHours(1));
+        when(appointmentRepository.findIntervalById(1L))
+                .thenReturn(Optional.of(new AppointmentInterval(1L, CUSTOMER, NINE, NINE.plusHours(1))));
+
+        SchedulingConflictException exception = assertThrows(SchedulingConflictException.class, () -> {
+            conflictIndex.reserve(new Appointment(), CUSTOMER, NINE.plusMinutes(30), NINE.plusMinutes(90));
+        });
+        assertEquals("Appointment from 2030-01-01T09:30 to 2030-01-01T10:30 overlaps appointment 1 of customer "
+                + CUSTOMER + " from 2030-01-01T09:00 to 2030-01-01T10:00", exception.getMessage());
+        assertThrows(SchedulingConflictException.class, () -> {
+            conflictIndex.reserve(new Appointment(), CUSTOMER, NINE.minusMinutes(30), NINE.plusHours(2));
+        });
+        verify(appointmentRepository, times(1)).findIntervalsByCustomerId(CUSTOMER);
+    }
+
+    @Test
+    void testAdjacentAppointmentsAndOtherCustomersDoNotConflict() {
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE, NINE.plusHours(1));
+
+        assertDoesNotThrow(() -> {
+            conflictIndex.reserve(appointment(2L), CUSTOMER, NINE.plusHours(1), NINE.plusHours(2));
+            conflictIndex.reserve(appointment(3L), CUSTOMER, NINE.minusHours(1), NINE);
+            conflictIndex.reserve(appointment(4L), "123456789B", NINE, NINE.plusHours(1));
+            // Without an end date an appointment takes no time
+            conflictIndex.reserve(appointment(5L), CUSTOMER, NINE, null);
+        });
+        verify(appointmentRepository, never()).findIntervalById(1L);
+    }
+
+    @Test
+    void testAppointmentCanMoveOverItsOwnInterval() {
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE, NINE.plusHours(1));
+        conflictIndex.reserve(appointment(2L), CUSTOMER, NINE.plusHours(2), NINE.plusHours(3));
+
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE.plusMinutes(30), NINE.plusHours(2));
+
+        assertEquals(List.of(new TimeSlot(NINE, NINE.plusMinutes(30)), new TimeSlot(NINE.plusHours(3), NINE.plusHours(4))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(4), Duration.ZERO));
+    }
+
+    @Test
+    void testReleasedIntervalIsFree() {
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE, NINE.plusHours(1));
+
+        conflictIndex.release(1L);
+
+        assertDoesNotThrow(() -> conflictIndex.reserve(appointment(2L), CUSTOMER, NINE, NINE.plusHours(1)));
+    }
+
+    @Test
+    void testPurgedCustomerIsLoadedAgain() {
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE, NINE.plusHours(1));
+
+        conflictIndex.releaseCustomer(CUSTOMER);
+
+        // Written while the purge ran, without the customer's lock
+        when(appointmentRepository.findIntervalsByCustomerId(CUSTOMER))
+                .thenReturn(List.of(new AppointmentInterval(2L, CUSTOMER, NINE, NINE.plusHours(1))));
+        when(appointmentRepository.findIntervalById(2L))
+                .thenReturn(Optional.of(new AppointmentInterval(2L, CUSTOMER, NINE, NINE.plusHours(1))));
+        assertThrows(SchedulingConflictException.class, () -> {
+            conflictIndex.reserve(new Appointment(), CUSTOMER, NINE, NINE.plusHours(1));
+        });
+        verify(appointmentRepository, times(2)).findIntervalsByCustomerId(CUSTOMER);
+    }
+
+    @Test
+    void testEvictedScheduleIsLoadedAgain() {
+        ConflictIndexProperties properties = new ConflictIndexProperties();
+        properties.setMaximumCustomers(0);
+        conflictIndex = new AppointmentConflictIndex(appointmentRepository, properties);
+        when(appointmentRepository.findIntervalsByCustomerId(CUSTOMER))
+                .thenReturn(List.of(new AppointmentInterval(1L, CUSTOMER, NINE, NINE.plusHours(1))));
+
+        conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(2), Duration.ZERO);
+        assertEquals(List.of(new TimeSlot(NINE.plusHours(1), NINE.plusHours(2))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(2), Duration.ZERO));
+        verify(appointmentRepository, times(2)).findIntervalsByCustomerId(CUSTOMER);
+    }
+
+    @Test
+    void testStaleIntervalIsDroppedAfterCheckingTheDatabase() {
+        when(appointmentRepository.findIntervalsByCustomerId(CUSTOMER))
+                .thenReturn(List.of(new AppointmentInterval(1L, CUSTOMER, NINE, NINE.plusHours(1))));
+        when(appointmentRepository.findIntervalById(1L)).thenReturn(Optional.empty());
+
+        assertDoesNotThrow(() -> conflictIndex.reserve(appointment(2L), CUSTOMER, NINE, NINE.plusHours(1)));
+    }
+
+    @Test
+    void testAppointmentWrittenByAnotherInstanceIsFoundInTheDatabase() {
+        assertEquals(List.of(new TimeSlot(NINE, NINE.plusHours(2))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(2), Duration.ZERO));
+        when(appointmentRepository.findLatestStartingBefore(eq(CUSTOMER), any(), any()))
+                .thenReturn(List.of(new AppointmentInterval(7L, CUSTOMER, NINE, NINE.plusHours(1))));
+
+        assertThrows(SchedulingConflictException.class, () -> {
+            conflictIndex.reserve(new Appointment(), CUSTOMER, NINE.plusMinutes(30), NINE.plusHours(2));
+        });
+        assertEquals(List.of(new TimeSlot(NINE.plusHours(1), NINE.plusHours(2))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(2), Duration.ZERO));
+    }
+
+    @Test
+    void testStoredIntervalEndingAtTheStartDoesNotConflict() {
+        when(appointmentRepository.findLatestStartingBefore(eq(CUSTOMER), any(), any()))
+                .thenReturn(List.of(new AppointmentInterval(7L, CUSTOMER, NINE.minusHours(1), NINE)));
+
+        assertDoesNotThrow(() -> conflictIndex.reserve(new Appointment(), CUSTOMER, NINE, NINE.plusHours(1)));
+        verify(appointmentRepository).findLatestStartingBefore(eq(CUSTOMER), eq(NINE.plusHours(1)),
+                argThat(limit -> limit.max() == 1));
+    }
+
+    @Test
+    void testMovedAppointmentIsCheckedAgainstTheIntervalBeforeItsOwn() {
+        when(appointmentRepository.findLatestStartingBefore(eq(CUSTOMER), any(), any()))
+                .thenReturn(List.of(new AppointmentInterval(3L, CUSTOMER, NINE, NINE.plusHours(1)),
+                        new AppointmentInterval(7L, CUSTOMER, NINE.minusHours(1), NINE.minusMinutes(30))));
+
+        assertDoesNotThrow(() -> conflictIndex.reserve(appointment(3L), CUSTOMER, NINE.minusMinutes(15),
+                NINE.plusHours(1)));
+        verify(appointmentRepository).findLatestStartingBefore(eq(CUSTOMER), eq(NINE.plusHours(1)),
+                argThat(limit -> limit.max() == 2));
+    }
+
+    @Test
+    void testHeldIntervalBlocksOthersUntilRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        conflictIndex.reserve(new Appointment(), CUSTOMER, NINE, NINE.plusHours(1));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // Uncommitted, so not confirmed against the database
+        assertThrows(SchedulingConflictException.class, () -> {
+            conflictIndex.reserve(new Appointment(), CUSTOMER, NINE, NINE.plusHours(1));
+        });
+        verify(appointmentRepository, never()).findIntervalById(null);
+
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertDoesNotThrow(() -> conflictIndex.reserve(appointment(2L), CUSTOMER, NINE, NINE.plusHours(1)));
+    }
+
+    @Test
+    void testRolledBackMoveRestoresPreviousInterval() {
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE, NINE.plusHours(1));
+        TransactionSynchronizationManager.initSynchronization();
+        conflictIndex.reserve(appointment(1L), CUSTOMER, NINE.plusMinutes(30), NINE.plusMinutes(90));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        assertEquals(List.of(new TimeSlot(NINE.plusMinutes(90), NINE.plusHours(2))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(2), Duration.ZERO));
+        synchronizations.forEach(synchronization ->
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        assertEquals(List.of(new TimeSlot(NINE.plusHours(1), NINE.plusHours(2))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(2), Duration.ZERO));
+    }
+
+    @Test
+    void testFreeSlotsSkipsGapsShorterThanMinimum() {
+        when(appointmentRepository.findIntervalsByCustomerId(CUSTOMER)).thenReturn(List.of(
+                new AppointmentInterval(2L, CUSTOMER, NINE.plusMinutes(75), NINE.plusHours(2)),
+                new AppointmentInterval(1L, CUSTOMER, NINE.minusMinutes(30), NINE.plusHours(1))));
+
+        List<TimeSlot> free = conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(3), Duration.ofMinutes(30));
+
+        assertEquals(List.of(new TimeSlot(NINE.plusHours(2), NINE.plusHours(3))), free);
+    }
+
+    @Test
+    void testOverlappingRowsFromTheDatabaseAreKeptAsOneBlock() {
+        when(appointmentRepository.findIntervalsByCustomerId(CUSTOMER)).thenReturn(List.of(
+                new AppointmentInterval(1L, CUSTOMER, NINE, NINE.plusHours(1)),
+                new AppointmentInterval(2L, CUSTOMER, NINE.plusMinutes(30), NINE.plusHours(2))));
+
+        assertEquals(List.of(new TimeSlot(NINE.plusHours(2), NINE.plusHours(3))),
+                conflictIndex.freeSlots(CUSTOMER, NINE, NINE.plusHours(3), Duration.ZERO));
+        assertThrows(SchedulingConflictException.class, () -> {
+            conflictIndex.reserve(new Appointment(), CUSTOMER, NINE.plusMinutes(90), NINE.plusHours(3));
+        });
+    }
+
+    private static Appointment appointment(Long id) {
+        Appointment appointment = new Appointment();
+        appointment.setId(id);
+        return appointment;
+    }
+}
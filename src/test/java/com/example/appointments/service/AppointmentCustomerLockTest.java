@@ -0,0 +1,152 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentUpdateItem;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.exception.SchedulingConflictException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Concurrent writes to one customer's appointments, through the customer-scoped paths, by id and in bulk:
+ * every write has to land, none may be lost or rejected on the version check.
+ */
+@SpringBootTest
+class AppointmentCustomerLockTest {
+
+    private static final int THREADS = 8;
+    private static final int WRITES_PER_THREAD = 25;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentBulkService appointmentBulkService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testConcurrentPatchesOfOneCustomerAreAllApplied() throws Exception {
+        String customerId = "LOCKS" + System.nanoTime();
+        Appointment appointment = appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, customerId, null));
+        double contendedBefore = meterRegistry.get("appointments.customer.locks.contended").counter().count();
+
+        runWriters((writer, i) -> appointmentService.patchAppointmentByCustomer(customerId, appointment.getId(),
+                objectMapper.createObjectNode().put(writer % 2 == 0 ? "title" : "notes", writer + "-" + i), null));
+
+        Appointment written = appointmentRepository.findById(appointment.getId()).orElseThrow();
+        // Every patch wrote a value of its own, so every one of them bumped the version exactly once
+        assertEquals(appointment.getVersion() + THREADS * WRITES_PER_THREAD, written.getVersion());
+        // Patches of one field never overwrote the other
+        assertTrue(written.getTitle().endsWith("-" + (WRITES_PER_THREAD - 1)));
+        assertTrue(written.getNotes().endsWith("-" + (WRITES_PER_THREAD - 1)));
+        assertTrue(meterRegistry.get("appointments.customer.locks.contended").counter().count() > contendedBefore);
+    }
+
+    @Test
+    void testConcurrentWritesByIdByCustomerAndInBulkAreAllApplied() throws Exception {
+        String customerId = "LOCKS" + System.nanoTime();
+        Appointment appointment = appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, customerId, null));
+
+        runWriters((writer, i) -> {
+            String title = writer + "-" + i;
+            switch (writer % 3) {
+                case 0 -> appointmentService.patchAppointment(appointment.getId(),
+                        objectMapper.createObjectNode().put("title", title), null);
+                case 1 -> appointmentService.updateAppointment(appointment.getId(), new AppointmentRequest(title,
+                        null, "Medical", appointment.getStartDate(), null, false, customerId), null);
+                default -> {
+                    AppointmentUpdateItem item = new AppointmentUpdateItem();
+                    item.setId(appointment.getId());
+                    item.setTitle(title);
+                    item.setCategory("Medical");
+                    item.setStartDate(appointment.getStartDate());
+                    item.setCustomerId(customerId);
+                    BulkResponse response = appointmentBulkService.updateAppointments(List.of(item));
+                    assertEquals(200, response.getResults().get(0).getStatus());
+                }
+            }
+        });
+
+        // Every write set a title of its own, so every one of them bumped the version exactly once
+        assertEquals(appointment.getVersion() + THREADS * WRITES_PER_THREAD,
+                appointmentRepository.findById(appointment.getId()).orElseThrow().getVersion());
+    }
+
+    @Test
+    void testConcurrentOverlappingCreatesOfOneCustomerWriteOnlyOne() throws Exception {
+        String customerId = "LOCKS" + System.nanoTime();
+        AtomicInteger conflicts = new AtomicInteger();
+
+        runWriters((writer, i) -> {
+            LocalDateTime startDate = LocalDateTime.of(2030, 1, 1, 10, 0).plusDays(i);
+            try {
+                appointmentService.createAppointment(new AppointmentRequest("Checkup " + writer, null, "Medical",
+                        startDate, startDate.plusHours(1), false, customerId));
+            } catch (SchedulingConflictException e) {
+                conflicts.incrementAndGet();
+            }
+        });
+
+        // One appointment a day, whichever writer got there first
+        assertEquals(WRITES_PER_THREAD, appointmentRepository.findByCustomerId(customerId).size());
+        assertEquals((THREADS - 1) * WRITES_PER_THREAD, conflicts.get());
+    }
+
+    // Starts THREADS writers at once, each making WRITES_PER_THREAD writes, and rethrows any write that failed,
+    // e.g. on an optimistic locking conflict
+    private static void runWriters(Write write) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int writer = t;
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < WRITES_PER_THREAD; i++) {
+                        write.run(writer, i);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void run(int writer, int i) throws Exception;
+    }
+}
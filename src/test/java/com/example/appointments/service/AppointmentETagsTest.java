@@ -0,0 +1,59 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * List tags computed in SQL against H2 and from the list itself.
+ */
+@SpringBootTest
+class AppointmentETagsTest {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Test
+    void testSummaryQueryAndListGiveTheSameTag() {
+        String customerId = "ETAGS" + System.nanoTime();
+        save(customerId, "Checkup");
+        Appointment updated = save(customerId, "Follow-up");
+        updated.setTitle("Follow-up, moved");
+        appointmentRepository.saveAndFlush(updated);
+
+        List<AppointmentResponse> list = appointmentRepository.findResponsesByCustomerId(customerId);
+
+        assertEquals(AppointmentETags.of(list),
+                AppointmentETags.of(appointmentRepository.summarizeVersionsByCustomerId(customerId)));
+    }
+
+    @Test
+    void testSwappingAnAppointmentForAnotherOfTheSameVersionChangesTheTag() {
+        // Neither holds the maximum id, and both are at version 3 when the list is tagged
+        AppointmentResponse kept = response(10L, 0L);
+        AppointmentResponse left = response(3L, 3L);
+        AppointmentResponse entered = response(4L, 3L);
+
+        assertNotEquals(AppointmentETags.of(List.of(left, kept)), AppointmentETags.of(List.of(entered, kept)));
+    }
+
+    private Appointment save(String customerId, String title) {
+        return appointmentRepository.saveAndFlush(new Appointment(null, title, null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, customerId, null));
+    }
+
+    private static AppointmentResponse response(Long id, Long version) {
+        Appointment appointment = new Appointment(id, "Checkup", null, "Medical",
+                LocalDateTime.of(2030, 1, 1, 10, 0), null, false, "123456789A", version);
+        return AppointmentResponse.fromEntity(appointment);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ChangeStreamProperties;
+import com.example.appointments.dto.AppointmentChangeEvent;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.AppointmentChange;
+import com.example.appointments.repository.AppointmentChangeRepository;
+import com.example.appointments.repository.AppointmentRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * Outbox rows recorded by service writes against H2, and the relay numbering them in commit order, however
+ * many instances record them.
+ */
+@SpringBootTest
+class AppointmentOutboxTest {
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @SpyBean
+    private AppointmentOutbox outbox;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private AppointmentChangeRepository changeRepository;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ChangeStreamProperties properties;
+
+    @Test
+    void testWritesRecordOneChangeEachInOrder() {
+        String customerId = "OUTBOX" + System.nanoTime();
+        long before = outbox.relay();
+
+        AppointmentResponse created = appointmentService.createAppointment(request(customerId, "Checkup"));
+        appointmentService.updateAppointment(created.getId(), request(customerId, "Follow-up"), null);
+        // Unchanged, so nothing to record
+        appointmentService.updateAppointment(created.getId(), request(customerId, "Follow-up"), null);
+        appointmentService.markAppointmentDone(created.getId());
+        appointmentService.deleteAppointment(created.getId());
+
+        List<AppointmentChangeEvent> events = changeRepository.findEventsByCustomerId(customerId, before,
+                outbox.relay(), Limit.of(10));
+        assertEquals(List.of(AppointmentChange.Type.CREATED, AppointmentChange.Type.UPDATED,
+                AppointmentChange.Type.UPDATED, AppointmentChange.Type.DELETED),
+                events.stream().map(AppointmentChangeEvent::getType).toList());
+        assertTrue(events.stream().allMatch(event -> created.getId().equals(event.getAppointmentId())));
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).getSeq() > events.get(i - 1).getSeq());
+        }
+    }
+
+    @Test
+    void testMovingAnAppointmentRecordsTheChangeForBothCustomers() {
+        String from = "OUTBOXFROM" + System.nanoTime();
+        String to = "OUTBOXTO" + System.nanoTime();
+        AppointmentResponse created = appointmentService.createAppointment(request(from, "Checkup"));
+        long before = outbox.relay();
+
+        appointmentService.updateAppointment(created.getId(), request(to, "Checkup"), null);
+
+        long relayed = outbox.relay();
+        assertEquals(1, changeRepository.findEventsByCustomerId(from, before, relayed, Limit.of(10)).size());
+        assertEquals(1, changeRepository.findEventsByCustomerId(to, before, relayed, Limit.of(10)).size());
+    }
+
+    @Test
+    void testPurgeRecordsOneChangeForTheCustomer() {
+        String customerId = "OUTBOXPURGE" + System.nanoTime();
+        appointmentService.createAppointment(request(customerId, "Checkup"));
+        appointmentService.createAppointment(request(customerId, "Follow-up"));
+        long before = outbox.relay();
+
+        assertEquals(2, appointmentService.deleteAppointmentsByCustomerId(customerId));
+
+        List<AppointmentChangeEvent> events = changeRepository.findEventsByCustomerId(customerId, before,
+                outbox.relay(), Limit.of(10));
+        assertEquals(1, events.size());
+        assertEquals(AppointmentChange.Type.PURGED, events.get(0).getType());
+        assertNull(events.get(0).getAppointmentId());
+    }
+
+    @Test
+    void testPurgeChunkRollsBackWhenItsChangeCannotBeRecorded() {
+        String customerId = "OUTBOXFAIL" + System.nanoTime();
+        appointmentService.createAppointment(request(customerId, "Checkup"));
+        doThrow(new IllegalStateException("Outbox insert failed"))
+                .when(outbox).record(eq(AppointmentChange.Type.PURGED), any(), eq(customerId));
+
+        assertThrows(IllegalStateException.class, () -> appointmentService.deleteAppointmentsByCustomerId(customerId));
+
+        assertEquals(1, appointmentRepository.findByCustomerId(customerId).size());
+    }
+
+    @Test
+    void testChangesAreNumberedInCommitOrder() throws Exception {
+        String first = "OUTBOXOPEN" + System.nanoTime();
+        String second = "OUTBOXLATER" + System.nanoTime();
+        long before = outbox.relay();
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        CompletableFuture<Void> open = CompletableFuture.runAsync(() -> transactionOperations.executeWithoutResult(
+                status -> {
+                    outbox.record(AppointmentChange.Type.UPDATED, 1L, first);
+                    recorded.countDown();
+                    await(commit);
+                }));
+        assertTrue(recorded.await(10, TimeUnit.SECONDS));
+
+        // Recorded later but committed first, so numbered first; the open change is not numbered yet
+        outbox.record(AppointmentChange.Type.UPDATED, 2L, second);
+        assertEquals(List.of(second), customersAfter(before, first, second));
+
+        commit.countDown();
+        open.get(10, TimeUnit.SECONDS);
+
+        assertEquals(List.of(second, first), customersAfter(before, first, second));
+    }
+
+    @Test
+    void testCommitMovesTheHorizon() throws Exception {
+        String customerId = "OUTBOXWAKE" + System.nanoTime();
+        long before = outbox.relay();
+
+        outbox.record(AppointmentChange.Type.UPDATED, 3L, customerId);
+
+        // Relayed by the background run the commit requested
+        long horizon = outbox.awaitHorizonAfter(before, Duration.ofSeconds(10));
+        assertTrue(horizon > before);
+        assertEquals(1, changeRepository.findEventsByCustomerId(customerId, before, horizon, Limit.of(10)).size());
+    }
+
+    @Test
+    void testRolledBackChangeIsNeverNumbered() {
+        String customerId = "OUTBOXROLLBACK" + System.nanoTime();
+        long before = outbox.relay();
+
+        transactionOperations.executeWithoutResult(status -> {
+            outbox.record(AppointmentChange.Type.UPDATED, 1L, customerId);
+            status.setRollbackOnly();
+        });
+
+        assertTrue(changeRepository.findEventsByCustomerId(customerId, before, outbox.relay(), Limit.of(10))
+                .isEmpty());
+    }
+
+    @Test
+    void testRelayNumbersAboveNumbersLeftUnpublished() {
+        long before = outbox.relay();
+        // As left by a run that numbered a change and failed before it could publish the number
+        changeRepository.save(new AppointmentChange(null, before + 5, AppointmentChange.Type.UPDATED, 4L,
+                "OUTBOXSTRAY" + System.nanoTime(), LocalDateTime.now()));
+
+        outbox.record(AppointmentChange.Type.UPDATED, 5L, "OUTBOXAFTERSTRAY" + System.nanoTime());
+
+        assertEquals(before + 6, outbox.relay());
+    }
+
+    @Test
+    void testInstancesShareOneNumbering() {
+        String customerId = "OUTBOXINSTANCES" + System.nanoTime();
+        AppointmentOutbox other = new AppointmentOutbox(entityManager, changeRepository, transactionManager,
+                shardRouter, properties);
+        try {
+            long before = outbox.relay();
+
+            other.record(AppointmentChange.Type.CREATED, 6L, customerId);
+            outbox.record(AppointmentChange.Type.UPDATED, 6L, customerId);
+            other.record(AppointmentChange.Type.DELETED, 6L, customerId);
+
+            long relayed = other.relay();
+            assertEquals(relayed, outbox.relay());
+            List<AppointmentChangeEvent> events = changeRepository.findEventsByCustomerId(customerId, before,
+                    relayed, Limit.of(10));
+            assertEquals(List.of(AppointmentChange.Type.CREATED, AppointmentChange.Type.UPDATED,
+                    AppointmentChange.Type.DELETED), events.stream().map(AppointmentChangeEvent::getType).toList());
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    void testRetentionDeletesUpToTheNewestOldChange() {
+        String recent = "OUTBOXRECENT" + System.nanoTime();
+        String old = "OUTBOXOLD" + System.nanoTime();
+        String later = "OUTBOXLATER" + System.nanoTime();
+        long before = outbox.relay();
+        // A change recorded long ago in a transaction that committed after a recent one, so numbered after it
+        changeRepository.save(new AppointmentChange(null, before + 1, AppointmentChange.Type.UPDATED, 7L, recent,
+                LocalDateTime.now()));
+        changeRepository.save(new AppointmentChange(null, before + 2, AppointmentChange.Type.UPDATED, 8L, old,
+                LocalDateTime.now().minusHours(2)));
+        outbox.record(AppointmentChange.Type.UPDATED, 9L, later);
+        outbox.relay();
+
+        outbox.deleteOlderThan(Duration.ofHours(1));
+
+        // The recent change goes with the old one rather than stay behind a hole in the numbering
+        assertTrue(changeRepository.findMinSeq() > before + 2);
+        assertEquals(List.of(later), customersAfter(before, recent, old, later));
+    }
+
+    @Test
+    void testRetentionMustBePositive() {
+        ChangeStreamProperties properties = new ChangeStreamProperties();
+        properties.setRetention(Duration.ZERO);
+
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> new AppointmentOutbox(null, changeRepository, null, null, properties));
+        assertEquals("appointments.changes.retention must be at least 1ms", exception.getMessage());
+    }
+
+    private List<String> customersAfter(long before, String... customerIds) {
+        List<String> wanted = List.of(customerIds);
+        return changeRepository.findEvents(before, outbox.relay(), Limit.of(1000)).stream()
+                .map(AppointmentChangeEvent::getCustomerId)
+                .filter(wanted::contains)
+                .toList();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static AppointmentRequest request(String customerId, String title) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setTitle(title);
+        request.setCategory("Medical");
+        request.setStartDate(LocalDateTime.of(2030, 1, 1, 10, 0));
+        request.setCustomerId(customerId);
+        return request;
+    }
+}
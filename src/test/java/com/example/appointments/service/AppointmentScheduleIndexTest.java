@@ -0,0 +1,100 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ShardProperties;
+import com.example.appointments.dto.ScheduleEntry;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AppointmentScheduleIndexTest {
+
+    private static final LocalDateTime NOON = LocalDateTime.of(2030, 1, 1, 12, 0);
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(new ShardProperties(), null,
+            mock(PlatformTransactionManager.class));
+
+    @InjectMocks
+    private AppointmentScheduleIndex scheduleIndex;
+
+    @BeforeEach
+    void setUp() {
+        scheduleIndex.add(3L, NOON.plusMinutes(30));
+        scheduleIndex.add(1L, NOON);
+        scheduleIndex.add(2L, NOON);
+        scheduleIndex.add(4L, NOON.plusHours(2));
+    }
+
+    @Test
+    void testIdsStartingBetweenReturnsEarliestFirst() {
+        assertArrayEquals(new long[] {1L, 2L, 3L}, scheduleIndex.idsStartingBetween(NOON, NOON.plusHours(1), 10));
+        assertArrayEquals(new long[] {3L}, scheduleIndex.idsStartingBetween(NOON.plusSeconds(1), NOON.plusHours(1), 10));
+        assertArrayEquals(new long[0], scheduleIndex.idsStartingBetween(NOON.plusHours(3), NOON.plusHours(4), 10));
+    }
+
+    @Test
+    void testIdsStartingBetweenStopsAtLimit() {
+        assertArrayEquals(new long[] {1L, 2L}, scheduleIndex.idsStartingBetween(NOON, NOON.plusHours(3), 2));
+    }
+
+    @Test
+    void testAddIsIdempotent() {
+        scheduleIndex.add(1L, NOON);
+
+        assertEquals(4, scheduleIndex.size());
+    }
+
+    @Test
+    void testMoveChangesBucket() {
+        scheduleIndex.move(1L, NOON, NOON.plusHours(2));
+
+        assertArrayEquals(new long[] {2L, 3L}, scheduleIndex.idsStartingBetween(NOON, NOON.plusHours(1), 10));
+        assertArrayEquals(new long[] {1L, 4L}, scheduleIndex.idsStartingBetween(NOON.plusHours(2), NOON.plusHours(3), 10));
+    }
+
+    @Test
+    void testRemoveBeforeDropsPastBuckets() {
+        scheduleIndex.removeBefore(NOON.plusMinutes(1));
+
+        assertEquals(2, scheduleIndex.size());
+    }
+
+    @Test
+    void testRemoveFromWindowOnlyTouchesWindow() {
+        scheduleIndex.removeFromWindow(Set.of(2L, 4L), NOON, NOON.plusHours(1));
+
+        assertArrayEquals(new long[] {1L, 3L, 4L}, scheduleIndex.idsStartingBetween(NOON, NOON.plusHours(3), 10));
+    }
+
+    @Test
+    void testWarmMergesWithExistingBuckets() {
+        when(appointmentRepository.streamScheduleFrom(any())).thenReturn(Stream.of(
+                new ScheduleEntry(2L, NOON), new ScheduleEntry(5L, NOON), new ScheduleEntry(6L, NOON.plusHours(1))));
+
+        scheduleIndex.warm();
+
+        assertArrayEquals(new long[] {1L, 2L, 5L, 3L, 6L},
+                scheduleIndex.idsStartingBetween(NOON, NOON.plusHours(1).plusSeconds(1), 10));
+        assertEquals(6, scheduleIndex.size());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.exception.SchedulingConflictException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Conflict checks through the service against the database, including concurrent bookings of the same slot.
+ */
+@SpringBootTest
+class AppointmentSchedulingConflictTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2030, 3, 1, 9, 0);
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentBulkService appointmentBulkService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    private String customerId;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository.deleteAllInBatch();
+        // A customer of its own per test, since the index outlives the rows deleted above
+        customerId = "CONFLICT" + System.nanoTime();
+    }
+
+    @Test
+    void testConcurrentBookingsOfTheSameSlotLetOneThrough() throws Exception {
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<AppointmentResponse>> bookings = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            LocalDateTime from = NINE.plusMinutes(i);
+            bookings.add(() -> {
+                start.await();
+                return appointmentService.createAppointment(request(from, from.plusHours(1)));
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<AppointmentResponse>> results = new ArrayList<>();
+            bookings.forEach(booking -> results.add(executor.submit(booking)));
+            start.countDown();
+
+            int booked = 0;
+            for (Future<AppointmentResponse> result : results) {
+                try {
+                    result.get();
+                    booked++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(SchedulingConflictException.class, e.getCause());
+                }
+            }
+            assertEquals(1, booked);
+            assertEquals(1, appointmentRepository.findIntervalsByCustomerId(customerId).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testUpdateIntoTakenSlotIsRejectedAndLeavesRowUnchanged() {
+        appointmentService.createAppointment(request(NINE, NINE.plusHours(1)));
+        AppointmentResponse later = appointmentService.createAppointment(
+                request(NINE.plusHours(2), NINE.plusHours(3)));
+
+        assertThrows(SchedulingConflictException.class, () -> {
+            appointmentService.updateAppointment(later.getId(), request(NINE.plusMinutes(30), NINE.plusHours(2)),
+                    null);
+        });
+        assertEquals(NINE.plusHours(2), appointmentRepository.findById(later.getId()).orElseThrow().getStartDate());
+
+        // Moving within its own interval, or right after the other one, is fine
+        appointmentService.updateAppointment(later.getId(), request(NINE.plusHours(1), NINE.plusHours(2)), null);
+    }
+
+    @Test
+    void testAppointmentWrittenByAnotherInstanceIsRejectedAgainst() {
+        // Loads the customer's schedule before the row below exists
+        appointmentService.getFreeSlots(customerId, NINE, NINE.plusHours(1), null);
+        appointmentRepository.saveAndFlush(new Appointment(null, "Checkup", null, "Medical", NINE,
+                NINE.plusHours(1), false, customerId, null));
+
+        assertThrows(SchedulingConflictException.class, () -> {
+            appointmentService.createAppointment(request(NINE.plusMinutes(30), NINE.plusHours(2)));
+        });
+        assertEquals(1, appointmentRepository.findIntervalsByCustomerId(customerId).size());
+    }
+
+    @Test
+    void testDeletedAppointmentFreesItsSlot() {
+        AppointmentResponse booked = appointmentService.createAppointment(request(NINE, NINE.plusHours(1)));
+
+        appointmentService.deleteAppointment(booked.getId());
+
+        appointmentService.createAppointment(request(NINE, NINE.plusHours(1)));
+        assertEquals(List.of(), appointmentService.getFreeSlots(customerId, NINE, NINE.plusHours(1), null));
+    }
+
+    @Test
+    void testFreeSlotsBetweenAppointments() {
+        appointmentService.createAppointment(request(NINE, NINE.plusHours(1)));
+        appointmentService.createAppointment(request(NINE.plusMinutes(90), NINE.plusHours(2)));
+
+        assertEquals(2, appointmentService.getFreeSlots(customerId, NINE, NINE.plusHours(3), null).size());
+        assertEquals(1, appointmentService.getFreeSlots(customerId, NINE, NINE.plusHours(3),
+                Duration.ofMinutes(45)).size());
+    }
+
+    @Test
+    void testBulkCreateRejectsOverlappingItems() {
+        BulkResponse response = appointmentBulkService.createAppointments(List.of(
+                request(NINE, NINE.plusHours(1)),
+                request(NINE.plusMinutes(30), NINE.plusHours(2)),
+                request(NINE.plusHours(1), NINE.plusHours(2))));
+
+        assertEquals(2, response.getSucceeded());
+        assertEquals(409, response.getResults().get(1).getStatus());
+        assertEquals(2, appointmentRepository.findIntervalsByCustomerId(customerId).size());
+    }
+
+    private AppointmentRequest request(LocalDateTime startDate, LocalDateTime endDate) {
+        return new AppointmentRequest("Checkup", null, "Medical", startDate, endDate, false, customerId);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.CacheConfig;
+import com.example.appointments.config.PurgeProperties;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class AppointmentServiceCacheTest {
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private PurgeProperties purgeProperties;
+
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.APPOINTMENTS).clear();
+        cacheManager.getCache(CacheConfig.CUSTOMER_APPOINTMENTS).clear();
+
+        appointment = new Appointment();
+        appointment.setId(1L);
+        appointment.setTitle("Test Appointment");
+        appointment.setCategory("Medical");
+        appointment.setStartDate(LocalDateTime.of(2025, 11, 15, 10, 0));
+        appointment.setDone(false);
+        appointment.setCustomerId("123456789A");
+    }
+
+    @Test
+    void testRepeatedReadsHitTheCache() {
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.findResponsesByCustomerId("123456789A"))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+
+        for (int i = 0; i < 5; i++) {
+            appointmentService.getAppointmentById(1L);
+            appointmentService.getAppointmentsByCustomerId("123456789A");
+        }
+
+        verify(appointmentRepository, times(1)).findById(1L);
+        verify(appointmentRepository, times(1)).findResponsesByCustomerId("123456789A");
+    }
+
+    @Test
+    void testUpdateByCustomerInvalidatesEntries() {
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.findResponsesByCustomerId("123456789A"))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+        when(appointmentRepository.findByIdAndCustomerId(1L, "123456789A")).thenReturn(Optional.of(appointment));
+        appointmentService.getAppointmentById(1L);
+        appointmentService.getAppointmentsByCustomerId("123456789A");
+
+        appointmentService.updateAppointmentByCustomer("123456789A", 1L, new AppointmentRequest("Updated", null,
+                "Medical", LocalDateTime.of(2025, 11, 15, 11, 0), null, true, "123456789A"), null);
+        appointmentService.getAppointmentById(1L);
+        appointmentService.getAppointmentsByCustomerId("123456789A");
+
+        verify(appointmentRepository, times(2)).findById(1L);
+        verify(appointmentRepository, times(2)).findResponsesByCustomerId("123456789A");
+    }
+
+    @Test
+    void testDeleteInvalidatesListContainingAppointment() {
+        when(appointmentRepository.findResponsesByCustomerId("123456789A"))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+        when(appointmentRepository.deleteByIdReturningCustomerId(1L)).thenReturn(Optional.of("123456789A"));
+        appointmentService.getAppointmentsByCustomerId("123456789A");
+
+        appointmentService.deleteAppointment(1L);
+        appointmentService.getAppointmentsByCustomerId("123456789A");
+
+        verify(appointmentRepository, times(2)).findResponsesByCustomerId("123456789A");
+    }
+
+    @Test
+    void testPurgeInvalidatesAllEntriesOfCustomer() {
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.deleteChunkByCustomerId(eq("123456789A"), anyInt())).thenReturn(1);
+        appointmentService.getAppointmentById(1L);
+
+        appointmentService.deleteAppointmentsByCustomerId("123456789A");
+        appointmentService.getAppointmentById(1L);
+
+        verify(appointmentRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testPurgeDropsFillOfUncachedAppointmentLoadedBeforeIt() {
+        when(appointmentRepository.deleteChunkByCustomerId(eq("123456789A"), anyInt())).thenReturn(1);
+        Cache appointments = cacheManager.getCache(CacheConfig.APPOINTMENTS);
+
+        // A read by id misses and loads the row, then the purge commits before the read fills the cache
+        assertNull(appointments.get(1L));
+        appointmentService.deleteAppointmentsByCustomerId("123456789A");
+        appointments.put(1L, AppointmentResponse.fromEntity(appointment));
+
+        assertNull(appointments.get(1L));
+    }
+
+    @Test
+    void testPurgeFailingAfterACommittedChunkStillInvalidates() {
+        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
+        when(appointmentRepository.deleteChunkByCustomerId(eq("123456789A"), anyInt()))
+                .thenReturn(purgeProperties.getChunkSize())
+                .thenThrow(new IllegalStateException("Connection lost"));
+        appointmentService.getAppointmentById(1L);
+
+        assertThrows(IllegalStateException.class,
+                () -> appointmentService.deleteAppointmentsByCustomerId("123456789A"));
+        appointmentService.getAppointmentById(1L);
+
+        verify(appointmentRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void testCreateInvalidatesCustomerList() {
+        when(appointmentRepository.findResponsesByCustomerId("123456789A")).thenReturn(List.of());
+        when(appointmentRepository.save(any(Appointment.class))).thenReturn(appointment);
+        appointmentService.getAppointmentsByCustomerId("123456789A");
+
+        appointmentService.createAppointment(new AppointmentRequest("New", null, "Medical",
+                LocalDateTime.of(2025, 11, 15, 10, 0), null, false, "123456789A"));
+        when(appointmentRepository.findResponsesByCustomerId("123456789A"))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+
+        assertEquals(1, appointmentService.getAppointmentsByCustomerId("123456789A").size());
+    }
+}
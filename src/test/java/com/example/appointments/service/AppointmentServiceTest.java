@@ -1,24 +1,58 @@
 package com.example.appointments.service;
 
+import com.example.appointments.config.CustomerLockProperties;
+import com.example.appointments.config.PaginationProperties;
+import com.example.appointments.config.PurgeProperties;
+import com.example.appointments.config.ReplicaProperties;
+import com.example.appointments.config.ScheduleIndexProperties;
+import com.example.appointments.config.ShardProperties;
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.dto.AppointmentGroupCount;
+import com.example.appointments.dto.AppointmentPage;
 import com.example.appointments.dto.AppointmentRequest;
 import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.AppointmentStats;
+import com.example.appointments.dto.CustomerVersionSummary;
 import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.exception.InvalidDateRangeException;
+import com.example.appointments.exception.InvalidFieldsException;
+import com.example.appointments.exception.InvalidPageRequestException;
+import com.example.appointments.exception.InvalidPatchException;
+import com.example.appointments.exception.PreconditionFailedException;
+import com.example.appointments.exception.SchedulingConflictException;
 import com.example.appointments.model.Appointment;
+import com.example.appointments.model.AppointmentChange;
 import com.example.appointments.repository.AppointmentRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.validation.ConstraintViolationException;
+import jakarta.validation.Validation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionOperations;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,6 +61,48 @@ class AppointmentServiceTest {
     @Mock
     private AppointmentRepository appointmentRepository;
 
+    @Mock
+    private AppointmentCacheEvictor cacheEvictor;
+
+    @Spy
+    private PaginationProperties paginationProperties = new PaginationProperties();
+
+    @Spy
+    private PurgeProperties purgeProperties = new PurgeProperties();
+
+    @Spy
+    private AppointmentMergePatch mergePatch = new AppointmentMergePatch(JsonMapper.builder().findAndAddModules().build(),
+            Validation.buildDefaultValidatorFactory().getValidator());
+
+    @Mock
+    private AppointmentScheduleIndex scheduleIndex;
+
+    @Spy
+    private ScheduleIndexProperties scheduleIndexProperties = new ScheduleIndexProperties();
+
+    @Mock
+    private AppointmentConflictIndex conflictIndex;
+
+    @Spy
+    private CustomerWriteLocks customerLocks = new CustomerWriteLocks(new CustomerLockProperties());
+
+    @Spy
+    private TransactionOperations transactionOperations = TransactionOperations.withoutTransaction();
+
+    @Mock
+    private AppointmentWriteBehind writeBehind;
+
+    @Mock
+    private AppointmentOutbox outbox;
+
+    @Spy
+    private ReplicaReads replicaReads = new ReplicaReads(new ReplicaProperties(),
+            mock(PlatformTransactionManager.class));
+
+    @Spy
+    private ShardRouter shardRouter = new ShardRouter(new ShardProperties(), null,
+            mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private AppointmentService appointmentService;
 
@@ -43,6 +119,7 @@ class AppointmentServiceTest {
         appointment.setStartDate(LocalDateTime.now());
         appointment.setDone(false);
         appointment.setCustomerId("123456789A");
+        appointment.setVersion(3L);
 
         appointmentRequest = new AppointmentRequest();
         appointmentRequest.setTitle("Test Appointment");
@@ -58,22 +135,122 @@ class AppointmentServiceTest {
         when(appointmentRepository.save(any(Appointment.class))).thenReturn(appointment);
 
         AppointmentResponse response = appointmentService.createAppointment(appointmentRequest);
+        verify(scheduleIndex).add(appointment.getId(), appointment.getStartDate());
 
         assertNotNull(response);
         assertEquals(appointment.getId(), response.getId());
         assertEquals(appointment.getTitle(), response.getTitle());
         verify(appointmentRepository, times(1)).save(any(Appointment.class));
+        verify(cacheEvictor).evictCreated("123456789A", List.of(1L));
+        verify(customerLocks).call(eq("123456789A"), any());
+    }
+
+    @Test
+    void testCreateOverlappingAppointmentIsNotSaved() {
+        doThrow(new SchedulingConflictException("overlaps")).when(conflictIndex)
+                .reserve(any(Appointment.class), eq("123456789A"), any(), any());
+
+        assertThrows(SchedulingConflictException.class, () -> {
+            appointmentService.createAppointment(appointmentRequest);
+        });
+        verify(appointmentRepository, never()).save(any(Appointment.class));
+    }
+
+    @Test
+    void testGetFreeSlotsRejectsEmptyWindow() {
+        LocalDateTime from = LocalDateTime.of(2030, 1, 1, 9, 0);
+
+        assertThrows(InvalidDateRangeException.class, () -> {
+            appointmentService.getFreeSlots("123456789A", from, from, null);
+        });
+        assertThrows(InvalidDateRangeException.class, () -> {
+            appointmentService.getFreeSlots("123456789A", from, from.plusHours(1), Duration.ofMinutes(-5));
+        });
+        verifyNoInteractions(conflictIndex);
     }
 
     @Test
     void testGetAllAppointments() {
-        when(appointmentRepository.findAll()).thenReturn(Arrays.asList(appointment));
+        when(appointmentRepository.findFirstResponses(any(Limit.class)))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
 
-        List<AppointmentResponse> responses = appointmentService.getAllAppointments();
+        AppointmentPage page = appointmentService.getAllAppointments(true);
 
-        assertNotNull(responses);
-        assertEquals(1, responses.size());
-        verify(appointmentRepository, times(1)).findAll();
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+        verify(appointmentRepository, times(1)).findFirstResponses(Limit.of(1001));
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetAllAppointmentsWithoutNotes() {
+        appointment.setNotes(null);
+        when(appointmentRepository.findFirstResponsesWithoutNotes(any(Limit.class)))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+
+        AppointmentPage page = appointmentService.getAllAppointments(false);
+
+        assertEquals(1, page.getItems().size());
+        verify(appointmentRepository, never()).findFirstResponses(any());
+    }
+
+    @Test
+    void testGetAllAppointmentsStopsAtListLimit() {
+        paginationProperties.setListLimit(1);
+        AppointmentResponse second = AppointmentResponse.fromEntity(appointment);
+        second.setId(2L);
+        when(appointmentRepository.findFirstResponses(any(Limit.class)))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment), second));
+
+        AppointmentPage page = appointmentService.getAllAppointments(true);
+
+        assertEquals(List.of(1L), page.getItems().stream().map(AppointmentResponse::getId).toList());
+        assertEquals(AppointmentCursor.after(page.getItems().get(0)).encode(), page.getNextCursor());
+    }
+
+    @Test
+    void testGetAppointmentsPageFirstPage() {
+        Appointment second = new Appointment();
+        second.setId(2L);
+        second.setStartDate(appointment.getStartDate().plusHours(1));
+        when(appointmentRepository.findFirstPage(Limit.of(2))).thenReturn(Arrays.asList(appointment, second));
+
+        AppointmentPage page = appointmentService.getAppointmentsPage(null, 1);
+
+        assertEquals(1, page.getItems().size());
+        assertEquals(1L, page.getItems().get(0).getId());
+        AppointmentCursor cursor = AppointmentCursor.decode(page.getNextCursor());
+        assertEquals(appointment.getStartDate(), cursor.getStartDate());
+        assertEquals(1L, cursor.getId());
+    }
+
+    @Test
+    void testGetAppointmentsPageAfterCursor() {
+        String cursor = AppointmentCursor.after(appointment).encode();
+        when(appointmentRepository.findPageAfter(appointment.getStartDate(), 1L, Limit.of(51)))
+                .thenReturn(List.of());
+
+        AppointmentPage page = appointmentService.getAppointmentsPage(cursor, null);
+
+        assertTrue(page.getItems().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetAppointmentsPageCapsLimit() {
+        when(appointmentRepository.findFirstPage(Limit.of(501))).thenReturn(List.of(appointment));
+
+        AppointmentPage page = appointmentService.getAppointmentsPage(null, 10_000);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testGetAppointmentsPageInvalidCursor() {
+        assertThrows(InvalidPageRequestException.class, () -> {
+            appointmentService.getAppointmentsPage("not-a-cursor", 10);
+        });
     }
 
     @Test
@@ -98,54 +275,405 @@ class AppointmentServiceTest {
 
     @Test
     void testGetAppointmentsByCustomerId() {
-        when(appointmentRepository.findByCustomerId("123456789A")).thenReturn(Arrays.asList(appointment));
+        when(appointmentRepository.findResponsesByCustomerId("123456789A"))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
 
         List<AppointmentResponse> responses = appointmentService.getAppointmentsByCustomerId("123456789A");
 
         assertNotNull(responses);
         assertEquals(1, responses.size());
-        verify(appointmentRepository, times(1)).findByCustomerId("123456789A");
+        verify(appointmentRepository, times(1)).findResponsesByCustomerId("123456789A");
+        verify(appointmentRepository, never()).findByCustomerId(any());
+    }
+
+    @Test
+    void testGetUpcomingAppointments() {
+        LocalDateTime from = LocalDateTime.of(2025, 11, 1, 0, 0);
+        when(appointmentRepository.findUpcomingByCustomerId("123456789A", from)).thenReturn(List.of(appointment));
+
+        List<AppointmentResponse> responses = appointmentService.getUpcomingAppointments("123456789A", from);
+
+        assertEquals(1, responses.size());
+        verify(appointmentRepository, times(1)).findUpcomingByCustomerId("123456789A", from);
+    }
+
+    @Test
+    void testGetOverdueAppointments() {
+        when(appointmentRepository.findOverdueByCustomerId(eq("123456789A"), any(LocalDateTime.class)))
+                .thenReturn(List.of(appointment));
+
+        List<AppointmentResponse> responses = appointmentService.getOverdueAppointments("123456789A");
+
+        assertEquals(1, responses.size());
+    }
+
+    @Test
+    void testGetAppointmentsByCategoryRejectsInvertedRange() {
+        LocalDateTime from = LocalDateTime.of(2025, 11, 2, 0, 0);
+
+        assertThrows(InvalidDateRangeException.class, () -> {
+            appointmentService.getAppointmentsByCategory("123456789A", "Medical", from, from.minusDays(1));
+        });
+        verifyNoInteractions(appointmentRepository);
+    }
+
+    @Test
+    void testFindAppointmentsDefaultsToStartDateOrder() {
+        AppointmentFilter filter = new AppointmentFilter("123456789A", "Medical", false, null, null);
+        when(appointmentRepository.findResponses(any(), eq(Sort.by("startDate", "id")), eq(true)))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+
+        List<AppointmentResponse> responses = appointmentService.findAppointments(filter, Sort.unsorted(), true);
+
+        assertEquals(1, responses.size());
+    }
+
+    @Test
+    void testFindAppointmentsAddsIdTieBreaker() {
+        when(appointmentRepository.findResponses(any(), any(), eq(false))).thenReturn(List.of());
+
+        appointmentService.findAppointments(new AppointmentFilter(), Sort.by(Sort.Direction.DESC, "startDate"), false);
+
+        verify(appointmentRepository).findResponses(any(),
+                eq(Sort.by(Sort.Direction.DESC, "startDate").and(Sort.by("id"))), eq(false));
+    }
+
+    @Test
+    void testFindAppointmentsRejectsUnknownSortProperty() {
+        assertThrows(InvalidFieldsException.class, () -> {
+            appointmentService.findAppointments(new AppointmentFilter(), Sort.by("notes"), true);
+        });
+        verifyNoInteractions(appointmentRepository);
+    }
+
+    @Test
+    void testFindAppointmentsRejectsInvertedRange() {
+        LocalDateTime from = LocalDateTime.of(2025, 11, 2, 0, 0);
+        AppointmentFilter filter = new AppointmentFilter(null, null, null, from, from);
+
+        assertThrows(InvalidDateRangeException.class, () -> {
+            appointmentService.findAppointments(filter, Sort.unsorted(), true);
+        });
+        verifyNoInteractions(appointmentRepository);
+    }
+
+    @Test
+    void testGetStatsFoldsGroupCounts() {
+        LocalDate day = LocalDate.of(2025, 11, 15);
+        when(appointmentRepository.countByCategoryDoneAndDay(any())).thenReturn(List.of(
+                new AppointmentGroupCount("Medical", false, day, 2),
+                new AppointmentGroupCount("Medical", true, day.plusDays(1), 1),
+                new AppointmentGroupCount("Dental", false, day, 4)));
+
+        AppointmentStats stats = appointmentService.getStats(new AppointmentFilter());
+
+        assertEquals(7, stats.getTotal());
+        assertEquals(Map.of("Medical", 3L, "Dental", 4L), stats.getByCategory());
+        assertEquals(Map.of("done", 1L, "pending", 6L), stats.getByStatus());
+        assertEquals(Map.of(day, 6L, day.plusDays(1), 1L), stats.getByDay());
+    }
+
+    @Test
+    void testGetUpcomingAcrossCustomersResolvesIndexedIds() {
+        appointment.setStartDate(LocalDateTime.now().plusMinutes(30));
+        when(scheduleIndex.idsStartingBetween(any(), any(), eq(1_000))).thenReturn(new long[] {1L, 2L});
+        when(appointmentRepository.findResponsesByIdIn(List.of(1L, 2L)))
+                .thenReturn(List.of(AppointmentResponse.fromEntity(appointment)));
+
+        List<AppointmentResponse> responses = appointmentService.getUpcomingAcrossCustomers(Duration.ofHours(1));
+
+        assertEquals(1, responses.size());
+        // Appointment 2 was deleted since it was indexed
+        verify(scheduleIndex).removeFromWindow(eq(Set.of(2L)), any(), any());
+        verify(scheduleIndex, never()).add(anyLong(), any());
+    }
+
+    @Test
+    void testGetUpcomingAcrossCustomersWithEmptyWindowSkipsDatabase() {
+        when(scheduleIndex.idsStartingBetween(any(), any(), eq(1_000))).thenReturn(new long[0]);
+
+        assertTrue(appointmentService.getUpcomingAcrossCustomers(Duration.ofMinutes(5)).isEmpty());
+        verifyNoInteractions(appointmentRepository);
+    }
+
+    @Test
+    void testGetUpcomingAcrossCustomersRejectsTooLongWindow() {
+        assertThrows(InvalidDateRangeException.class, () -> {
+            appointmentService.getUpcomingAcrossCustomers(Duration.ofDays(8));
+        });
+        verifyNoInteractions(scheduleIndex);
     }
 
     @Test
     void testUpdateAppointment() {
-        when(appointmentRepository.findById(1L)).thenReturn(Optional.of(appointment));
-        when(appointmentRepository.save(any(Appointment.class))).thenReturn(appointment);
+        ownedBy("123456789A");
 
-        AppointmentResponse response = appointmentService.updateAppointment(1L, appointmentRequest);
+        AppointmentResponse response = appointmentService.updateAppointment(1L, appointmentRequest, null);
 
         assertNotNull(response);
         assertEquals(appointment.getId(), response.getId());
-        verify(appointmentRepository, times(1)).findById(1L);
-        verify(appointmentRepository, times(1)).save(any(Appointment.class));
+        verify(appointmentRepository, times(1)).findForUpdateById(1L);
+        verify(appointmentRepository, times(1)).flush();
+        verify(appointmentRepository, never()).save(any(Appointment.class));
+        verify(customerLocks).tryHoldUntilCompletion(List.of("123456789A"));
+        verify(customerLocks, never()).callAll(any(), any());
+        verify(cacheEvictor).evict(1L, "123456789A");
+    }
+
+    @Test
+    void testUpdateAppointmentWithStaleVersion() {
+        ownedBy("123456789A");
+
+        assertThrows(PreconditionFailedException.class, () -> {
+            appointmentService.updateAppointment(1L, appointmentRequest, 2L);
+        });
+        verify(appointmentRepository, never()).flush();
+        verifyNoInteractions(cacheEvictor);
+    }
+
+    @Test
+    void testPatchAppointmentChangesOnlyPatchedFields() throws Exception {
+        ownedBy("123456789A");
+        LocalDateTime startDate = appointment.getStartDate();
+
+        AppointmentResponse response = appointmentService.patchAppointment(1L,
+                patch("{\"done\":true,\"notes\":null}"), 3L);
+
+        assertTrue(response.getDone());
+        assertNull(response.getNotes());
+        assertEquals("Test Appointment", response.getTitle());
+        assertEquals(startDate, response.getStartDate());
+        verify(appointmentRepository, times(1)).flush();
+        verify(cacheEvictor).evict(1L, "123456789A");
+    }
+
+    @Test
+    void testPatchAppointmentWithInvalidResult() throws Exception {
+        ownedBy("123456789A");
+
+        assertThrows(ConstraintViolationException.class, () -> {
+            appointmentService.patchAppointment(1L, patch("{\"title\":\"\"}"), null);
+        });
+        assertEquals("Test Appointment", appointment.getTitle());
+        verify(appointmentRepository, never()).flush();
+    }
+
+    @Test
+    void testPatchAppointmentRejectsNonObjectPatch() throws Exception {
+        ownedBy("123456789A");
+
+        assertThrows(InvalidPatchException.class, () -> {
+            appointmentService.patchAppointment(1L, patch("[]"), null);
+        });
+    }
+
+    @Test
+    void testPatchAppointmentByCustomerKeepsCustomer() throws Exception {
+        when(appointmentRepository.findByIdAndCustomerId(1L, "123456789A")).thenReturn(Optional.of(appointment));
+
+        AppointmentResponse response = appointmentService.patchAppointmentByCustomer("123456789A", 1L,
+                patch("{\"customerId\":\"123456789B\",\"title\":\"Moved\"}"), null);
+
+        assertEquals("123456789A", response.getCustomerId());
+        assertEquals("Moved", response.getTitle());
+        verify(cacheEvictor).evict(1L, "123456789A");
+    }
+
+    @Test
+    void testUpdateAppointmentOfBusyCustomerWaitsForItsLock() {
+        when(appointmentRepository.findForUpdateById(1L)).thenReturn(Optional.of(appointment));
+        doReturn(false).when(customerLocks).tryHoldUntilCompletion(any());
+        when(appointmentRepository.findForUpdateByIdAndCustomerId(1L, "123456789A"))
+                .thenReturn(Optional.of(appointment));
+
+        appointmentService.updateAppointment(1L, appointmentRequest, null);
+
+        verify(customerLocks).callAll(eq(List.of("123456789A")), any());
+        verify(writeBehind).flush(1L);
+        verify(cacheEvictor).evict(1L, "123456789A");
+    }
+
+    @Test
+    void testUpdateAppointmentRereadsOwnerChangedWhileWaiting() {
+        Appointment moved = new Appointment();
+        moved.setId(1L);
+        moved.setStartDate(appointment.getStartDate());
+        moved.setCustomerId("123456789B");
+        moved.setVersion(4L);
+        when(appointmentRepository.findForUpdateById(1L)).thenReturn(Optional.of(appointment), Optional.of(moved));
+        doReturn(false, true).when(customerLocks).tryHoldUntilCompletion(any());
+        when(appointmentRepository.findForUpdateByIdAndCustomerId(1L, "123456789A")).thenReturn(Optional.empty());
+
+        appointmentService.updateAppointment(1L, appointmentRequest, null);
+
+        verify(customerLocks).callAll(eq(List.of("123456789A")), any());
+        verify(customerLocks).tryHoldUntilCompletion(List.of("123456789B", "123456789A"));
+        verify(cacheEvictor).evict(1L, "123456789B");
+    }
+
+    @Test
+    void testUpdateAppointmentWithQueuedUpdateWritesItFirst() {
+        when(appointmentRepository.findForUpdateById(1L)).thenReturn(Optional.of(appointment));
+        when(writeBehind.find(1L)).thenReturn(Optional.of(AppointmentResponse.fromEntity(appointment)));
+        when(appointmentRepository.findForUpdateByIdAndCustomerId(1L, "123456789A"))
+                .thenReturn(Optional.of(appointment));
+
+        appointmentService.updateAppointment(1L, appointmentRequest, null);
+
+        verify(customerLocks, never()).tryHoldUntilCompletion(any());
+        verify(writeBehind).flush(1L);
+        verify(customerLocks).callAll(eq(List.of("123456789A")), any());
+    }
+
+    @Test
+    void testUpdateAppointmentNotFound() {
+        when(appointmentRepository.findForUpdateById(1L)).thenReturn(Optional.empty());
+
+        assertThrows(AppointmentNotFoundException.class, () -> {
+            appointmentService.updateAppointment(1L, appointmentRequest, null);
+        });
+        verify(customerLocks, never()).tryHoldUntilCompletion(any());
+        verify(customerLocks, never()).callAll(any(), any());
+    }
+
+    @Test
+    void testMarkAppointmentDone() {
+        when(appointmentRepository.markDoneReturningCustomerId(1L)).thenReturn(Optional.of("123456789A"));
+        doReturn(true).when(customerLocks).tryHoldUntilCompletion(any());
+
+        appointmentService.markAppointmentDone(1L);
+
+        verify(appointmentRepository, never()).findById(any());
+        verify(appointmentRepository, never()).markDoneByIdAndCustomerId(any(), any());
+        verify(customerLocks).tryHoldUntilCompletion(List.of("123456789A"));
+        verify(cacheEvictor).evict(1L, "123456789A");
+        verify(outbox).record(AppointmentChange.Type.UPDATED, 1L, "123456789A");
+    }
+
+    @Test
+    void testMarkAppointmentDoneNotFound() {
+        when(appointmentRepository.markDoneByIdAndCustomerId(1L, "123456789A")).thenReturn(0);
+
+        assertThrows(AppointmentNotFoundException.class, () -> {
+            appointmentService.markAppointmentDoneByCustomer("123456789A", 1L);
+        });
+        verifyNoInteractions(cacheEvictor);
+    }
+
+    @Test
+    void testGetCustomerAppointmentsETag() {
+        when(appointmentRepository.summarizeVersionsByCustomerId("123456789A"))
+                .thenReturn(new CustomerVersionSummary(2L, 7L, 42L));
+
+        assertEquals("W/\"2-7-42\"", appointmentService.getCustomerAppointmentsETag("123456789A"));
+    }
+
+    @Test
+    void testUpdateAppointmentMovedToAnotherCustomerEvictsBothLists() {
+        ownedBy("123456789A");
+        appointmentRequest.setCustomerId("123456789B");
+
+        appointmentService.updateAppointment(1L, appointmentRequest, null);
+
+        verify(customerLocks).tryHoldUntilCompletion(List.of("123456789A", "123456789B"));
+        verify(cacheEvictor).evict(1L, "123456789A");
+        verify(cacheEvictor).evictCustomer("123456789B");
     }
 
     @Test
     void testDeleteAppointment() {
-        when(appointmentRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(appointmentRepository).deleteById(1L);
+        when(appointmentRepository.deleteByIdReturningCustomerId(1L)).thenReturn(Optional.of("123456789A"));
+        doReturn(true).when(customerLocks).tryHoldUntilCompletion(any());
 
         appointmentService.deleteAppointment(1L);
 
-        verify(appointmentRepository, times(1)).existsById(1L);
-        verify(appointmentRepository, times(1)).deleteById(1L);
+        verify(appointmentRepository, times(1)).deleteByIdReturningCustomerId(1L);
+        verify(customerLocks, never()).callAll(any(), any());
+        verify(appointmentRepository, never()).existsById(any());
+        verify(cacheEvictor).evict(1L, "123456789A");
+        verify(outbox).record(AppointmentChange.Type.DELETED, 1L, "123456789A");
     }
 
     @Test
     void testDeleteAppointmentNotFound() {
-        when(appointmentRepository.existsById(1L)).thenReturn(false);
+        when(appointmentRepository.deleteByIdReturningCustomerId(1L)).thenReturn(Optional.empty());
 
         assertThrows(AppointmentNotFoundException.class, () -> {
             appointmentService.deleteAppointment(1L);
         });
+        verify(appointmentRepository, never()).deleteByIdAndCustomerId(any(), any());
     }
 
     @Test
     void testDeleteAppointmentsByCustomerId() {
-        doNothing().when(appointmentRepository).deleteByCustomerId("123456789A");
+        when(appointmentRepository.deleteChunkByCustomerId("123456789A", 5_000)).thenReturn(3);
+
+        int deleted = appointmentService.deleteAppointmentsByCustomerId("123456789A");
+
+        assertEquals(3, deleted);
+        verify(appointmentRepository, times(1)).deleteChunkByCustomerId("123456789A", 5_000);
+        verify(cacheEvictor).evictAllOfCustomer("123456789A");
+        verify(appointmentRepository, never()).findByCustomerId(any());
+    }
+
+    @Test
+    void testDeleteAppointmentsByCustomerIdInChunks() {
+        purgeProperties.setChunkSize(2);
+        when(appointmentRepository.deleteChunkByCustomerId("123456789A", 2)).thenReturn(2, 2, 1);
+
+        int deleted = appointmentService.deleteAppointmentsByCustomerId("123456789A");
+
+        assertEquals(5, deleted);
+        verify(appointmentRepository, times(3)).deleteChunkByCustomerId("123456789A", 2);
+    }
+
+    @Test
+    void testDeleteAppointmentsByCustomerIdHoldsCustomerLock() {
+        when(appointmentRepository.deleteChunkByCustomerId("123456789A", 5_000)).thenReturn(3);
 
         appointmentService.deleteAppointmentsByCustomerId("123456789A");
 
-        verify(appointmentRepository, times(1)).deleteByCustomerId("123456789A");
+        verify(customerLocks).call(eq("123456789A"), any());
+        verify(writeBehind).discardCustomer("123456789A");
+    }
+
+    @Test
+    void testDeleteAppointmentsByCustomerIdNotFound() {
+        when(appointmentRepository.deleteChunkByCustomerId("123456789A", 5_000)).thenReturn(0);
+
+        assertThrows(AppointmentNotFoundException.class, () -> {
+            appointmentService.deleteAppointmentsByCustomerId("123456789A");
+        });
+    }
+
+    @Test
+    void testDeleteAppointmentByCustomer() {
+        when(appointmentRepository.deleteByIdAndCustomerId(1L, "123456789A")).thenReturn(1);
+
+        appointmentService.deleteAppointmentByCustomer("123456789A", 1L);
+
+        verify(appointmentRepository, times(1)).deleteByIdAndCustomerId(1L, "123456789A");
+        verify(appointmentRepository, never()).findByIdAndCustomerId(any(), any());
+    }
+
+    @Test
+    void testDeleteAppointmentByCustomerNotFound() {
+        when(appointmentRepository.deleteByIdAndCustomerId(1L, "123456789A")).thenReturn(0);
+
+        assertThrows(AppointmentNotFoundException.class, () -> {
+            appointmentService.deleteAppointmentByCustomer("123456789A", 1L);
+        });
+    }
+
+    // Stubs the locking load of a write by id, and finds its customer's lock free. The lock is not taken: these
+    // tests run without a transaction whose completion would release it
+    private void ownedBy(String customerId) {
+        appointment.setCustomerId(customerId);
+        when(appointmentRepository.findForUpdateById(1L)).thenReturn(Optional.of(appointment));
+        lenient().doReturn(true).when(customerLocks).tryHoldUntilCompletion(any());
+    }
+
+    private static JsonNode patch(String json) throws Exception {
+        return new ObjectMapper().readTree(json);
     }
 }
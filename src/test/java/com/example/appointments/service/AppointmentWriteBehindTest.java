@@ -0,0 +1,281 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.WriteBehindProperties;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.model.Appointment;
+import com.example.appointments.repository.AppointmentRepository;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Write-behind against H2. The flush interval is long enough for the tests to flush by hand.
+ */
+@SpringBootTest(properties = {
+        "appointments.write-behind.enabled=true",
+        "appointments.write-behind.flush-interval=1h"})
+class AppointmentWriteBehindTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    @Autowired
+    private AppointmentWriteBehind writeBehind;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionOperations transactionOperations;
+
+    @Autowired
+    private AppointmentCacheEvictor cacheEvictor;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private AppointmentOutbox outbox;
+
+    @Autowired
+    private CustomerWriteLocks customerLocks;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp() {
+        appointment = appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical", START, null,
+                false, "KIOSK" + System.nanoTime(), null));
+    }
+
+    @Test
+    void testRepeatedUpdatesAreWrittenAsOneUpdate() {
+        double acceptedBefore = count("appointments.write.behind.accepted");
+        double writtenBefore = count("appointments.write.behind.written");
+
+        AppointmentResponse last = null;
+        for (int i = 0; i < 20; i++) {
+            last = writeBehind.submit(appointment.getId(), request("Kiosk " + i, i % 2 == 0)).orElseThrow();
+        }
+
+        assertEquals("Kiosk 19", last.getTitle());
+        assertEquals(appointment.getVersion() + 1, last.getVersion());
+        assertEquals(Optional.of(last), appointmentService.findQueuedUpdate(appointment.getId()));
+        assertEquals("Checkup", stored().getTitle());
+
+        writeBehind.flush();
+
+        Appointment written = stored();
+        assertEquals("Kiosk 19", written.getTitle());
+        assertFalse(written.getDone());
+        assertEquals(last.getVersion(), written.getVersion());
+        assertTrue(writeBehind.find(appointment.getId()).isEmpty());
+        assertEquals(20, count("appointments.write.behind.accepted") - acceptedBefore);
+        assertEquals(1, count("appointments.write.behind.written") - writtenBefore);
+    }
+
+    @Test
+    void testUpdatesAfterAFlushBuildOnTheWrittenVersion() {
+        writeBehind.submit(appointment.getId(), request("First", false));
+        writeBehind.flush();
+        AppointmentResponse second = writeBehind.submit(appointment.getId(), request("Second", true)).orElseThrow();
+        writeBehind.flush();
+
+        Appointment written = stored();
+        assertEquals("Second", written.getTitle());
+        assertTrue(written.getDone());
+        assertEquals(appointment.getVersion() + 2, written.getVersion());
+        assertEquals(second.getVersion(), written.getVersion());
+    }
+
+    @Test
+    void testSynchronousWritesApplyOnTopOfQueuedUpdate() {
+        double supersededBefore = count("appointments.write.behind.superseded");
+        writeBehind.submit(appointment.getId(), request("Kiosk", false));
+
+        appointmentService.patchAppointment(appointment.getId(),
+                JsonNodeFactory.instance.objectNode().put("notes", "Front desk"), null);
+        appointmentService.markAppointmentDoneByCustomer(appointment.getCustomerId(), appointment.getId());
+        writeBehind.submit(appointment.getId(), request("Kiosk again", false));
+        appointmentService.updateAppointment(appointment.getId(), request("Front desk", false), null);
+        writeBehind.flush();
+
+        Appointment written = stored();
+        assertEquals("Front desk", written.getTitle());
+        assertEquals(appointment.getVersion() + 5, written.getVersion());
+        assertTrue(writeBehind.find(appointment.getId()).isEmpty());
+        assertEquals(0, count("appointments.write.behind.superseded") - supersededBefore);
+    }
+
+    @Test
+    void testPatchKeepsQueuedFields() {
+        writeBehind.submit(appointment.getId(), request("Kiosk", true));
+
+        appointmentService.patchAppointment(appointment.getId(),
+                JsonNodeFactory.instance.objectNode().put("notes", "Front desk"), null);
+
+        Appointment written = stored();
+        assertEquals("Kiosk", written.getTitle());
+        assertTrue(written.getDone());
+        assertEquals("Front desk", written.getNotes());
+    }
+
+    @Test
+    void testCustomerListReadAfterQueuedUpdateIncludesIt() {
+        Appointment other = appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical", START,
+                null, false, "KIOSK" + System.nanoTime(), null));
+        writeBehind.submit(appointment.getId(), request("Kiosk", false));
+        AppointmentRequest otherRequest = request("Other kiosk", false);
+        otherRequest.setCustomerId(other.getCustomerId());
+        writeBehind.submit(other.getId(), otherRequest);
+
+        appointmentService.writeQueuedUpdates(appointment.getCustomerId());
+
+        assertEquals("Kiosk", appointmentService.getAppointmentsByCustomerId(appointment.getCustomerId())
+                .get(0).getTitle());
+        assertTrue(writeBehind.find(appointment.getId()).isEmpty());
+        // Other customers' updates stay queued
+        assertTrue(writeBehind.find(other.getId()).isPresent());
+        writeBehind.flush();
+    }
+
+    @Test
+    void testWriteOfAnotherInstanceSupersedesQueuedUpdate() {
+        double supersededBefore = count("appointments.write.behind.superseded");
+        writeBehind.submit(appointment.getId(), request("Kiosk", false));
+
+        // Bypasses this instance's queue and locks, like a write by another instance
+        jdbcTemplate.update("update appointments set title = 'Front desk', version = version + 1 where id = ?",
+                appointment.getId());
+        writeBehind.flush();
+
+        assertEquals("Front desk", stored().getTitle());
+        assertEquals(1, count("appointments.write.behind.superseded") - supersededBefore);
+    }
+
+    @Test
+    void testPurgeDropsQueuedUpdatesOfTheCustomer() {
+        writeBehind.submit(appointment.getId(), request("Kiosk", false)).orElseThrow();
+
+        appointmentService.deleteAppointmentsByCustomerId(appointment.getCustomerId());
+
+        assertTrue(appointmentService.findQueuedUpdate(appointment.getId()).isEmpty());
+        writeBehind.flush();
+        assertFalse(appointmentRepository.existsById(appointment.getId()));
+    }
+
+    @Test
+    void testUpdatesThatMoveTheAppointmentAreNotQueued() {
+        AppointmentRequest moved = request("Kiosk", false);
+        moved.setStartDate(START.plusHours(1));
+        AppointmentRequest otherCustomer = request("Kiosk", false);
+        otherCustomer.setCustomerId("OTHER");
+
+        assertTrue(writeBehind.submit(appointment.getId(), moved).isEmpty());
+        assertTrue(writeBehind.submit(appointment.getId(), otherCustomer).isEmpty());
+        assertTrue(writeBehind.find(appointment.getId()).isEmpty());
+    }
+
+    @Test
+    void testUpdateOfMissingAppointmentIsRejected() {
+        assertThrows(AppointmentNotFoundException.class,
+                () -> writeBehind.submit(appointment.getId() + 1000, request("Kiosk", false)));
+    }
+
+    @Test
+    void testCloseWritesQueuedUpdatesAndStopsAccepting() throws Exception {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setFlushInterval(Duration.ofHours(1));
+        AppointmentWriteBehind draining = new AppointmentWriteBehind(properties, appointmentRepository, jdbcTemplate,
+                transactionOperations, cacheEvictor, cacheManager, outbox, customerLocks, shardRouter);
+        draining.submit(appointment.getId(), request("Before shutdown", false)).orElseThrow();
+
+        draining.close();
+
+        assertEquals("Before shutdown", stored().getTitle());
+        assertTrue(draining.submit(appointment.getId(), request("After shutdown", false)).isEmpty());
+    }
+
+    @Test
+    void testFailedBatchEndsTheFlushAndStaysQueued() {
+        WriteBehindProperties properties = new WriteBehindProperties();
+        properties.setEnabled(true);
+        properties.setFlushInterval(Duration.ofHours(1));
+        properties.setMaxBatch(1);
+        AtomicInteger attempts = new AtomicInteger();
+        TransactionOperations failing = new TransactionOperations() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                attempts.incrementAndGet();
+                throw new CannotCreateTransactionException("Database down");
+            }
+        };
+        AppointmentWriteBehind down = new AppointmentWriteBehind(properties, appointmentRepository, jdbcTemplate,
+                failing, cacheEvictor, cacheManager, outbox, customerLocks, shardRouter);
+        Appointment other = appointmentRepository.save(new Appointment(null, "Checkup", null, "Medical", START, null,
+                false, appointment.getCustomerId(), null));
+        down.submit(appointment.getId(), request("Kiosk", false)).orElseThrow();
+        down.submit(other.getId(), request("Kiosk", false)).orElseThrow();
+
+        // Before, the full batch was taken again at once and the flush never returned
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(CannotCreateTransactionException.class, down::flush));
+
+        // The flusher, woken by the full queue, may have tried once as well
+        assertTrue(attempts.get() <= 2);
+        assertEquals(2, down.getQueueSize());
+        assertTrue(down.find(appointment.getId()).isPresent());
+        assertEquals("Checkup", stored().getTitle());
+    }
+
+    private AppointmentRequest request(String title, boolean done) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setTitle(title);
+        request.setCategory("Medical");
+        request.setStartDate(START);
+        request.setDone(done);
+        request.setCustomerId(appointment.getCustomerId());
+        return request;
+    }
+
+    private Appointment stored() {
+        return appointmentRepository.findById(appointment.getId()).orElseThrow();
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+}
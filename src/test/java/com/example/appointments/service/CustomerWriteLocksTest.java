@@ -0,0 +1,186 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.CustomerLockProperties;
+import com.example.appointments.exception.CustomerBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomerWriteLocksTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private CustomerWriteLocks locks;
+
+    @BeforeEach
+    void setUp() {
+        CustomerLockProperties properties = new CustomerLockProperties();
+        properties.setStripes(1024);
+        properties.setAcquireTimeout(Duration.ofMillis(200));
+        locks = new CustomerWriteLocks(properties);
+        locks.bindTo(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testSameCustomerWaitsForTheLock() throws Exception {
+        holdLockOf("A");
+        CompletableFuture<String> second = CompletableFuture.supplyAsync(() -> locks.call("A", () -> "second"),
+                executor);
+
+        assertFalse(completesWithin(second, 50));
+        release.countDown();
+        assertEquals("second", second.get(1, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("appointments.customer.locks.contended").counter().count());
+        assertEquals(1, registry.get("appointments.customer.locks.wait").timer().count());
+    }
+
+    @Test
+    void testOtherCustomersDoNotWait() throws Exception {
+        holdLockOf("A");
+
+        assertEquals("B", locks.call("B", () -> "B"));
+        assertEquals(0.0, registry.get("appointments.customer.locks.contended").counter().count());
+    }
+
+    @Test
+    void testBusyCustomerIsRejectedAfterTimeout() throws Exception {
+        holdLockOf("A");
+
+        assertThrows(CustomerBusyException.class, () -> locks.run("A", () -> { }));
+        assertEquals(1.0, registry.get("appointments.customer.locks.timeouts").counter().count());
+    }
+
+    @Test
+    void testLockIsReleasedWhenWriteFails() {
+        assertThrows(IllegalStateException.class, () -> locks.run("A", () -> {
+            throw new IllegalStateException("write failed");
+        }));
+
+        assertEquals("A", locks.call("A", () -> "A"));
+        assertEquals(0.0, registry.get("appointments.customer.locks.contended").counter().count());
+    }
+
+    @Test
+    void testSeveralCustomersWaitForAnyTakenLock() throws Exception {
+        holdLockOf("A");
+        CompletableFuture<String> both = CompletableFuture.supplyAsync(
+                () -> locks.callAll(List.of("B", "A"), () -> "both"), executor);
+
+        assertFalse(completesWithin(both, 50));
+        release.countDown();
+        assertEquals("both", both.get(1, TimeUnit.SECONDS));
+        assertEquals("B", locks.call("B", () -> "B"));
+    }
+
+    @Test
+    void testOverlappingCustomersInOppositeOrderDoNotDeadlock() throws Exception {
+        Future<?> forward = executor.submit(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                locks.runAll(List.of("A", "B"), () -> { });
+            }
+        });
+        Future<?> backward = executor.submit(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                locks.runAll(List.of("B", "A"), () -> { });
+            }
+        });
+
+        forward.get(5, TimeUnit.SECONDS);
+        backward.get(5, TimeUnit.SECONDS);
+        assertEquals(0.0, registry.get("appointments.customer.locks.timeouts").counter().count());
+    }
+
+    @Test
+    void testAllLocksAreReleasedWhenWriteFails() {
+        assertThrows(IllegalStateException.class, () -> locks.runAll(List.of("A", "B"), () -> {
+            throw new IllegalStateException("write failed");
+        }));
+
+        assertEquals("A", locks.call("A", () -> "A"));
+        assertEquals("B", locks.call("B", () -> "B"));
+        assertEquals(0.0, registry.get("appointments.customer.locks.contended").counter().count());
+    }
+
+    @Test
+    void testHoldUntilCompletionKeepsLocksUntilTheTransactionCompletes() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(locks.tryHoldUntilCompletion(List.of("A", "B")));
+            CompletableFuture<String> waiting = CompletableFuture.supplyAsync(() -> locks.call("B", () -> "B"),
+                    executor);
+            assertFalse(completesWithin(waiting, 50));
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(
+                    synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+            assertEquals("B", waiting.get(1, TimeUnit.SECONDS));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void testHoldUntilCompletionTakesNothingWhenALockIsTaken() throws Exception {
+        holdLockOf("B");
+
+        assertFalse(locks.tryHoldUntilCompletion(List.of("A", "B")));
+        release.countDown();
+        assertEquals("A", CompletableFuture.supplyAsync(() -> locks.call("A", () -> "A"), executor)
+                .get(1, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("appointments.customer.locks.contended").counter().count());
+    }
+
+    @Test
+    void testStripesMustBePositive() {
+        CustomerLockProperties properties = new CustomerLockProperties();
+        properties.setStripes(0);
+
+        assertThrows(IllegalArgumentException.class, () -> new CustomerWriteLocks(properties));
+    }
+
+    private void holdLockOf(String customerId) throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        executor.submit(() -> locks.run(customerId, () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(held.await(1, TimeUnit.SECONDS));
+    }
+
+    private static boolean completesWithin(Future<?> future, long millis) throws Exception {
+        try {
+            future.get(millis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.appointments.service;
+
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.exception.AppointmentNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Replica routing against three H2 databases. Nothing replicates between them, so where a read went shows in
+ * what it returns: each replica holds a row of its own for the customer, the primary holds none.
+ */
+@SpringBootTest(properties = {
+        "appointments.replicas.enabled=true",
+        "appointments.replicas.health-check-interval=1h",
+        "appointments.replicas.read-your-writes-window=300ms",
+        "appointments.replicas.nodes[0].name=replica-1",
+        "appointments.replicas.nodes[0].url=" + ReplicaReadsTest.REPLICA_1,
+        "appointments.replicas.nodes[0].username=sa",
+        "appointments.replicas.nodes[1].name=replica-2",
+        "appointments.replicas.nodes[1].url=" + ReplicaReadsTest.REPLICA_2,
+        "appointments.replicas.nodes[1].username=sa"})
+class ReplicaReadsTest {
+
+    static final String REPLICA_1 = "jdbc:h2:mem:replica-reads-1;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_2 = "jdbc:h2:mem:replica-reads-2;DB_CLOSE_DELAY=-1";
+    private static final String CUSTOMER = "REPLICA01";
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Stand-ins for replication: the schema, and a row per replica that the primary does not have
+    @BeforeAll
+    static void setUpReplicas() {
+        int id = 1_000_000;
+        for (String url : List.of(REPLICA_1, REPLICA_2)) {
+            Flyway.configure().dataSource(url, "sa", "").load().migrate();
+            JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+            replica.update("delete from appointments");
+            replica.update("insert into appointments (id, title, category, start_date, done, customer_id, version) "
+                    + "values (?, ?, 'Medical', ?, false, ?, 0)", ++id, "Read from " + url, START, CUSTOMER);
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Test
+    void testReadsAlternateBetweenReplicas() {
+        Set<String> titles = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            cacheManager.getCache("customerAppointments").clear();
+            appointmentService.getAppointmentsByCustomerId(CUSTOMER).forEach(a -> titles.add(a.getTitle()));
+        }
+
+        assertEquals(Set.of("Read from " + REPLICA_1, "Read from " + REPLICA_2), titles);
+        assertTrue(meterRegistry.get("appointments.db.replica.reads").tag("node", "replica-1").counter().count() > 0);
+        assertTrue(meterRegistry.get("appointments.db.replica.reads").tag("node", "replica-2").counter().count() > 0);
+    }
+
+    @Test
+    void testReadsAfterAWriteGoToPrimaryUntilWindowPasses() throws Exception {
+        double pinnedBefore = meterRegistry.get("appointments.db.replica.pinned").counter().count();
+
+        AppointmentResponse created = appointmentService.createAppointment(request(CUSTOMER));
+
+        assertEquals(List.of("Written to primary"), titles(appointmentService.getAppointmentsByCustomerId(CUSTOMER)));
+        assertEquals("Written to primary", appointmentService.getAppointmentById(created.getId()).getTitle());
+        assertEquals(2, meterRegistry.get("appointments.db.replica.pinned").counter().count() - pinnedBefore);
+
+        Thread.sleep(400);
+        setUp();
+
+        // Nothing replicates here, so once the window has passed the write is gone from view
+        assertTrue(titles(appointmentService.getAppointmentsByCustomerId(CUSTOMER)).get(0).startsWith("Read from"));
+        assertThrows(AppointmentNotFoundException.class, () -> appointmentService.getAppointmentById(created.getId()));
+
+        // Leaves the customer to the replicas again for the other tests
+        appointmentService.deleteAppointment(created.getId());
+        Thread.sleep(400);
+    }
+
+    @Test
+    void testReadsNotMarkedForReplicasStayOnPrimary() {
+        assertEquals(0, appointmentService.getStats(filter()).getTotal());
+        assertEquals(List.of(), titles(appointmentService.findAppointments(filter(), Sort.unsorted(), true)));
+    }
+
+    private static AppointmentFilter filter() {
+        AppointmentFilter filter = new AppointmentFilter();
+        filter.setCustomerId(CUSTOMER);
+        return filter;
+    }
+
+    private static AppointmentRequest request(String customerId) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setTitle("Written to primary");
+        request.setCategory("Medical");
+        request.setStartDate(START.plusDays(1));
+        request.setCustomerId(customerId);
+        return request;
+    }
+
+    private static List<String> titles(List<AppointmentResponse> appointments) {
+        return appointments.stream().map(AppointmentResponse::getTitle).toList();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.appointments.service;
+
+import com.example.appointments.config.ShardConfig;
+import com.example.appointments.config.ShardProperties;
+import com.example.appointments.config.ShardRoutingDataSource;
+import com.example.appointments.dto.AppointmentFilter;
+import com.example.appointments.dto.AppointmentPage;
+import com.example.appointments.dto.AppointmentRequest;
+import com.example.appointments.dto.AppointmentResponse;
+import com.example.appointments.dto.BulkItemResult;
+import com.example.appointments.dto.BulkResponse;
+import com.example.appointments.dto.ShardRebalanceResult;
+import com.example.appointments.dto.ShardStatus;
+import com.example.appointments.exception.AppointmentNotFoundException;
+import com.example.appointments.exception.CrossShardMoveException;
+import com.example.appointments.repository.AppointmentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("shards")
+class ShardingTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2030, 1, 1, 8, 0);
+    private static final int CUSTOMERS = 30;
+
+    @Autowired
+    private AppointmentService appointmentService;
+
+    @Autowired
+    private AppointmentBulkService appointmentBulkService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private List<ShardRoutingDataSource.Shard> shards;
+    private String prefix;
+
+    @BeforeEach
+    void setUp(TestInfo testInfo) {
+        shards = ShardConfig.unwrap(dataSource).getShards();
+        shards.forEach(shard -> new JdbcTemplate(shard.dataSource()).update("delete from appointments"));
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        // Customers of their own per test, so the in-memory indexes hold nothing of other tests
+        prefix = testInfo.getTestMethod().orElseThrow().getName() + "-";
+    }
+
+    @Test
+    void testAppointmentsAreStoredOnTheShardOfTheirCustomer() {
+        for (int i = 0; i < CUSTOMERS; i++) {
+            appointmentService.createAppointment(request(customer(i), i));
+        }
+
+        Set<String> used = new HashSet<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            String owner = shardRouter.ownerOf(customer(i));
+            used.add(owner);
+            for (ShardRoutingDataSource.Shard shard : shards) {
+                assertEquals(shard.name().equals(owner) ? 1 : 0, countOn(shard, customer(i)), customer(i));
+            }
+        }
+        assertEquals(3, used.size());
+        // Blocks of ids come from the sequence of whichever shard was asked, and no two shards share one
+        Set<Long> ids = new HashSet<>();
+        for (ShardRoutingDataSource.Shard shard : shards) {
+            ids.addAll(new JdbcTemplate(shard.dataSource()).queryForList("select id from appointments", Long.class));
+        }
+        assertEquals(CUSTOMERS, ids.size());
+    }
+
+    @Test
+    void testGlobalReadsGatherEveryShard() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            ids.add(appointmentService.createAppointment(request(customer(i), i)).getId());
+        }
+
+        assertEquals(CUSTOMERS, appointmentService.getAllAppointments(false).getItems().size());
+        for (int i = 0; i < CUSTOMERS; i++) {
+            assertEquals(customer(i), appointmentService.getAppointmentById(ids.get(i)).getCustomerId());
+        }
+
+        List<AppointmentResponse> sorted = appointmentService.findAppointments(new AppointmentFilter(),
+                Sort.by(Sort.Direction.DESC, "startDate"), false);
+        assertEquals(ids.reversed(), sorted.stream().map(AppointmentResponse::getId).toList());
+        assertEquals(CUSTOMERS, appointmentService.getStats(new AppointmentFilter()).getTotal());
+
+        List<Long> paged = new ArrayList<>();
+        String cursor = null;
+        do {
+            AppointmentPage page = appointmentService.getAppointmentsPage(cursor, 7);
+            page.getItems().forEach(item -> paged.add(item.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        assertEquals(ids, paged);
+    }
+
+    @Test
+    void testWritesByIdRunOnTheShardHoldingTheAppointment() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            ids.add(appointmentService.createAppointment(request(customer(i), i)).getId());
+        }
+
+        AppointmentRequest update = request(customer(3), 3);
+        update.setTitle("Moved up");
+        assertEquals("Moved up", appointmentService.updateAppointment(ids.get(3), update, null).getTitle());
+        appointmentService.markAppointmentDone(ids.get(4));
+        appointmentService.deleteAppointment(ids.get(5));
+
+        assertEquals("Moved up", appointmentService.getAppointmentById(ids.get(3)).getTitle());
+        assertTrue(appointmentService.getAppointmentById(ids.get(4)).getDone());
+        assertThrows(AppointmentNotFoundException.class, () -> appointmentService.getAppointmentById(ids.get(5)));
+        assertThrows(AppointmentNotFoundException.class,
+                () -> appointmentService.deleteAppointmentsByCustomerId(customer(5)));
+        assertEquals(1, appointmentService.deleteAppointmentsByCustomerId(customer(6)));
+        assertEquals(CUSTOMERS - 2, appointmentService.getAllAppointments(false).getItems().size());
+    }
+
+    @Test
+    void testMovingAppointmentToCustomerOnAnotherShardIsRejected() {
+        int other = 1;
+        while (shardRouter.ownerOf(customer(other)).equals(shardRouter.ownerOf(customer(0)))) {
+            other++;
+        }
+        AppointmentResponse created = appointmentService.createAppointment(request(customer(0), 0));
+
+        AppointmentRequest move = request(customer(other), 0);
+        assertThrows(CrossShardMoveException.class,
+                () -> appointmentService.updateAppointment(created.getId(), move, null));
+
+        assertEquals(customer(0), appointmentService.getAppointmentById(created.getId()).getCustomerId());
+    }
+
+    @Test
+    void testBulkWritesAreSplitByShard() {
+        List<AppointmentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CUSTOMERS; i++) {
+            requests.add(request(customer(i), i));
+        }
+
+        BulkResponse created = appointmentBulkService.createAppointments(requests);
+
+        assertEquals(CUSTOMERS, created.getSucceeded());
+        for (int i = 0; i < CUSTOMERS; i++) {
+            assertEquals(1, countOn(ownerOf(customer(i)), customer(i)));
+        }
+        List<Long> ids = created.getResults().stream().map(BulkItemResult::getId).toList();
+        assertEquals(CUSTOMERS, appointmentBulkService.deleteAppointments(ids).getSucceeded());
+        assertTrue(appointmentService.getAllAppointments(false).getItems().isEmpty());
+    }
+
+    @Test
+    void testRebalanceMovesCustomersToTheirShard() {
+        String customerId = customer(0);
+        ShardRoutingDataSource.Shard owner = ownerOf(customerId);
+        ShardRoutingDataSource.Shard elsewhere = shards.get((shards.indexOf(owner) + 1) % shards.size());
+        JdbcTemplate misplaced = new JdbcTemplate(elsewhere.dataSource());
+        long firstId = elsewhere.idRange() * ShardConfig.ID_RANGE + 1_000_000;
+        for (int i = 0; i < 2; i++) {
+            misplaced.update("insert into appointments (id, title, category, start_date, done, customer_id, version) "
+                    + "values (?, ?, 'Medical', ?, false, ?, 0)", firstId + i, "Misplaced " + i, START.plusHours(i),
+                    customerId);
+        }
+        ShardProperties rebalancing = new ShardProperties();
+        rebalancing.setEnabled(true);
+        rebalancing.setNodes(List.of(node("shard-1"), node("shard-2"), node("shard-3")));
+        rebalancing.setRebalancing(true);
+        ShardRouter rebalancingRouter = new ShardRouter(rebalancing, appointmentRepository, transactionManager);
+        try {
+            assertEquals(elsewhere.name(), rebalancingRouter.shardOf(customerId));
+            assertEquals(1, status(elsewhere).getMisplacedCustomers());
+
+            ShardRebalanceResult result = shardRebalancer.rebalance();
+
+            assertEquals(1, result.getMovedCustomers());
+            assertEquals(2, result.getMovedAppointments());
+            assertEquals(0, result.getRemainingCustomers());
+            assertEquals(owner.name(), rebalancingRouter.shardOf(customerId));
+        } finally {
+            rebalancingRouter.close();
+        }
+        assertEquals(0, countOn(elsewhere, customerId));
+        assertEquals(2, countOn(owner, customerId));
+        assertTrue(shardRebalancer.status().stream().allMatch(status -> status.getMisplacedCustomers() == 0));
+        assertEquals(2, appointmentService.getAppointmentsByCustomerId(customerId).size());
+        assertEquals("Misplaced 1", appointmentService.getAppointmentById(firstId + 1).getTitle());
+    }
+
+    private ShardStatus status(ShardRoutingDataSource.Shard shard) {
+        return shardRebalancer.status().stream()
+                .filter(status -> status.getShard().equals(shard.name()))
+                .findFirst().orElseThrow();
+    }
+
+    private ShardRoutingDataSource.Shard ownerOf(String customerId) {
+        return ShardConfig.unwrap(dataSource).getShard(shardRouter.ownerOf(customerId));
+    }
+
+    private static ShardProperties.Node node(String name) {
+        ShardProperties.Node node = new ShardProperties.Node();
+        node.setName(name);
+        return node;
+    }
+
+    private static long countOn(ShardRoutingDataSource.Shard shard, String customerId) {
+        Long count = new JdbcTemplate(shard.dataSource())
+                .queryForObject("select count(*) from appointments where customer_id = ?", Long.class, customerId);
+        return count != null ? count : 0;
+    }
+
+    private String customer(int i) {
+        return prefix + i;
+    }
+
+    private static AppointmentRequest request(String customerId, int hour) {
+        AppointmentRequest request = new AppointmentRequest();
+        request.setTitle("Appointment " + hour);
+        request.setCategory("Medical");
+        request.setStartDate(START.plusHours(hour));
+        request.setEndDate(START.plusHours(hour).plusMinutes(30));
+        request.setDone(false);
+        request.setCustomerId(customerId);
+        return request;
+    }
+}